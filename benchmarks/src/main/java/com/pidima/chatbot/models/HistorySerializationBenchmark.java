@@ -0,0 +1,60 @@
+package com.pidima.chatbot.models;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of a session history as returned by {@code GET /chat/history}: the whole JSON array at once
+ * versus the NDJSON streaming mode, for 10, 1k and 10k messages. The mapper is configured like Spring Boot's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistorySerializationBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int messages;
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter messageWriter;
+    private List<ChatMessage> history;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        messageWriter = objectMapper.writerFor(ChatMessage.class);
+        history = new ArrayList<>(messages);
+        Instant start = Instant.now();
+        for (int i = 0; i < messages; i++) {
+            history.add(new ChatMessage(i % 2 == 0 ? "user" : "assistant",
+                    "Message " + i + " of a long documentation session about deploying the chatbot service.",
+                    start.plusMillis(i)));
+        }
+    }
+
+    @Benchmark
+    public byte[] jsonArray() throws IOException {
+        return objectMapper.writeValueAsBytes(history);
+    }
+
+    @Benchmark
+    public void ndjsonStream() throws IOException {
+        OutputStream out = OutputStream.nullOutputStream();
+        for (ChatMessage message : history) {
+            out.write(messageWriter.writeValueAsBytes(message));
+            out.write('\n');
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.pidima.chatbot.models.ChatMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping between {@link ChatMessage} and its DynamoDB item, per message and for the two messages of a turn, and
+ * issuing a sort key from the {@link SortKeyClock}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatMessageItemBenchmark {
+    private static final String SESSION_ID = "5f0c6c1e-7a53-4a55-9c1b-2f0d6f3f8a10";
+
+    private ChatMessage message;
+    private List<ChatMessage> turn;
+    private ChatMessageItem item;
+    private SortKeyClock clock;
+
+    @Setup
+    public void setUp() {
+        Instant now = Instant.now();
+        message = new ChatMessage("user", "How do I configure the DynamoDB table for chat history?", now);
+        turn = List.of(message, new ChatMessage("assistant", "Create a table keyed by sessionId and ts.", now));
+        clock = new SortKeyClock(1, System::currentTimeMillis);
+        item = ChatMessageItem.from(SESSION_ID, message, clock.next());
+    }
+
+    @Benchmark
+    public long sortKey() {
+        return clock.next();
+    }
+
+    @Benchmark
+    public ChatMessageItem toItem() {
+        return ChatMessageItem.from(SESSION_ID, message, clock.next());
+    }
+
+    @Benchmark
+    public List<ChatMessageItem> turnToItems() {
+        return ChatMessageItem.fromAll(SESSION_ID, turn, clock);
+    }
+
+    @Benchmark
+    public ChatMessage toMessage() {
+        return item.toMessage();
+    }
+}
@@ -0,0 +1,56 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compressing a long assistant reply into its DynamoDB item and reading it back, per algorithm
+ * ({@code none} is the uncompressed baseline).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentCodecBenchmark {
+    private static final String SESSION_ID = "5f0c6c1e-7a53-4a55-9c1b-2f0d6f3f8a10";
+
+    @Param({"none", "lz4", "zstd", "deflate"})
+    public String algorithm;
+
+    @Param({"2000", "20000"})
+    public int replyChars;
+
+    private ContentCodec codec;
+    private ChatMessage reply;
+    private ChatMessageItem stored;
+
+    @Setup
+    public void setUp() {
+        AppProperties.Dynamo.Compression settings = new AppProperties.Dynamo.Compression();
+        settings.setAlgorithm(algorithm);
+        codec = new ContentCodec(settings, null);
+        StringBuilder text = new StringBuilder(replyChars);
+        for (int i = 0; text.length() < replyChars; i++) {
+            text.append("Step ").append(i).append(": create the chat_messages table with sessionId as the partition key")
+                    .append(" and ts as the sort key, then point app.dynamodb-table at it.\n");
+        }
+        reply = new ChatMessage("assistant", text.substring(0, replyChars), Instant.now());
+        stored = encode();
+    }
+
+    @Benchmark
+    public ChatMessageItem encode() {
+        return codec.encode(ChatMessageItem.from(SESSION_ID, reply, 1L));
+    }
+
+    @Benchmark
+    public ChatMessage decode() {
+        return codec.decode(stored);
+    }
+}
@@ -0,0 +1,175 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.pidima.chatbot.models.ChatMessage;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The enhanced-client put and query path with the table resolved per call from a reflective bean schema
+ * ({@code TableSchema.fromBean}, as the repositories used to do) versus the cached table over
+ * {@link ChatMessageItem#SCHEMA}. The low-level client is an in-process stub, so only the mapping, request
+ * building and response conversion are measured, not the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamoTableSchemaBenchmark {
+    private static final String TABLE_NAME = "chat_messages";
+    private static final String SESSION_ID = "5f0c6c1e-7a53-4a55-9c1b-2f0d6f3f8a10";
+    private static final int PAGE_SIZE = 20;
+
+    private DynamoDbEnhancedClient enhancedClient;
+    private DynamoDbTable<ChatMessageItem> cachedTable;
+    private ChatMessage message;
+    private SortKeyClock clock;
+
+    @Setup
+    public void setUp() {
+        Instant now = Instant.now();
+        message = new ChatMessage("user", "How do I configure the DynamoDB table for chat history?", now);
+        clock = new SortKeyClock(1, System::currentTimeMillis);
+        List<Map<String, AttributeValue>> page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            ChatMessage m = new ChatMessage(i % 2 == 0 ? "user" : "assistant", "Message number " + i, now.plusMillis(i));
+            page.add(ChatMessageItem.SCHEMA.itemToMap(ChatMessageItem.from(SESSION_ID, m, clock.next()), true));
+        }
+        enhancedClient = DynamoDbEnhancedClient.builder().dynamoDbClient(new StubDynamoDbClient(page)).build();
+        cachedTable = enhancedClient.table(TABLE_NAME, ChatMessageItem.SCHEMA);
+    }
+
+    @Benchmark
+    public void putWithBeanSchemaPerCall() {
+        enhancedClient.table(TABLE_NAME, TableSchema.fromBean(BeanChatMessageItem.class))
+                .putItem(BeanChatMessageItem.from(SESSION_ID, message));
+    }
+
+    @Benchmark
+    public void putWithStaticSchema() {
+        cachedTable.putItem(ChatMessageItem.from(SESSION_ID, message, clock.next()));
+    }
+
+    @Benchmark
+    public List<ChatMessage> queryWithBeanSchemaPerCall() {
+        List<ChatMessage> out = new ArrayList<>(PAGE_SIZE);
+        enhancedClient.table(TABLE_NAME, TableSchema.fromBean(BeanChatMessageItem.class))
+                .query(QueryConditional.keyEqualTo(Key.builder().partitionValue(SESSION_ID).build()))
+                .items()
+                .forEach(i -> out.add(new ChatMessage(i.getRole(), i.getContent(), Instant.ofEpochMilli(i.getTs()))));
+        return out;
+    }
+
+    @Benchmark
+    public List<ChatMessage> queryWithStaticSchema() {
+        List<ChatMessage> out = new ArrayList<>(PAGE_SIZE);
+        cachedTable.query(QueryConditional.keyEqualTo(Key.builder().partitionValue(SESSION_ID).build()))
+                .items()
+                .forEach(i -> out.add(i.toMessage()));
+        return out;
+    }
+
+    /**
+     * Answers puts with an empty response and every query with the same single page.
+     */
+    static final class StubDynamoDbClient implements DynamoDbClient {
+        private final QueryResponse queryResponse;
+
+        StubDynamoDbClient(List<Map<String, AttributeValue>> page) {
+            this.queryResponse = QueryResponse.builder().items(page).count(page.size()).build();
+        }
+
+        @Override
+        public PutItemResponse putItem(PutItemRequest request) {
+            return PutItemResponse.builder().build();
+        }
+
+        @Override
+        public QueryResponse query(QueryRequest request) {
+            return queryResponse;
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * The annotated bean mapping {@link ChatMessageItem} had before it switched to a static schema.
+     */
+    @DynamoDbBean
+    public static class BeanChatMessageItem {
+        private String sessionId;
+        private Long ts;
+        private String role;
+        private String content;
+
+        static BeanChatMessageItem from(String sessionId, ChatMessage message) {
+            BeanChatMessageItem item = new BeanChatMessageItem();
+            item.setSessionId(sessionId);
+            item.setTs(message.getTimestamp().toEpochMilli());
+            item.setRole(message.getRole());
+            item.setContent(message.getContent());
+            return item;
+        }
+
+        @DynamoDbPartitionKey
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public void setSessionId(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @DynamoDbSortKey
+        public Long getTs() {
+            return ts;
+        }
+
+        public void setTs(Long ts) {
+            this.ts = ts;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public void setRole(String role) {
+            this.role = role;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public void setContent(String content) {
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.pidima.chatbot.services;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.repository.memory.InMemoryChatRepository;
+import com.pidima.chatbot.services.context.ContextWindowBuilder;
+import com.pidima.chatbot.services.context.InMemorySummaryStore;
+import com.pidima.chatbot.services.context.TokenCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One chat turn through {@link ChatService#addMessageAndReply}: bounded history read, context window assembly,
+ * {@link DummyLlmClient} reply (no simulated latency) and the write of both messages, on the in-memory repository.
+ * Each thread chats in its own session, which is replaced every iteration so history length stays comparable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatServiceBenchmark {
+
+    private ChatService chatService;
+
+    @Setup
+    public void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.setPersistence("memory");
+        DummyLlmClient llmClient = new DummyLlmClient(appProperties);
+        ContextWindowBuilder contextWindowBuilder = new ContextWindowBuilder(
+                new TokenCounter(appProperties), new InMemorySummaryStore(), llmClient, appProperties);
+        chatService = new ChatService(new InMemoryChatRepository(appProperties), llmClient, appProperties,
+                contextWindowBuilder, new ChatTurnMetrics(new SimpleMeterRegistry()));
+    }
+
+    @State(Scope.Thread)
+    public static class Session {
+        String sessionId;
+        int turn;
+
+        @Setup(Level.Iteration)
+        public void newSession(ChatServiceBenchmark benchmark) {
+            sessionId = benchmark.chatService.createSession(Optional.of("bench-user"));
+            turn = 0;
+        }
+    }
+
+    @Benchmark
+    public String addMessageAndReply(Session session) {
+        return chatService.addMessageAndReply(session.sessionId, "How do I deploy the service? #" + session.turn++);
+    }
+}
@@ -0,0 +1,82 @@
+package com.pidima.chatbot.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request payload construction and response parsing of {@link OpenAiLlmClient}, without any network I/O: building
+ * the request body for a prompt window of 50 messages, serializing it with the client's pre-built writer, and decoding
+ * a completion response and a streamed chunk into the {@link OpenAiApi} records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenAiPayloadBenchmark {
+    private static final String COMPLETION = """
+            {"id":"chatcmpl-1","object":"chat.completion","created":1717171717,"model":"gpt-4o-mini",
+             "choices":[{"index":0,"message":{"role":"assistant","content":"To deploy the service, build the image \
+            and push it to your registry, then update the task definition."},"finish_reason":"stop"}],
+             "usage":{"prompt_tokens":812,"completion_tokens":27,"total_tokens":839}}""";
+    private static final String CHUNK = """
+            {"id":"chatcmpl-1","object":"chat.completion.chunk","created":1717171717,"model":"gpt-4o-mini",\
+            "choices":[{"index":0,"delta":{"content":" registry"},"finish_reason":null}]}""";
+
+    private OpenAiLlmClient client;
+    private ObjectWriter requestWriter;
+    private ObjectReader responseReader;
+    private List<ChatMessage> history;
+    private byte[] completion;
+
+    @Setup
+    public void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.setLlmModel("gpt-4o-mini");
+        ObjectMapper objectMapper = new ObjectMapper();
+        requestWriter = objectMapper.writerFor(OpenAiApi.ChatRequest.class);
+        responseReader = objectMapper.readerFor(OpenAiApi.Response.class);
+        client = new OpenAiLlmClient(WebClient.create(), appProperties, objectMapper, Optional.empty(), Optional.empty());
+        history = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            history.add(new ChatMessage(i % 2 == 0 ? "user" : "assistant",
+                    "Message " + i + " about configuring DynamoDB tables and deploying the chatbot service.",
+                    Instant.now()));
+        }
+        completion = COMPLETION.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object buildPayload() {
+        return client.buildPayload(history, false);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerializePayload() throws IOException {
+        return requestWriter.writeValueAsBytes(client.buildPayload(history, false));
+    }
+
+    @Benchmark
+    public String parseCompletion() throws IOException {
+        return client.extractContent(responseReader.readValue(completion));
+    }
+
+    @Benchmark
+    public String parseStreamChunk() {
+        return client.extractDelta(CHUNK);
+    }
+}
@@ -0,0 +1,46 @@
+package com.pidima.gateway.service;
+
+import com.pidima.gateway.config.SecurityProps;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HS256 access-token issuing and verification in the gateway ({@link JwtService}), which runs on every login and
+ * every authenticated request respectively.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private JwtService jwtService;
+    private Map<String, Object> claims;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        SecurityProps props = new SecurityProps();
+        // HS256 needs a key of at least 256 bits
+        props.getJwt().setSecret("benchmark-secret-benchmark-secret-0123456789");
+        jwtService = new JwtService(props);
+        claims = Map.of("roles", List.of("USER"));
+        token = jwtService.generateAccessToken("bench-user", claims, 900);
+    }
+
+    @Benchmark
+    public String generateAccessToken() {
+        return jwtService.generateAccessToken("bench-user", claims, 900);
+    }
+
+    @Benchmark
+    public Claims parse() {
+        return jwtService.parse(token);
+    }
+}
@@ -1,16 +1,27 @@
 package com.pidima.chatbot.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.pidima.chatbot.models.ChatMessage;
 import com.pidima.chatbot.models.dto.*;
+import com.pidima.chatbot.repository.HistoryQuery;
 import com.pidima.chatbot.services.IChatService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * REST endpoints for managing chat sessions and exchanging messages with the assistant.
@@ -20,10 +31,14 @@ import java.util.Optional;
 @RestController
 @RequestMapping("/chat")
 @RequiredArgsConstructor
+@ConditionalOnExpression("'${app.execution-mode:blocking}' != 'reactive'")
 @CrossOrigin(origins = "*", allowedHeaders = "*", methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.OPTIONS})
 public class ChatController {
 
+    private static final int NDJSON_FLUSH_EVERY = 100;
+
     private final IChatService chatService;
+    private final ObjectMapper objectMapper;
 
     /**
      * Creates a new chat session.
@@ -52,15 +67,88 @@ public class ChatController {
     }
 
     /**
-     * Returns the full chat history for the given session id.
+     * Appends a user message and streams the assistant's reply as Server-Sent Events.
+     * <p>
+     * Emits one {@code delta} event per content chunk ({@link ChatStreamChunk}) followed by a single
+     * {@code done} event carrying the complete reply ({@link ChatMessageResponse}).
+     *
+     * @param request the chat message request containing {@code sessionId} and {@code message}
+     * @return event stream of reply deltas
+     * @throws NoSuchElementException if the session does not exist
+     */
+    @PostMapping(value = "/message/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<Object>>> streamMessage(@Valid @RequestBody ChatMessageRequest request) {
+        String sessionId = request.getSessionId();
+        StringBuilder reply = new StringBuilder();
+        Flux<ServerSentEvent<Object>> events = chatService.addMessageAndStreamReply(sessionId, request.getMessage())
+                .doOnNext(reply::append)
+                .map(delta -> ServerSentEvent.<Object>builder(new ChatStreamChunk(sessionId, delta)).event("delta").build())
+                .concatWith(Flux.defer(() -> Flux.just(ServerSentEvent.<Object>builder(
+                        new ChatMessageResponse(sessionId, reply.toString())).event("done").build())));
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                // Ask intermediaries (nginx and similar) not to buffer the stream
+                .header("X-Accel-Buffering", "no")
+                .body(events);
+    }
+
+    /**
+     * Returns the chat history for the given session id, optionally one page at a time.
+     * <p>
+     * Without query parameters the full history is returned. With any of {@code limit}, {@code before},
+     * {@code after} or {@code since} a single page is returned and its cursors are sent in the
+     * {@code X-First-Cursor}, {@code X-Last-Cursor} and {@code X-Has-More} headers: pass {@code X-First-Cursor} as
+     * {@code before} to load older messages, or {@code X-Last-Cursor} as {@code after} to fetch only newer ones.
      *
      * @param sessionId the id of the session
+     * @param limit maximum number of messages (1-1000); without a lower bound the latest ones are returned
+     * @param before only messages older than this cursor
+     * @param after only messages newer than this cursor
+     * @param since only messages with a timestamp at or after this instant (ISO-8601)
      * @return ordered list of chat messages (oldest first)
      * @throws NoSuchElementException if the session does not exist
      */
     @GetMapping("/history/{sessionId}")
-    public ResponseEntity<List<ChatMessage>> history(@PathVariable("sessionId") String sessionId) {
-        List<ChatMessage> history = chatService.getHistory(sessionId);
-        return ResponseEntity.ok(history);
+    public ResponseEntity<List<ChatMessage>> history(@PathVariable("sessionId") String sessionId,
+                                                     @RequestParam(value = "limit", required = false) Integer limit,
+                                                     @RequestParam(value = "before", required = false) Long before,
+                                                     @RequestParam(value = "after", required = false) Long after,
+                                                     @RequestParam(value = "since", required = false) Instant since) {
+        if (limit == null && before == null && after == null && since == null) {
+            return ResponseEntity.ok(chatService.getHistory(sessionId));
+        }
+        return HistoryPageResponses.ok(chatService.getHistoryPage(sessionId, new HistoryQuery(before, after, since, limit)));
+    }
+
+    /**
+     * Streams the full chat history as newline-delimited JSON ({@code Accept: application/x-ndjson}), one
+     * {@link ChatMessage} per line. Messages are written as the repository reads them page by page, so memory per
+     * request stays constant and the first lines reach the client before the last page is read.
+     *
+     * @param sessionId the id of the session
+     * @return chunked NDJSON body (oldest message first)
+     * @throws NoSuchElementException if the session does not exist (reported before streaming starts)
+     */
+    @GetMapping(value = "/history/{sessionId}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamHistory(@PathVariable("sessionId") String sessionId) {
+        Stream<ChatMessage> messages = chatService.streamHistory(sessionId);
+        ObjectWriter writer = objectMapper.writerFor(ChatMessage.class);
+        StreamingResponseBody body = out -> {
+            try (messages) {
+                int written = 0;
+                for (ChatMessage message : (Iterable<ChatMessage>) messages::iterator) {
+                    out.write(writer.writeValueAsBytes(message));
+                    out.write('\n');
+                    // Push the first line right away, then in batches instead of once per message
+                    if (++written == 1 || written % NDJSON_FLUSH_EVERY == 0) {
+                        out.flush();
+                    }
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header("X-Accel-Buffering", "no")
+                .body(body);
     }
 }
@@ -0,0 +1,30 @@
+package com.pidima.chatbot.api;
+
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.repository.HistoryPage;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * Renders a {@link HistoryPage} as the plain message array the history endpoint always returned, with the page
+ * cursors in response headers.
+ */
+final class HistoryPageResponses {
+    static final String FIRST_CURSOR = "X-First-Cursor";
+    static final String LAST_CURSOR = "X-Last-Cursor";
+    static final String HAS_MORE = "X-Has-More";
+
+    private HistoryPageResponses() {
+    }
+
+    static ResponseEntity<List<ChatMessage>> ok(HistoryPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HAS_MORE, String.valueOf(page.hasMore()));
+        if (page.firstCursor() != null) {
+            response.header(FIRST_CURSOR, String.valueOf(page.firstCursor()));
+            response.header(LAST_CURSOR, String.valueOf(page.lastCursor()));
+        }
+        return response.body(page.messages());
+    }
+}
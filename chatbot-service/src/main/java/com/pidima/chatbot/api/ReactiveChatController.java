@@ -0,0 +1,129 @@
+package com.pidima.chatbot.api;
+
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.models.dto.*;
+import com.pidima.chatbot.repository.HistoryQuery;
+import com.pidima.chatbot.services.IReactiveChatService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Non-blocking variant of {@link ChatController}, active when {@code app.execution-mode=reactive}.
+ * Handlers return {@link Mono}/{@link Flux} so the servlet request thread is released while persistence
+ * and LLM calls are in flight.
+ * <p>
+ * Base path: {@code /chat}
+ */
+@RestController
+@RequestMapping("/chat")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.execution-mode", havingValue = "reactive")
+@CrossOrigin(origins = "*", allowedHeaders = "*", methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.OPTIONS})
+public class ReactiveChatController {
+
+    private final IReactiveChatService chatService;
+
+    /**
+     * Creates a new chat session.
+     *
+     * @param request optional body with {@code userId} to associate the session with a user
+     * @return the created session id
+     */
+    @PostMapping("/session")
+    public Mono<CreateSessionResponse> createSession(@Valid @RequestBody(required = false) CreateSessionRequest request) {
+        Optional<String> userId = request == null ? Optional.empty() : Optional.ofNullable(request.getUserId());
+        return chatService.createSession(userId).map(CreateSessionResponse::new);
+    }
+
+    /**
+     * Appends a user message to the session history and returns the assistant's reply.
+     *
+     * @param request the chat message request containing {@code sessionId} and {@code message}
+     * @return the assistant reply for the provided message
+     * @throws NoSuchElementException if the session does not exist
+     */
+    @PostMapping("/message")
+    public Mono<ChatMessageResponse> sendMessage(@Valid @RequestBody ChatMessageRequest request) {
+        return chatService.addMessageAndReply(request.getSessionId(), request.getMessage())
+                .map(reply -> new ChatMessageResponse(request.getSessionId(), reply));
+    }
+
+    /**
+     * Appends a user message and streams the assistant's reply as Server-Sent Events.
+     * <p>
+     * The session is validated before the response is committed, so a missing session still yields a 404. The turn is
+     * stored when the stream ends, also when the client disconnects.
+     *
+     * @param request the chat message request containing {@code sessionId} and {@code message}
+     * @return event stream of reply deltas
+     * @throws NoSuchElementException if the session does not exist
+     */
+    @PostMapping(value = "/message/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Mono<ResponseEntity<Flux<ServerSentEvent<Object>>>> streamMessage(@Valid @RequestBody ChatMessageRequest request) {
+        String sessionId = request.getSessionId();
+        return chatService.addMessageAndStreamReply(sessionId, request.getMessage())
+                .map(deltas -> {
+                    StringBuilder reply = new StringBuilder();
+                    Flux<ServerSentEvent<Object>> events = deltas
+                            .doOnNext(reply::append)
+                            .map(delta -> ServerSentEvent.<Object>builder(new ChatStreamChunk(sessionId, delta)).event("delta").build())
+                            .concatWith(Flux.defer(() -> Flux.just(ServerSentEvent.<Object>builder(
+                                    new ChatMessageResponse(sessionId, reply.toString())).event("done").build())));
+                    return ResponseEntity.ok()
+                            .cacheControl(CacheControl.noCache())
+                            .header("X-Accel-Buffering", "no")
+                            .body(events);
+                });
+    }
+
+    /**
+     * Returns the chat history for the given session id, optionally one page at a time; see
+     * {@link ChatController#history(String, Integer, Long, Long, Instant)} for the paging parameters and headers.
+     *
+     * @param sessionId the id of the session
+     * @return ordered list of chat messages (oldest first)
+     * @throws NoSuchElementException if the session does not exist
+     */
+    @GetMapping("/history/{sessionId}")
+    public Mono<ResponseEntity<List<ChatMessage>>> history(@PathVariable("sessionId") String sessionId,
+                                                           @RequestParam(value = "limit", required = false) Integer limit,
+                                                           @RequestParam(value = "before", required = false) Long before,
+                                                           @RequestParam(value = "after", required = false) Long after,
+                                                           @RequestParam(value = "since", required = false) Instant since) {
+        if (limit == null && before == null && after == null && since == null) {
+            return chatService.getHistory(sessionId).collectList().map(ResponseEntity::ok);
+        }
+        return Mono.defer(() -> chatService.getHistoryPage(sessionId, new HistoryQuery(before, after, since, limit)))
+                .map(HistoryPageResponses::ok);
+    }
+
+    /**
+     * Streams the full chat history as newline-delimited JSON ({@code Accept: application/x-ndjson}), one
+     * {@link ChatMessage} per line, writing messages as DynamoDB pages arrive.
+     *
+     * @param sessionId the id of the session
+     * @return NDJSON stream (oldest message first)
+     * @throws NoSuchElementException if the session does not exist (reported before streaming starts)
+     */
+    @GetMapping(value = "/history/{sessionId}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<Flux<ChatMessage>>> streamHistory(@PathVariable("sessionId") String sessionId) {
+        return chatService.streamHistory(sessionId)
+                .map(messages -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .header("X-Accel-Buffering", "no")
+                        .body(messages));
+    }
+}
@@ -4,7 +4,9 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.core.retry.RetryMode;
 
+import java.time.Duration;
 import java.util.List;
 
 @Configuration
@@ -15,9 +17,235 @@ public class AppProperties {
     private List<String> corsOrigins;
     private String llmProvider; // openai|bedrock|dummy
     private String llmModel;
+    private double llmTemperature = 0.2; // sampling temperature sent with every completion request
+    private int llmMaxTokens = 512; // completion token limit sent with every request
+    private Duration llmTimeout = Duration.ofSeconds(30); // per LLM request; a stream's limit between two deltas
     private String persistence; // memory|dynamodb
+    private String dynamodbTable = "chat_messages"; // chat history table (app.persistence=dynamodb)
+    private String dynamodbSessionsTable = "chat_sessions"; // session metadata table (app.persistence=dynamodb)
+    private String dynamodbNodeLeasesTable = "chat_node_leases"; // sort key node ids leased by instances without app.dynamo.node-id
+    private int llmHistoryLimit = 50; // most recent messages read per turn, trimmed to the context token budget
+    private String executionMode = "blocking"; // blocking|reactive|virtual
+    private long dummyStreamDelayMs; // delay between streamed dummy deltas; 0 = no delay
+    private long dummyLatencyMinMs; // simulated dummy LLM latency, drawn uniformly from [min, max]
+    private long dummyLatencyMaxMs;
 
     // OpenAI config
     private String openaiApiKey;
     private String openaiBaseUrl; // e.g., https://api.openai.com/v1
+    private OpenaiHttp openaiHttp = new OpenaiHttp();
+
+    // DynamoDB client tuning (DynamoConfig)
+    private Dynamo dynamo = new Dynamo();
+
+    // Prompt assembly (ContextWindowBuilder)
+    private Context context = new Context();
+
+    // In-memory persistence (app.persistence=memory)
+    private Memory memory = new Memory();
+
+    // In-process session history cache (CachingChatRepository)
+    private HistoryCache historyCache = new HistoryCache();
+
+    // LLM reply cache (CachingLlmClient)
+    private ReplyCache replyCache = new ReplyCache();
+
+    // Adaptive bulkhead in front of the LLM provider (ConcurrencyLimitingLlmClient)
+    private LlmLimiter llmLimiter = new LlmLimiter();
+
+    // Retries, hedging and circuit breaking of LLM calls (ResilientLlmClient)
+    private LlmResilience llmResilience = new LlmResilience();
+
+    // Micro-batching of concurrent LLM calls for self-hosted backends (MicroBatchingLlmClient)
+    private LlmBatching llmBatching = new LlmBatching();
+
+    @Getter
+    @Setter
+    public static class Dynamo {
+        private String httpClient = "apache"; // apache|url-connection|crt for the blocking client; async is always netty
+        private int maxConnections = 100; // pool size (apache), max concurrency (crt, netty); ignored by url-connection
+        private int maxPendingAcquires = 10_000; // netty: requests queued for a connection before failing fast
+        private Duration connectionAcquisitionTimeout = Duration.ofSeconds(2); // wait for a pooled connection (apache, netty)
+        private Duration connectionTimeout = Duration.ofSeconds(2);
+        private Duration socketTimeout = Duration.ofSeconds(5); // read/write timeout
+        private Duration connectionTtl = Duration.ofMinutes(5); // close older connections so DNS changes are picked up
+        private Duration connectionMaxIdleTime = Duration.ofSeconds(60);
+        private boolean tcpKeepAlive = true;
+        private Duration apiCallTimeout = Duration.ofSeconds(10); // whole call including retries
+        private Duration apiCallAttemptTimeout = Duration.ofSeconds(3); // single HTTP attempt
+        private RetryMode retryMode = RetryMode.ADAPTIVE; // legacy|standard|adaptive (client-side rate limiting on throttles)
+        private int maxRetries = 3;
+        private boolean metricsEnabled = true; // publish SDK call/attempt/pool metrics to Micrometer (aws.sdk.*)
+        private int nodeId = -1; // 0-255, low bits of every sort key (SortKeyClock); -1 = lease one (NodeIdLease)
+        private Duration nodeLeaseDuration = Duration.ofSeconds(30); // lease of a node id; renewed every third of it
+        private Duration sessionTtl; // retention: messages and idle sessions expire this long after their last write; unset = never
+        private WriteBehind writeBehind = new WriteBehind();
+        private Compression compression = new Compression();
+        private Archive archive = new Archive();
+
+        /**
+         * @return lifetime written to the TTL attributes of messages and sessions: the retention, plus the archive
+         * grace period when archiving; null if items never expire
+         */
+        public Duration timeToLive() {
+            if (sessionTtl == null) return null;
+            return archive.isEnabled() ? sessionTtl.plus(archive.getGrace()) : sessionTtl;
+        }
+
+        @Getter
+        @Setter
+        public static class WriteBehind {
+            private boolean enabled = false; // acknowledge appends once buffered; BatchWriteItem them in the background
+            private int capacity = 10_000; // buffered messages before writers block
+            private int flushers = 2; // flusher threads; each session is pinned to one
+            private Duration flushInterval = Duration.ofMillis(20); // max wait for a batch to fill up
+            private Duration enqueueTimeout = Duration.ofMillis(500); // max block on a full buffer before rejecting
+            private Duration shutdownTimeout = Duration.ofSeconds(10); // drain time on shutdown
+            private Duration maxBackoff = Duration.ofSeconds(5); // cap of the retry backoff for unprocessed items
+            private int maxAttempts = 10; // writes of one message before it is dropped
+        }
+
+        @Getter
+        @Setter
+        public static class Compression {
+            private String algorithm = "none"; // none|lz4|zstd|deflate for newly written content; reads handle all
+            private int minBytes = 1024; // UTF-8 content size from which compression is attempted
+        }
+
+        @Getter
+        @Setter
+        public static class Archive {
+            private boolean enabled = false; // export expired messages before deleting them; needs session-ttl
+            private Duration grace = Duration.ofDays(1); // added to the TTL attributes so archiving runs before DynamoDB deletes
+            private Duration interval = Duration.ofHours(1); // delay between archive runs
+            private int chunkSize = 10_000; // messages per archive file
+            private String store = "file"; // file|s3
+            private String directory = "archive"; // file store root
+            private String s3Bucket;
+            private String s3Prefix = "chat-archive/";
+            private String s3Endpoint; // S3-compatible endpoint (MinIO, LocalStack); unset = AWS
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class ReplyCache {
+        private boolean enabled = false;
+        private int contextTurns = 1; // conversations with up to this many user turns are cached; longer ones bypass
+        private long maxBytes = 32L * 1024 * 1024; // estimated size of all locally cached replies
+        private Duration ttl = Duration.ofHours(1); // expiry after write, local and in Redis
+        private Redis redis = new Redis();
+
+        @Getter
+        @Setter
+        public static class Redis {
+            private boolean enabled = false; // shared tier behind the local cache
+            private String host = "localhost";
+            private int port = 6379;
+            private Duration timeout = Duration.ofMillis(100); // a slower lookup counts as a miss
+            private String keyPrefix = "chat:reply:";
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class LlmLimiter {
+        private boolean enabled = false;
+        private int initialLimit = 20; // concurrent LLM calls allowed before the first adjustment
+        private int minLimit = 2;
+        private int maxLimit = 200;
+        private double latencyTolerance = 2.0; // calls slower than this multiple of the baseline latency shrink the limit
+        private double backoffRatio = 0.9; // multiplicative decrease on slow, timed-out or rate-limited calls
+        private int maxQueue = 100; // calls waiting for a slot; further calls are rejected at once
+        private Duration maxWait = Duration.ofSeconds(2); // a queued call is rejected after waiting this long
+    }
+
+    @Getter
+    @Setter
+    public static class LlmResilience {
+        private boolean enabled = true;
+        private int maxAttempts = 3; // attempts per call, including the first; 1 = no retries
+        private Duration initialBackoff = Duration.ofMillis(200); // doubled per retry, with jitter
+        private Duration maxBackoff = Duration.ofSeconds(2); // also the longest provider Retry-After that is waited for
+        private Hedging hedging = new Hedging();
+        private Breaker circuitBreaker = new Breaker();
+
+        @Getter
+        @Setter
+        public static class Hedging {
+            private boolean enabled = false; // a hedged call may be billed twice
+            private double percentile = 0.95; // latency percentile of recent calls after which a second attempt starts
+            private Duration minDelay = Duration.ofSeconds(1); // lower bound of the hedge delay
+            private int window = 100; // recent successful attempts the percentile is taken over
+        }
+
+        @Getter
+        @Setter
+        public static class Breaker {
+            private boolean enabled = true;
+            private int window = 20; // recent attempts the failure rate is taken over
+            private int minCalls = 10; // attempts in the window before the breaker may open
+            private double failureRate = 0.5; // share of transient failures that opens the breaker
+            private Duration openDuration = Duration.ofSeconds(30); // calls fail fast this long before trial calls
+            private int halfOpenCalls = 3; // successful trial calls needed to close again
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class OpenaiHttp {
+        private int maxConnections = 100; // per pool; with HTTP/2 each connection carries many concurrent calls
+        private int pendingAcquireMaxCount = 1000; // calls waiting for a connection; further calls fail at once
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(10);
+        private Duration maxIdleTime = Duration.ofSeconds(30); // closed before the provider's keep-alive timeout does
+        private Duration maxLifeTime = Duration.ofMinutes(5); // renewed so DNS changes of the provider are picked up
+        private Duration evictionInterval = Duration.ofSeconds(30); // background check for idle/expired connections
+        private Duration connectTimeout = Duration.ofSeconds(10);
+        private boolean http2 = true; // negotiated via ALPN for https base URLs; plain http stays on HTTP/1.1
+        private int maxInMemorySize = 2 * 1024 * 1024; // largest non-streamed response body, in bytes
+    }
+
+    @Getter
+    @Setter
+    public static class LlmBatching {
+        private boolean enabled = false; // needs a provider that can batch (BatchLLMClient)
+        private int maxBatchSize = 8; // a full batch is sent at once
+        private Duration maxWait = Duration.ofMillis(10); // the oldest call in a batch waits at most this long
+        // Renders a conversation into one raw prompt for the completions endpoint; ChatML by default
+        private String messageTemplate = "<|im_start|>{role}\n{content}<|im_end|>\n";
+        private String replyPrefix = "<|im_start|>assistant\n";
+        private List<String> stop = List.of("<|im_end|>");
+    }
+
+    @Getter
+    @Setter
+    public static class HistoryCache {
+        private boolean enabled = false;
+        private long maxBytes = 64L * 1024 * 1024; // estimated size of all cached histories
+        private Duration ttl = Duration.ofMinutes(30); // expire after last access
+    }
+
+    @Getter
+    @Setter
+    public static class Context {
+        private int maxTokens = 4096; // prompt budget: system prompt + summary + recent turns
+        private String systemPrompt; // prepended to every prompt when set
+        private long tokenCacheMaxBytes = 8L * 1024 * 1024; // estimated size of the message texts token counts are cached for
+        private Summary summary = new Summary();
+
+        @Getter
+        @Setter
+        public static class Summary {
+            private boolean enabled = false;
+            private int summarizeEvery = 10; // dropped messages collected before the summary is refreshed
+            private int maxTokens = 256; // budget reserved for the summary
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Memory {
+        private long maxBytes = 256L * 1024 * 1024; // estimated size of all sessions; sessions are evicted beyond it
+        private Duration sessionTtl = Duration.ofHours(24); // drop sessions idle for longer
+    }
 }
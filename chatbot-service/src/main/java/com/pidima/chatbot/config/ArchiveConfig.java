@@ -0,0 +1,56 @@
+package com.pidima.chatbot.config;
+
+import com.pidima.chatbot.repository.archive.ArchiveStore;
+import com.pidima.chatbot.repository.archive.FileArchiveStore;
+import com.pidima.chatbot.repository.archive.S3ArchiveStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * Archive store of the DynamoDB history archiver ({@code app.dynamo.archive.enabled=true}): a local directory or an
+ * S3(-compatible) bucket, selected by {@code app.dynamo.archive.store}.
+ */
+@Configuration
+@ConditionalOnExpression("'${app.persistence:}' == 'dynamodb' and '${app.dynamo.archive.enabled:false}' == 'true'")
+@RequiredArgsConstructor
+public class ArchiveConfig {
+    private final AppProperties appProperties;
+
+    @Bean
+    public ArchiveStore archiveStore() {
+        AppProperties.Dynamo.Archive archive = appProperties.getDynamo().getArchive();
+        return switch (archive.getStore()) {
+            case "file" -> new FileArchiveStore(Path.of(archive.getDirectory()).toAbsolutePath());
+            case "s3" -> {
+                if (archive.getS3Bucket() == null || archive.getS3Bucket().isBlank()) {
+                    throw new IllegalStateException("app.dynamo.archive.s3-bucket is required for the s3 archive store");
+                }
+                yield new S3ArchiveStore(s3Client(archive), archive.getS3Bucket(), archive.getS3Prefix());
+            }
+            default -> throw new IllegalStateException("Unsupported app.dynamo.archive.store: " + archive.getStore());
+        };
+    }
+
+    private static S3Client s3Client(AppProperties.Dynamo.Archive archive) {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(System.getenv().getOrDefault("AWS_REGION", "eu-central-1")))
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                // A few uploads per run; no pool needed
+                .httpClientBuilder(UrlConnectionHttpClient.builder());
+        if (archive.getS3Endpoint() != null && !archive.getS3Endpoint().isBlank()) {
+            // S3-compatible stores generally do not resolve bucket subdomains
+            builder.endpointOverride(URI.create(archive.getS3Endpoint())).forcePathStyle(true);
+        }
+        return builder.build();
+    }
+}
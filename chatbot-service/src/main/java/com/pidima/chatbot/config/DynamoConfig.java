@@ -1,5 +1,9 @@
 package com.pidima.chatbot.config;
 
+import com.pidima.chatbot.repository.dynamo.MicrometerMetricPublisher;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -7,28 +11,117 @@ import org.springframework.beans.factory.annotation.Value;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.crt.AwsCrtHttpClient;
+import software.amazon.awssdk.http.crt.TcpKeepAliveConfiguration;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
 
 import java.net.URI;
+import java.time.Duration;
 
 @Configuration
 @ConditionalOnProperty(name = "app.persistence", havingValue = "dynamodb")
+@RequiredArgsConstructor
 public class DynamoConfig {
+    private static final Duration CRT_KEEP_ALIVE_INTERVAL = Duration.ofSeconds(30);
+
+    private final AppProperties appProperties;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
     @Value("${app.dynamodb-endpoint:}")
     private String endpointProp;
 
     @Bean
     public DynamoDbClient dynamoDbClient() {
+        return configure(DynamoDbClient.builder())
+                .httpClientBuilder(httpClientBuilder(appProperties.getDynamo()))
+                .build();
+    }
+
+    @Bean
+    public DynamoDbEnhancedClient dynamoDbEnhancedClient(DynamoDbClient dynamoDbClient) {
+        return DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDbClient).build();
+    }
+
+    /**
+     * Non-blocking (Netty based) client used by the reactive execution mode.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.execution-mode", havingValue = "reactive")
+    public DynamoDbAsyncClient dynamoDbAsyncClient() {
+        AppProperties.Dynamo dynamo = appProperties.getDynamo();
+        return configure(DynamoDbAsyncClient.builder())
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(dynamo.getMaxConnections())
+                        .maxPendingConnectionAcquires(dynamo.getMaxPendingAcquires())
+                        .connectionAcquisitionTimeout(dynamo.getConnectionAcquisitionTimeout())
+                        .connectionTimeout(dynamo.getConnectionTimeout())
+                        .readTimeout(dynamo.getSocketTimeout())
+                        .writeTimeout(dynamo.getSocketTimeout())
+                        .connectionTimeToLive(dynamo.getConnectionTtl())
+                        .connectionMaxIdleTime(dynamo.getConnectionMaxIdleTime())
+                        .tcpKeepAlive(dynamo.isTcpKeepAlive()))
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.execution-mode", havingValue = "reactive")
+    public DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient(DynamoDbAsyncClient dynamoDbAsyncClient) {
+        return DynamoDbEnhancedAsyncClient.builder().dynamoDbClient(dynamoDbAsyncClient).build();
+    }
+
+    /**
+     * Builder for the blocking client's HTTP transport. Handing the SDK a builder (rather than a built client)
+     * leaves closing the connection pool to the DynamoDB client.
+     */
+    static SdkHttpClient.Builder<?> httpClientBuilder(AppProperties.Dynamo dynamo) {
+        return switch (dynamo.getHttpClient()) {
+            case "apache" -> ApacheHttpClient.builder()
+                    .maxConnections(dynamo.getMaxConnections())
+                    .connectionAcquisitionTimeout(dynamo.getConnectionAcquisitionTimeout())
+                    .connectionTimeout(dynamo.getConnectionTimeout())
+                    .socketTimeout(dynamo.getSocketTimeout())
+                    .connectionTimeToLive(dynamo.getConnectionTtl())
+                    .connectionMaxIdleTime(dynamo.getConnectionMaxIdleTime())
+                    .tcpKeepAlive(dynamo.isTcpKeepAlive());
+            // No pool of its own (JDK keep-alive cache); smallest footprint and fastest startup
+            case "url-connection" -> UrlConnectionHttpClient.builder()
+                    .connectionTimeout(dynamo.getConnectionTimeout())
+                    .socketTimeout(dynamo.getSocketTimeout());
+            case "crt" -> {
+                AwsCrtHttpClient.Builder crt = AwsCrtHttpClient.builder()
+                        .maxConcurrency(dynamo.getMaxConnections())
+                        .connectionTimeout(dynamo.getConnectionTimeout())
+                        .connectionMaxIdleTime(dynamo.getConnectionMaxIdleTime());
+                if (dynamo.isTcpKeepAlive()) {
+                    crt.tcpKeepAliveConfiguration(TcpKeepAliveConfiguration.builder()
+                            .keepAliveInterval(CRT_KEEP_ALIVE_INTERVAL)
+                            .keepAliveTimeout(dynamo.getSocketTimeout())
+                            .build());
+                }
+                yield crt;
+            }
+            default -> throw new IllegalStateException("Unsupported app.dynamo.http-client: " + dynamo.getHttpClient());
+        };
+    }
+
+    private <B extends AwsClientBuilder<B, ?>> B configure(B builder) {
         String region = System.getenv().getOrDefault("AWS_REGION", "eu-central-1");
         String endpoint = System.getenv("DYNAMODB_ENDPOINT"); // optional (e.g., LocalStack)
         if ((endpoint == null || endpoint.isBlank()) && endpointProp != null && !endpointProp.isBlank()) {
             endpoint = endpointProp;
         }
-        DynamoDbClientBuilder builder = DynamoDbClient.builder()
-                .region(Region.of(region));
+        builder = builder.region(Region.of(region)).overrideConfiguration(overrideConfiguration());
         if (endpoint != null && !endpoint.isBlank()) {
             builder = builder
                 .endpointOverride(URI.create(endpoint))
@@ -37,11 +130,18 @@ public class DynamoConfig {
         } else {
             builder = builder.credentialsProvider(DefaultCredentialsProvider.create());
         }
-        return builder.build();
+        return builder;
     }
 
-    @Bean
-    public DynamoDbEnhancedClient dynamoDbEnhancedClient(DynamoDbClient dynamoDbClient) {
-        return DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDbClient).build();
+    private ClientOverrideConfiguration overrideConfiguration() {
+        AppProperties.Dynamo dynamo = appProperties.getDynamo();
+        ClientOverrideConfiguration.Builder config = ClientOverrideConfiguration.builder()
+                .apiCallTimeout(dynamo.getApiCallTimeout())
+                .apiCallAttemptTimeout(dynamo.getApiCallAttemptTimeout())
+                .retryPolicy(RetryPolicy.builder(dynamo.getRetryMode()).numRetries(dynamo.getMaxRetries()).build());
+        if (dynamo.isMetricsEnabled()) {
+            meterRegistry.ifAvailable(registry -> config.addMetricPublisher(new MicrometerMetricPublisher(registry)));
+        }
+        return config.build();
     }
 }
@@ -13,20 +13,23 @@ import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
 import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
 import com.pidima.chatbot.repository.dynamo.ChatMessageItem;
+import com.pidima.chatbot.repository.dynamo.NodeIdLease;
+import com.pidima.chatbot.repository.dynamo.SessionItem;
 
 /**
  * When APP_PERSISTENCE=dynamodb and a local endpoint is provided via DYNAMODB_ENDPOINT,
- * ensure the chat_messages table exists in the local DynamoDB instance.
+ * ensure the chat table ({@code app.dynamodb-table}), the sessions table ({@code app.dynamodb-sessions-table}) and,
+ * without a configured node id, the node id lease table ({@code app.dynamodb-node-leases-table}) exist in the local
+ * DynamoDB instance.
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 @ConditionalOnProperty(name = "app.persistence", havingValue = "dynamodb")
 public class DynamoLocalInitializer {
-    private static final String TABLE_NAME = "chat_messages";
-
     private final DynamoDbClient dynamoDbClient;
     private final DynamoDbEnhancedClient enhancedClient;
+    private final AppProperties props;
 
     @Value("${app.dynamodb-endpoint:}")
     private String endpointProp;
@@ -41,14 +44,27 @@ public class DynamoLocalInitializer {
             // Not running against local DynamoDB; skip auto-creation.
             return;
         }
+        ensureTable(props.getDynamodbTable(), () -> create(props.getDynamodbTable(), ChatMessageItem.SCHEMA));
+        ensureTable(props.getDynamodbSessionsTable(), () -> create(props.getDynamodbSessionsTable(), SessionItem.SCHEMA));
+        if (props.getDynamo().getNodeId() < 0) {
+            String leases = props.getDynamodbNodeLeasesTable();
+            ensureTable(leases, () -> dynamoDbClient.createTable(NodeIdLease.createTable(leases)));
+        }
+    }
+
+    private <T> void create(String tableName, TableSchema<T> schema) {
+        DynamoDbTable<T> table = enhancedClient.table(tableName, schema);
+        table.createTable(r -> r.provisionedThroughput(t -> t.readCapacityUnits(5L).writeCapacityUnits(5L)));
+    }
+
+    private void ensureTable(String tableName, Runnable create) {
         try {
-            dynamoDbClient.describeTable(DescribeTableRequest.builder().tableName(TABLE_NAME).build());
-            log.info("DynamoDB table '{}' already exists.", TABLE_NAME);
+            dynamoDbClient.describeTable(DescribeTableRequest.builder().tableName(tableName).build());
+            log.info("DynamoDB table '{}' already exists.", tableName);
         } catch (ResourceNotFoundException rnfe) {
-            log.info("DynamoDB table '{}' not found. Creating it in local DynamoDB...", TABLE_NAME);
-            DynamoDbTable<ChatMessageItem> table = enhancedClient.table(TABLE_NAME, TableSchema.fromBean(ChatMessageItem.class));
-            table.createTable(r -> r.provisionedThroughput(t -> t.readCapacityUnits(5L).writeCapacityUnits(5L)));
-            log.info("DynamoDB table '{}' created.", TABLE_NAME);
+            log.info("DynamoDB table '{}' not found. Creating it in local DynamoDB...", tableName);
+            create.run();
+            log.info("DynamoDB table '{}' created.", tableName);
         } catch (Exception e) {
             log.warn("Failed to ensure DynamoDB table exists: {}", e.getMessage());
         }
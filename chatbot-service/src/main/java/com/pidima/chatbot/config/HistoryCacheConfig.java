@@ -0,0 +1,41 @@
+package com.pidima.chatbot.config;
+
+import com.pidima.chatbot.repository.CachingChatRepository;
+import com.pidima.chatbot.repository.ChatRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Decorates every {@link ChatRepository} bean with a {@link CachingChatRepository} when
+ * {@code app.history-cache.enabled=true}. Hit/miss/eviction statistics are published as {@code cache.*}
+ * meters tagged {@code cache=chat.history} (see {@code /actuator/metrics}).
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.history-cache.enabled", havingValue = "true")
+@Log4j2
+public class HistoryCacheConfig {
+
+    @Bean
+    public static BeanPostProcessor chatRepositoryCachePostProcessor(ObjectProvider<AppProperties> appProperties,
+                                                                     ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof ChatRepository repository) || bean instanceof CachingChatRepository) {
+                    return bean;
+                }
+                AppProperties.HistoryCache props = appProperties.getObject().getHistoryCache();
+                CachingChatRepository caching = new CachingChatRepository(repository, props.getMaxBytes(), props.getTtl());
+                meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, caching.cache(), "chat.history"));
+                log.info("Caching session histories of '{}' (max {} bytes, ttl {})", beanName, props.getMaxBytes(), props.getTtl());
+                return caching;
+            }
+        };
+    }
+}
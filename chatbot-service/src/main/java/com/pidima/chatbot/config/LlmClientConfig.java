@@ -0,0 +1,94 @@
+package com.pidima.chatbot.config;
+
+import com.pidima.chatbot.services.BatchLLMClient;
+import com.pidima.chatbot.services.LLMClient;
+import com.pidima.chatbot.services.llm.AdaptiveConcurrencyLimit;
+import com.pidima.chatbot.services.llm.CachingLlmClient;
+import com.pidima.chatbot.services.llm.CircuitBreaker;
+import com.pidima.chatbot.services.llm.ConcurrencyLimitingLlmClient;
+import com.pidima.chatbot.services.llm.FallbackLlmClient;
+import com.pidima.chatbot.services.llm.MicroBatchingLlmClient;
+import com.pidima.chatbot.services.llm.RedisReplyCache;
+import com.pidima.chatbot.services.llm.ResilientLlmClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wraps the provider's {@link LLMClient} bean in the decorators every caller goes through, outermost first:
+ * <ol>
+ *   <li>{@link FallbackLlmClient} – turns failures into an apology reply</li>
+ *   <li>{@link CachingLlmClient} – when {@code app.reply-cache.enabled=true}, with the {@link RedisReplyCache} tier
+ *       when {@code app.reply-cache.redis.enabled=true}</li>
+ *   <li>{@link ResilientLlmClient} – retries, hedging and the {@link CircuitBreaker}, when
+ *       {@code app.llm-resilience.enabled=true}</li>
+ *   <li>{@link ConcurrencyLimitingLlmClient} – when {@code app.llm-limiter.enabled=true}; below the cache, so cache
+ *       hits never wait for a slot, and below the retries, so every attempt takes a slot</li>
+ *   <li>{@link MicroBatchingLlmClient} – when {@code app.llm-batching.enabled=true} and the provider is a
+ *       {@link BatchLLMClient}</li>
+ * </ol>
+ */
+@Configuration
+@Log4j2
+public class LlmClientConfig {
+
+    @Bean
+    public static BeanPostProcessor llmClientDecoratorPostProcessor(ObjectProvider<AppProperties> appProperties,
+                                                                    ObjectProvider<RedisReplyCache> redisReplyCache,
+                                                                    ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof LLMClient client) || bean instanceof FallbackLlmClient) {
+                    return bean;
+                }
+                AppProperties props = appProperties.getObject();
+                if (props.getLlmBatching().isEnabled()) {
+                    AppProperties.LlmBatching batching = props.getLlmBatching();
+                    if (client instanceof BatchLLMClient batchClient) {
+                        client = new MicroBatchingLlmClient(client, batchClient, batching, meterRegistry.getIfAvailable());
+                        log.info("Batching calls of '{}' (up to {} per batch, max wait {})", beanName,
+                                batching.getMaxBatchSize(), batching.getMaxWait());
+                    } else {
+                        log.warn("app.llm-batching.enabled is set but '{}' cannot batch; calls are sent one by one", beanName);
+                    }
+                }
+                if (props.getLlmLimiter().isEnabled()) {
+                    AppProperties.LlmLimiter limiter = props.getLlmLimiter();
+                    client = new ConcurrencyLimitingLlmClient(client,
+                            new AdaptiveConcurrencyLimit(limiter, meterRegistry.getIfAvailable()));
+                    log.info("Limiting concurrent calls of '{}' (initial {}, {}-{}, queue {}, max wait {})", beanName,
+                            limiter.getInitialLimit(), limiter.getMinLimit(), limiter.getMaxLimit(),
+                            limiter.getMaxQueue(), limiter.getMaxWait());
+                }
+                if (props.getLlmResilience().isEnabled()) {
+                    AppProperties.LlmResilience resilience = props.getLlmResilience();
+                    CircuitBreaker breaker = resilience.getCircuitBreaker().isEnabled()
+                            ? new CircuitBreaker(resilience.getCircuitBreaker(), meterRegistry.getIfAvailable()) : null;
+                    client = new ResilientLlmClient(client, resilience, breaker, meterRegistry.getIfAvailable());
+                    log.info("Retrying calls of '{}' up to {} attempts (hedging {}, circuit breaker {})", beanName,
+                            resilience.getMaxAttempts(), resilience.getHedging().isEnabled() ? "on" : "off",
+                            breaker != null ? "on" : "off");
+                }
+                if (props.getReplyCache().isEnabled()) {
+                    RedisReplyCache redis = redisReplyCache.getIfAvailable();
+                    client = new CachingLlmClient(client, props, redis, meterRegistry.getIfAvailable());
+                    log.info("Caching replies of '{}' (up to {} user turns, max {} bytes, ttl {}{})", beanName,
+                            props.getReplyCache().getContextTurns(), props.getReplyCache().getMaxBytes(),
+                            props.getReplyCache().getTtl(), redis != null ? ", shared through Redis" : "");
+                }
+                return new FallbackLlmClient(client);
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnExpression("'${app.reply-cache.enabled:false}' == 'true' and '${app.reply-cache.redis.enabled:false}' == 'true'")
+    public RedisReplyCache redisReplyCache(AppProperties appProperties) {
+        return new RedisReplyCache(appProperties.getReplyCache());
+    }
+}
@@ -1,13 +1,22 @@
 package com.pidima.chatbot.config;
 
+import io.netty.channel.ChannelOption;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestClient;
 import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.Executors;
 
 @Configuration
 @ConditionalOnProperty(name = "app.llm-provider", havingValue = "openai")
@@ -16,17 +25,74 @@ public class OpenAIConfig {
 
     private final AppProperties appProperties;
 
+    /**
+     * Connection pool of {@link #openAiWebClient}, sized and evicted per {@code app.openai-http.*}. Publishes
+     * {@code reactor.netty.connection.provider.*} pool metrics.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider openAiConnectionProvider() {
+        AppProperties.OpenaiHttp http = appProperties.getOpenaiHttp();
+        return ConnectionProvider.builder("openai")
+                .maxConnections(http.getMaxConnections())
+                .pendingAcquireMaxCount(http.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(http.getPendingAcquireTimeout())
+                .maxIdleTime(http.getMaxIdleTime())
+                .maxLifeTime(http.getMaxLifeTime())
+                .evictInBackground(http.getEvictionInterval())
+                .metrics(true)
+                .build();
+    }
+
     @Bean
-    public WebClient openAiWebClient() {
-        String baseUrl = appProperties.getOpenaiBaseUrl() != null ? appProperties.getOpenaiBaseUrl() : "https://api.openai.com/v1";
+    public WebClient openAiWebClient(ConnectionProvider openAiConnectionProvider) {
+        AppProperties.OpenaiHttp http = appProperties.getOpenaiHttp();
+        // Reactor Netty's HttpClient; the JDK one is imported for the RestClient
+        reactor.netty.http.client.HttpClient httpClient = reactor.netty.http.client.HttpClient
+                .create(openAiConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) http.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .protocol(useHttp2() ? new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11}
+                        : new HttpProtocol[]{HttpProtocol.HTTP11});
         ExchangeStrategies strategies = ExchangeStrategies.builder()
-                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(2 * 1024 * 1024))
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(http.getMaxInMemorySize()))
                 .build();
         return WebClient.builder()
-                .baseUrl(baseUrl)
+                .baseUrl(baseUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + appProperties.getOpenaiApiKey())
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .exchangeStrategies(strategies)
                 .build();
     }
+
+    /**
+     * Blocking client for {@code app.execution-mode=virtual}. The JDK HTTP client runs its internal work on
+     * virtual threads, and callers block their own (virtual) request thread rather than a Reactor thread.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.execution-mode", havingValue = "virtual")
+    public RestClient openAiRestClient() {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(appProperties.getOpenaiHttp().getConnectTimeout())
+                .version(useHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(appProperties.getLlmTimeout());
+        return RestClient.builder()
+                .baseUrl(baseUrl())
+                .requestFactory(requestFactory)
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + appProperties.getOpenaiApiKey())
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .build();
+    }
+
+    private String baseUrl() {
+        return appProperties.getOpenaiBaseUrl() != null ? appProperties.getOpenaiBaseUrl() : "https://api.openai.com/v1";
+    }
+
+    // HTTP/2 is negotiated during the TLS handshake; cleartext HTTP/2 (h2c) is not attempted
+    private boolean useHttp2() {
+        return appProperties.getOpenaiHttp().isHttp2() && baseUrl().startsWith("https:");
+    }
 }
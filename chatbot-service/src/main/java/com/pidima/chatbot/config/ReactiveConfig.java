@@ -0,0 +1,24 @@
+package com.pidima.chatbot.config;
+
+import com.pidima.chatbot.repository.BlockingChatRepositoryAdapter;
+import com.pidima.chatbot.repository.ChatRepository;
+import com.pidima.chatbot.repository.ReactiveChatRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wiring for {@code app.execution-mode=reactive}. DynamoDB persistence has a native non-blocking repository;
+ * every other backend is adapted from its blocking {@link ChatRepository}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.execution-mode", havingValue = "reactive")
+public class ReactiveConfig {
+
+    @Bean
+    @ConditionalOnExpression("'${app.persistence:}' != 'dynamodb'")
+    public ReactiveChatRepository blockingChatRepositoryAdapter(ChatRepository chatRepository) {
+        return new BlockingChatRepositoryAdapter(chatRepository);
+    }
+}
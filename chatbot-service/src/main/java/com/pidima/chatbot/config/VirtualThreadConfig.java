@@ -0,0 +1,26 @@
+package com.pidima.chatbot.config;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Wiring for {@code app.execution-mode=virtual}: Tomcat dispatches every request on a new virtual thread, so the
+ * blocking chat path (DynamoDB sync client, blocking OpenAI client) parks cheap virtual threads instead of
+ * exhausting the platform worker pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.execution-mode", havingValue = "virtual")
+@Log4j2
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        log.info("Serving requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
@@ -0,0 +1,11 @@
+package com.pidima.chatbot.models.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ChatStreamChunk {
+    private String sessionId;
+    private String delta;
+}
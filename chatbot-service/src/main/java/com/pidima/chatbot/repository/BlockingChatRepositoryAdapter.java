@@ -0,0 +1,68 @@
+package com.pidima.chatbot.repository;
+
+import com.pidima.chatbot.models.ChatMessage;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+/**
+ * Exposes a blocking {@link ChatRepository} as a {@link ReactiveChatRepository} by offloading every call to the
+ * bounded elastic scheduler. Used for backends without a native non-blocking client (e.g., in-memory persistence).
+ */
+@RequiredArgsConstructor
+public class BlockingChatRepositoryAdapter implements ReactiveChatRepository {
+    private final ChatRepository delegate;
+
+    @Override
+    public Mono<Void> createSession(String sessionId) {
+        return Mono.<Void>fromRunnable(() -> delegate.createSession(sessionId))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<Void> createSession(String sessionId, String owner) {
+        return Mono.<Void>fromRunnable(() -> delegate.createSession(sessionId, owner))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<Boolean> sessionExists(String sessionId) {
+        return Mono.fromCallable(() -> delegate.sessionExists(sessionId))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<Void> appendMessage(String sessionId, ChatMessage message) {
+        return Mono.<Void>fromRunnable(() -> delegate.appendMessage(sessionId, message))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Flux<ChatMessage> getHistory(String sessionId) {
+        return Mono.fromCallable(() -> delegate.getHistory(sessionId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapIterable(history -> history);
+    }
+
+    @Override
+    public Flux<ChatMessage> getRecentHistory(String sessionId, int limit) {
+        return Mono.fromCallable(() -> delegate.getRecentHistory(sessionId, limit))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapIterable(history -> history);
+    }
+
+    @Override
+    public Mono<Void> appendMessages(String sessionId, List<ChatMessage> messages) {
+        return Mono.<Void>fromRunnable(() -> delegate.appendMessages(sessionId, messages))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<HistoryPage> getHistoryPage(String sessionId, HistoryQuery query) {
+        return Mono.fromCallable(() -> delegate.getHistoryPage(sessionId, query))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,235 @@
+package com.pidima.chatbot.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pidima.chatbot.models.ChatMessage;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Write-through cache of recent session histories in front of another {@link ChatRepository}.
+ * <p>
+ * Entries hold either the complete history of a session or its most recent tail, are bounded by their estimated
+ * total size in bytes (Caffeine's W-TinyLFU eviction) and expire after a period without access. Writes go to the
+ * delegate first and are then appended to a cached entry as the delegate stored them, without copying the history;
+ * loads and writes of the same session are serialized by a striped lock so a concurrent load can never install a
+ * history that misses a just-written message.
+ * <p>
+ * The cache only sees writes made through this instance. With several instances writing to the same session,
+ * staleness is bounded by the TTL.
+ */
+public class CachingChatRepository implements ChatRepository {
+    private static final int LOCK_STRIPES = 64;
+    private static final int MESSAGE_OVERHEAD_BYTES = 64;
+
+    private final ChatRepository delegate;
+    private final Cache<String, CachedHistory> cache;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public CachingChatRepository(ChatRepository delegate, long maxBytes, Duration ttl) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String sessionId, CachedHistory history) -> (int) Math.min(Integer.MAX_VALUE, history.bytes()))
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public Cache<String, CachedHistory> cache() {
+        return cache;
+    }
+
+    @Override
+    public void createSession(String sessionId) {
+        delegate.createSession(sessionId);
+        // Existence semantics of a fresh session are backend specific; let the first read populate the cache
+        cache.invalidate(sessionId);
+    }
+
+    @Override
+    public void createSession(String sessionId, String owner) {
+        delegate.createSession(sessionId, owner);
+        cache.invalidate(sessionId);
+    }
+
+    @Override
+    public boolean sessionExists(String sessionId) {
+        return cache.getIfPresent(sessionId) != null || delegate.sessionExists(sessionId);
+    }
+
+    @Override
+    public void appendMessage(String sessionId, ChatMessage message) {
+        appendMessages(sessionId, List.of(message));
+    }
+
+    @Override
+    public void appendMessages(String sessionId, List<ChatMessage> messages) {
+        ReentrantLock lock = lockFor(sessionId);
+        lock.lock();
+        try {
+            // Cached as the delegate stored them, so cached and uncached reads return the same timestamps
+            List<ChatMessage> stored = delegate.appendMessagesAsStored(sessionId, messages);
+            cache.asMap().computeIfPresent(sessionId, (id, cached) -> cached.append(stored));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<ChatMessage> getHistory(String sessionId) {
+        CachedHistory cached = cache.getIfPresent(sessionId);
+        if (cached != null && cached.complete()) {
+            return cached.messages();
+        }
+        ReentrantLock lock = lockFor(sessionId);
+        lock.lock();
+        try {
+            cached = cache.getIfPresent(sessionId);
+            if (cached != null && cached.complete()) {
+                return cached.messages();
+            }
+            CachedHistory loaded = CachedHistory.of(delegate.getHistory(sessionId), true);
+            cache.put(sessionId, loaded);
+            return loaded.messages();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<ChatMessage> getRecentHistory(String sessionId, int limit) {
+        CachedHistory cached = cache.getIfPresent(sessionId);
+        if (cached != null && cached.covers(limit)) {
+            return cached.tail(limit);
+        }
+        ReentrantLock lock = lockFor(sessionId);
+        lock.lock();
+        try {
+            cached = cache.getIfPresent(sessionId);
+            if (cached != null && cached.covers(limit)) {
+                return cached.tail(limit);
+            }
+            List<ChatMessage> recent = delegate.getRecentHistory(sessionId, limit);
+            // Fewer messages than requested means the tail is the whole history
+            CachedHistory loaded = CachedHistory.of(recent, recent.size() < limit);
+            cache.put(sessionId, loaded);
+            return loaded.tail(limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Stream<ChatMessage> streamHistory(String sessionId) {
+        CachedHistory cached = cache.getIfPresent(sessionId);
+        if (cached != null && cached.complete()) {
+            return cached.messages().stream();
+        }
+        // Do not pull a transcript that is being streamed into the cache
+        return delegate.streamHistory(sessionId);
+    }
+
+    @Override
+    public HistoryPage getHistoryPage(String sessionId, HistoryQuery query) {
+        // Cursors are the delegate's sort keys, which cached copies of written messages do not carry
+        return delegate.getHistoryPage(sessionId, query);
+    }
+
+    private ReentrantLock lockFor(String sessionId) {
+        return locks[Math.floorMod(sessionId.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * Immutable cached history; {@code complete} is false when only the most recent tail was loaded.
+     * <p>
+     * A snapshot of the first {@code size} messages of an append-only log it shares with the snapshots it was appended
+     * from, so a write costs amortized O(1) instead of a copy of the history. Appends run under the session's lock;
+     * readers only see the array and size captured when their snapshot was created.
+     */
+    public static final class CachedHistory {
+        private final Log log;
+        private final ChatMessage[] elements;
+        private final int size;
+        private final boolean complete;
+        private final long bytes;
+
+        private CachedHistory(Log log, boolean complete, long bytes) {
+            this.log = log;
+            this.elements = log.elements;
+            this.size = log.size;
+            this.complete = complete;
+            this.bytes = bytes;
+        }
+
+        static CachedHistory of(List<ChatMessage> messages, boolean complete) {
+            return new CachedHistory(new Log(messages.toArray(ChatMessage[]::new)), complete, sizeOf(messages));
+        }
+
+        public List<ChatMessage> messages() {
+            return Collections.unmodifiableList(Arrays.asList(elements).subList(0, size));
+        }
+
+        public boolean complete() {
+            return complete;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+
+        boolean covers(int limit) {
+            return complete || size >= limit;
+        }
+
+        List<ChatMessage> tail(int limit) {
+            List<ChatMessage> messages = messages();
+            return size <= limit ? messages : messages.subList(size - limit, size);
+        }
+
+        CachedHistory append(List<ChatMessage> appended) {
+            // Only the log's newest snapshot extends it in place; an older one would overwrite messages after it
+            Log target = log.size == size ? log : new Log(Arrays.copyOf(elements, size));
+            target.addAll(appended);
+            return new CachedHistory(target, complete, bytes + sizeOf(appended));
+        }
+
+        private static long sizeOf(List<ChatMessage> messages) {
+            long bytes = 0;
+            for (ChatMessage m : messages) {
+                bytes += MESSAGE_OVERHEAD_BYTES
+                        + 2L * (m.getContent() == null ? 0 : m.getContent().length())
+                        + 2L * (m.getRole() == null ? 0 : m.getRole().length());
+            }
+            return bytes;
+        }
+    }
+
+    private static final class Log {
+        private ChatMessage[] elements;
+        private int size;
+
+        Log(ChatMessage[] elements) {
+            this.elements = elements;
+            this.size = elements.length;
+        }
+
+        void addAll(List<ChatMessage> messages) {
+            int needed = size + messages.size();
+            if (needed > elements.length) {
+                elements = Arrays.copyOf(elements, Math.max(needed, 2 * elements.length));
+            }
+            for (ChatMessage message : messages) {
+                elements[size++] = message;
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.pidima.chatbot.repository;
 
 import com.pidima.chatbot.models.ChatMessage;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Persistence abstraction for chat message history, keyed by session id.
@@ -14,6 +15,17 @@ public interface ChatRepository {
      */
     void createSession(String sessionId);
 
+    /**
+     * Creates a new session on behalf of a user. Implementations that keep session metadata record the owner;
+     * by default it is ignored.
+     *
+     * @param sessionId unique session identifier
+     * @param owner id of the user the session is created for, or {@code null}
+     */
+    default void createSession(String sessionId, String owner) {
+        createSession(sessionId);
+    }
+
     /**
      * Checks whether the given session exists.
      *
@@ -39,4 +51,74 @@ public interface ChatRepository {
      * @throws java.util.NoSuchElementException if the session does not exist
      */
     List<ChatMessage> getHistory(String sessionId);
+
+    /**
+     * Returns the ordered history as a lazy stream, for writing long transcripts without holding them in memory.
+     * Implementations should read the first page eagerly so a missing session is reported before the caller starts
+     * writing a response, and fetch further pages only as the stream is consumed. Callers must close the stream.
+     *
+     * @param sessionId session id
+     * @return messages in chronological order
+     * @throws java.util.NoSuchElementException if the session does not exist
+     */
+    default Stream<ChatMessage> streamHistory(String sessionId) {
+        return getHistory(sessionId).stream();
+    }
+
+    /**
+     * Returns at most {@code limit} of the most recent messages of the session. Implementations should read only
+     * the requested tail instead of the whole conversation.
+     *
+     * @param sessionId session id
+     * @param limit maximum number of messages to return
+     * @return list of the latest messages in chronological order
+     * @throws java.util.NoSuchElementException if the session does not exist
+     */
+    default List<ChatMessage> getRecentHistory(String sessionId, int limit) {
+        List<ChatMessage> history = getHistory(sessionId);
+        return history.size() <= limit ? history : history.subList(history.size() - limit, history.size());
+    }
+
+    /**
+     * Appends several messages to the session history in one write. Implementations should persist them
+     * atomically and in the given order.
+     *
+     * @param sessionId session id
+     * @param messages messages to append, in chronological order
+     * @throws java.util.NoSuchElementException if the session does not exist
+     */
+    default void appendMessages(String sessionId, List<ChatMessage> messages) {
+        messages.forEach(message -> appendMessage(sessionId, message));
+    }
+
+    /**
+     * Appends like {@link #appendMessages} and returns the messages as later reads of the session return them, e.g.
+     * with timestamps assigned by the store. By default they are returned as given.
+     *
+     * @param sessionId session id
+     * @param messages messages to append, in chronological order
+     * @return the appended messages as stored, in the same order
+     * @throws java.util.NoSuchElementException if the session does not exist
+     */
+    default List<ChatMessage> appendMessagesAsStored(String sessionId, List<ChatMessage> messages) {
+        if (messages.size() == 1) {
+            appendMessage(sessionId, messages.get(0));
+        } else {
+            appendMessages(sessionId, messages);
+        }
+        return messages;
+    }
+
+    /**
+     * Returns one page of the session history selected by sort-key cursors. Implementations backed by an ordered
+     * store should translate the query into a range read instead of loading the whole conversation.
+     *
+     * @param sessionId session id
+     * @param query page selection
+     * @return the page, in chronological order; empty when the session has no messages in the range
+     * @throws java.util.NoSuchElementException if the session does not exist
+     */
+    default HistoryPage getHistoryPage(String sessionId, HistoryQuery query) {
+        return HistoryPage.slice(getHistory(sessionId), query);
+    }
 }
@@ -0,0 +1,47 @@
+package com.pidima.chatbot.repository;
+
+import com.pidima.chatbot.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of a session's history in chronological order.
+ *
+ * @param messages    messages of the page, oldest first
+ * @param firstCursor sort key of the first message; pass as {@code before} for the previous page (null if empty)
+ * @param lastCursor  sort key of the last message; pass as {@code after} to fetch newer messages (null if empty)
+ * @param hasMore     whether more messages exist beyond the page in the direction it was read
+ */
+public record HistoryPage(List<ChatMessage> messages, Long firstCursor, Long lastCursor, boolean hasMore) {
+
+    /**
+     * Cuts a page out of a fully loaded history. Sort keys are the message timestamps in epoch millis, bumped to
+     * stay strictly increasing (as {@code ChatMessageItem} does on write), so equal timestamps never straddle a
+     * page boundary. Keys are stable as long as the history is append-only.
+     */
+    public static HistoryPage slice(List<ChatMessage> history, HistoryQuery query) {
+        Long lower = query.lowerBound();
+        Long upper = query.before();
+        List<ChatMessage> matched = new ArrayList<>();
+        List<Long> keys = new ArrayList<>();
+        long previous = Long.MIN_VALUE;
+        for (ChatMessage message : history) {
+            long key = message.getTimestamp() == null ? previous + 1 : message.getTimestamp().toEpochMilli();
+            if (key <= previous) key = previous + 1;
+            previous = key;
+            if ((lower == null || key > lower) && (upper == null || key < upper)) {
+                matched.add(message);
+                keys.add(key);
+            }
+        }
+        int limit = query.limit() == null ? matched.size() : query.limit();
+        boolean hasMore = matched.size() > limit;
+        int from = query.forward() ? 0 : Math.max(0, matched.size() - limit);
+        int to = Math.min(matched.size(), from + limit);
+        if (from == to) {
+            return new HistoryPage(List.of(), null, null, false);
+        }
+        return new HistoryPage(List.copyOf(matched.subList(from, to)), keys.get(from), keys.get(to - 1), hasMore);
+    }
+}
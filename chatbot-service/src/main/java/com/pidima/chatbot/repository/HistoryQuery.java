@@ -0,0 +1,51 @@
+package com.pidima.chatbot.repository;
+
+import java.time.Instant;
+import java.util.function.ToLongFunction;
+
+/**
+ * Selects a page of a session's history by message sort key (epoch millis in memory, packed clock keys in DynamoDB).
+ * <p>
+ * With a lower bound ({@code after} and/or {@code since}) the page holds the oldest {@code limit} messages past it;
+ * otherwise it holds the newest {@code limit} messages (before {@code before}, when given). Pages are always
+ * returned in chronological order.
+ *
+ * @param before exclusive upper bound cursor, or null
+ * @param after  exclusive lower bound cursor, or null
+ * @param since  inclusive lower bound on the message timestamp, or null
+ * @param limit  maximum number of messages, or null for no limit
+ */
+public record HistoryQuery(Long before, Long after, Instant since, Integer limit) {
+    public static final int MAX_LIMIT = 1000;
+
+    public HistoryQuery {
+        if (limit != null && (limit < 1 || limit > MAX_LIMIT)) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+    }
+
+    /**
+     * @return exclusive lower bound combining {@code after} and {@code since}, or null if neither is set
+     */
+    public Long lowerBound() {
+        return lowerBound(instant -> instant.toEpochMilli() - 1);
+    }
+
+    /**
+     * @param keyBefore maps {@code since} to the greatest sort key before it, for stores whose keys are not plain millis
+     * @return exclusive lower bound combining {@code after} and {@code since}, or null if neither is set
+     */
+    public Long lowerBound(ToLongFunction<Instant> keyBefore) {
+        Long fromSince = since == null ? null : keyBefore.applyAsLong(since);
+        if (after == null) return fromSince;
+        if (fromSince == null) return after;
+        return Math.max(after, fromSince);
+    }
+
+    /**
+     * @return true when the page is read oldest-first from the lower bound, false for "latest N"
+     */
+    public boolean forward() {
+        return lowerBound() != null;
+    }
+}
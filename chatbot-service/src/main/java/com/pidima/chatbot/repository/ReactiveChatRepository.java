@@ -0,0 +1,90 @@
+package com.pidima.chatbot.repository;
+
+import com.pidima.chatbot.models.ChatMessage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link ChatRepository}, keyed by session id.
+ */
+public interface ReactiveChatRepository {
+    /**
+     * Creates a new session. Implementations may be a no-op when existence is inferred from messages.
+     *
+     * @param sessionId unique session identifier
+     * @return completion signal
+     */
+    Mono<Void> createSession(String sessionId);
+
+    /**
+     * Creates a new session on behalf of a user. Implementations that keep session metadata record the owner;
+     * by default it is ignored.
+     *
+     * @param sessionId unique session identifier
+     * @param owner id of the user the session is created for, or {@code null}
+     * @return completion signal
+     */
+    default Mono<Void> createSession(String sessionId, String owner) {
+        return createSession(sessionId);
+    }
+
+    /**
+     * Checks whether the given session exists.
+     *
+     * @param sessionId session id
+     * @return true if session exists; false otherwise
+     */
+    Mono<Boolean> sessionExists(String sessionId);
+
+    /**
+     * Appends a message to the session history.
+     *
+     * @param sessionId session id
+     * @param message message to append
+     * @return completion signal; errors with {@link java.util.NoSuchElementException} if the session does not exist
+     */
+    Mono<Void> appendMessage(String sessionId, ChatMessage message);
+
+    /**
+     * Returns the ordered history for the session.
+     *
+     * @param sessionId session id
+     * @return messages in chronological order; errors with {@link java.util.NoSuchElementException} if the session does not exist
+     */
+    Flux<ChatMessage> getHistory(String sessionId);
+
+    /**
+     * Returns at most {@code limit} of the most recent messages of the session.
+     *
+     * @param sessionId session id
+     * @param limit maximum number of messages to return
+     * @return the latest messages in chronological order; errors with {@link java.util.NoSuchElementException} if the session does not exist
+     */
+    default Flux<ChatMessage> getRecentHistory(String sessionId, int limit) {
+        return getHistory(sessionId).takeLast(limit);
+    }
+
+    /**
+     * Appends several messages to the session history in one write.
+     *
+     * @param sessionId session id
+     * @param messages messages to append, in chronological order
+     * @return completion signal
+     */
+    default Mono<Void> appendMessages(String sessionId, List<ChatMessage> messages) {
+        return Flux.fromIterable(messages).concatMap(message -> appendMessage(sessionId, message)).then();
+    }
+
+    /**
+     * Returns one page of the session history selected by sort-key cursors.
+     *
+     * @param sessionId session id
+     * @param query page selection
+     * @return the page in chronological order; errors with {@link java.util.NoSuchElementException} if the session does not exist
+     */
+    default Mono<HistoryPage> getHistoryPage(String sessionId, HistoryQuery query) {
+        return getHistory(sessionId).collectList().map(history -> HistoryPage.slice(history, query));
+    }
+}
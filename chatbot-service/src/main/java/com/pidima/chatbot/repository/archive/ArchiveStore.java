@@ -0,0 +1,16 @@
+package com.pidima.chatbot.repository.archive;
+
+import java.io.IOException;
+
+/**
+ * Destination of the files written by the chat history archiver ({@code app.dynamo.archive.store}).
+ */
+public interface ArchiveStore {
+
+    /**
+     * Stores a complete file and returns once it is durable; archived data is deleted from the hot store afterwards.
+     *
+     * @param key relative, {@code /}-separated path of the file, e.g. {@code dt=2026-01-31/messages-1769817600000-0001.ndjson.zst}
+     */
+    void put(String key, byte[] content) throws IOException;
+}
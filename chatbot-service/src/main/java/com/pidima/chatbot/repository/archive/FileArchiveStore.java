@@ -0,0 +1,40 @@
+package com.pidima.chatbot.repository.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link ArchiveStore} writing files below a local directory ({@code app.dynamo.archive.store=file}). A file is
+ * written under a temporary name, synced and then renamed, so a crash never leaves a truncated archive behind.
+ */
+public class FileArchiveStore implements ArchiveStore {
+    private final Path root;
+
+    public FileArchiveStore(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public void put(String key, byte[] content) throws IOException {
+        Path target = root.resolve(key).normalize();
+        if (!target.startsWith(root.normalize())) {
+            throw new IllegalArgumentException("Archive key escapes the archive directory: " + key);
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
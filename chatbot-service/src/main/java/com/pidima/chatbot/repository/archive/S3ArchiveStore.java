@@ -0,0 +1,31 @@
+package com.pidima.chatbot.repository.archive;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * {@link ArchiveStore} uploading files to an S3 bucket, or any S3-compatible store such as MinIO or LocalStack
+ * ({@code app.dynamo.archive.store=s3}). Objects are written with one {@code PutObject} each, which S3 makes
+ * durable before acknowledging.
+ */
+public class S3ArchiveStore implements ArchiveStore, AutoCloseable {
+    private final S3Client s3;
+    private final String bucket;
+    private final String prefix;
+
+    public S3ArchiveStore(S3Client s3, String bucket, String prefix) {
+        this.s3 = s3;
+        this.bucket = bucket;
+        this.prefix = prefix == null ? "" : prefix;
+    }
+
+    @Override
+    public void put(String key, byte[] content) {
+        s3.putObject(r -> r.bucket(bucket).key(prefix + key).contentType("application/zstd"), RequestBody.fromBytes(content));
+    }
+
+    @Override
+    public void close() {
+        s3.close();
+    }
+}
@@ -1,17 +1,143 @@
 package com.pidima.chatbot.repository.dynamo;
 
-import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
-import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
-import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
+import com.pidima.chatbot.models.ChatMessage;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+import software.amazon.awssdk.services.dynamodb.model.Put;
 
-@DynamoDbBean
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One chat message in the {@code chat_messages} table: partition key {@code sessionId}, sort key {@code ts}.
+ */
 public class ChatMessageItem {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
     private String sessionId;
-    private Long ts; // epoch milli
+    private Long ts; // hybrid logical clock key (SortKeyClock); plain epoch millis on older items
+    private Long sentAt; // epoch nanos of the message's own timestamp; null on older items
     private String role;
-    private String content;
+    private String content; // null when the content is stored compressed in contentZ
+    private SdkBytes contentZ; // ContentCompression-encoded content (see ContentCodec)
+    private Long expiresAt; // epoch seconds, DynamoDB TTL attribute; null without app.dynamo.session-ttl
+
+    /**
+     * Schema built once from explicit getters/setters; unlike {@code TableSchema.fromBean} it needs no bean
+     * introspection or generated accessors, and can be shared by every table instance.
+     */
+    public static final TableSchema<ChatMessageItem> SCHEMA = StaticTableSchema.builder(ChatMessageItem.class)
+            .newItemSupplier(ChatMessageItem::new)
+            .addAttribute(String.class, a -> a.name("sessionId")
+                    .getter(ChatMessageItem::getSessionId)
+                    .setter(ChatMessageItem::setSessionId)
+                    .tags(StaticAttributeTags.primaryPartitionKey()))
+            .addAttribute(Long.class, a -> a.name("ts")
+                    .getter(ChatMessageItem::getTs)
+                    .setter(ChatMessageItem::setTs)
+                    .tags(StaticAttributeTags.primarySortKey()))
+            .addAttribute(Long.class, a -> a.name("sentAt")
+                    .getter(ChatMessageItem::getSentAt)
+                    .setter(ChatMessageItem::setSentAt))
+            .addAttribute(String.class, a -> a.name("role")
+                    .getter(ChatMessageItem::getRole)
+                    .setter(ChatMessageItem::setRole))
+            .addAttribute(String.class, a -> a.name("content")
+                    .getter(ChatMessageItem::getContent)
+                    .setter(ChatMessageItem::setContent))
+            .addAttribute(SdkBytes.class, a -> a.name("contentZ")
+                    .getter(ChatMessageItem::getContentZ)
+                    .setter(ChatMessageItem::setContentZ))
+            .addAttribute(Long.class, a -> a.name("expiresAt")
+                    .getter(ChatMessageItem::getExpiresAt)
+                    .setter(ChatMessageItem::setExpiresAt))
+            .build();
+
+    /**
+     * Write condition that rejects silently overwriting an existing message with the same key.
+     */
+    static final Expression NOT_EXISTS = Expression.builder()
+            .expression("attribute_not_exists(#ts)")
+            .putExpressionName("#ts", "ts")
+            .build();
+
+    /**
+     * Transactional put of an item under {@link #NOT_EXISTS}.
+     */
+    static Put put(String table, ChatMessageItem item) {
+        return Put.builder()
+                .tableName(table)
+                .item(SCHEMA.itemToMap(item, true))
+                .conditionExpression(NOT_EXISTS.expression())
+                .expressionAttributeNames(NOT_EXISTS.expressionNames())
+                .build();
+    }
+
+    /**
+     * Maps a chat message to its DynamoDB item under the given sort key (see {@link SortKeyClock}).
+     */
+    public static ChatMessageItem from(String sessionId, ChatMessage message, long ts) {
+        ChatMessageItem item = new ChatMessageItem();
+        item.setSessionId(sessionId);
+        item.setTs(ts);
+        if (message.getTimestamp() != null) {
+            Instant sent = message.getTimestamp();
+            item.setSentAt(Math.addExact(Math.multiplyExact(sent.getEpochSecond(), NANOS_PER_SECOND), sent.getNano()));
+        }
+        item.setRole(message.getRole());
+        item.setContent(message.getContent());
+        return item;
+    }
+
+    /**
+     * Maps messages written together, each under a fresh, strictly increasing key of the clock.
+     */
+    static List<ChatMessageItem> fromAll(String sessionId, List<ChatMessage> messages, SortKeyClock clock) {
+        return fromAll(sessionId, messages, clock, null);
+    }
+
+    /**
+     * Like {@link #fromAll(String, List, SortKeyClock)}, expiring each item {@code ttl} after its key was issued
+     * (never if null).
+     */
+    static List<ChatMessageItem> fromAll(String sessionId, List<ChatMessage> messages, SortKeyClock clock, Duration ttl) {
+        List<ChatMessageItem> items = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            ChatMessageItem item = from(sessionId, message, clock.next());
+            if (ttl != null) {
+                item.setExpiresAt(SortKeyClock.instantOf(item.getTs()).plus(ttl).getEpochSecond());
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Maps the item back to a message with the timestamp it was written with. Keys of the messages of one turn fall
+     * in the same millisecond, so the key is only the fallback for items written without {@code sentAt}.
+     */
+    public ChatMessage toMessage() {
+        return new ChatMessage(role, text(), timestamp());
+    }
+
+    /**
+     * @return the timestamp {@link #toMessage} gives the message
+     */
+    Instant timestamp() {
+        return sentAt != null ? Instant.ofEpochSecond(0, sentAt) : SortKeyClock.instantOf(ts);
+    }
+
+    /**
+     * @return the content, decompressed if it is stored in {@code contentZ}
+     */
+    String text() {
+        return contentZ == null ? content : ContentCompression.decode(contentZ.asByteBuffer());
+    }
 
-    @DynamoDbPartitionKey
     public String getSessionId() {
         return sessionId;
     }
@@ -20,7 +146,6 @@ public class ChatMessageItem {
         this.sessionId = sessionId;
     }
 
-    @DynamoDbSortKey
     public Long getTs() {
         return ts;
     }
@@ -29,6 +154,14 @@ public class ChatMessageItem {
         this.ts = ts;
     }
 
+    public Long getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(Long sentAt) {
+        this.sentAt = sentAt;
+    }
+
     public String getRole() {
         return role;
     }
@@ -44,4 +177,20 @@ public class ChatMessageItem {
     public void setContent(String content) {
         this.content = content;
     }
+
+    public SdkBytes getContentZ() {
+        return contentZ;
+    }
+
+    public void setContentZ(SdkBytes contentZ) {
+        this.contentZ = contentZ;
+    }
+
+    public Long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
 }
@@ -0,0 +1,115 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.SdkBytes;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stores message content of at least {@code app.dynamo.compression.min-bytes} (UTF-8) compressed in the binary
+ * {@code contentZ} attribute instead of {@code content}, when that makes it smaller. DynamoDB bills writes per 1 KB
+ * and reads per 4 KB of item size, and caps items at 400 KB, so long replies get cheaper and fit.
+ * <p>
+ * Reading is transparent and independent of the configured algorithm ({@link ChatMessageItem#toMessage}); switching
+ * algorithms or turning compression off leaves existing items readable. Meters:
+ * <ul>
+ *   <li>{@code chat.content.bytes} – content bytes written, tagged {@code form=raw} (before) and {@code form=stored}
+ *       (after compression); their quotient is the overall compression ratio</li>
+ *   <li>{@code chat.content.compression.ratio} – raw / stored bytes per compressed message</li>
+ *   <li>{@code chat.dynamo.capacity.saved} – estimated capacity units saved, tagged {@code unit=write} (1 KB units,
+ *       per write) and {@code unit=read} (4 KB strongly consistent units, per item read)</li>
+ * </ul>
+ */
+@Component
+@ConditionalOnProperty(name = "app.persistence", havingValue = "dynamodb")
+public class ContentCodec {
+    private static final int NUMBER_BYTES = 11; // a 19-digit sort key: one byte per two digits plus one
+    private static final int WRITE_UNIT = 1024;
+    private static final double READ_UNIT = 4096;
+
+    private final ContentCompression algorithm; // null: write content uncompressed
+    private final int minBytes;
+    private Counter rawBytes;
+    private Counter storedBytes;
+    private DistributionSummary ratio;
+    private Counter writeUnitsSaved;
+    private Counter readUnitsSaved;
+
+    @Autowired
+    public ContentCodec(AppProperties props, ObjectProvider<MeterRegistry> meterRegistry) {
+        this(props.getDynamo().getCompression(), meterRegistry.getIfAvailable());
+    }
+
+    ContentCodec(AppProperties.Dynamo.Compression settings, MeterRegistry registry) {
+        this.algorithm = ContentCompression.of(settings.getAlgorithm());
+        this.minBytes = settings.getMinBytes();
+        if (registry != null) {
+            rawBytes = Counter.builder("chat.content.bytes").tag("form", "raw").register(registry);
+            storedBytes = Counter.builder("chat.content.bytes").tag("form", "stored").register(registry);
+            ratio = DistributionSummary.builder("chat.content.compression.ratio")
+                    .description("Raw / stored content bytes of compressed chat messages")
+                    .register(registry);
+            writeUnitsSaved = Counter.builder("chat.dynamo.capacity.saved").tag("unit", "write").register(registry);
+            readUnitsSaved = Counter.builder("chat.dynamo.capacity.saved").tag("unit", "read").register(registry);
+        }
+    }
+
+    /**
+     * Moves the item's content into {@code contentZ} if it is large enough and compresses; returns the same item.
+     */
+    public ChatMessageItem encode(ChatMessageItem item) {
+        if (algorithm == null || item.getContent() == null) return item;
+        byte[] raw = item.getContent().getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = raw.length >= minBytes ? algorithm.encode(raw) : null;
+        boolean smaller = encoded != null && encoded.length < raw.length;
+        if (smaller) {
+            item.setContent(null);
+            item.setContentZ(SdkBytes.fromByteArrayUnsafe(encoded));
+        }
+        if (rawBytes != null) {
+            rawBytes.increment(raw.length);
+            storedBytes.increment(smaller ? encoded.length : raw.length);
+            if (smaller) {
+                ratio.record((double) raw.length / encoded.length);
+                long base = baseBytes(item);
+                writeUnitsSaved.increment(units(base + "content".length() + raw.length)
+                        - units(base + "contentZ".length() + encoded.length));
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Maps a stored item to its message, decompressing the content if needed.
+     */
+    public ChatMessage decode(ChatMessageItem item) {
+        if (readUnitsSaved != null && item.getContentZ() != null) {
+            int rawLength = item.getContentZ().asByteBuffer().getInt(1);
+            long saved = ("content".length() + rawLength) - ("contentZ".length() + item.getContentZ().asByteArrayUnsafe().length);
+            readUnitsSaved.increment(saved / READ_UNIT);
+        }
+        return item.toMessage();
+    }
+
+    /**
+     * @return estimated size of the item's attributes other than its content (names count towards the item size)
+     */
+    private static long baseBytes(ChatMessageItem item) {
+        return "sessionId".length() + item.getSessionId().length()
+                + "ts".length() + NUMBER_BYTES
+                + (item.getSentAt() == null ? 0 : "sentAt".length() + NUMBER_BYTES)
+                + "role".length() + (item.getRole() == null ? 0 : item.getRole().length());
+    }
+
+    private static long units(long itemBytes) {
+        return (itemBytes + WRITE_UNIT - 1) / WRITE_UNIT;
+    }
+}
@@ -0,0 +1,147 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.github.luben.zstd.Zstd;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Algorithms for the compressed {@code contentZ} attribute of chat message items.
+ * <p>
+ * An encoded value is self-describing: {@code [algorithm id: 1 byte][UTF-8 length: 4 bytes][payload]}, so any
+ * instance can read it whatever algorithm it is configured to write with.
+ */
+enum ContentCompression {
+    DEFLATE(1) {
+        @Override
+        byte[] compress(byte[] raw) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+                byte[] buffer = new byte[Math.min(8192, raw.length + 16)];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        byte[] decompress(ByteBuffer payload, int rawLength) {
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(payload);
+                byte[] raw = new byte[rawLength];
+                int n = 0;
+                while (n < rawLength && !inflater.finished()) {
+                    int read = inflater.inflate(raw, n, rawLength - n);
+                    if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                    n += read;
+                }
+                if (n != rawLength) {
+                    throw new IllegalStateException("Truncated deflate content: " + n + " of " + rawLength + " bytes");
+                }
+                return raw;
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupt deflate content", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    },
+    LZ4(2) {
+        private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+        private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+        @Override
+        byte[] compress(byte[] raw) {
+            byte[] out = new byte[compressor.maxCompressedLength(raw.length)];
+            int n = compressor.compress(raw, 0, raw.length, out, 0, out.length);
+            return Arrays.copyOf(out, n);
+        }
+
+        @Override
+        byte[] decompress(ByteBuffer payload, int rawLength) {
+            ByteBuffer raw = ByteBuffer.allocate(rawLength);
+            decompressor.decompress(payload, payload.position(), raw, 0, rawLength);
+            return raw.array();
+        }
+    },
+    ZSTD(3) {
+        @Override
+        byte[] compress(byte[] raw) {
+            return Zstd.compress(raw, 3); // zstd's default level: better ratio than deflate at several times the speed
+        }
+
+        @Override
+        byte[] decompress(ByteBuffer payload, int rawLength) {
+            byte[] compressed = new byte[payload.remaining()];
+            payload.get(compressed);
+            return Zstd.decompress(compressed, rawLength);
+        }
+    };
+
+    static final int HEADER_BYTES = 5;
+
+    private final byte id;
+
+    ContentCompression(int id) {
+        this.id = (byte) id;
+    }
+
+    abstract byte[] compress(byte[] raw);
+
+    abstract byte[] decompress(ByteBuffer payload, int rawLength);
+
+    /**
+     * @return {@code raw} compressed and prefixed with the header
+     */
+    byte[] encode(byte[] raw) {
+        byte[] payload = compress(raw);
+        return ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .put(id)
+                .putInt(raw.length)
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * Decodes a value written by {@link #encode} with any algorithm.
+     */
+    static String decode(ByteBuffer encoded) {
+        ByteBuffer in = encoded.duplicate();
+        byte id = in.get();
+        int rawLength = in.getInt();
+        for (ContentCompression algorithm : values()) {
+            if (algorithm.id == id) {
+                return new String(algorithm.decompress(in.slice(), rawLength), StandardCharsets.UTF_8);
+            }
+        }
+        throw new IllegalStateException("Unknown content compression id " + id);
+    }
+
+    /**
+     * @return the algorithm for an {@code app.dynamo.compression.algorithm} value, or {@code null} for {@code none}
+     */
+    static ContentCompression of(String name) {
+        return switch (name.toLowerCase()) {
+            case "none" -> null;
+            case "deflate" -> DEFLATE;
+            case "lz4" -> LZ4;
+            case "zstd" -> ZSTD;
+            default -> throw new IllegalStateException("Unknown app.dynamo.compression.algorithm: " + name);
+        };
+    }
+}
@@ -1,70 +1,297 @@
 package com.pidima.chatbot.repository.dynamo;
 
+import com.pidima.chatbot.config.AppProperties;
 import com.pidima.chatbot.models.ChatMessage;
 import com.pidima.chatbot.repository.ChatRepository;
-import lombok.RequiredArgsConstructor;
+import com.pidima.chatbot.repository.HistoryPage;
+import com.pidima.chatbot.repository.HistoryQuery;
+import com.pidima.chatbot.services.context.TokenCounter;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
-import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 import software.amazon.awssdk.enhanced.dynamodb.model.PageIterable;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableMap;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * {@link ChatRepository} backed by the blocking DynamoDB clients. Each session has a {@link SessionItem} in the
+ * sessions table that is updated in the same transaction as its messages. With a {@link DynamoWriteBehindBuffer}
+ * ({@code app.dynamo.write-behind.enabled=true}) the session item is updated synchronously, the messages are buffered
+ * and batch-written in the background, and every read merges the session's still-buffered messages into what
+ * DynamoDB returns.
+ */
 @Repository
 @ConditionalOnProperty(name = "app.persistence", havingValue = "dynamodb")
-@RequiredArgsConstructor
 public class DynamoDbChatRepository implements ChatRepository {
-    private static final String TABLE_NAME = "chat_messages";
+    private final DynamoDbClient dynamoDb;
+    private final DynamoDbTable<ChatMessageItem> table;
+    private final String sessionsTable;
+    private final Duration ttl; // lifetime written to the TTL attributes; null: items never expire
+    private final SortKeyClock clock;
+    private final ContentCodec codec;
+    private final TokenCounter tokenCounter;
+    private final DynamoWriteBehindBuffer writeBehind; // null when writes go straight to DynamoDB
 
-    private final DynamoDbEnhancedClient enhancedClient;
-
-    private DynamoDbTable<ChatMessageItem> table() {
-        return enhancedClient.table(TABLE_NAME, TableSchema.fromBean(ChatMessageItem.class));
+    public DynamoDbChatRepository(DynamoDbClient dynamoDb, DynamoDbEnhancedClient enhancedClient, AppProperties props,
+                                  SortKeyClock clock, ContentCodec codec, TokenCounter tokenCounter,
+                                  ObjectProvider<DynamoWriteBehindBuffer> writeBehind) {
+        this.dynamoDb = dynamoDb;
+        // Resolved once: the schema is static and the table handle is immutable and thread-safe
+        this.table = enhancedClient.table(props.getDynamodbTable(), ChatMessageItem.SCHEMA);
+        this.sessionsTable = props.getDynamodbSessionsTable();
+        this.ttl = props.getDynamo().timeToLive();
+        this.clock = clock;
+        this.codec = codec;
+        this.tokenCounter = tokenCounter;
+        this.writeBehind = writeBehind.getIfAvailable();
     }
 
     @Override
     public void createSession(String sessionId) {
-        // No-op for DynamoDB. Session existence is inferred by presence of messages keyed by sessionId.
+        createSession(sessionId, null);
+    }
+
+    @Override
+    public void createSession(String sessionId, String owner) {
+        dynamoDb.putItem(SessionItem.put(sessionsTable, SessionItem.create(sessionId, owner, Instant.now(), ttl)));
     }
 
     @Override
     public boolean sessionExists(String sessionId) {
-        PageIterable<ChatMessageItem> pages = table().query(r -> r.queryConditional(
-                QueryConditional.keyEqualTo(Key.builder().partitionValue(sessionId).build()))
-                .limit(1));
-        return pages.stream().findFirst().map(p -> p.items().size() > 0).orElse(false);
+        return dynamoDb.getItem(SessionItem.exists(sessionsTable, sessionId)).hasItem() || adoptLegacySession(sessionId);
     }
 
     @Override
     public void appendMessage(String sessionId, ChatMessage message) {
-        ChatMessageItem item = new ChatMessageItem();
-        item.setSessionId(sessionId);
-        // use epoch milli as sort key for ordering
-        long ts = message.getTimestamp() != null ? message.getTimestamp().toEpochMilli() : Instant.now().toEpochMilli();
-        item.setTs(ts);
-        item.setRole(message.getRole());
-        item.setContent(message.getContent());
-        table().putItem(item);
+        appendMessages(sessionId, List.of(message));
     }
 
     @Override
     public List<ChatMessage> getHistory(String sessionId) {
-        PageIterable<ChatMessageItem> pages = table().query(r -> r.queryConditional(
+        NavigableMap<Long, ChatMessageItem> pending = pending(sessionId);
+        PageIterable<ChatMessageItem> pages = table.query(r -> r.queryConditional(
                 QueryConditional.keyEqualTo(Key.builder().partitionValue(sessionId).build())));
-        List<ChatMessage> out = new ArrayList<>();
-        pages.stream().forEach(page -> page.items().forEach(i -> out.add(new ChatMessage(i.getRole(), i.getContent(),
-                Instant.ofEpochMilli(i.getTs())))));
-        if (out.isEmpty()) {
+        List<ChatMessageItem> items = new ArrayList<>();
+        pages.stream().forEach(page -> items.addAll(page.items()));
+        observe(items);
+        // DynamoDB returns in ascending order of sort key by default in enhanced client
+        List<ChatMessage> out = toMessages(merge(items, pending, true, Long.MAX_VALUE));
+        if (out.isEmpty() && !sessionExists(sessionId)) {
             throw new NoSuchElementException("Session not found: " + sessionId);
         }
-        // DynamoDB returns in ascending order of sort key by default in enhanced client
+        return out;
+    }
+
+    @Override
+    public Stream<ChatMessage> streamHistory(String sessionId) {
+        NavigableMap<Long, ChatMessageItem> pending = pending(sessionId);
+        Iterator<Page<ChatMessageItem>> pages = table.query(r -> r.queryConditional(
+                QueryConditional.keyEqualTo(Key.builder().partitionValue(sessionId).build()))).iterator();
+        // First page now, so a missing session fails before any response bytes are written; the rest on demand
+        Page<ChatMessageItem> first = pages.hasNext() ? pages.next() : null;
+        if ((first == null || first.items().isEmpty()) && pending.isEmpty() && !sessionExists(sessionId)) {
+            throw new NoSuchElementException("Session not found: " + sessionId);
+        }
+        Stream<Page<ChatMessageItem>> rest = StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL), false);
+        Stream<ChatMessageItem> stored = Stream.concat(Stream.ofNullable(first), rest)
+                .flatMap(page -> page.items().stream())
+                .peek(item -> clock.observe(item.getTs()));
+        if (pending.isEmpty()) {
+            return stored.map(codec::decode);
+        }
+        // Buffered messages are the newest; emit those past the last stored key once the stored ones are exhausted
+        long[] lastKey = {Long.MIN_VALUE};
+        Stream<ChatMessageItem> buffered = Stream.of(pending)
+                .flatMap(p -> p.tailMap(lastKey[0], false).values().stream());
+        return Stream.concat(stored.peek(item -> lastKey[0] = item.getTs()), buffered)
+                .map(codec::decode);
+    }
+
+    @Override
+    public List<ChatMessage> getRecentHistory(String sessionId, int limit) {
+        NavigableMap<Long, ChatMessageItem> pending = pending(sessionId);
+        // Newest first, one page of at most `limit` items: read cost no longer grows with session length
+        List<ChatMessageItem> newestFirst = new ArrayList<>(limit);
+        table.query(r -> r.queryConditional(
+                                QueryConditional.keyEqualTo(Key.builder().partitionValue(sessionId).build()))
+                        .scanIndexForward(false)
+                        .limit(limit))
+                .items().stream()
+                .limit(limit)
+                .forEach(newestFirst::add);
+        observe(newestFirst);
+        List<ChatMessage> out = toMessages(merge(newestFirst, pending, false, limit));
+        if (out.isEmpty() && !sessionExists(sessionId)) {
+            throw new NoSuchElementException("Session not found: " + sessionId);
+        }
+        Collections.reverse(out);
+        return out;
+    }
+
+    @Override
+    public HistoryPage getHistoryPage(String sessionId, HistoryQuery query) {
+        NavigableMap<Long, ChatMessageItem> pending = inRange(pending(sessionId), query);
+        List<ChatMessageItem> items = HistoryPageQueries.isEmptyRange(query)
+                ? List.of()
+                : table.query(HistoryPageQueries.request(sessionId, query)).items().stream()
+                        .limit(HistoryPageQueries.itemsToRead(query))
+                        .toList();
+        observe(items);
+        items = merge(items, pending, query.forward(), HistoryPageQueries.itemsToRead(query));
+        // An empty range is fine for an existing session (e.g. polling for new messages)
+        if (items.isEmpty() && !sessionExists(sessionId)) {
+            throw new NoSuchElementException("Session not found: " + sessionId);
+        }
+        return HistoryPageQueries.toPage(items, query, codec::decode);
+    }
+
+    @Override
+    public void appendMessages(String sessionId, List<ChatMessage> messages) {
+        appendMessagesAsStored(sessionId, messages);
+    }
+
+    @Override
+    public List<ChatMessage> appendMessagesAsStored(String sessionId, List<ChatMessage> messages) {
+        if (messages.isEmpty()) return List.of();
+        long tokens = messages.stream().mapToLong(tokenCounter::count).sum();
+        if (writeBehind != null) {
+            UpdateItemRequest update = SessionItem.recordWriteRequest(
+                    sessionsTable, sessionId, messages.size(), tokens, Instant.now(), ttl);
+            try {
+                dynamoDb.updateItem(update);
+            } catch (ConditionalCheckFailedException e) {
+                requireLegacySession(sessionId);
+                dynamoDb.updateItem(update);
+            }
+            List<ChatMessageItem> items = encodeAll(sessionId, messages);
+            writeBehind.enqueue(sessionId, items);
+            return asStored(messages, items);
+        }
+        // Session update first: a cancellation reason at index 0 means the session does not exist
+        List<TransactWriteItem> writes = new ArrayList<>(messages.size() + 1);
+        writes.add(TransactWriteItem.builder().update(SessionItem.recordWrite(
+                sessionsTable, sessionId, messages.size(), tokens, Instant.now(), ttl)).build());
+        List<ChatMessageItem> items = encodeAll(sessionId, messages);
+        for (ChatMessageItem item : items) {
+            writes.add(TransactWriteItem.builder().put(ChatMessageItem.put(table.tableName(), item)).build());
+        }
+        try {
+            dynamoDb.transactWriteItems(r -> r.transactItems(writes));
+        } catch (TransactionCanceledException e) {
+            if (!SessionItem.sessionMissing(e)) throw e;
+            requireLegacySession(sessionId);
+            dynamoDb.transactWriteItems(r -> r.transactItems(writes));
+        }
+        return asStored(messages, items);
+    }
+
+    /**
+     * The written messages as reads return them, without decoding the content just encoded.
+     */
+    private static List<ChatMessage> asStored(List<ChatMessage> messages, List<ChatMessageItem> items) {
+        List<ChatMessage> stored = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            ChatMessage message = messages.get(i);
+            stored.add(new ChatMessage(message.getRole(), message.getContent(), items.get(i).timestamp()));
+        }
+        return stored;
+    }
+
+    /**
+     * Sessions written before the sessions table existed have messages but no session item. The first access
+     * creates it (with counters starting at zero), so they keep working.
+     *
+     * @return whether the session has messages
+     */
+    private boolean adoptLegacySession(String sessionId) {
+        Optional<ChatMessageItem> first = table.query(r -> r.queryConditional(
+                                QueryConditional.keyEqualTo(Key.builder().partitionValue(sessionId).build()))
+                        .limit(1))
+                .items().stream().findFirst();
+        if (first.isEmpty()) return false;
+        SessionItem item = SessionItem.create(sessionId, null, SortKeyClock.instantOf(first.get().getTs()), ttl);
+        item.setLastActivity(System.currentTimeMillis());
+        try {
+            dynamoDb.putItem(SessionItem.put(sessionsTable, item));
+        } catch (ConditionalCheckFailedException e) {
+            // Adopted concurrently
+        }
+        return true;
+    }
+
+    private void requireLegacySession(String sessionId) {
+        if (!adoptLegacySession(sessionId)) {
+            throw new NoSuchElementException("Session not found: " + sessionId);
+        }
+    }
+
+    private List<ChatMessageItem> encodeAll(String sessionId, List<ChatMessage> messages) {
+        List<ChatMessageItem> items = ChatMessageItem.fromAll(sessionId, messages, clock, ttl);
+        items.forEach(codec::encode);
+        return items;
+    }
+
+    /**
+     * Moves the clock past the newest key read, so the next write of this session sorts after it.
+     */
+    private void observe(List<ChatMessageItem> items) {
+        items.stream().mapToLong(ChatMessageItem::getTs).max().ifPresent(clock::observe);
+    }
+
+    /**
+     * Buffered items of a session. Taken before querying DynamoDB, so an item flushed in between is in the query result.
+     */
+    private NavigableMap<Long, ChatMessageItem> pending(String sessionId) {
+        return writeBehind == null ? Collections.emptyNavigableMap() : writeBehind.pending(sessionId);
+    }
+
+    private static NavigableMap<Long, ChatMessageItem> inRange(NavigableMap<Long, ChatMessageItem> pending, HistoryQuery query) {
+        Long lower = query.lowerBound(SortKeyClock::keyBefore);
+        Long upper = query.before();
+        return pending.subMap(lower == null ? Long.MIN_VALUE : lower, false, upper == null ? Long.MAX_VALUE : upper, false);
+    }
+
+    /**
+     * Merges stored items (in read order) with buffered ones, dropping duplicates by sort key and keeping the first
+     * {@code max} in read order.
+     */
+    private static List<ChatMessageItem> merge(List<ChatMessageItem> stored, NavigableMap<Long, ChatMessageItem> pending,
+                                               boolean ascending, long max) {
+        if (pending.isEmpty()) return stored;
+        NavigableMap<Long, ChatMessageItem> merged = new TreeMap<>(ascending ? Comparator.<Long>naturalOrder() : Comparator.<Long>reverseOrder());
+        merged.putAll(pending);
+        stored.forEach(item -> merged.put(item.getTs(), item));
+        return merged.values().stream().limit(max).toList();
+    }
+
+    private List<ChatMessage> toMessages(List<ChatMessageItem> items) {
+        List<ChatMessage> out = new ArrayList<>(items.size());
+        items.forEach(item -> out.add(codec.decode(item)));
         return out;
     }
 }
@@ -0,0 +1,175 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.repository.HistoryPage;
+import com.pidima.chatbot.repository.HistoryQuery;
+import com.pidima.chatbot.repository.ReactiveChatRepository;
+import com.pidima.chatbot.services.context.TokenCounter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link ReactiveChatRepository} backed by the asynchronous DynamoDB clients; no call blocks the caller thread. Session
+ * metadata is kept as in {@link DynamoDbChatRepository}.
+ */
+@Repository
+@ConditionalOnExpression("'${app.persistence:}' == 'dynamodb' and '${app.execution-mode:blocking}' == 'reactive'")
+public class DynamoDbReactiveChatRepository implements ReactiveChatRepository {
+    private final DynamoDbAsyncClient dynamoDb;
+    private final DynamoDbAsyncTable<ChatMessageItem> table;
+    private final String sessionsTable;
+    private final Duration ttl; // lifetime written to the TTL attributes; null: items never expire
+    private final SortKeyClock clock;
+    private final ContentCodec codec;
+    private final TokenCounter tokenCounter;
+
+    public DynamoDbReactiveChatRepository(DynamoDbAsyncClient dynamoDb, DynamoDbEnhancedAsyncClient enhancedAsyncClient,
+                                          AppProperties props, SortKeyClock clock, ContentCodec codec,
+                                          TokenCounter tokenCounter) {
+        this.dynamoDb = dynamoDb;
+        this.table = enhancedAsyncClient.table(props.getDynamodbTable(), ChatMessageItem.SCHEMA);
+        this.sessionsTable = props.getDynamodbSessionsTable();
+        this.ttl = props.getDynamo().timeToLive();
+        this.clock = clock;
+        this.codec = codec;
+        this.tokenCounter = tokenCounter;
+    }
+
+    @Override
+    public Mono<Void> createSession(String sessionId) {
+        return createSession(sessionId, null);
+    }
+
+    @Override
+    public Mono<Void> createSession(String sessionId, String owner) {
+        return Mono.fromFuture(() -> dynamoDb.putItem(
+                        SessionItem.put(sessionsTable, SessionItem.create(sessionId, owner, Instant.now(), ttl))))
+                .then();
+    }
+
+    @Override
+    public Mono<Boolean> sessionExists(String sessionId) {
+        return Mono.fromFuture(() -> dynamoDb.getItem(SessionItem.exists(sessionsTable, sessionId)))
+                .flatMap(response -> response.hasItem() ? Mono.just(true) : adoptLegacySession(sessionId));
+    }
+
+    @Override
+    public Mono<Void> appendMessage(String sessionId, ChatMessage message) {
+        return appendMessages(sessionId, List.of(message));
+    }
+
+    @Override
+    public Flux<ChatMessage> getHistory(String sessionId) {
+        return Flux.from(table.query(r -> r.queryConditional(
+                        QueryConditional.keyEqualTo(Key.builder().partitionValue(sessionId).build()))).items())
+                .doOnNext(item -> clock.observe(item.getTs()))
+                .map(codec::decode)
+                .switchIfEmpty(requireSession(sessionId).thenMany(Flux.empty()));
+    }
+
+    @Override
+    public Flux<ChatMessage> getRecentHistory(String sessionId, int limit) {
+        return Flux.from(table.query(r -> r.queryConditional(
+                                        QueryConditional.keyEqualTo(Key.builder().partitionValue(sessionId).build()))
+                                .scanIndexForward(false)
+                                .limit(limit)).items())
+                .take(limit)
+                .doOnNext(item -> clock.observe(item.getTs()))
+                .map(codec::decode)
+                .collectList()
+                .flatMapMany(newestFirst -> {
+                    if (newestFirst.isEmpty()) {
+                        return requireSession(sessionId).thenMany(Flux.empty());
+                    }
+                    Collections.reverse(newestFirst);
+                    return Flux.fromIterable(newestFirst);
+                });
+    }
+
+    @Override
+    public Mono<HistoryPage> getHistoryPage(String sessionId, HistoryQuery query) {
+        Flux<ChatMessageItem> items = HistoryPageQueries.isEmptyRange(query)
+                ? Flux.empty()
+                : Flux.from(table.query(HistoryPageQueries.request(sessionId, query)).items())
+                        .take(HistoryPageQueries.itemsToRead(query))
+                        .doOnNext(item -> clock.observe(item.getTs()));
+        return items.collectList()
+                .flatMap(list -> {
+                    // An empty range is fine for an existing session (e.g. polling for new messages)
+                    Mono<Boolean> exists = !list.isEmpty() ? Mono.just(true) : sessionExists(sessionId);
+                    return exists.flatMap(found -> found
+                            ? Mono.just(HistoryPageQueries.toPage(list, query, codec::decode))
+                            : Mono.error(new NoSuchElementException("Session not found: " + sessionId)));
+                });
+    }
+
+    @Override
+    public Mono<Void> appendMessages(String sessionId, List<ChatMessage> messages) {
+        if (messages.isEmpty()) return Mono.empty();
+        long tokens = messages.stream().mapToLong(tokenCounter::count).sum();
+        // Session update first: a cancellation reason at index 0 means the session does not exist
+        List<TransactWriteItem> writes = new ArrayList<>(messages.size() + 1);
+        writes.add(TransactWriteItem.builder().update(SessionItem.recordWrite(
+                sessionsTable, sessionId, messages.size(), tokens, Instant.now(), ttl)).build());
+        for (ChatMessageItem item : ChatMessageItem.fromAll(sessionId, messages, clock, ttl)) {
+            writes.add(TransactWriteItem.builder().put(ChatMessageItem.put(table.tableName(), codec.encode(item))).build());
+        }
+        Mono<Void> write = Mono.fromFuture(() -> dynamoDb.transactWriteItems(r -> r.transactItems(writes))).then();
+        return write.onErrorResume(TransactionCanceledException.class, e -> SessionItem.sessionMissing(e)
+                ? requireLegacySession(sessionId).then(write)
+                : Mono.error(e));
+    }
+
+    /**
+     * See {@link DynamoDbChatRepository}: sessions without a session item but with messages get one on first access.
+     *
+     * @return whether the session has messages
+     */
+    private Mono<Boolean> adoptLegacySession(String sessionId) {
+        return Mono.from(table.query(r -> r.queryConditional(
+                                        QueryConditional.keyEqualTo(Key.builder().partitionValue(sessionId).build()))
+                                .limit(1)).items())
+                .flatMap(first -> {
+                    SessionItem item = SessionItem.create(sessionId, null, SortKeyClock.instantOf(first.getTs()), ttl);
+                    item.setLastActivity(System.currentTimeMillis());
+                    return Mono.fromFuture(() -> dynamoDb.putItem(SessionItem.put(sessionsTable, item)))
+                            // Adopted concurrently
+                            .onErrorResume(ConditionalCheckFailedException.class, e -> Mono.empty())
+                            .thenReturn(true);
+                })
+                .defaultIfEmpty(false);
+    }
+
+    private Mono<Void> requireLegacySession(String sessionId) {
+        return adoptLegacySession(sessionId).flatMap(adopted -> adopted
+                ? Mono.<Void>empty()
+                : Mono.error(new NoSuchElementException("Session not found: " + sessionId)));
+    }
+
+    /**
+     * Completes empty for an existing session and errors with {@link NoSuchElementException} otherwise.
+     */
+    private Mono<Void> requireSession(String sessionId) {
+        return sessionExists(sessionId).flatMap(exists -> exists
+                ? Mono.<Void>empty()
+                : Mono.error(new NoSuchElementException("Session not found: " + sessionId)));
+    }
+}
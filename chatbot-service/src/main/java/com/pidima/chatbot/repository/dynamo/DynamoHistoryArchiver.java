@@ -0,0 +1,279 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.repository.archive.ArchiveStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports chat messages past their retention ({@code app.dynamo.session-ttl}) to zstd-compressed NDJSON files in an
+ * {@link ArchiveStore} and deletes them from the messages table, together with the session items that expired with
+ * them ({@code app.dynamo.archive.enabled=true}).
+ * <p>
+ * Every {@code interval} a scan selects the messages whose retention has passed: those whose {@code expiresAt} lies
+ * less than {@code grace} ahead (TTL attributes are written {@code grace} past the retention, so DynamoDB's own TTL
+ * deletion only removes what the archiver missed) and those written without {@code expiresAt} whose sort key is older
+ * than the retention. They are stored in files of up to {@code chunk-size} messages, ordered by session and key, one
+ * JSON object per line: {@code {"sessionId":…,"ts":…,"timestamp":…,"role":…,"content":…}}.
+ * <p>
+ * A file is stored before any of its messages is deleted, so archiving is at least once: messages of a run that fails
+ * midway are exported again by the next run. Archivers on several instances would export the same messages, so enable
+ * archiving on one instance only.
+ */
+@Component
+@ConditionalOnExpression("'${app.persistence:}' == 'dynamodb' and '${app.dynamo.archive.enabled:false}' == 'true'")
+@Log4j2
+public class DynamoHistoryArchiver {
+    static final int MAX_BATCH_ITEMS = 25;
+    private static final int MAX_DELETE_ATTEMPTS = 8;
+    private static final long BASE_BACKOFF_MS = 50;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final DynamoDbClient dynamoDb;
+    private final String messagesTable;
+    private final String sessionsTable;
+    private final Duration retention;
+    private final Duration grace;
+    private final Duration interval;
+    private final int chunkSize;
+    private final ArchiveStore store;
+    private ScheduledExecutorService scheduler;
+    private Counter archivedMessages;
+    private Counter archivedBytes;
+    private Counter deletedSessions;
+
+    @Autowired
+    public DynamoHistoryArchiver(DynamoDbClient dynamoDb, AppProperties props, ArchiveStore store,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        this(dynamoDb, props.getDynamodbTable(), props.getDynamodbSessionsTable(), props.getDynamo().getSessionTtl(),
+                props.getDynamo().getArchive(), store);
+        meterRegistry.ifAvailable(this::bindMetrics);
+    }
+
+    DynamoHistoryArchiver(DynamoDbClient dynamoDb, String messagesTable, String sessionsTable, Duration retention,
+                          AppProperties.Dynamo.Archive settings, ArchiveStore store) {
+        if (retention == null) {
+            throw new IllegalStateException("app.dynamo.archive requires app.dynamo.session-ttl");
+        }
+        this.dynamoDb = dynamoDb;
+        this.messagesTable = messagesTable;
+        this.sessionsTable = sessionsTable;
+        this.retention = retention;
+        this.grace = settings.getGrace();
+        this.interval = settings.getInterval();
+        this.chunkSize = settings.getChunkSize();
+        this.store = store;
+    }
+
+    private void bindMetrics(MeterRegistry registry) {
+        archivedMessages = Counter.builder("chat.archive.messages")
+                .description("Chat messages exported to the archive and deleted from DynamoDB")
+                .register(registry);
+        archivedBytes = Counter.builder("chat.archive.bytes")
+                .description("Compressed bytes written to the archive")
+                .register(registry);
+        deletedSessions = Counter.builder("chat.archive.sessions")
+                .description("Expired session items deleted after archiving their messages")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("dynamo-archiver").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::run, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void run() {
+        try {
+            long archived = archiveExpired(Instant.now());
+            if (archived > 0) {
+                log.info("Archived {} expired chat messages", archived);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Archive run failed; the remaining messages are retried next run", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Archives and deletes every message whose retention has passed at {@code now}.
+     *
+     * @return number of messages archived
+     */
+    long archiveExpired(Instant now) throws IOException, InterruptedException {
+        List<ChatMessageItem> chunk = new ArrayList<>(chunkSize);
+        long archived = 0;
+        int files = 0;
+        Map<String, AttributeValue> start = null;
+        do {
+            ScanResponse page = dynamoDb.scan(scan(now, start));
+            for (Map<String, AttributeValue> item : page.items()) {
+                chunk.add(ChatMessageItem.SCHEMA.mapToItem(item));
+                if (chunk.size() == chunkSize) {
+                    archive(chunk, key(now, ++files), now);
+                    archived += chunk.size();
+                    chunk.clear();
+                }
+            }
+            start = page.lastEvaluatedKey().isEmpty() ? null : page.lastEvaluatedKey();
+        } while (start != null);
+        if (!chunk.isEmpty()) {
+            archive(chunk, key(now, ++files), now);
+            archived += chunk.size();
+        }
+        return archived;
+    }
+
+    /**
+     * Scan page of messages due for archiving at {@code now}.
+     */
+    ScanRequest scan(Instant now, Map<String, AttributeValue> exclusiveStartKey) {
+        Instant cutoff = now.minus(retention);
+        return ScanRequest.builder()
+                .tableName(messagesTable)
+                .filterExpression("expiresAt <= :due OR (attribute_not_exists(expiresAt) AND "
+                        + "(#ts < :legacyBefore OR #ts BETWEEN :packed AND :before))")
+                .expressionAttributeNames(Map.of("#ts", "ts"))
+                .expressionAttributeValues(Map.of(
+                        ":due", number(now.plus(grace).getEpochSecond()),
+                        // Plain epoch-millis keys of items written before SortKeyClock
+                        ":legacyBefore", number(cutoff.toEpochMilli()),
+                        ":packed", number(SortKeyClock.LEGACY_LIMIT),
+                        ":before", number(SortKeyClock.keyBefore(cutoff))))
+                .exclusiveStartKey(exclusiveStartKey)
+                .build();
+    }
+
+    private void archive(List<ChatMessageItem> items, String key, Instant now) throws IOException, InterruptedException {
+        items.sort(Comparator.comparing(ChatMessageItem::getSessionId).thenComparing(ChatMessageItem::getTs));
+        byte[] file = encode(items);
+        store.put(key, file);
+        delete(items);
+        Set<String> sessions = new LinkedHashSet<>();
+        items.forEach(item -> sessions.add(item.getSessionId()));
+        long deleted = sessions.stream().filter(sessionId -> deleteSessionIfExpired(sessionId, now)).count();
+        if (archivedMessages != null) {
+            archivedMessages.increment(items.size());
+            archivedBytes.increment(file.length);
+            deletedSessions.increment(deleted);
+        }
+        log.debug("Archived {} messages of {} sessions to {} ({} bytes)", items.size(), sessions.size(), key, file.length);
+    }
+
+    /**
+     * @return the items as zstd-compressed NDJSON, one {@link ArchivedMessage} per line
+     */
+    static byte[] encode(List<ChatMessageItem> items) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZstdOutputStream out = new ZstdOutputStream(bytes)) {
+            for (ChatMessageItem item : items) {
+                out.write(JSON.writeValueAsBytes(new ArchivedMessage(item.getSessionId(), item.getTs(),
+                        item.timestamp().toString(), item.getRole(), item.text())));
+                out.write('\n');
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private void delete(List<ChatMessageItem> items) throws InterruptedException {
+        for (int from = 0; from < items.size(); from += MAX_BATCH_ITEMS) {
+            List<WriteRequest> batch = new ArrayList<>(MAX_BATCH_ITEMS);
+            for (ChatMessageItem item : items.subList(from, Math.min(from + MAX_BATCH_ITEMS, items.size()))) {
+                batch.add(WriteRequest.builder().deleteRequest(DeleteRequest.builder().key(Map.of(
+                        "sessionId", AttributeValue.fromS(item.getSessionId()),
+                        "ts", number(item.getTs()))).build()).build());
+            }
+            deleteBatch(batch);
+        }
+    }
+
+    private void deleteBatch(List<WriteRequest> batch) throws InterruptedException {
+        for (int attempt = 0; !batch.isEmpty(); attempt++) {
+            if (attempt == MAX_DELETE_ATTEMPTS) {
+                throw new IllegalStateException(batch.size() + " archived messages could not be deleted");
+            }
+            if (attempt > 0) {
+                Thread.sleep(BASE_BACKOFF_MS << Math.min(attempt - 1, 6));
+            }
+            BatchWriteItemResponse response = dynamoDb.batchWriteItem(BatchWriteItemRequest.builder()
+                    .requestItems(Map.of(messagesTable, batch))
+                    .build());
+            batch = response.unprocessedItems().getOrDefault(messagesTable, List.of());
+        }
+    }
+
+    /**
+     * Deletes the session item if its own TTL has passed too, i.e. the session saw no write within the retention.
+     */
+    private boolean deleteSessionIfExpired(String sessionId, Instant now) {
+        try {
+            dynamoDb.deleteItem(DeleteItemRequest.builder()
+                    .tableName(sessionsTable)
+                    .key(Map.of("sessionId", AttributeValue.fromS(sessionId)))
+                    .conditionExpression("expiresAt <= :due")
+                    .expressionAttributeValues(Map.of(":due", number(now.plus(grace).getEpochSecond())))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false; // still active, or no TTL
+        }
+    }
+
+    private static String key(Instant now, int file) {
+        return String.format("dt=%s/messages-%d-%04d.ndjson.zst",
+                LocalDate.ofInstant(now, ZoneOffset.UTC), now.toEpochMilli(), file);
+    }
+
+    private static AttributeValue number(long value) {
+        return AttributeValue.fromN(Long.toString(value));
+    }
+
+    /**
+     * One line of an archive file; {@code timestamp} is the ISO-8601 timestamp of the message, as reads return it.
+     */
+    record ArchivedMessage(String sessionId, long ts, String timestamp, String role, String content) {
+    }
+}
@@ -0,0 +1,356 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.pidima.chatbot.config.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteResult;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Bounded write-behind buffer for chat message items ({@code app.dynamo.write-behind.enabled=true}).
+ * <p>
+ * {@link #enqueue} returns once the items are buffered; flusher threads write them with {@code BatchWriteItem}
+ * (at most {@value #MAX_BATCH_ITEMS} items per request) as soon as a batch is full or the oldest buffered item has
+ * waited {@code flush-interval}. Each session is pinned to one flusher and every flusher writes its batches strictly
+ * in enqueue order, retrying unprocessed items (with exponential backoff) ahead of anything queued after them, so no
+ * message of a session is persisted before an earlier batch of it has been written in full (DynamoDB does not order
+ * the items within one batch; readers order by sort key anyway). Only transient failures are retried: unprocessed
+ * items, throttling, 5xx responses and network errors, each item at most {@code max-attempts} times. Items that
+ * fail permanently or run out of attempts are logged, counted in {@code chat.write_behind.dropped} and dropped, so
+ * one bad item cannot stall its flusher. When {@code capacity} items are buffered, callers block for up to
+ * {@code enqueue-timeout} and are then rejected with a {@link RejectedExecutionException}. On shutdown the buffer stops
+ * accepting writes and drains for up to {@code shutdown-timeout}.
+ * <p>
+ * Buffered items are exposed per session through {@link #pending} so reads on this instance can include them. Other
+ * instances see a message only once it is flushed, and buffered messages are lost if the process dies; batch puts
+ * also carry no "not exists" condition, which is safe because {@link SortKeyClock} keys do not collide.
+ */
+@Component
+@ConditionalOnExpression("'${app.persistence:}' == 'dynamodb' and '${app.dynamo.write-behind.enabled:false}' == 'true'")
+@Log4j2
+public class DynamoWriteBehindBuffer {
+    static final int MAX_BATCH_ITEMS = 25;
+    private static final long BASE_BACKOFF_MS = 50;
+
+    private final Function<List<ChatMessageItem>, List<ChatMessageItem>> batchWriter;
+    private final Semaphore capacity;
+    private final Duration flushInterval;
+    private final Duration enqueueTimeout;
+    private final Duration shutdownTimeout;
+    private final Duration maxBackoff;
+    private final int maxAttempts;
+    private final Flusher[] flushers;
+    private final Map<String, NavigableMap<Long, ChatMessageItem>> pending = new ConcurrentHashMap<>();
+    // Held for reading while a write is queued and for writing while shutdown starts, so no write lands after STOP
+    private final ReadWriteLock shutdownLock = new ReentrantReadWriteLock();
+    private volatile boolean accepting = true;
+    private Counter flushedItems;
+    private Counter retriedItems;
+    private Counter droppedItems;
+
+    @Autowired
+    public DynamoWriteBehindBuffer(DynamoDbEnhancedClient enhancedClient, AppProperties props,
+                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        this(batchWriter(enhancedClient, enhancedClient.table(props.getDynamodbTable(), ChatMessageItem.SCHEMA)),
+                props.getDynamo().getWriteBehind());
+        meterRegistry.ifAvailable(this::bindMetrics);
+    }
+
+    /**
+     * @param batchWriter writes up to {@value #MAX_BATCH_ITEMS} items with distinct keys and returns the unprocessed ones
+     */
+    DynamoWriteBehindBuffer(Function<List<ChatMessageItem>, List<ChatMessageItem>> batchWriter,
+                            AppProperties.Dynamo.WriteBehind settings) {
+        this.batchWriter = batchWriter;
+        this.capacity = new Semaphore(settings.getCapacity());
+        this.flushInterval = settings.getFlushInterval();
+        this.enqueueTimeout = settings.getEnqueueTimeout();
+        this.shutdownTimeout = settings.getShutdownTimeout();
+        this.maxBackoff = settings.getMaxBackoff();
+        this.maxAttempts = Math.max(1, settings.getMaxAttempts());
+        this.flushers = new Flusher[settings.getFlushers()];
+        for (int i = 0; i < flushers.length; i++) {
+            flushers[i] = new Flusher();
+            Thread.ofPlatform().name("dynamo-write-behind-" + i).daemon().start(flushers[i]);
+        }
+    }
+
+    private static Function<List<ChatMessageItem>, List<ChatMessageItem>> batchWriter(
+            DynamoDbEnhancedClient enhancedClient, DynamoDbTable<ChatMessageItem> table) {
+        return items -> {
+            WriteBatch.Builder<ChatMessageItem> batch = WriteBatch.builder(ChatMessageItem.class).mappedTableResource(table);
+            items.forEach(batch::addPutItem);
+            BatchWriteResult result = enhancedClient.batchWriteItem(BatchWriteItemEnhancedRequest.builder()
+                    .writeBatches(batch.build())
+                    .build());
+            return result.unprocessedPutItemsForTable(table);
+        };
+    }
+
+    private void bindMetrics(MeterRegistry registry) {
+        Gauge.builder("chat.write_behind.pending", this, DynamoWriteBehindBuffer::size)
+                .description("Chat messages buffered but not yet written to DynamoDB")
+                .register(registry);
+        flushedItems = Counter.builder("chat.write_behind.flushed").register(registry);
+        retriedItems = Counter.builder("chat.write_behind.retried").register(registry);
+        droppedItems = Counter.builder("chat.write_behind.dropped")
+                .description("Chat messages not persisted because their write failed permanently or ran out of attempts")
+                .register(registry);
+    }
+
+    /**
+     * Buffers the items of one write; they are flushed together and after earlier writes of the same session.
+     *
+     * @throws RejectedExecutionException if the buffer stays full for {@code enqueue-timeout} or is shutting down
+     */
+    public void enqueue(String sessionId, List<ChatMessageItem> items) {
+        if (items.isEmpty()) return;
+        if (!accepting) {
+            throw new RejectedExecutionException("Write-behind buffer is shutting down");
+        }
+        try {
+            if (!capacity.tryAcquire(items.size(), enqueueTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("Write-behind buffer is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for write-behind capacity", e);
+        }
+        shutdownLock.readLock().lock();
+        try {
+            if (!accepting) {
+                capacity.release(items.size());
+                throw new RejectedExecutionException("Write-behind buffer is shutting down");
+            }
+            pending.compute(sessionId, (id, buffered) -> {
+                NavigableMap<Long, ChatMessageItem> map = buffered != null ? buffered : new ConcurrentSkipListMap<>();
+                items.forEach(item -> map.put(item.getTs(), item));
+                return map;
+            });
+            flushers[Math.floorMod(sessionId.hashCode(), flushers.length)].queue.add(new Write(items, System.nanoTime()));
+        } finally {
+            shutdownLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return snapshot of the session's buffered items keyed by sort key; empty if none
+     */
+    public NavigableMap<Long, ChatMessageItem> pending(String sessionId) {
+        NavigableMap<Long, ChatMessageItem> buffered = pending.get(sessionId);
+        // TreeMap(SortedMap) trusts size() and fails if the flusher removes items while it copies
+        return buffered == null ? Collections.emptyNavigableMap() : new ConcurrentSkipListMap<>(buffered);
+    }
+
+    /**
+     * @return number of buffered items not yet written
+     */
+    public int size() {
+        return pending.values().stream().mapToInt(Map::size).sum();
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        shutdownLock.writeLock().lock();
+        try {
+            if (!accepting) return;
+            accepting = false;
+        } finally {
+            shutdownLock.writeLock().unlock();
+        }
+        for (Flusher flusher : flushers) {
+            flusher.queue.add(Write.STOP);
+        }
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        for (Flusher flusher : flushers) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0 || !flusher.stopped.tryAcquire(remaining, TimeUnit.MILLISECONDS)) {
+                log.warn("Write-behind buffer did not drain within {}; {} messages are not persisted", shutdownTimeout, size());
+                return;
+            }
+        }
+    }
+
+    private void written(ChatMessageItem item) {
+        pending.computeIfPresent(item.getSessionId(), (id, buffered) -> {
+            buffered.remove(item.getTs(), item);
+            return buffered.isEmpty() ? null : buffered;
+        });
+        capacity.release();
+    }
+
+    private static String key(ChatMessageItem item) {
+        return item.getSessionId() + '#' + item.getTs();
+    }
+
+    /**
+     * @return whether a failed batch may succeed when sent again: throttling, 5xx and network errors
+     */
+    static boolean retryable(RuntimeException e) {
+        if (e instanceof AwsServiceException service) {
+            return service.isThrottlingException() || service.statusCode() >= 500;
+        }
+        if (e instanceof UncheckedIOException) return true;
+        return e instanceof SdkClientException && e.getCause() instanceof IOException;
+    }
+
+    private record Write(List<ChatMessageItem> items, long enqueuedAt) {
+        static final Write STOP = new Write(List.of(), 0);
+    }
+
+    /**
+     * Writes the items of its sessions in enqueue order; unprocessed items stay at the head of the backlog.
+     */
+    private final class Flusher implements Runnable {
+        final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+        final Semaphore stopped = new Semaphore(0);
+        private final ArrayDeque<ChatMessageItem> backlog = new ArrayDeque<>();
+        private long oldestEnqueuedAt;
+        private boolean stopping;
+        private int failures;
+        private final Map<String, Integer> attempts = new HashMap<>();
+
+        @Override
+        public void run() {
+            try {
+                while (!stopping || !backlog.isEmpty()) {
+                    fill();
+                    if (!backlog.isEmpty() && (backlog.size() >= MAX_BATCH_ITEMS || stopping || flushDue())) {
+                        flush();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stopped.release();
+            }
+        }
+
+        /**
+         * Moves queued writes into the backlog, waiting at most until the oldest buffered item is due.
+         */
+        private void fill() throws InterruptedException {
+            while (!stopping && backlog.size() < MAX_BATCH_ITEMS) {
+                Write write;
+                if (backlog.isEmpty()) {
+                    write = queue.take();
+                } else {
+                    long waitNanos = oldestEnqueuedAt + flushInterval.toNanos() - System.nanoTime();
+                    write = waitNanos > 0 ? queue.poll(waitNanos, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (write == null) return;
+                }
+                if (write == Write.STOP) {
+                    stopping = true;
+                    return;
+                }
+                if (backlog.isEmpty()) {
+                    oldestEnqueuedAt = write.enqueuedAt();
+                }
+                backlog.addAll(write.items());
+            }
+        }
+
+        private boolean flushDue() {
+            return System.nanoTime() - oldestEnqueuedAt >= flushInterval.toNanos();
+        }
+
+        private void flush() throws InterruptedException {
+            // A batch may not contain the same key twice; stop at a repeat and keep it for the next batch
+            List<ChatMessageItem> batch = new ArrayList<>(MAX_BATCH_ITEMS);
+            Set<String> keys = new HashSet<>();
+            for (ChatMessageItem item : backlog) {
+                if (batch.size() == MAX_BATCH_ITEMS || !keys.add(key(item))) break;
+                batch.add(item);
+            }
+            List<ChatMessageItem> unprocessed;
+            try {
+                unprocessed = batchWriter.apply(batch);
+            } catch (RuntimeException e) {
+                if (!retryable(e)) {
+                    log.error("Write-behind batch of {} messages failed permanently, dropping it: {}", batch.size(),
+                            e.toString());
+                    batch.forEach(item -> {
+                        backlog.pollFirst();
+                        drop(item);
+                    });
+                    failures = 0;
+                    return;
+                }
+                log.warn("Write-behind batch of {} messages failed, retrying: {}", batch.size(), e.getMessage());
+                unprocessed = batch;
+            }
+            // Unprocessed items come back as new instances; match them by key
+            Set<String> retryKeys = new HashSet<>();
+            unprocessed.forEach(item -> retryKeys.add(key(item)));
+            List<ChatMessageItem> kept = new ArrayList<>(unprocessed.size());
+            int flushed = 0;
+            for (ChatMessageItem item : batch) {
+                backlog.pollFirst();
+                if (!retryKeys.contains(key(item))) {
+                    attempts.remove(key(item));
+                    written(item);
+                    flushed++;
+                } else if (attempts.merge(key(item), 1, Integer::sum) >= maxAttempts) {
+                    log.error("Write-behind message {} of session {} was not written after {} attempts, dropping it",
+                            item.getTs(), item.getSessionId(), maxAttempts);
+                    drop(item);
+                } else {
+                    kept.add(item);
+                }
+            }
+            for (int i = kept.size() - 1; i >= 0; i--) {
+                backlog.addFirst(kept.get(i));
+            }
+            if (flushedItems != null) flushedItems.increment(flushed);
+            if (kept.isEmpty()) {
+                failures = 0;
+                return;
+            }
+            if (retriedItems != null) retriedItems.increment(kept.size());
+            failures++;
+            long backoff = Math.min(maxBackoff.toMillis(), BASE_BACKOFF_MS << Math.min(failures - 1, 16));
+            Thread.sleep(backoff);
+        }
+
+        private void drop(ChatMessageItem item) {
+            attempts.remove(key(item));
+            written(item);
+            if (droppedItems != null) droppedItems.increment();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.repository.HistoryPage;
+import com.pidima.chatbot.repository.HistoryQuery;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Translates a {@link HistoryQuery} into a sort-key range query on {@code ts} ({@code since} becomes the first key
+ * issued at that time, see {@link SortKeyClock}) and assembles the resulting page;
+ * shared by the blocking and the reactive DynamoDB repositories.
+ */
+final class HistoryPageQueries {
+
+    private HistoryPageQueries() {
+    }
+
+    /**
+     * @return true when the bounds of the query exclude every possible sort key
+     */
+    static boolean isEmptyRange(HistoryQuery query) {
+        Long lower = query.lowerBound(SortKeyClock::keyBefore);
+        Long upper = query.before();
+        return lower != null && upper != null && lower + 1 > upper - 1;
+    }
+
+    /**
+     * Builds the range query; reads one extra item beyond the limit to tell whether more messages exist.
+     */
+    static QueryEnhancedRequest request(String sessionId, HistoryQuery query) {
+        Long lower = query.lowerBound(SortKeyClock::keyBefore);
+        Long upper = query.before();
+        QueryConditional condition;
+        if (lower != null && upper != null) {
+            condition = QueryConditional.sortBetween(key(sessionId, lower + 1), key(sessionId, upper - 1));
+        } else if (lower != null) {
+            condition = QueryConditional.sortGreaterThan(key(sessionId, lower));
+        } else if (upper != null) {
+            condition = QueryConditional.sortLessThan(key(sessionId, upper));
+        } else {
+            condition = QueryConditional.keyEqualTo(Key.builder().partitionValue(sessionId).build());
+        }
+        QueryEnhancedRequest.Builder request = QueryEnhancedRequest.builder()
+                .queryConditional(condition)
+                .scanIndexForward(query.forward());
+        if (query.limit() != null) {
+            request.limit(query.limit() + 1);
+        }
+        return request.build();
+    }
+
+    /**
+     * @return maximum number of items to take from the query results
+     */
+    static long itemsToRead(HistoryQuery query) {
+        return query.limit() == null ? Long.MAX_VALUE : query.limit() + 1L;
+    }
+
+    /**
+     * Assembles the page from items in read order (descending for "latest N" queries).
+     */
+    static HistoryPage toPage(List<ChatMessageItem> items, HistoryQuery query,
+                              Function<ChatMessageItem, ChatMessage> toMessage) {
+        boolean hasMore = query.limit() != null && items.size() > query.limit();
+        List<ChatMessageItem> page = new ArrayList<>(hasMore ? items.subList(0, query.limit()) : items);
+        if (!query.forward()) {
+            Collections.reverse(page);
+        }
+        if (page.isEmpty()) {
+            return new HistoryPage(List.of(), null, null, false);
+        }
+        List<ChatMessage> messages = new ArrayList<>(page.size());
+        page.forEach(item -> messages.add(toMessage.apply(item)));
+        return new HistoryPage(messages, page.get(0).getTs(), page.get(page.size() - 1).getTs(), hasMore);
+    }
+
+    private static Key key(String sessionId, long ts) {
+        return Key.builder().partitionValue(sessionId).sortValue(ts).build();
+    }
+}
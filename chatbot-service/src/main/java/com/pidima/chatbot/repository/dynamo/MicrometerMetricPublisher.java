@@ -0,0 +1,102 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the SDK's per-call metric collections as Micrometer meters, so DynamoDB latency, retries and
+ * connection-pool pressure show up next to the service's own metrics:
+ * <ul>
+ *   <li>{@code aws.sdk.api.call} – whole call including retries, tagged {@code service}, {@code operation}, {@code success}</li>
+ *   <li>{@code aws.sdk.api.call.retries} – retries per call</li>
+ *   <li>{@code aws.sdk.api.call.attempt} – one HTTP attempt, tagged with the {@code status} code</li>
+ *   <li>{@code aws.sdk.http.acquire} – wait for a pooled connection, tagged with the HTTP {@code client}</li>
+ *   <li>{@code aws.sdk.http.leased} / {@code aws.sdk.http.pending} – connections in use and requests waiting for one,
+ *       sampled per attempt</li>
+ * </ul>
+ * Publishing runs on the calling thread after each call; meters are looked up per tag combination and registered
+ * only the first time it occurs.
+ */
+public class MicrometerMetricPublisher implements MetricPublisher {
+    private final MeterRegistry registry;
+    private final Map<MeterId, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<MeterId, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public MicrometerMetricPublisher(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void publish(MetricCollection call) {
+        String service = first(call, CoreMetric.SERVICE_ID, "unknown");
+        String operation = first(call, CoreMetric.OPERATION_NAME, "unknown");
+        Duration duration = first(call, CoreMetric.API_CALL_DURATION, null);
+        if (duration != null) {
+            timer("aws.sdk.api.call", "service", service, "operation", operation,
+                    "success", String.valueOf(first(call, CoreMetric.API_CALL_SUCCESSFUL, false))).record(duration);
+        }
+        Integer retries = first(call, CoreMetric.RETRY_COUNT, null);
+        if (retries != null) {
+            summary("aws.sdk.api.call.retries", "service", service, "operation", operation).record(retries);
+        }
+        call.childrenWithName("ApiCallAttempt").forEach(attempt -> publishAttempt(attempt, service, operation));
+    }
+
+    private void publishAttempt(MetricCollection attempt, String service, String operation) {
+        Duration duration = first(attempt, CoreMetric.SERVICE_CALL_DURATION, null);
+        if (duration != null) {
+            Integer status = first(attempt, HttpMetric.HTTP_STATUS_CODE, null);
+            timer("aws.sdk.api.call.attempt", "service", service, "operation", operation,
+                    "status", status != null ? String.valueOf(status) : "none").record(duration);
+        }
+        attempt.childrenWithName("HttpClient").forEach(http -> {
+            String client = first(http, HttpMetric.HTTP_CLIENT_NAME, "unknown");
+            Duration acquire = first(http, HttpMetric.CONCURRENCY_ACQUIRE_DURATION, null);
+            if (acquire != null) {
+                timer("aws.sdk.http.acquire", "client", client).record(acquire);
+            }
+            Integer leased = first(http, HttpMetric.LEASED_CONCURRENCY, null);
+            if (leased != null) {
+                summary("aws.sdk.http.leased", "client", client).record(leased);
+            }
+            Integer pending = first(http, HttpMetric.PENDING_CONCURRENCY_ACQUIRES, null);
+            if (pending != null) {
+                summary("aws.sdk.http.pending", "client", client).record(pending);
+            }
+        });
+    }
+
+    private Timer timer(String name, String... tags) {
+        return timers.computeIfAbsent(new MeterId(name, List.of(tags)),
+                id -> Timer.builder(name).tags(tags).register(registry));
+    }
+
+    private DistributionSummary summary(String name, String... tags) {
+        return summaries.computeIfAbsent(new MeterId(name, List.of(tags)),
+                id -> DistributionSummary.builder(name).tags(tags).register(registry));
+    }
+
+    private static <T> T first(MetricCollection collection, SdkMetric<T> metric, T fallback) {
+        List<T> values = collection.metricValues(metric);
+        return values.isEmpty() ? fallback : values.get(0);
+    }
+
+    @Override
+    public void close() {
+        // Meters belong to the registry
+    }
+
+    private record MeterId(String name, List<String> tags) {
+    }
+}
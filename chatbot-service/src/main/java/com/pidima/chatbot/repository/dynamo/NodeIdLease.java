@@ -0,0 +1,216 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.pidima.chatbot.config.AppProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeDefinition;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.CreateTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Lease of this instance's {@link SortKeyClock} node id, used when {@code app.dynamo.node-id} is not set: one item per
+ * leased id in the {@code app.dynamodb-node-leases-table} table, partition key {@code nodeId}.
+ * <p>
+ * On startup the instance claims the first id, from a random start, whose item is missing or whose lease has expired,
+ * with a conditional put; it renews the lease every third of {@code node-lease-duration} and deletes the item on
+ * shutdown. Startup fails if no id can be claimed. An instance stops using its id one renewal interval before the
+ * lease expires unless a renewal succeeded, so it has let go before another instance can claim the id; if the lease
+ * is lost anyway, the next renewal claims a new id.
+ */
+@Component
+@ConditionalOnExpression("'${app.persistence:}' == 'dynamodb' and ${app.dynamo.node-id:-1} < 0")
+@DependsOn("dynamoLocalInitializer")
+@Log4j2
+public class NodeIdLease {
+    static final int NODE_IDS = 1 << SortKeyClock.NODE_BITS;
+
+    private final DynamoDbClient dynamoDb;
+    private final String table;
+    private final long durationMillis;
+    private final LongSupplier wallClock;
+    private final String owner;
+    private volatile int nodeId = -1;
+    private volatile long heldUntil; // epoch millis; the id may be used before this
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public NodeIdLease(DynamoDbClient dynamoDb, AppProperties props) {
+        this(dynamoDb, props.getDynamodbNodeLeasesTable(), props.getDynamo().getNodeLeaseDuration(),
+                System::currentTimeMillis);
+    }
+
+    NodeIdLease(DynamoDbClient dynamoDb, String table, Duration duration, LongSupplier wallClock) {
+        this.dynamoDb = dynamoDb;
+        this.table = table;
+        this.durationMillis = duration.toMillis();
+        this.wallClock = wallClock;
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + '/' + UUID.randomUUID();
+    }
+
+    /**
+     * Key schema of the lease table, for creating it in DynamoDB Local.
+     */
+    public static CreateTableRequest createTable(String table) {
+        return CreateTableRequest.builder()
+                .tableName(table)
+                .keySchema(KeySchemaElement.builder().attributeName("nodeId").keyType(KeyType.HASH).build())
+                .attributeDefinitions(AttributeDefinition.builder()
+                        .attributeName("nodeId").attributeType(ScalarAttributeType.N).build())
+                .provisionedThroughput(t -> t.readCapacityUnits(5L).writeCapacityUnits(5L))
+                .build();
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            claim();
+        } catch (SdkException e) {
+            throw new IllegalStateException("Could not lease a node id from DynamoDB table '" + table
+                    + "'; set app.dynamo.node-id (DYNAMODB_NODE_ID) to an id unique among running instances instead", e);
+        }
+        long interval = renewInterval();
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("node-id-lease").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::renew, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        int id = nodeId;
+        heldUntil = 0;
+        if (id < 0) return;
+        try {
+            dynamoDb.deleteItem(DeleteItemRequest.builder()
+                    .tableName(table)
+                    .key(key(id))
+                    .conditionExpression("#owner = :owner")
+                    .expressionAttributeNames(Map.of("#owner", "owner"))
+                    .expressionAttributeValues(Map.of(":owner", AttributeValue.fromS(owner)))
+                    .build());
+        } catch (SdkException e) {
+            log.warn("Could not release node id {}; it is free again once its lease expires: {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the leased node id
+     * @throws IllegalStateException if the lease could not be renewed in time, so the id may already be used by
+     *                               another instance
+     */
+    public int nodeId() {
+        int id = nodeId;
+        if (id < 0 || wallClock.getAsLong() >= heldUntil) {
+            throw new IllegalStateException("Node id lease is not held; not issuing sort keys that could collide");
+        }
+        return id;
+    }
+
+    /**
+     * Claims the first free or expired id, starting at a random one.
+     *
+     * @throws IllegalStateException if every id is leased
+     */
+    void claim() {
+        int start = ThreadLocalRandom.current().nextInt(NODE_IDS);
+        for (int i = 0; i < NODE_IDS; i++) {
+            int id = (start + i) % NODE_IDS;
+            long now = wallClock.getAsLong();
+            try {
+                dynamoDb.putItem(PutItemRequest.builder()
+                        .tableName(table)
+                        .item(Map.of(
+                                "nodeId", AttributeValue.fromN(Integer.toString(id)),
+                                "owner", AttributeValue.fromS(owner),
+                                "leaseUntil", AttributeValue.fromN(Long.toString(now + durationMillis))))
+                        .conditionExpression("attribute_not_exists(nodeId) OR leaseUntil < :now")
+                        .expressionAttributeValues(Map.of(":now", AttributeValue.fromN(Long.toString(now))))
+                        .build());
+            } catch (ConditionalCheckFailedException taken) {
+                continue;
+            }
+            held(id, now);
+            log.info("Leased node id {} (table '{}', owner {})", id, table, owner);
+            return;
+        }
+        throw new IllegalStateException("All " + NODE_IDS + " node ids in table '" + table + "' are leased");
+    }
+
+    /**
+     * Extends the lease; claims a new id if it was lost.
+     */
+    void renew() {
+        int id = nodeId;
+        if (id < 0) {
+            reclaim();
+            return;
+        }
+        long now = wallClock.getAsLong();
+        try {
+            dynamoDb.updateItem(UpdateItemRequest.builder()
+                    .tableName(table)
+                    .key(key(id))
+                    .updateExpression("SET leaseUntil = :until")
+                    .conditionExpression("#owner = :owner")
+                    .expressionAttributeNames(Map.of("#owner", "owner"))
+                    .expressionAttributeValues(Map.of(
+                            ":until", AttributeValue.fromN(Long.toString(now + durationMillis)),
+                            ":owner", AttributeValue.fromS(owner)))
+                    .build());
+            held(id, now);
+        } catch (ConditionalCheckFailedException lost) {
+            heldUntil = 0;
+            nodeId = -1;
+            log.error("Lost the lease of node id {}; claiming a new one", id);
+            reclaim();
+        } catch (RuntimeException e) {
+            log.warn("Renewing the lease of node id {} failed, retrying in {}ms: {}", id, renewInterval(), e.getMessage());
+        }
+    }
+
+    private void reclaim() {
+        try {
+            claim();
+        } catch (RuntimeException e) {
+            log.error("Could not claim a node id, retrying in {}ms: {}", renewInterval(), e.getMessage());
+        }
+    }
+
+    private void held(int id, long leasedAt) {
+        nodeId = id;
+        heldUntil = leasedAt + durationMillis - renewInterval();
+    }
+
+    private long renewInterval() {
+        return durationMillis / 3;
+    }
+
+    private static Map<String, AttributeValue> key(int id) {
+        return Map.of("nodeId", AttributeValue.fromN(Integer.toString(id)));
+    }
+}
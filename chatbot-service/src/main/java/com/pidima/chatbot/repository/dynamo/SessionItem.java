@@ -0,0 +1,221 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metadata of one chat session in the {@code chat_sessions} table, partition key {@code sessionId}.
+ * <p>
+ * The item is put when the session is created and updated in the same transaction as every write of the session's
+ * messages: the update's {@code attribute_exists} condition is the existence check of the write, and its counters
+ * are {@code ADD}ed atomically, so concurrent writers never lose an increment. Existence is one {@code GetItem}
+ * instead of a query on the message partition.
+ */
+public class SessionItem {
+    private static final String EXISTS = "attribute_exists(sessionId)";
+
+    private String sessionId;
+    private String owner; // user id the session was created for; null for anonymous sessions
+    private Long createdAt; // epoch millis
+    private Long lastActivity; // epoch millis of the latest message write
+    private Long messageCount;
+    private Long tokenCount; // prompt tokens of the messages (TokenCounter); counted from the first write with metadata
+    private Long expiresAt; // epoch seconds, DynamoDB TTL attribute; null without app.dynamo.session-ttl
+
+    public static final TableSchema<SessionItem> SCHEMA = StaticTableSchema.builder(SessionItem.class)
+            .newItemSupplier(SessionItem::new)
+            .addAttribute(String.class, a -> a.name("sessionId")
+                    .getter(SessionItem::getSessionId)
+                    .setter(SessionItem::setSessionId)
+                    .tags(StaticAttributeTags.primaryPartitionKey()))
+            .addAttribute(String.class, a -> a.name("owner")
+                    .getter(SessionItem::getOwner)
+                    .setter(SessionItem::setOwner))
+            .addAttribute(Long.class, a -> a.name("createdAt")
+                    .getter(SessionItem::getCreatedAt)
+                    .setter(SessionItem::setCreatedAt))
+            .addAttribute(Long.class, a -> a.name("lastActivity")
+                    .getter(SessionItem::getLastActivity)
+                    .setter(SessionItem::setLastActivity))
+            .addAttribute(Long.class, a -> a.name("messageCount")
+                    .getter(SessionItem::getMessageCount)
+                    .setter(SessionItem::setMessageCount))
+            .addAttribute(Long.class, a -> a.name("tokenCount")
+                    .getter(SessionItem::getTokenCount)
+                    .setter(SessionItem::setTokenCount))
+            .addAttribute(Long.class, a -> a.name("expiresAt")
+                    .getter(SessionItem::getExpiresAt)
+                    .setter(SessionItem::setExpiresAt))
+            .build();
+
+    /**
+     * A new session without messages.
+     */
+    static SessionItem create(String sessionId, String owner, Instant now, Duration ttl) {
+        SessionItem item = new SessionItem();
+        item.setSessionId(sessionId);
+        item.setOwner(owner);
+        item.setCreatedAt(now.toEpochMilli());
+        item.setLastActivity(now.toEpochMilli());
+        item.setMessageCount(0L);
+        item.setTokenCount(0L);
+        item.setExpiresAt(expiresAt(now, ttl));
+        return item;
+    }
+
+    /**
+     * Put of a new session item that fails instead of resetting an existing one.
+     */
+    static PutItemRequest put(String table, SessionItem item) {
+        return PutItemRequest.builder()
+                .tableName(table)
+                .item(SCHEMA.itemToMap(item, true))
+                .conditionExpression("attribute_not_exists(sessionId)")
+                .build();
+    }
+
+    /**
+     * Consistent read of the session key only: the cheapest possible existence check.
+     */
+    static GetItemRequest exists(String table, String sessionId) {
+        return GetItemRequest.builder()
+                .tableName(table)
+                .key(key(sessionId))
+                .projectionExpression("sessionId")
+                .consistentRead(true)
+                .build();
+    }
+
+    /**
+     * Transactional counterpart of {@link #recordWriteRequest}.
+     */
+    static Update recordWrite(String table, String sessionId, int messages, long tokens, Instant now, Duration ttl) {
+        return Update.builder()
+                .tableName(table)
+                .key(key(sessionId))
+                .updateExpression(updateExpression(ttl))
+                .conditionExpression(EXISTS)
+                .expressionAttributeValues(values(messages, tokens, now, ttl))
+                .build();
+    }
+
+    /**
+     * Counts {@code messages} new messages with {@code tokens} tokens and refreshes the activity time and TTL; fails
+     * with a conditional check if the session does not exist.
+     */
+    static UpdateItemRequest recordWriteRequest(String table, String sessionId, int messages, long tokens,
+                                                Instant now, Duration ttl) {
+        return UpdateItemRequest.builder()
+                .tableName(table)
+                .key(key(sessionId))
+                .updateExpression(updateExpression(ttl))
+                .conditionExpression(EXISTS)
+                .expressionAttributeValues(values(messages, tokens, now, ttl))
+                .build();
+    }
+
+    /**
+     * @return whether a cancelled transaction failed on the condition of its first item, the session update
+     */
+    static boolean sessionMissing(TransactionCanceledException e) {
+        List<CancellationReason> reasons = e.cancellationReasons();
+        return !reasons.isEmpty() && "ConditionalCheckFailed".equals(reasons.get(0).code());
+    }
+
+    private static String updateExpression(Duration ttl) {
+        return "SET lastActivity = :now" + (ttl == null ? "" : ", expiresAt = :exp") + " ADD messageCount :n, tokenCount :t";
+    }
+
+    private static Map<String, AttributeValue> values(int messages, long tokens, Instant now, Duration ttl) {
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":now", number(now.toEpochMilli()));
+        values.put(":n", number(messages));
+        values.put(":t", number(tokens));
+        if (ttl != null) {
+            values.put(":exp", number(expiresAt(now, ttl)));
+        }
+        return values;
+    }
+
+    private static Long expiresAt(Instant now, Duration ttl) {
+        return ttl == null ? null : now.plus(ttl).getEpochSecond();
+    }
+
+    private static Map<String, AttributeValue> key(String sessionId) {
+        return Map.of("sessionId", AttributeValue.fromS(sessionId));
+    }
+
+    private static AttributeValue number(long value) {
+        return AttributeValue.fromN(Long.toString(value));
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Long getLastActivity() {
+        return lastActivity;
+    }
+
+    public void setLastActivity(Long lastActivity) {
+        this.lastActivity = lastActivity;
+    }
+
+    public Long getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(Long messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public Long getTokenCount() {
+        return tokenCount;
+    }
+
+    public void setTokenCount(Long tokenCount) {
+        this.tokenCount = tokenCount;
+    }
+
+    public Long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,98 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.pidima.chatbot.config.AppProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Hybrid logical clock issuing the {@code ts} sort keys of chat message items.
+ * <p>
+ * A key packs {@code millis << 20 | counter << 8 | node}: wall-clock milliseconds, a 12-bit counter for keys issued
+ * within the same millisecond (overflowing into the next millisecond) and the 8-bit id of the issuing instance.
+ * Keys of one instance are strictly increasing, keys of instances with distinct node ids never collide, and no read
+ * is needed before a write. Reads feed the newest key they saw back through {@link #observe}, so a message written
+ * after reading a session sorts after everything read, even if another instance wrote it with a clock running ahead.
+ * <p>
+ * Items written before keys were packed carry plain epoch millis; those are below {@link #LEGACY_LIMIT}, sort before
+ * every packed key and are still decoded by {@link #instantOf}, but {@code since} bounds only match packed keys.
+ * <p>
+ * The node id is {@code app.dynamo.node-id} if set, otherwise the id this instance holds a {@link NodeIdLease} on.
+ */
+@Component
+@ConditionalOnProperty(name = "app.persistence", havingValue = "dynamodb")
+public class SortKeyClock {
+    static final int NODE_BITS = 8;
+    static final int COUNTER_BITS = 12;
+    static final int MILLIS_SHIFT = NODE_BITS + COUNTER_BITS;
+    static final long LEGACY_LIMIT = 1L << 44;
+    private static final long NODE_MASK = (1L << NODE_BITS) - 1;
+
+    private final long nodeId;
+    private final NodeIdLease lease; // source of the node id when it is not configured
+    private final LongSupplier wallClock;
+    private final AtomicLong last = new AtomicLong(); // newest issued or observed key, node bits cleared
+
+    @Autowired
+    public SortKeyClock(AppProperties props, Optional<NodeIdLease> lease) {
+        // The lease bean exists exactly when no node id is configured
+        this(Math.max(0, props.getDynamo().getNodeId()), lease.orElse(null), System::currentTimeMillis);
+    }
+
+    SortKeyClock(int nodeId, LongSupplier wallClock) {
+        this(nodeId, null, wallClock);
+    }
+
+    SortKeyClock(NodeIdLease lease, LongSupplier wallClock) {
+        this(0, lease, wallClock);
+    }
+
+    private SortKeyClock(int nodeId, NodeIdLease lease, LongSupplier wallClock) {
+        if (nodeId < 0 || nodeId > NODE_MASK) {
+            throw new IllegalArgumentException("node id must be between 0 and " + NODE_MASK);
+        }
+        this.nodeId = nodeId;
+        this.lease = lease;
+        this.wallClock = wallClock;
+    }
+
+    /**
+     * @return a key greater than every key issued or observed by this clock so far
+     * @throws IllegalStateException if the node id is leased and the lease is not held
+     */
+    public long next() {
+        long node = lease != null ? lease.nodeId() : nodeId;
+        long physical = wallClock.getAsLong() << MILLIS_SHIFT;
+        long logical = last.accumulateAndGet(physical, (prev, now) -> Math.max(now, prev + (1L << NODE_BITS)));
+        return logical | node;
+    }
+
+    /**
+     * Advances the clock past a key read from the table.
+     */
+    public void observe(long key) {
+        if (key >= LEGACY_LIMIT) {
+            long observed = key & ~NODE_MASK;
+            last.accumulateAndGet(observed, Math::max);
+        }
+    }
+
+    /**
+     * @return the wall-clock time a key was issued at (millisecond precision)
+     */
+    public static Instant instantOf(long key) {
+        return Instant.ofEpochMilli(key < LEGACY_LIMIT ? key : key >>> MILLIS_SHIFT);
+    }
+
+    /**
+     * @return the greatest key that sorts before every key issued at or after {@code instant}
+     */
+    public static long keyBefore(Instant instant) {
+        return (instant.toEpochMilli() << MILLIS_SHIFT) - 1;
+    }
+}
@@ -0,0 +1,124 @@
+package com.pidima.chatbot.repository.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.repository.ChatRepository;
+import com.pidima.chatbot.repository.HistoryPage;
+import com.pidima.chatbot.repository.HistoryQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * {@link ChatRepository} for {@code app.persistence=memory}: sessions live in a Caffeine map that expires idle
+ * sessions after {@code app.memory.session-ttl} and evicts sessions once their estimated size exceeds
+ * {@code app.memory.max-bytes}.
+ * <p>
+ * Each session is an append-only {@link SessionLog}. Appends run inside the map's per-key compute, which serializes
+ * writers of one session without a global lock and re-weighs the session; reads are lock-free and return snapshot
+ * views instead of copying the history. Under memory pressure Caffeine's W-TinyLFU policy keeps frequently used
+ * sessions, so a new, rarely used session may be the one evicted. Data is lost on restart, which makes this a fit for development clusters,
+ * tests and as a hot tier, not as the system of record.
+ */
+@Repository
+@ConditionalOnProperty(name = "app.persistence", havingValue = "memory")
+public class InMemoryChatRepository implements ChatRepository {
+    private final RoleTable roles = new RoleTable();
+    private final Cache<String, SessionLog> sessions;
+
+    @Autowired
+    public InMemoryChatRepository(AppProperties appProperties) {
+        this(appProperties.getMemory().getMaxBytes(), appProperties.getMemory().getSessionTtl());
+    }
+
+    InMemoryChatRepository(long maxBytes, Duration sessionTtl) {
+        this(maxBytes, sessionTtl, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor runs Caffeine's maintenance, evictions included
+     */
+    InMemoryChatRepository(long maxBytes, Duration sessionTtl, Executor executor) {
+        this.sessions = Caffeine.newBuilder()
+                .executor(executor)
+                .maximumWeight(maxBytes)
+                .weigher((String id, SessionLog log) -> (int) Math.min(Integer.MAX_VALUE, log.bytes()))
+                .expireAfterAccess(sessionTtl)
+                .build();
+    }
+
+    @Override
+    public void createSession(String sessionId) {
+        sessions.asMap().putIfAbsent(sessionId, new SessionLog(roles));
+    }
+
+    @Override
+    public boolean sessionExists(String sessionId) {
+        return sessions.getIfPresent(sessionId) != null;
+    }
+
+    @Override
+    public void appendMessage(String sessionId, ChatMessage message) {
+        appendMessages(sessionId, List.of(message));
+    }
+
+    @Override
+    public void appendMessages(String sessionId, List<ChatMessage> messages) {
+        // Returning the same log from the compute re-weighs it; an evicted session is not resurrected
+        SessionLog log = sessions.asMap().computeIfPresent(sessionId, (id, current) -> {
+            messages.forEach(current::append);
+            return current;
+        });
+        if (log == null) {
+            throw new NoSuchElementException("Session not found: " + sessionId);
+        }
+    }
+
+    @Override
+    public List<ChatMessage> getHistory(String sessionId) {
+        return log(sessionId).snapshot();
+    }
+
+    @Override
+    public List<ChatMessage> getRecentHistory(String sessionId, int limit) {
+        SessionLog log = log(sessionId);
+        int size = log.size();
+        return log.snapshot(Math.max(0, size - limit), size);
+    }
+
+    @Override
+    public HistoryPage getHistoryPage(String sessionId, HistoryQuery query) {
+        SessionLog log = log(sessionId);
+        int size = log.size();
+        // Sort keys are strictly increasing, so the range bounds are two binary searches
+        int start = query.lowerBound() == null ? 0 : log.indexAfter(query.lowerBound(), size);
+        int end = query.before() == null ? size : log.indexAtOrAfter(query.before(), size);
+        if (start >= end) {
+            return new HistoryPage(List.of(), null, null, false);
+        }
+        int limit = query.limit() == null ? end - start : query.limit();
+        boolean hasMore = end - start > limit;
+        if (query.forward()) {
+            end = Math.min(end, start + limit);
+        } else {
+            start = Math.max(start, end - limit);
+        }
+        return new HistoryPage(log.snapshot(start, end), log.keyAt(start), log.keyAt(end - 1), hasMore);
+    }
+
+    private SessionLog log(String sessionId) {
+        SessionLog log = sessions.getIfPresent(sessionId);
+        if (log == null) {
+            throw new NoSuchElementException("Session not found: " + sessionId);
+        }
+        return log;
+    }
+}
@@ -0,0 +1,46 @@
+package com.pidima.chatbot.repository.memory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns message roles as one-byte codes so a stored message does not carry its own role string.
+ */
+final class RoleTable {
+    static final byte NONE = -1;
+
+    private final Map<String, Byte> codes = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[0];
+
+    RoleTable() {
+        code("system");
+        code("user");
+        code("assistant");
+    }
+
+    byte code(String role) {
+        if (role == null) return NONE;
+        Byte code = codes.get(role);
+        return code != null ? code : register(role);
+    }
+
+    String name(byte code) {
+        return code == NONE ? null : names[code];
+    }
+
+    private synchronized byte register(String role) {
+        Byte existing = codes.get(role);
+        if (existing != null) return existing;
+        if (names.length == Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many distinct message roles");
+        }
+        byte code = (byte) names.length;
+        String[] next = Arrays.copyOf(names, code + 1);
+        next[code] = role;
+        // Publish the name before the code so readers never see a code they cannot resolve
+        names = next;
+        codes.put(role, code);
+        return code;
+    }
+}
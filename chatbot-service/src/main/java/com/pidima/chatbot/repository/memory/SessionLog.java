@@ -0,0 +1,172 @@
+package com.pidima.chatbot.repository.memory;
+
+import com.pidima.chatbot.models.ChatMessage;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Append-only message log of one session, stored in fixed-size segments of primitive columns (epoch-millis sort
+ * keys, role codes, content references).
+ * <p>
+ * Appends are serialized by the caller; reads are lock-free: a writer fills a slot and then publishes it by bumping
+ * the volatile {@code size}, so a reader that reads {@code size} first sees every slot below it. Published slots
+ * never change, which lets reads hand out {@link Snapshot} views instead of copies.
+ */
+final class SessionLog {
+    private static final int SEGMENT_SHIFT = 6;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    // Object headers, the spine and the column arrays of one segment, roughly
+    private static final long SEGMENT_BYTES = 64 + SEGMENT_SIZE * (8 + 1 + 4);
+    private static final long BASE_BYTES = 128;
+
+    private final RoleTable roles;
+    private volatile Segment[] segments = new Segment[1];
+    private volatile int size;
+    // Writer-side state; only touched while appends are serialized
+    private long lastKey = Long.MIN_VALUE;
+    private long bytes = BASE_BYTES;
+
+    SessionLog(RoleTable roles) {
+        this.roles = roles;
+    }
+
+    /**
+     * Appends a message. Sort keys are the epoch millis of the timestamp, bumped to stay strictly increasing, so
+     * they double as stable page cursors.
+     */
+    void append(ChatMessage message) {
+        int index = size;
+        Segment[] spine = segments;
+        int segment = index >>> SEGMENT_SHIFT;
+        if (segment == spine.length) {
+            spine = Arrays.copyOf(spine, spine.length * 2);
+        }
+        if (spine[segment] == null) {
+            spine[segment] = new Segment();
+            bytes += SEGMENT_BYTES;
+        }
+        long key = message.getTimestamp() == null ? System.currentTimeMillis() : message.getTimestamp().toEpochMilli();
+        if (key <= lastKey) key = lastKey + 1;
+        lastKey = key;
+
+        Segment target = spine[segment];
+        int slot = index & SEGMENT_MASK;
+        target.keys[slot] = key;
+        target.roles[slot] = roles.code(message.getRole());
+        target.contents[slot] = message.getContent();
+        if (message.getContent() != null) {
+            bytes += 40 + 2L * message.getContent().length();
+        }
+        segments = spine;
+        size = index + 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return estimated retained heap of the log in bytes
+     */
+    long bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return read-only view of messages {@code [from, to)}; later appends do not show up in it
+     */
+    Snapshot snapshot(int from, int to) {
+        return new Snapshot(segments, from, to);
+    }
+
+    Snapshot snapshot() {
+        int to = size;
+        return snapshot(0, to);
+    }
+
+    /**
+     * @return index of the first message whose sort key is greater than {@code key}, within the first {@code to}
+     */
+    int indexAfter(long key, int to) {
+        Segment[] spine = segments;
+        int low = 0;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(spine, mid) <= key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @return index of the first message whose sort key is at least {@code key}, within the first {@code to}
+     */
+    int indexAtOrAfter(long key, int to) {
+        return key == Long.MIN_VALUE ? 0 : indexAfter(key - 1, to);
+    }
+
+    long keyAt(int index) {
+        return keyAt(segments, index);
+    }
+
+    private static long keyAt(Segment[] spine, int index) {
+        return spine[index >>> SEGMENT_SHIFT].keys[index & SEGMENT_MASK];
+    }
+
+    private static final class Segment {
+        final long[] keys = new long[SEGMENT_SIZE];
+        final byte[] roles = new byte[SEGMENT_SIZE];
+        final String[] contents = new String[SEGMENT_SIZE];
+    }
+
+    /**
+     * Immutable, allocation-light view over a range of published messages. Elements are materialized as fresh
+     * {@link ChatMessage} instances on access, so callers cannot corrupt the log through the mutable model.
+     */
+    final class Snapshot extends AbstractList<ChatMessage> implements RandomAccess {
+        private final Segment[] spine;
+        private final int from;
+        private final int to;
+
+        private Snapshot(Segment[] spine, int from, int to) {
+            this.spine = spine;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public ChatMessage get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            int i = from + index;
+            Segment segment = spine[i >>> SEGMENT_SHIFT];
+            int slot = i & SEGMENT_MASK;
+            return new ChatMessage(roles.name(segment.roles[slot]), segment.contents[slot],
+                    Instant.ofEpochMilli(segment.keys[slot]));
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public List<ChatMessage> subList(int fromIndex, int toIndex) {
+            if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+                throw new IndexOutOfBoundsException("[" + fromIndex + ", " + toIndex + ")");
+            }
+            return new Snapshot(spine, from + fromIndex, from + toIndex);
+        }
+
+        long keyAt(int index) {
+            return SessionLog.keyAt(spine, from + index);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.pidima.chatbot.services;
+
+import com.pidima.chatbot.models.ChatMessage;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Optional capability of an {@link LLMClient}: answering several independent conversations with one backend request,
+ * for servers that run a batch of prompts per forward pass. Used by
+ * {@link com.pidima.chatbot.services.llm.MicroBatchingLlmClient} when {@code app.llm-batching.enabled=true}.
+ */
+public interface BatchLLMClient {
+
+    /**
+     * @param histories conversations to answer, each an ordered history
+     * @return one reply per conversation, in the same order; the batch fails as a whole
+     */
+    Mono<List<String>> generateReplies(List<List<ChatMessage>> histories);
+}
@@ -1,12 +1,26 @@
 package com.pidima.chatbot.services;
 
+import com.pidima.chatbot.config.AppProperties;
 import com.pidima.chatbot.models.ChatMessage;
 import com.pidima.chatbot.repository.ChatRepository;
+import com.pidima.chatbot.repository.HistoryPage;
+import com.pidima.chatbot.repository.HistoryQuery;
+import com.pidima.chatbot.services.ChatTurnMetrics.Stage;
+import com.pidima.chatbot.services.context.ContextWindowBuilder;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 /**
  * Default implementation of {@link IChatService} that persists messages via a {@link com.pidima.chatbot.repository.ChatRepository}
@@ -14,14 +28,20 @@ import java.util.*;
  */
 @Service
 @RequiredArgsConstructor
+@Log4j2
 public class ChatService implements IChatService {
+    private static final Executor BLOCKING = task -> Schedulers.boundedElastic().schedule(task);
+
     private final ChatRepository repository;
     private final LLMClient llmClient;
+    private final AppProperties appProperties;
+    private final ContextWindowBuilder contextWindowBuilder;
+    private final ChatTurnMetrics metrics;
 
     @Override
     public String createSession(Optional<String> userId) {
         String sessionId = UUID.randomUUID().toString();
-        repository.createSession(sessionId);
+        repository.createSession(sessionId, userId.orElse(null));
         userId.ifPresent(id -> repository.appendMessage(sessionId,
                 new ChatMessage("system", "Session created for user: " + id, Instant.now())));
         return sessionId;
@@ -29,23 +49,80 @@ public class ChatService implements IChatService {
 
     @Override
     public List<ChatMessage> getHistory(String sessionId) {
-        if (!repository.sessionExists(sessionId)) {
-            throw new NoSuchElementException("Session not found: " + sessionId);
-        }
-        return repository.getHistory(sessionId);
+        // The repository signals a missing session itself; no separate existence query needed
+        List<ChatMessage> history = repository.getHistory(sessionId);
+        metrics.history(history.size());
+        return history;
+    }
+
+    @Override
+    public Stream<ChatMessage> streamHistory(String sessionId) {
+        return repository.streamHistory(sessionId);
+    }
+
+    @Override
+    public HistoryPage getHistoryPage(String sessionId, HistoryQuery query) {
+        return repository.getHistoryPage(sessionId, query);
     }
 
+    /**
+     * One bounded read (which also proves the session exists) and one atomic write of both turns per message,
+     * instead of an existence query, two single puts and a full-history read.
+     */
     @Override
     public String addMessageAndReply(String sessionId, String userMessage) {
-        if (!repository.sessionExists(sessionId)) {
-            throw new NoSuchElementException("Session not found: " + sessionId);
-        }
+        return metrics.turn(() -> {
+            ChatMessage user = new ChatMessage("user", userMessage, Instant.now());
+            List<ChatMessage> messages = metrics.time(Stage.CONTEXT, () -> loadContext(sessionId, user));
+            String reply = metrics.time(Stage.LLM, () -> llmClient.generateReply(messages));
+            ChatMessage assistant = new ChatMessage("assistant", reply, Instant.now());
+            metrics.time(Stage.PERSIST, () -> repository.appendMessages(sessionId, List.of(user, assistant)));
+            return reply;
+        });
+    }
+
+    @Override
+    public Flux<String> addMessageAndStreamReply(String sessionId, String userMessage) {
+        // Load context eagerly so a missing session surfaces as a 404 before streaming starts
         ChatMessage user = new ChatMessage("user", userMessage, Instant.now());
-        repository.appendMessage(sessionId, user);
-        List<ChatMessage> messages = repository.getHistory(sessionId);
-        String reply = llmClient.generateReply(messages);
-        ChatMessage assistant = new ChatMessage("assistant", reply, Instant.now());
-        repository.appendMessage(sessionId, assistant);
-        return reply;
+        List<ChatMessage> messages = metrics.time(Stage.CONTEXT, () -> loadContext(sessionId, user));
+        StringBuilder reply = new StringBuilder();
+        AtomicBoolean persisted = new AtomicBoolean();
+        Runnable persistTurn = () -> {
+            if (persisted.compareAndSet(false, true)) {
+                metrics.time(Stage.PERSIST, () -> repository.appendMessages(sessionId, turn(user, reply)));
+            }
+        };
+        return metrics.time(Stage.LLM, llmClient.streamReply(messages))
+                .doOnNext(reply::append)
+                // Not cancelled with the stream, so a client disconnecting now does not interrupt the write
+                .concatWith(Mono.fromFuture(() -> CompletableFuture.runAsync(persistTurn, BLOCKING), true)
+                        .then(Mono.empty()))
+                // A client that disconnected or a failed stream still keeps the user message and the partial reply
+                .doFinally(signal -> {
+                    if (signal != SignalType.ON_COMPLETE) {
+                        CompletableFuture.runAsync(persistTurn, BLOCKING).exceptionally(e -> {
+                            log.warn("Could not save the interrupted turn of session {}: {}", sessionId, e.getMessage());
+                            return null;
+                        });
+                    }
+                });
+    }
+
+    /**
+     * @return the user message, followed by the reply unless it is empty
+     */
+    static List<ChatMessage> turn(ChatMessage user, CharSequence reply) {
+        return reply.isEmpty() ? List.of(user) : List.of(user, new ChatMessage("assistant", reply.toString(), Instant.now()));
+    }
+
+    private List<ChatMessage> loadContext(String sessionId, ChatMessage user) {
+        List<ChatMessage> recent = repository.getRecentHistory(sessionId, appProperties.getLlmHistoryLimit());
+        List<ChatMessage> messages = new ArrayList<>(recent.size() + 1);
+        messages.addAll(recent);
+        messages.add(user);
+        List<ChatMessage> context = contextWindowBuilder.build(sessionId, messages);
+        metrics.context(context.size());
+        return context;
     }
 }
@@ -0,0 +1,161 @@
+package com.pidima.chatbot.services;
+
+import com.pidima.chatbot.services.llm.FallbackLlmClient;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Meters of a chat turn, shared by {@link ChatService} and {@link ReactiveChatService}:
+ * <ul>
+ *   <li>{@code chat.turn.stage} – one stage of a turn, tagged {@code stage} ({@code context}: history read and context
+ *       window, {@code llm}: the reply, whole stream included, {@code persist}: the write of both messages) and
+ *       {@code outcome} ({@code success}, {@code error}, and for {@code llm} {@code fallback}: the LLM call failed and
+ *       the {@link FallbackLlmClient} answered with its apology)</li>
+ *   <li>{@code chat.turn} – a whole non-streamed turn, tagged {@code outcome} ({@code success}, {@code error},
+ *       {@code fallback})</li>
+ *   <li>{@code chat.context.messages} – messages sent to the LLM per turn</li>
+ *   <li>{@code chat.history.messages} – messages returned by a full history read</li>
+ * </ul>
+ * Timers publish percentile histograms, so per-stage percentiles can be aggregated across instances in Prometheus.
+ */
+@Component
+public class ChatTurnMetrics {
+
+    public enum Stage {
+        CONTEXT, LLM, PERSIST
+    }
+
+    private final Map<Stage, Timer> stageSuccess = new EnumMap<>(Stage.class);
+    private final Map<Stage, Timer> stageError = new EnumMap<>(Stage.class);
+    private final Timer llmFallback;
+    private final Timer turnSuccess;
+    private final Timer turnError;
+    private final Timer turnFallback;
+    private final DistributionSummary contextMessages;
+    private final DistributionSummary historyMessages;
+
+    public ChatTurnMetrics(MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            stageSuccess.put(stage, stageTimer(registry, stage, "success"));
+            stageError.put(stage, stageTimer(registry, stage, "error"));
+        }
+        llmFallback = stageTimer(registry, Stage.LLM, "fallback");
+        turnSuccess = turnTimer(registry, "success");
+        turnError = turnTimer(registry, "error");
+        turnFallback = turnTimer(registry, "fallback");
+        contextMessages = DistributionSummary.builder("chat.context.messages")
+                .description("Messages sent to the LLM per turn")
+                .publishPercentileHistogram()
+                .register(registry);
+        historyMessages = DistributionSummary.builder("chat.history.messages")
+                .description("Messages returned by a full history read")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Timer stageTimer(MeterRegistry registry, Stage stage, String outcome) {
+        return Timer.builder("chat.turn.stage")
+                .description("Duration of one stage of a chat turn")
+                .tag("stage", stage.name().toLowerCase())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Timer turnTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("chat.turn")
+                .description("Duration of a non-streamed chat turn")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public <T> T time(Stage stage, Supplier<T> call) {
+        return time(stageSuccess.get(stage), stageError.get(stage), fallbackTimer(stage), call);
+    }
+
+    public void time(Stage stage, Runnable call) {
+        time(stage, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public <T> Mono<T> time(Stage stage, Mono<T> call) {
+        return time(stageSuccess.get(stage), stageError.get(stage), fallbackTimer(stage), call);
+    }
+
+    public <T> Flux<T> time(Stage stage, Flux<T> call) {
+        Timer fallback = fallbackTimer(stage);
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean fellBack = new AtomicBoolean();
+            return call
+                    .doOnNext(element -> {
+                        if (isFallback(element)) fellBack.set(true);
+                    })
+                    .doOnComplete(() -> record(fellBack.get() && fallback != null ? fallback : stageSuccess.get(stage), start))
+                    .doOnError(e -> record(stageError.get(stage), start));
+        });
+    }
+
+    public <T> T turn(Supplier<T> turn) {
+        return time(turnSuccess, turnError, turnFallback, turn);
+    }
+
+    public <T> Mono<T> turn(Mono<T> turn) {
+        return time(turnSuccess, turnError, turnFallback, turn);
+    }
+
+    public void context(int messages) {
+        contextMessages.record(messages);
+    }
+
+    public void history(int messages) {
+        historyMessages.record(messages);
+    }
+
+    private Timer fallbackTimer(Stage stage) {
+        return stage == Stage.LLM ? llmFallback : null;
+    }
+
+    private static boolean isFallback(Object result) {
+        return result instanceof String reply && FallbackLlmClient.isFallback(reply);
+    }
+
+    private static <T> T time(Timer success, Timer error, Timer fallback, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            record(fallback != null && isFallback(result) ? fallback : success, start);
+            return result;
+        } catch (RuntimeException e) {
+            record(error, start);
+            throw e;
+        }
+    }
+
+    private static <T> Mono<T> time(Timer success, Timer error, Timer fallback, Mono<T> call) {
+        // Cancelled calls are not recorded
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                    .doOnSuccess(result -> record(fallback != null && isFallback(result) ? fallback : success, start))
+                    .doOnError(e -> record(error, start));
+        });
+    }
+
+    private static void record(Timer timer, long start) {
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
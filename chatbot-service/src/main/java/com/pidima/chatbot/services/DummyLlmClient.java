@@ -1,16 +1,37 @@
 package com.pidima.chatbot.services;
 
+import com.pidima.chatbot.config.AppProperties;
 import com.pidima.chatbot.models.ChatMessage;
+import lombok.RequiredArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Component
 @ConditionalOnProperty(name = "app.llm-provider", havingValue = "dummy", matchIfMissing = true)
-public class DummyLlmClient implements LLMClient {
+@RequiredArgsConstructor
+public class DummyLlmClient implements LLMClient, BatchLLMClient {
+    private final AppProperties appProperties;
+
     @Override
     public String generateReply(List<ChatMessage> history) {
+        Duration latency = simulatedLatency();
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return echo(history);
+    }
+
+    private String echo(List<ChatMessage> history) {
         // Very simple mock: echo the last user message and summarize count
         String lastUser = history.stream()
                 .filter(m -> "user".equals(m.getRole()))
@@ -20,4 +41,35 @@ public class DummyLlmClient implements LLMClient {
         long turns = history.stream().filter(m -> "user".equals(m.getRole())).count();
         return "You said: '" + lastUser + "'. (turn " + turns + ")";
     }
+
+    @Override
+    public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+        // Pure computation plus a timer; no need to park a thread
+        return Mono.delay(simulatedLatency()).map(tick -> echo(history));
+    }
+
+    @Override
+    public Mono<List<String>> generateReplies(List<List<ChatMessage>> histories) {
+        // One simulated latency for the whole batch, like a server answering it in one pass
+        return Mono.delay(simulatedLatency()).map(tick -> histories.stream().map(this::echo).toList());
+    }
+
+    @Override
+    public Flux<String> streamReply(List<ChatMessage> history) {
+        // Emit the echo word by word (keeping the separating whitespace) like a token stream
+        Flux<String> deltas = Flux.fromArray(echo(history).split("(?<=\\s)"));
+        long delayMs = appProperties.getDummyStreamDelayMs();
+        if (delayMs > 0) {
+            deltas = deltas.delayElements(Duration.ofMillis(delayMs));
+        }
+        // Simulated latency applies as time to first delta
+        return deltas.delaySubscription(simulatedLatency());
+    }
+
+    private Duration simulatedLatency() {
+        long min = appProperties.getDummyLatencyMinMs();
+        long max = Math.max(min, appProperties.getDummyLatencyMaxMs());
+        if (max <= 0) return Duration.ZERO;
+        return Duration.ofMillis(min == max ? min : ThreadLocalRandom.current().nextLong(min, max + 1));
+    }
 }
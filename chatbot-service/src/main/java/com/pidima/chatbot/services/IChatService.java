@@ -1,9 +1,13 @@
 package com.pidima.chatbot.services;
 
 import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.repository.HistoryPage;
+import com.pidima.chatbot.repository.HistoryQuery;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Contract for chat operations: creating sessions, fetching history, and generating replies.
@@ -26,6 +30,26 @@ public interface IChatService {
      */
     List<ChatMessage> getHistory(String sessionId);
 
+    /**
+     * Returns the full message history as a lazy stream that reads the backing store page by page.
+     * The caller must close the stream.
+     *
+     * @param sessionId the id of the session
+     * @return chat messages, oldest first
+     * @throws java.util.NoSuchElementException if the session does not exist
+     */
+    Stream<ChatMessage> streamHistory(String sessionId);
+
+    /**
+     * Returns one page of the message history selected by sort-key cursors.
+     *
+     * @param sessionId the id of the session
+     * @param query page selection
+     * @return the page, oldest message first
+     * @throws java.util.NoSuchElementException if the session does not exist
+     */
+    HistoryPage getHistoryPage(String sessionId, HistoryQuery query);
+
     /**
      * Appends a user message and returns the assistant reply.
      *
@@ -35,4 +59,16 @@ public interface IChatService {
      * @throws java.util.NoSuchElementException if the session does not exist
      */
     String addMessageAndReply(String sessionId, String userMessage);
+
+    /**
+     * Appends a user message and streams the assistant reply as content deltas.
+     * The user message and the assembled reply are persisted once the stream completes; when it is cancelled or fails,
+     * the user message and the reply so far.
+     *
+     * @param sessionId the id of the session
+     * @param userMessage the user's message
+     * @return flux of reply deltas
+     * @throws java.util.NoSuchElementException if the session does not exist
+     */
+    Flux<String> addMessageAndStreamReply(String sessionId, String userMessage);
 }
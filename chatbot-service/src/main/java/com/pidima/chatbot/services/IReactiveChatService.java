@@ -0,0 +1,70 @@
+package com.pidima.chatbot.services;
+
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.repository.HistoryPage;
+import com.pidima.chatbot.repository.HistoryQuery;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+/**
+ * Non-blocking contract for chat operations, mirroring {@link IChatService}.
+ * Missing sessions are signalled as {@link java.util.NoSuchElementException} errors.
+ */
+public interface IReactiveChatService {
+    /**
+     * Creates a new chat session.
+     *
+     * @param userId optional user id to associate with the session
+     * @return the generated session id
+     */
+    Mono<String> createSession(Optional<String> userId);
+
+    /**
+     * Returns the full message history for the provided session id.
+     *
+     * @param sessionId the id of the session
+     * @return ordered chat messages
+     */
+    Flux<ChatMessage> getHistory(String sessionId);
+
+    /**
+     * Returns the full message history for streaming. The outer {@link Mono} resolves once the session is known to
+     * exist, so a missing session can still be answered with 404 before the response is committed.
+     *
+     * @param sessionId the id of the session
+     * @return flux of chat messages, oldest first
+     */
+    Mono<Flux<ChatMessage>> streamHistory(String sessionId);
+
+    /**
+     * Returns one page of the message history selected by sort-key cursors.
+     *
+     * @param sessionId the id of the session
+     * @param query page selection
+     * @return the page, oldest message first
+     */
+    Mono<HistoryPage> getHistoryPage(String sessionId, HistoryQuery query);
+
+    /**
+     * Appends a user message and returns the assistant reply.
+     *
+     * @param sessionId the id of the session
+     * @param userMessage the user's message
+     * @return the assistant reply
+     */
+    Mono<String> addMessageAndReply(String sessionId, String userMessage);
+
+    /**
+     * Appends a user message and prepares the streamed assistant reply. The returned {@link Mono} resolves once the
+     * context is loaded (or errors if the session does not exist); the inner flux emits content deltas and persists
+     * the user message and the assembled reply when it completes, or the user message and the reply so far when it
+     * is cancelled or fails.
+     *
+     * @param sessionId the id of the session
+     * @param userMessage the user's message
+     * @return flux of reply deltas, available once the session is known to exist
+     */
+    Mono<Flux<String>> addMessageAndStreamReply(String sessionId, String userMessage);
+}
@@ -1,8 +1,36 @@
 package com.pidima.chatbot.services;
 
 import com.pidima.chatbot.models.ChatMessage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 import java.util.List;
 
 public interface LLMClient {
     String generateReply(List<ChatMessage> history);
+
+    /**
+     * Non-blocking variant of {@link #generateReply(List)}. Clients without a native asynchronous transport
+     * run the blocking call on the bounded elastic scheduler.
+     *
+     * @param history ordered conversation history
+     * @return the assistant reply
+     */
+    default Mono<String> generateReplyAsync(List<ChatMessage> history) {
+        return Mono.fromCallable(() -> generateReply(history))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Streams the reply as incremental content deltas. Concatenating all emitted
+     * deltas yields the complete reply. Clients without native streaming support
+     * emit the whole reply as a single delta.
+     *
+     * @param history ordered conversation history
+     * @return flux of content deltas
+     */
+    default Flux<String> streamReply(List<ChatMessage> history) {
+        return generateReplyAsync(history).flux();
+    }
 }
@@ -0,0 +1,71 @@
+package com.pidima.chatbot.services;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Request and response bodies of the OpenAI API, limited to the fields {@link OpenAiLlmClient} sends or reads, among
+ * them the token {@link Usage} of a reply. Unknown response fields ({@code id}, {@code logprobs}, ...) are skipped by
+ * the parser without being materialized.
+ */
+final class OpenAiApi {
+
+    private OpenAiApi() {
+    }
+
+    /**
+     * Body of {@code POST /chat/completions}.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record ChatRequest(String model, List<Message> messages, double temperature,
+                       @JsonProperty("max_tokens") int maxTokens, Boolean stream,
+                       @JsonProperty("stream_options") StreamOptions streamOptions) {
+    }
+
+    /**
+     * Asks for a last streamed chunk carrying the {@link Usage} of the whole reply.
+     */
+    record StreamOptions(@JsonProperty("include_usage") boolean includeUsage) {
+    }
+
+    /**
+     * Body of {@code POST /completions} for a batch: one raw prompt per conversation.
+     */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    record CompletionRequest(String model, List<String> prompt, double temperature,
+                             @JsonProperty("max_tokens") int maxTokens, List<String> stop) {
+    }
+
+    record Message(String role, String content) {
+    }
+
+    /**
+     * A chat completion, a streamed chunk of one, or a (batch) completion.
+     *
+     * @param usage tokens of the whole request; in a stream only on the last chunk, whose {@code choices} are empty
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Response(List<Choice> choices, Usage usage) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Usage(@JsonProperty("prompt_tokens") int promptTokens,
+                 @JsonProperty("completion_tokens") int completionTokens) {
+    }
+
+    /**
+     * @param message the reply of a chat completion
+     * @param delta   the reply chunk of a streamed chat completion
+     * @param text    the reply of a completion
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Choice(Integer index, Content message, Content delta, String text) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Content(String content) {
+    }
+}
@@ -1,82 +1,317 @@
 package com.pidima.chatbot.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.pidima.chatbot.config.AppProperties;
 import com.pidima.chatbot.models.ChatMessage;
-import lombok.RequiredArgsConstructor;
+import com.pidima.chatbot.services.llm.LlmRateLimitedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.BodyInserter;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.Duration;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * OpenAI chat completions client. Failures (transport errors, timeouts, empty or unparseable responses) are signalled
+ * as errors; {@link com.pidima.chatbot.services.llm.FallbackLlmClient} turns them into a reply. A 429 is signalled as
+ * an {@link LlmRateLimitedException} carrying the wait the provider asked for.
+ * <p>
+ * Batches go to the legacy {@code /completions} endpoint as one {@code prompt} array, each conversation rendered with
+ * {@code app.llm-batching.message-template}; self-hosted OpenAI-compatible servers (vLLM, TGI) accept this.
+ * <p>
+ * Bodies are the {@link OpenAiApi} records. Requests are serialized by a pre-built writer straight into a buffer of the
+ * connection's pooled allocator; responses are parsed into records holding only the fields read here.
+ * <p>
+ * The {@code usage} of every response (the last chunk of a stream) is counted in {@code chat.llm.tokens}, tagged
+ * {@code type} ({@code prompt} or {@code completion}) and {@code model}.
+ */
 @Component
 @ConditionalOnProperty(name = "app.llm-provider", havingValue = "openai")
-@RequiredArgsConstructor
 @Log4j2
-public class OpenAiLlmClient implements LLMClient {
+public class OpenAiLlmClient implements LLMClient, BatchLLMClient {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE = new ParameterizedTypeReference<>() {};
+    private static final String STREAM_DONE = "[DONE]";
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+    // Go-style durations of the x-ratelimit-reset-* headers, e.g. "1s", "6m0s", "120ms"
+    private static final Pattern RESET_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|s|m|h)");
+    // Most requests fit; the buffer grows for long histories
+    private static final int INITIAL_BUFFER_SIZE = 4096;
 
     private final WebClient openAiWebClient;
     private final AppProperties appProperties;
+    // Present only in app.execution-mode=virtual
+    private final Optional<RestClient> openAiRestClient;
+    private final ObjectWriter chatRequestWriter;
+    private final ObjectWriter completionRequestWriter;
+    private final ObjectReader responseReader;
+    private final Counter promptTokens;
+    private final Counter completionTokens;
+
+    public OpenAiLlmClient(WebClient openAiWebClient, AppProperties appProperties, ObjectMapper objectMapper,
+                           Optional<RestClient> openAiRestClient, Optional<MeterRegistry> meterRegistry) {
+        this.openAiWebClient = openAiWebClient;
+        this.appProperties = appProperties;
+        this.openAiRestClient = openAiRestClient;
+        this.chatRequestWriter = objectMapper.writerFor(OpenAiApi.ChatRequest.class);
+        this.completionRequestWriter = objectMapper.writerFor(OpenAiApi.CompletionRequest.class);
+        this.responseReader = objectMapper.readerFor(OpenAiApi.Response.class);
+        this.promptTokens = meterRegistry.map(registry -> tokens(registry, "prompt")).orElse(null);
+        this.completionTokens = meterRegistry.map(registry -> tokens(registry, "completion")).orElse(null);
+    }
+
+    private Counter tokens(MeterRegistry registry, String type) {
+        return Counter.builder("chat.llm.tokens")
+                .description("Tokens billed by the LLM provider")
+                .tag("type", type)
+                .tag("model", appProperties.getLlmModel())
+                .register(registry);
+    }
 
     @Override
     public String generateReply(List<ChatMessage> history) {
-        // Map our history to OpenAI chat messages
-        List<Map<String, String>> messages = history.stream()
-                .map(m -> {
-                    Map<String, String> mm = new HashMap<>();
-                    mm.put("role", mapRole(m.getRole()));
-                    mm.put("content", m.getContent());
-                    return mm;
-                }).collect(Collectors.toList());
-
-        Map<String, Object> payload = new HashMap<>();
-        payload.put("model", appProperties.getLlmModel());
-        payload.put("messages", messages);
-        payload.put("temperature", 0.2);
-        payload.put("max_tokens", 512);
+        if (openAiRestClient.isPresent()) {
+            return generateReplyBlocking(openAiRestClient.get(), history);
+        }
+        return generateReplyAsync(history).block();
+    }
 
-        try {
-            Map<?, ?> resp = openAiWebClient
-                    .post()
-                    .uri("/chat/completions")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(payload)
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .timeout(Duration.ofSeconds(30))
-                    .onErrorResume(ex -> {
-                        log.error("OpenAI request failed: {}", ex.getMessage());
-                        return Mono.empty();
-                    })
-                    .block();
-
-            if (resp == null) {
-                return "I'm having trouble reaching the LLM service right now.";
+    /**
+     * Plain blocking call on the caller's thread; intended for virtual threads, where blocking is cheap.
+     */
+    private String generateReplyBlocking(RestClient restClient, List<ChatMessage> history) {
+        OpenAiApi.Response resp = restClient
+                .post()
+                .uri("/chat/completions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(buildPayload(history, false))
+                .retrieve()
+                .onStatus(status -> status.value() == TOO_MANY_REQUESTS, (request, response) -> {
+                    throw rateLimited(response.getHeaders());
+                })
+                .body(OpenAiApi.Response.class);
+        if (resp == null) {
+            throw new IllegalStateException("Empty response from OpenAI");
+        }
+        recordUsage(resp);
+        return extractContent(resp);
+    }
+
+    @Override
+    public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+        return openAiWebClient
+                .post()
+                .uri("/chat/completions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonBody(chatRequestWriter, buildPayload(history, false)))
+                .retrieve()
+                .onStatus(status -> status.value() == TOO_MANY_REQUESTS,
+                        response -> Mono.error(rateLimited(response.headers().asHttpHeaders())))
+                .bodyToMono(OpenAiApi.Response.class)
+                .timeout(appProperties.getLlmTimeout())
+                .doOnNext(this::recordUsage)
+                .map(this::extractContent)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Empty response from OpenAI")));
+    }
+
+    @Override
+    public Flux<String> streamReply(List<ChatMessage> history) {
+        return openAiWebClient
+                .post()
+                .uri("/chat/completions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .body(jsonBody(chatRequestWriter, buildPayload(history, true)))
+                .retrieve()
+                .onStatus(status -> status.value() == TOO_MANY_REQUESTS,
+                        response -> Mono.error(rateLimited(response.headers().asHttpHeaders())))
+                .bodyToFlux(SSE_TYPE)
+                .map(ServerSentEvent::data)
+                .takeWhile(data -> !STREAM_DONE.equals(data))
+                .mapNotNull(this::extractDelta)
+                // Applies to the first chunk and to every gap between chunks
+                .timeout(appProperties.getLlmTimeout());
+    }
+
+    @Override
+    public Mono<List<String>> generateReplies(List<List<ChatMessage>> histories) {
+        return openAiWebClient
+                .post()
+                .uri("/completions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonBody(completionRequestWriter, buildBatchPayload(histories)))
+                .retrieve()
+                .onStatus(status -> status.value() == TOO_MANY_REQUESTS,
+                        response -> Mono.error(rateLimited(response.headers().asHttpHeaders())))
+                .bodyToMono(OpenAiApi.Response.class)
+                .timeout(appProperties.getLlmTimeout())
+                .doOnNext(this::recordUsage)
+                .map(resp -> extractTexts(resp, histories.size()))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Empty response from OpenAI")));
+    }
+
+    /**
+     * Serializes {@code body} straight into a buffer of the connection's allocator (pooled for Reactor Netty), instead
+     * of the codec's intermediate byte array and per-call writer lookup.
+     */
+    private static BodyInserter<Object, ReactiveHttpOutputMessage> jsonBody(ObjectWriter writer, Object body) {
+        return (message, context) -> message.writeWith(Mono.fromCallable(() -> {
+            DataBuffer buffer = message.bufferFactory().allocateBuffer(INITIAL_BUFFER_SIZE);
+            try (OutputStream out = buffer.asOutputStream()) {
+                writer.writeValue(out, body);
+                return buffer;
+            } catch (IOException | RuntimeException e) {
+                DataBufferUtils.release(buffer);
+                throw e;
             }
-            // Extract first choice message.content
-            Object choicesObj = resp.get("choices");
-            if (choicesObj instanceof List<?> choices && !choices.isEmpty()) {
-                Object choice0 = choices.get(0);
-                if (choice0 instanceof Map<?, ?> c0) {
-                    Object msg = c0.get("message");
-                    if (msg instanceof Map<?, ?> m) {
-                        Object content = m.get("content");
-                        if (content != null) return content.toString();
-                    }
+        }));
+    }
+
+    // Package-private for the payload/parsing benchmarks
+    OpenAiApi.ChatRequest buildPayload(List<ChatMessage> history, boolean stream) {
+        List<OpenAiApi.Message> messages = history.stream()
+                .map(m -> new OpenAiApi.Message(mapRole(m.getRole()), m.getContent()))
+                .toList();
+        return new OpenAiApi.ChatRequest(appProperties.getLlmModel(), messages, appProperties.getLlmTemperature(),
+                appProperties.getLlmMaxTokens(), stream ? Boolean.TRUE : null,
+                stream ? new OpenAiApi.StreamOptions(true) : null);
+    }
+
+    OpenAiApi.CompletionRequest buildBatchPayload(List<List<ChatMessage>> histories) {
+        return new OpenAiApi.CompletionRequest(appProperties.getLlmModel(),
+                histories.stream().map(this::renderPrompt).toList(), appProperties.getLlmTemperature(),
+                appProperties.getLlmMaxTokens(), appProperties.getLlmBatching().getStop());
+    }
+
+    private String renderPrompt(List<ChatMessage> history) {
+        AppProperties.LlmBatching batching = appProperties.getLlmBatching();
+        StringBuilder prompt = new StringBuilder();
+        for (ChatMessage m : history) {
+            prompt.append(batching.getMessageTemplate()
+                    .replace("{role}", mapRole(m.getRole()))
+                    .replace("{content}", m.getContent() == null ? "" : m.getContent()));
+        }
+        return prompt.append(batching.getReplyPrefix()).toString();
+    }
+
+    String extractContent(OpenAiApi.Response resp) {
+        // First choice message.content
+        if (resp.choices() != null && !resp.choices().isEmpty()) {
+            OpenAiApi.Choice choice0 = resp.choices().get(0);
+            if (choice0 != null && choice0.message() != null && choice0.message().content() != null) {
+                return choice0.message().content();
+            }
+        }
+        throw new IllegalStateException("Unparseable response from OpenAI: no choices[0].message.content");
+    }
+
+    /**
+     * Orders {@code choices[].text} by {@code choices[].index}; servers may return them in any order.
+     */
+    List<String> extractTexts(OpenAiApi.Response resp, int expected) {
+        String[] texts = new String[expected];
+        if (resp.choices() != null) {
+            for (OpenAiApi.Choice choice : resp.choices()) {
+                if (choice != null && choice.index() != null && choice.index() >= 0 && choice.index() < expected
+                        && choice.text() != null) {
+                    texts[choice.index()] = choice.text().strip();
                 }
             }
-            return "I couldn't parse a response from the LLM.";
+        }
+        for (String text : texts) {
+            if (text == null) {
+                throw new IllegalStateException("Unparseable response from OpenAI: missing choices for the batch");
+            }
+        }
+        return List.of(texts);
+    }
+
+    /**
+     * Extracts {@code choices[0].delta.content} from a streamed chunk; returns null for chunks without content
+     * (e.g., the initial role-only delta, the chunk carrying {@code finish_reason} or the last one carrying
+     * {@code usage}).
+     */
+    String extractDelta(String data) {
+        if (data == null || data.isBlank()) return null;
+        try {
+            OpenAiApi.Response chunk = responseReader.readValue(data);
+            recordUsage(chunk);
+            if (chunk.choices() == null || chunk.choices().isEmpty()) return null;
+            OpenAiApi.Choice choice0 = chunk.choices().get(0);
+            return choice0 != null && choice0.delta() != null ? choice0.delta().content() : null;
         } catch (Exception e) {
-            log.error("OpenAI call failed: ", e);
-            return "An error occurred while generating a response.";
+            log.warn("Skipping unparseable OpenAI stream chunk: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void recordUsage(OpenAiApi.Response resp) {
+        if (promptTokens == null || resp.usage() == null) return;
+        promptTokens.increment(resp.usage().promptTokens());
+        completionTokens.increment(resp.usage().completionTokens());
+    }
+
+    private static LlmRateLimitedException rateLimited(HttpHeaders headers) {
+        return new LlmRateLimitedException("OpenAI rate limit reached", retryAfter(headers));
+    }
+
+    /**
+     * @return the wait a 429 asks for: {@code Retry-After} in seconds, else the later of the
+     * {@code x-ratelimit-reset-requests} and {@code x-ratelimit-reset-tokens} headers, else one second
+     */
+    static Duration retryAfter(HttpHeaders headers) {
+        String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter != null) {
+            try {
+                return Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+            } catch (NumberFormatException e) {
+                // An HTTP date; fall back to the reset headers
+            }
+        }
+        Duration reset = Duration.ZERO;
+        for (String header : List.of("x-ratelimit-reset-requests", "x-ratelimit-reset-tokens")) {
+            Duration value = parseReset(headers.getFirst(header));
+            if (value.compareTo(reset) > 0) reset = value;
+        }
+        return reset.isZero() ? DEFAULT_RETRY_AFTER : reset;
+    }
+
+    private static Duration parseReset(String value) {
+        if (value == null) return Duration.ZERO;
+        double millis = 0;
+        Matcher part = RESET_PART.matcher(value);
+        while (part.find()) {
+            double amount = Double.parseDouble(part.group(1));
+            millis += switch (part.group(2)) {
+                case "ms" -> amount;
+                case "s" -> amount * 1_000;
+                case "m" -> amount * 60_000;
+                default -> amount * 3_600_000;
+            };
         }
+        return Duration.ofMillis((long) Math.ceil(millis));
     }
 
     private String mapRole(String role) {
@@ -0,0 +1,113 @@
+package com.pidima.chatbot.services;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.repository.HistoryPage;
+import com.pidima.chatbot.repository.HistoryQuery;
+import com.pidima.chatbot.repository.ReactiveChatRepository;
+import com.pidima.chatbot.services.ChatTurnMetrics.Stage;
+import com.pidima.chatbot.services.context.ContextWindowBuilder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking implementation of {@link IReactiveChatService}. Active when {@code app.execution-mode=reactive};
+ * persistence and LLM calls are composed without parking a request thread while they are in flight.
+ */
+@Service
+@ConditionalOnProperty(name = "app.execution-mode", havingValue = "reactive")
+@RequiredArgsConstructor
+@Log4j2
+public class ReactiveChatService implements IReactiveChatService {
+    private final ReactiveChatRepository repository;
+    private final LLMClient llmClient;
+    private final AppProperties appProperties;
+    private final ContextWindowBuilder contextWindowBuilder;
+    private final ChatTurnMetrics metrics;
+
+    @Override
+    public Mono<String> createSession(Optional<String> userId) {
+        String sessionId = UUID.randomUUID().toString();
+        Mono<Void> created = repository.createSession(sessionId, userId.orElse(null));
+        if (userId.isPresent()) {
+            created = created.then(repository.appendMessage(sessionId,
+                    new ChatMessage("system", "Session created for user: " + userId.get(), Instant.now())));
+        }
+        return created.thenReturn(sessionId);
+    }
+
+    @Override
+    public Flux<ChatMessage> getHistory(String sessionId) {
+        // The repository signals a missing session itself; no separate existence query needed
+        return Flux.defer(() -> {
+            AtomicInteger messages = new AtomicInteger();
+            return repository.getHistory(sessionId)
+                    .doOnNext(message -> messages.incrementAndGet())
+                    .doOnComplete(() -> metrics.history(messages.get()));
+        });
+    }
+
+    @Override
+    public Mono<Flux<ChatMessage>> streamHistory(String sessionId) {
+        return repository.sessionExists(sessionId)
+                .flatMap(exists -> exists
+                        ? Mono.just(repository.getHistory(sessionId))
+                        : Mono.error(new NoSuchElementException("Session not found: " + sessionId)));
+    }
+
+    @Override
+    public Mono<HistoryPage> getHistoryPage(String sessionId, HistoryQuery query) {
+        return repository.getHistoryPage(sessionId, query);
+    }
+
+    @Override
+    public Mono<String> addMessageAndReply(String sessionId, String userMessage) {
+        ChatMessage user = new ChatMessage("user", userMessage, Instant.now());
+        return metrics.turn(metrics.time(Stage.CONTEXT, loadContext(sessionId, user))
+                .flatMap(messages -> metrics.time(Stage.LLM, llmClient.generateReplyAsync(messages)))
+                .flatMap(reply -> metrics.time(Stage.PERSIST, repository.appendMessages(sessionId,
+                        List.of(user, new ChatMessage("assistant", reply, Instant.now())))).thenReturn(reply)));
+    }
+
+    @Override
+    public Mono<Flux<String>> addMessageAndStreamReply(String sessionId, String userMessage) {
+        ChatMessage user = new ChatMessage("user", userMessage, Instant.now());
+        return metrics.time(Stage.CONTEXT, loadContext(sessionId, user))
+                .map(messages -> {
+                    StringBuilder reply = new StringBuilder();
+                    AtomicBoolean persisted = new AtomicBoolean();
+                    Mono<Void> persistTurn = Mono.defer(() -> persisted.compareAndSet(false, true)
+                            ? metrics.time(Stage.PERSIST, repository.appendMessages(sessionId, ChatService.turn(user, reply)))
+                            : Mono.empty());
+                    return metrics.time(Stage.LLM, llmClient.streamReply(messages))
+                            .doOnNext(reply::append)
+                            // Not cancelled with the stream, so a client disconnecting now does not interrupt the write
+                            .concatWith(Mono.fromFuture(persistTurn::toFuture, true).then(Mono.empty()))
+                            // A client that disconnected or a failed stream still keeps the user message and the partial reply
+                            .doFinally(signal -> {
+                                if (signal != SignalType.ON_COMPLETE) {
+                                    persistTurn.subscribe(null, e -> log.warn("Could not save the interrupted turn of session {}: {}",
+                                            sessionId, e.getMessage()));
+                                }
+                            });
+                });
+    }
+
+    private Mono<List<ChatMessage>> loadContext(String sessionId, ChatMessage user) {
+        return repository.getRecentHistory(sessionId, appProperties.getLlmHistoryLimit())
+                .concatWithValues(user)
+                .collectList()
+                .flatMap(messages -> contextWindowBuilder.buildAsync(sessionId, messages))
+                .doOnNext(context -> metrics.context(context.size()));
+    }
+}
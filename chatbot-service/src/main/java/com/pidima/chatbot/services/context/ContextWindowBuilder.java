@@ -0,0 +1,159 @@
+package com.pidima.chatbot.services.context;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.services.LLMClient;
+import com.pidima.chatbot.services.llm.FallbackLlmClient;
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Assembles the prompt sent to the LLM: the configured system prompt, the rolling summary of older turns (when
+ * enabled) and as many of the most recent messages as fit the token budget ({@code app.context.*}). The newest
+ * message is always kept, so the prompt size stays bounded no matter how long the session gets.
+ * <p>
+ * With summaries enabled, messages that drop out of the window are folded into the stored summary once at least
+ * {@code summarize-every} of them have accumulated; in between, the previous summary is reused as is. When the
+ * summary call fails, the previous summary is kept and the messages are folded in on a later turn.
+ */
+@Component
+@Log4j2
+public class ContextWindowBuilder {
+    private static final String SUMMARY_INSTRUCTION = "You maintain a running summary of a conversation between a user "
+            + "and an assistant. Update the summary with the new messages below. Keep facts, names, decisions and open "
+            + "questions; answer with the summary only, in at most %d tokens.";
+    private static final String SUMMARY_PREFIX = "Summary of the earlier conversation: ";
+    private static final String SUMMARY_INSTRUCTION_START = SUMMARY_INSTRUCTION.substring(0, SUMMARY_INSTRUCTION.indexOf('%'));
+
+    private final TokenCounter tokenCounter;
+    private final SummaryStore summaryStore;
+    private final LLMClient llmClient;
+    private final AppProperties appProperties;
+
+    public ContextWindowBuilder(TokenCounter tokenCounter, SummaryStore summaryStore, LLMClient llmClient,
+                                AppProperties appProperties) {
+        this.tokenCounter = tokenCounter;
+        this.summaryStore = summaryStore;
+        // Below the fallback, so a failed call keeps the previous summary instead of storing the apology reply
+        this.llmClient = FallbackLlmClient.withoutFallback(llmClient);
+        this.appProperties = appProperties;
+    }
+
+    /**
+     * @return whether the message is a summary or summary instruction this builder adds to prompts
+     */
+    public static boolean isSummary(ChatMessage message) {
+        String content = message.getContent();
+        return "system".equals(message.getRole()) && content != null
+                && (content.startsWith(SUMMARY_PREFIX) || content.startsWith(SUMMARY_INSTRUCTION_START));
+    }
+
+    /**
+     * Blocking variant for the servlet and virtual-thread paths; may call the LLM to refresh the summary.
+     *
+     * @param sessionId session identifier
+     * @param history   ordered recent history, ending with the new user message
+     * @return prompt messages in the order they are sent to the LLM
+     */
+    public List<ChatMessage> build(String sessionId, List<ChatMessage> history) {
+        Window window = select(sessionId, history);
+        if (!window.needsSummary()) {
+            return window.prompt(window.summary());
+        }
+        try {
+            return window.prompt(store(sessionId, window, llmClient.generateReply(window.summaryRequest())));
+        } catch (RuntimeException e) {
+            log.warn("Summarizing session {} failed, keeping the previous summary", sessionId, e);
+            return window.prompt(window.summary());
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #build(String, List)} for the reactive path.
+     */
+    public Mono<List<ChatMessage>> buildAsync(String sessionId, List<ChatMessage> history) {
+        return Mono.defer(() -> {
+            Window window = select(sessionId, history);
+            if (!window.needsSummary()) {
+                return Mono.just(window.prompt(window.summary()));
+            }
+            return llmClient.generateReplyAsync(window.summaryRequest())
+                    .map(text -> window.prompt(store(sessionId, window, text)))
+                    .onErrorResume(e -> {
+                        log.warn("Summarizing session {} failed, keeping the previous summary", sessionId, e);
+                        return Mono.just(window.prompt(window.summary()));
+                    });
+        });
+    }
+
+    private Window select(String sessionId, List<ChatMessage> history) {
+        AppProperties.Context config = appProperties.getContext();
+        boolean summaries = config.getSummary().isEnabled();
+        ChatMessage systemPrompt = StringUtils.isBlank(config.getSystemPrompt())
+                ? null
+                : new ChatMessage("system", config.getSystemPrompt(), Instant.now());
+
+        int budget = config.getMaxTokens();
+        if (systemPrompt != null) budget -= tokenCounter.count(systemPrompt);
+        // Reserve the summary's share up front so the prompt does not grow when a summary appears
+        if (summaries) budget -= config.getSummary().getMaxTokens() + TokenCounter.MESSAGE_OVERHEAD_TOKENS;
+
+        int start = history.size();
+        while (start > 0) {
+            int tokens = tokenCounter.count(history.get(start - 1));
+            if (tokens > budget && start < history.size()) break;
+            budget -= tokens;
+            start--;
+        }
+
+        Optional<ConversationSummary> summary = summaries ? summaryStore.find(sessionId) : Optional.empty();
+        List<ChatMessage> unsummarized = new ArrayList<>();
+        if (summaries) {
+            Instant coveredUntil = summary.map(ConversationSummary::coveredUntil).orElse(null);
+            for (ChatMessage m : history.subList(0, start)) {
+                if (coveredUntil == null || m.getTimestamp() == null || m.getTimestamp().isAfter(coveredUntil)) {
+                    unsummarized.add(m);
+                }
+            }
+        }
+        boolean needsSummary = summaries && unsummarized.size() >= Math.max(1, config.getSummary().getSummarizeEvery());
+        return new Window(systemPrompt, summary.orElse(null), history.subList(start, history.size()), unsummarized,
+                needsSummary, config.getSummary().getMaxTokens());
+    }
+
+    private ConversationSummary store(String sessionId, Window window, String text) {
+        Instant coveredUntil = window.unsummarized().get(window.unsummarized().size() - 1).getTimestamp();
+        ConversationSummary summary = new ConversationSummary(text, coveredUntil);
+        summaryStore.save(sessionId, summary);
+        return summary;
+    }
+
+    private record Window(ChatMessage systemPrompt, ConversationSummary summary, List<ChatMessage> recent,
+                          List<ChatMessage> unsummarized, boolean needsSummary, int summaryMaxTokens) {
+
+        List<ChatMessage> prompt(ConversationSummary summary) {
+            List<ChatMessage> prompt = new ArrayList<>(recent.size() + 2);
+            if (systemPrompt != null) prompt.add(systemPrompt);
+            if (summary != null) prompt.add(new ChatMessage("system", SUMMARY_PREFIX + summary.text(), Instant.now()));
+            prompt.addAll(recent);
+            return prompt;
+        }
+
+        List<ChatMessage> summaryRequest() {
+            Instant now = Instant.now();
+            List<ChatMessage> request = new ArrayList<>(unsummarized.size() + 3);
+            request.add(new ChatMessage("system", SUMMARY_INSTRUCTION.formatted(summaryMaxTokens), now));
+            if (summary != null) request.add(new ChatMessage("system", SUMMARY_PREFIX + summary.text(), now));
+            request.addAll(unsummarized);
+            request.add(new ChatMessage("user", "Write the updated summary.", now));
+            return request;
+        }
+    }
+}
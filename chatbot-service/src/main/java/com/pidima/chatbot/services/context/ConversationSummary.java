@@ -0,0 +1,12 @@
+package com.pidima.chatbot.services.context;
+
+import java.time.Instant;
+
+/**
+ * Rolling summary of the turns of a session that no longer fit the prompt window.
+ *
+ * @param text         summary text, sent to the LLM as a system message
+ * @param coveredUntil timestamp of the most recent message folded into the summary
+ */
+public record ConversationSummary(String text, Instant coveredUntil) {
+}
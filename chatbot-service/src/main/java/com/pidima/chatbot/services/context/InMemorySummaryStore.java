@@ -0,0 +1,30 @@
+package com.pidima.chatbot.services.context;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Process-local {@link SummaryStore}. Summaries are a prompt optimization, so losing one (eviction, restart, another
+ * instance serving the session) only means older turns are summarized again as they leave the window.
+ */
+@Component
+public class InMemorySummaryStore implements SummaryStore {
+    private final Cache<String, ConversationSummary> summaries = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofHours(24))
+            .build();
+
+    @Override
+    public Optional<ConversationSummary> find(String sessionId) {
+        return Optional.ofNullable(summaries.getIfPresent(sessionId));
+    }
+
+    @Override
+    public void save(String sessionId, ConversationSummary summary) {
+        summaries.put(sessionId, summary);
+    }
+}
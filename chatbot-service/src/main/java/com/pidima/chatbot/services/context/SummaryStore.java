@@ -0,0 +1,23 @@
+package com.pidima.chatbot.services.context;
+
+import java.util.Optional;
+
+/**
+ * Storage for the rolling {@link ConversationSummary} of each session.
+ */
+public interface SummaryStore {
+
+    /**
+     * @param sessionId session identifier
+     * @return the latest summary, or empty if none was produced yet
+     */
+    Optional<ConversationSummary> find(String sessionId);
+
+    /**
+     * Replaces the summary of the session.
+     *
+     * @param sessionId session identifier
+     * @param summary   new summary
+     */
+    void save(String sessionId, ConversationSummary summary);
+}
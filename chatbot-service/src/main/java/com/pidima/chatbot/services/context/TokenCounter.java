@@ -0,0 +1,49 @@
+package com.pidima.chatbot.services.context;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Counts prompt tokens with the BPE encoding of the configured model ({@code o200k_base} for unknown models).
+ * Counts are cached per message content, so each message is tokenized once instead of on every turn it stays in
+ * the window; the cache is bounded by the size of the texts it keys on ({@code app.context.token-cache-max-bytes}).
+ */
+@Component
+public class TokenCounter {
+    // Role and delimiter tokens the chat completion format adds around every message
+    static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private final Encoding encoding;
+    private final Cache<String, Integer> counts;
+
+    public TokenCounter(AppProperties appProperties) {
+        EncodingRegistry registry = Encodings.newLazyEncodingRegistry();
+        String model = appProperties.getLlmModel();
+        this.encoding = (model == null ? Optional.<Encoding>empty() : registry.getEncodingForModel(model))
+                .orElseGet(() -> registry.getEncoding(EncodingType.O200K_BASE));
+        this.counts = Caffeine.newBuilder()
+                .maximumWeight(appProperties.getContext().getTokenCacheMaxBytes())
+                // UTF-16 chars of the key
+                .weigher((String text, Integer count) -> (int) Math.min(Integer.MAX_VALUE, ENTRY_OVERHEAD_BYTES + 2L * text.length()))
+                .build();
+    }
+
+    public int count(ChatMessage message) {
+        return MESSAGE_OVERHEAD_TOKENS + count(message.getContent());
+    }
+
+    public int count(String text) {
+        if (text == null || text.isEmpty()) return 0;
+        return counts.get(text, encoding::countTokensOrdinary);
+    }
+}
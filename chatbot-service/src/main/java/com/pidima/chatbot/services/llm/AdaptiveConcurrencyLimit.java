@@ -0,0 +1,301 @@
+package com.pidima.chatbot.services.llm;
+
+import com.pidima.chatbot.config.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive limit on concurrent LLM calls with a bounded wait queue ({@code app.llm-limiter.*}).
+ * <p>
+ * The limit follows AIMD on observed latency: every call that comes back within {@code latency-tolerance} times the
+ * baseline latency while at least half the limit is in use raises it by one; a slower call, a timeout or a rate-limited
+ * call multiplies it by {@code backoff-ratio}. The baseline tracks the fastest recent calls and drifts slowly upwards,
+ * so a provider that became slower for good is not treated as overloaded forever.
+ * <p>
+ * Calls beyond the limit wait in FIFO order for up to {@code max-wait}; with {@code max-queue} calls waiting, or while
+ * the provider asked to back off, further calls are rejected at once with an {@link LlmOverloadedException}.
+ */
+public class AdaptiveConcurrencyLimit {
+    private static final double BASELINE_DRIFT = 0.01;
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final int maxQueue;
+    private final Duration maxWait;
+    private final LongSupplier nanoTime;
+
+    // Guarded by this
+    private final ArrayDeque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double baselineNanos; // 0 until the first sample
+    private long pausedUntilNanos;
+    private boolean paused;
+
+    private Counter queueFull;
+    private Counter timedOut;
+    private Counter rateLimited;
+
+    public AdaptiveConcurrencyLimit(AppProperties.LlmLimiter settings, MeterRegistry registry) {
+        this(settings, registry, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimit(AppProperties.LlmLimiter settings, MeterRegistry registry, LongSupplier nanoTime) {
+        this.minLimit = Math.max(1, settings.getMinLimit());
+        this.maxLimit = Math.max(minLimit, settings.getMaxLimit());
+        this.limit = Math.min(maxLimit, Math.max(minLimit, settings.getInitialLimit()));
+        this.latencyTolerance = settings.getLatencyTolerance();
+        this.backoffRatio = settings.getBackoffRatio();
+        this.maxQueue = settings.getMaxQueue();
+        this.maxWait = settings.getMaxWait();
+        this.nanoTime = nanoTime;
+        if (registry != null) {
+            Gauge.builder("chat.llm.limiter.limit", this, AdaptiveConcurrencyLimit::getLimit)
+                    .description("Current limit on concurrent LLM calls")
+                    .register(registry);
+            Gauge.builder("chat.llm.limiter.in_flight", this, AdaptiveConcurrencyLimit::getInFlight)
+                    .description("LLM calls holding a slot")
+                    .register(registry);
+            Gauge.builder("chat.llm.limiter.queued", this, AdaptiveConcurrencyLimit::getQueued)
+                    .description("LLM calls waiting for a slot")
+                    .register(registry);
+            queueFull = rejected(registry, "queue_full");
+            timedOut = rejected(registry, "timeout");
+            rateLimited = rejected(registry, "rate_limited");
+        }
+    }
+
+    private static Counter rejected(MeterRegistry registry, String reason) {
+        return Counter.builder("chat.llm.limiter.rejected")
+                .description("LLM calls shed by the concurrency limiter")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    /**
+     * Fails fast when a call would certainly be rejected; lets {@code streamReply} reject before its response starts.
+     *
+     * @throws LlmOverloadedException while the provider asked to back off or the wait queue is full
+     */
+    public synchronized void checkAdmission() {
+        LlmOverloadedException rejection = rejectNow();
+        if (rejection != null) throw rejection;
+    }
+
+    /**
+     * @return a future completed with a permit once a slot is free, or failed with an {@link LlmOverloadedException}
+     * when the call is shed. A caller that stops waiting cancels the future.
+     */
+    public CompletableFuture<Permit> acquire() {
+        CompletableFuture<Permit> waiter;
+        synchronized (this) {
+            LlmOverloadedException rejection = rejectNow();
+            if (rejection != null) return CompletableFuture.failedFuture(rejection);
+            if (waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+        }
+        CompletableFuture.delayedExecutor(maxWait.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+            // Still queued means no slot was granted in the meantime
+            if (dequeue(waiter)) {
+                increment(timedOut);
+                waiter.completeExceptionally(new LlmOverloadedException("No LLM capacity within " + maxWait, retryAfter()));
+            }
+        });
+        waiter.whenComplete((permit, e) -> {
+            if (e != null) dequeue(waiter); // cancelled
+        });
+        return waiter;
+    }
+
+    /**
+     * Blocking variant of {@link #acquire()}.
+     *
+     * @throws LlmOverloadedException when the call is shed
+     */
+    public Permit acquireBlocking() {
+        CompletableFuture<Permit> permit = acquire();
+        try {
+            return permit.get();
+        } catch (InterruptedException e) {
+            permit.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new LlmOverloadedException("Interrupted while waiting for LLM capacity", DEFAULT_RETRY_AFTER);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public synchronized double getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    // Caller holds the lock
+    private LlmOverloadedException rejectNow() {
+        long now = nanoTime.getAsLong();
+        if (paused && now - pausedUntilNanos < 0) {
+            increment(rateLimited);
+            return new LlmOverloadedException("LLM provider rate limit reached", Duration.ofNanos(pausedUntilNanos - now));
+        }
+        paused = false;
+        if (waiters.size() >= maxQueue && !(waiters.isEmpty() && inFlight < (int) limit)) {
+            increment(queueFull);
+            return new LlmOverloadedException("Too many LLM calls waiting", DEFAULT_RETRY_AFTER);
+        }
+        return null;
+    }
+
+    private synchronized Duration retryAfter() {
+        long remaining = paused ? pausedUntilNanos - nanoTime.getAsLong() : 0;
+        return remaining > 0 ? Duration.ofNanos(remaining) : DEFAULT_RETRY_AFTER;
+    }
+
+    private synchronized boolean dequeue(CompletableFuture<Permit> waiter) {
+        return waiters.remove(waiter);
+    }
+
+    private void sample(long latencyNanos) {
+        List<CompletableFuture<Permit>> granted;
+        synchronized (this) {
+            if (baselineNanos == 0 || latencyNanos < baselineNanos) {
+                baselineNanos = latencyNanos;
+            } else {
+                baselineNanos += (latencyNanos - baselineNanos) * BASELINE_DRIFT;
+            }
+            if (latencyNanos > baselineNanos * latencyTolerance) {
+                decrease();
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            granted = grant();
+        }
+        handOut(granted);
+    }
+
+    private synchronized void dropped(Throwable error) {
+        decrease();
+        if (error instanceof LlmRateLimitedException rateLimited) {
+            long until = nanoTime.getAsLong() + rateLimited.getRetryAfter().toNanos();
+            if (!paused || until - pausedUntilNanos > 0) {
+                pausedUntilNanos = until;
+            }
+            paused = true;
+        }
+    }
+
+    private void release() {
+        List<CompletableFuture<Permit>> granted;
+        synchronized (this) {
+            inFlight--;
+            granted = grant();
+        }
+        handOut(granted);
+    }
+
+    // Caller holds the lock
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    // Caller holds the lock; takes slots for waiters in arrival order
+    private List<CompletableFuture<Permit>> grant() {
+        List<CompletableFuture<Permit>> granted = new ArrayList<>();
+        while (inFlight < (int) limit && !waiters.isEmpty()) {
+            CompletableFuture<Permit> waiter = waiters.poll();
+            if (!waiter.isDone()) {
+                granted.add(waiter);
+                inFlight++;
+            }
+        }
+        return granted;
+    }
+
+    // Outside the lock, since completing a waiter runs the caller's LLM call
+    private void handOut(List<CompletableFuture<Permit>> granted) {
+        for (CompletableFuture<Permit> waiter : granted) {
+            Permit permit = new Permit();
+            if (!waiter.complete(permit)) {
+                // Timed out or cancelled in the meantime
+                permit.release();
+            }
+        }
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) counter.increment();
+    }
+
+    /**
+     * @return true for errors that indicate an overloaded provider: rate limiting and timeouts
+     */
+    static boolean isOverload(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof LlmOverloadedException || e instanceof TimeoutException) return true;
+        }
+        return false;
+    }
+
+    /**
+     * A slot for one LLM call. Report how the call went with {@link #success()} or {@link #failure(Throwable)} and
+     * always {@link #release()} it; all three are idempotent.
+     */
+    public final class Permit {
+        private final long grantedAt = nanoTime.getAsLong();
+        private final AtomicBoolean observed = new AtomicBoolean();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        /**
+         * Feeds the latency since the permit was granted into the limit.
+         */
+        public void success() {
+            if (observed.compareAndSet(false, true)) {
+                sample(nanoTime.getAsLong() - grantedAt);
+            }
+        }
+
+        /**
+         * Shrinks the limit if the error means the provider is overloaded; other errors do not change it.
+         */
+        public void failure(Throwable error) {
+            if (observed.compareAndSet(false, true) && isOverload(error)) {
+                dropped(error);
+            }
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimit.this.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.pidima.chatbot.services.llm;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.services.LLMClient;
+import com.pidima.chatbot.services.context.ContextWindowBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
+
+/**
+ * {@link LLMClient} decorator serving replies to conversations it has answered before ({@code app.reply-cache.*}).
+ * <p>
+ * The key is a SHA-256 over the model, temperature and token limit and the whole prompt, normalized so that trivially
+ * different spellings of the same question match: user and assistant messages are NFKC-normalized, lower-cased, have
+ * their whitespace collapsed and lose trailing sentence punctuation. Of the system messages only the configured system
+ * prompt and the conversation summary are taken, as they are; per-session ones such as the "Session created for user"
+ * message would keep different users from sharing replies. Only prompts with at most {@code context-turns} user turns
+ * are cached, since a key over just the trailing turns of a longer conversation would serve a reply written for
+ * different earlier context.
+ * <p>
+ * Lookups go to a local Caffeine cache bounded by {@code max-bytes} and {@code ttl}, then to the optional
+ * {@link RedisReplyCache}. Concurrent identical requests share one LLM call, which runs to completion even if the
+ * request that started it is cancelled; failed calls are not cached, and a streamed reply is cached only once it
+ * completed; a cached reply streams as a single delta. Lookups are counted in
+ * {@code chat.reply_cache.requests}, tagged {@code result=hit|redis_hit|miss|bypass}.
+ */
+public class CachingLlmClient implements LLMClient {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\s?!.…。？！]+$");
+
+    private final LLMClient delegate;
+    private final AsyncCache<String, String> cache;
+    private final RedisReplyCache redis; // null: local tier only
+    private final String model;
+    private final double temperature;
+    private final int maxTokens;
+    private final int contextTurns;
+    private final String systemPrompt;
+    private Counter hits;
+    private Counter redisHits;
+    private Counter misses;
+    private Counter bypassed;
+
+    public CachingLlmClient(LLMClient delegate, AppProperties props, RedisReplyCache redis, MeterRegistry registry) {
+        AppProperties.ReplyCache settings = props.getReplyCache();
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(settings.getMaxBytes())
+                // UTF-16 chars of the hex key and the reply
+                .weigher((String key, String reply) -> 2 * (key.length() + reply.length()))
+                .expireAfterWrite(settings.getTtl())
+                .recordStats()
+                .buildAsync();
+        this.redis = redis;
+        this.model = props.getLlmModel();
+        this.temperature = props.getLlmTemperature();
+        this.maxTokens = props.getLlmMaxTokens();
+        this.contextTurns = settings.getContextTurns();
+        this.systemPrompt = props.getContext().getSystemPrompt();
+        if (registry != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, "chat.reply");
+            hits = counter(registry, "hit");
+            redisHits = counter(registry, "redis_hit");
+            misses = counter(registry, "miss");
+            bypassed = counter(registry, "bypass");
+        }
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("chat.reply_cache.requests")
+                .description("LLM reply lookups by outcome")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Override
+    public String generateReply(List<ChatMessage> history) {
+        String key = key(history);
+        if (key == null) {
+            increment(bypassed);
+            return delegate.generateReply(history);
+        }
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> reply = cache.get(key, (k, executor) -> mine);
+        if (reply != mine) {
+            increment(hits);
+            return join(reply);
+        }
+        try {
+            String cached = redis == null ? null : redis.get(key);
+            if (cached != null) {
+                increment(redisHits);
+                mine.complete(cached);
+                return cached;
+            }
+            increment(misses);
+            String generated = delegate.generateReply(history);
+            share(key, generated);
+            mine.complete(generated);
+            return generated;
+        } catch (RuntimeException | Error e) {
+            // Removes the entry, so the next request tries again
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+        return Mono.defer(() -> {
+            String key = key(history);
+            if (key == null) {
+                increment(bypassed);
+                return delegate.generateReplyAsync(history);
+            }
+            CompletableFuture<String> mine = new CompletableFuture<>();
+            CompletableFuture<String> reply = cache.get(key, (k, executor) -> mine);
+            if (reply != mine) {
+                increment(hits);
+                return Mono.fromFuture(reply, true);
+            }
+            Mono<String> fromRedis = redis == null ? Mono.empty() : redis.getAsync(key).doOnNext(cached -> increment(redisHits));
+            // Runs detached from this subscriber, so its cancellation leaves the call to finish for the others
+            // waiting on it; the reply is still cached
+            fromRedis
+                    .switchIfEmpty(Mono.defer(() -> {
+                        increment(misses);
+                        return delegate.generateReplyAsync(history).doOnNext(generated -> share(key, generated));
+                    }))
+                    .subscribe(mine::complete, mine::completeExceptionally, () -> mine.complete(null));
+            return Mono.fromFuture(mine, true);
+        });
+    }
+
+    @Override
+    public Flux<String> streamReply(List<ChatMessage> history) {
+        String key = key(history);
+        if (key == null) {
+            increment(bypassed);
+            return delegate.streamReply(history);
+        }
+        CompletableFuture<String> cached = cache.getIfPresent(key);
+        if (cached != null && cached.isDone() && !cached.isCompletedExceptionally()) {
+            increment(hits);
+            return Flux.just(cached.join());
+        }
+        // Requested right away, so an overloaded limiter rejects before the response starts; only subscribed on a
+        // miss. An identical request still in flight is not awaited: streaming it separately keeps the first delta early
+        Flux<String> generated = delegate.streamReply(history);
+        Mono<String> fromRedis = redis == null ? Mono.empty() : redis.getAsync(key).doOnNext(reply -> {
+            increment(redisHits);
+            cache.put(key, CompletableFuture.completedFuture(reply));
+        });
+        return fromRedis.flux().switchIfEmpty(Flux.defer(() -> {
+            increment(misses);
+            StringBuilder reply = new StringBuilder();
+            return generated
+                    .doOnNext(reply::append)
+                    .doOnComplete(() -> {
+                        cache.put(key, CompletableFuture.completedFuture(reply.toString()));
+                        share(key, reply.toString());
+                    });
+        }));
+    }
+
+    /**
+     * @return the cache key of the prompt, or null if it has no user turn or more than {@code context-turns}
+     */
+    String key(List<ChatMessage> history) {
+        long turns = history.stream().filter(m -> "user".equals(m.getRole())).count();
+        if (turns == 0 || turns > contextTurns) return null;
+        MessageDigest sha = sha256();
+        update(sha, model);
+        update(sha, Double.toString(temperature));
+        update(sha, Integer.toString(maxTokens));
+        for (ChatMessage message : history) {
+            if (!"system".equals(message.getRole())) {
+                update(sha, message.getRole());
+                update(sha, normalize(message.getContent()));
+            } else if (Objects.equals(message.getContent(), systemPrompt) || ContextWindowBuilder.isSummary(message)) {
+                update(sha, message.getRole());
+                update(sha, message.getContent());
+            }
+        }
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    static String normalize(String text) {
+        if (text == null) return "";
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").strip();
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+
+    private void share(String key, String reply) {
+        if (redis != null && reply != null) {
+            redis.put(key, reply);
+        }
+    }
+
+    private static void update(MessageDigest sha, String value) {
+        if (value != null) {
+            sha.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        sha.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String join(CompletableFuture<String> reply) {
+        try {
+            return reply.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) counter.increment();
+    }
+}
@@ -0,0 +1,205 @@
+package com.pidima.chatbot.services.llm;
+
+import com.pidima.chatbot.config.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker over LLM call attempts ({@code app.llm-resilience.circuit-breaker.*}).
+ * <p>
+ * While closed it records whether each of the last {@code window} attempts failed transiently. Once at least
+ * {@code min-calls} are recorded and the share of failures reaches {@code failure-rate}, it opens: attempts fail at once
+ * with an {@link OpenException} for {@code open-duration}. Then it lets {@code half-open-calls} trial attempts through;
+ * it closes when all of them succeed and opens again on the first failure.
+ */
+@Log4j2
+public class CircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final int minCalls;
+    private final double failureRate;
+    private final Duration openDuration;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoTime;
+
+    // Guarded by this
+    private final boolean[] outcomes; // ring buffer of the last attempts; true = failed
+    private int recorded;
+    private int next;
+    private int failures;
+    private State state = State.CLOSED;
+    private long generation; // incremented on every state change
+    private long openedAt;
+    private int trialsInFlight;
+    private int trialsSucceeded;
+
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+
+    public CircuitBreaker(AppProperties.LlmResilience.Breaker settings, MeterRegistry registry) {
+        this(settings, registry, System::nanoTime);
+    }
+
+    CircuitBreaker(AppProperties.LlmResilience.Breaker settings, MeterRegistry registry, LongSupplier nanoTime) {
+        this.outcomes = new boolean[Math.max(1, settings.getWindow())];
+        this.minCalls = Math.min(outcomes.length, Math.max(1, settings.getMinCalls()));
+        this.failureRate = settings.getFailureRate();
+        this.openDuration = settings.getOpenDuration();
+        this.halfOpenCalls = Math.max(1, settings.getHalfOpenCalls());
+        this.nanoTime = nanoTime;
+        if (registry != null) {
+            Gauge.builder("chat.llm.circuit.state", this, breaker -> breaker.getState().ordinal())
+                    .description("LLM circuit breaker state: 0 closed, 1 half-open, 2 open")
+                    .register(registry);
+            for (State target : State.values()) {
+                transitions.put(target, Counter.builder("chat.llm.circuit.transitions")
+                        .description("LLM circuit breaker state changes by target state")
+                        .tag("state", target.name().toLowerCase())
+                        .register(registry));
+            }
+        }
+    }
+
+    /**
+     * Call before each attempt and report its outcome on the returned handle.
+     *
+     * @throws OpenException while the breaker is open, or half-open with all trial calls in flight
+     */
+    public synchronized Attempt acquirePermission() {
+        if (state == State.OPEN) {
+            if (nanoTime.getAsLong() - openedAt < openDuration.toNanos()) {
+                throw new OpenException();
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsInFlight + trialsSucceeded >= halfOpenCalls) {
+                throw new OpenException();
+            }
+            trialsInFlight++;
+        }
+        return new Attempt(generation);
+    }
+
+    // Outcomes of attempts started before the last state change are ignored
+
+    private synchronized void succeeded(long attemptGeneration) {
+        if (attemptGeneration != generation) return;
+        if (state == State.HALF_OPEN) {
+            trialsInFlight--;
+            if (++trialsSucceeded >= halfOpenCalls) {
+                transition(State.CLOSED);
+            }
+        } else {
+            record(false);
+        }
+    }
+
+    private synchronized void failed(long attemptGeneration) {
+        if (attemptGeneration != generation) return;
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        } else {
+            record(true);
+            if (recorded >= minCalls && failures >= failureRate * recorded) {
+                transition(State.OPEN);
+            }
+        }
+    }
+
+    private synchronized void cancelled(long attemptGeneration) {
+        if (attemptGeneration == generation && state == State.HALF_OPEN) {
+            trialsInFlight--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    // Caller holds the lock
+    private void record(boolean failed) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) failures--;
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failed;
+        if (failed) failures++;
+        next = (next + 1) % outcomes.length;
+    }
+
+    // Caller holds the lock
+    private void transition(State target) {
+        if (target == State.OPEN && state == State.HALF_OPEN) {
+            log.warn("LLM circuit breaker reopened after a failed trial call; failing fast for {}", openDuration);
+        } else if (target == State.OPEN) {
+            log.warn("LLM circuit breaker opened after {} of {} attempts failed; failing fast for {}",
+                    failures, recorded, openDuration);
+        } else {
+            log.info("LLM circuit breaker is {}", target == State.CLOSED ? "closed" : "half-open");
+        }
+        if (target == State.OPEN) {
+            openedAt = nanoTime.getAsLong();
+        }
+        state = target;
+        generation++;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        trialsInFlight = 0;
+        trialsSucceeded = 0;
+        Counter counter = transitions.get(target);
+        if (counter != null) counter.increment();
+    }
+
+    /**
+     * Outcome of one permitted attempt; only the first report counts.
+     */
+    public final class Attempt {
+        private final long attemptGeneration;
+        private final AtomicBoolean reported = new AtomicBoolean();
+
+        private Attempt(long attemptGeneration) {
+            this.attemptGeneration = attemptGeneration;
+        }
+
+        /**
+         * The provider answered; also for answers that are errors of the request itself.
+         */
+        public void onSuccess() {
+            if (reported.compareAndSet(false, true)) succeeded(attemptGeneration);
+        }
+
+        /**
+         * The attempt failed transiently: a timeout, a connection error or a 5xx.
+         */
+        public void onFailure() {
+            if (reported.compareAndSet(false, true)) failed(attemptGeneration);
+        }
+
+        /**
+         * The attempt was abandoned without an outcome, e.g. a hedged attempt that lost.
+         */
+        public void onCancel() {
+            if (reported.compareAndSet(false, true)) cancelled(attemptGeneration);
+        }
+    }
+
+    /**
+     * An attempt was not made because the breaker is open.
+     */
+    public static class OpenException extends IllegalStateException {
+        public OpenException() {
+            super("LLM circuit breaker is open");
+        }
+    }
+}
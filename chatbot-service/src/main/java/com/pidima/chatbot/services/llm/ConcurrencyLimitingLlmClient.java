@@ -0,0 +1,67 @@
+package com.pidima.chatbot.services.llm;
+
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.services.LLMClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link LLMClient} decorator that runs every call under an {@link AdaptiveConcurrencyLimit} permit
+ * ({@code app.llm-limiter.enabled=true}). Shed calls fail with an {@link LlmOverloadedException}, which the API answers
+ * with 503 and {@code Retry-After}. A streamed call reports its time to the first delta as latency, since its total
+ * duration mostly depends on the reply length.
+ */
+public class ConcurrencyLimitingLlmClient implements LLMClient {
+    private final LLMClient delegate;
+    private final AdaptiveConcurrencyLimit limit;
+
+    public ConcurrencyLimitingLlmClient(LLMClient delegate, AdaptiveConcurrencyLimit limit) {
+        this.delegate = delegate;
+        this.limit = limit;
+    }
+
+    @Override
+    public String generateReply(List<ChatMessage> history) {
+        AdaptiveConcurrencyLimit.Permit permit = limit.acquireBlocking();
+        try {
+            String reply = delegate.generateReply(history);
+            permit.success();
+            return reply;
+        } catch (RuntimeException e) {
+            permit.failure(e);
+            throw e;
+        } finally {
+            permit.release();
+        }
+    }
+
+    @Override
+    public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+        // Cancelling while queued gives up the place in the queue
+        return Mono.fromFuture(limit::acquire, false)
+                .flatMap(permit -> delegate.generateReplyAsync(history)
+                        .doOnSuccess(reply -> permit.success())
+                        .doOnError(permit::failure)
+                        .doFinally(signal -> permit.release()));
+    }
+
+    @Override
+    public Flux<String> streamReply(List<ChatMessage> history) {
+        // Rejects before the response starts where possible; a call shed after queueing fails the stream
+        limit.checkAdmission();
+        return Mono.fromFuture(limit::acquire, false)
+                .flatMapMany(permit -> {
+                    AtomicBoolean first = new AtomicBoolean(true);
+                    return delegate.streamReply(history)
+                            .doOnNext(delta -> {
+                                if (first.compareAndSet(true, false)) permit.success();
+                            })
+                            .doOnComplete(permit::success)
+                            .doOnError(permit::failure)
+                            .doFinally(signal -> permit.release());
+                });
+    }
+}
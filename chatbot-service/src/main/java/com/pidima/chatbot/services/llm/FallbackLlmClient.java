@@ -0,0 +1,76 @@
+package com.pidima.chatbot.services.llm;
+
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.services.LLMClient;
+import lombok.extern.log4j.Log4j2;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Outermost {@link LLMClient} decorator: turns a failed call into a fixed apology reply, so a chat turn still completes
+ * when the LLM is unavailable. Every client and decorator below it signals failures as errors, so they can be retried
+ * and are never cached. A failed stream ends with the apology after whatever deltas it already emitted.
+ * <p>
+ * An {@link LlmOverloadedException} is passed on, so the client gets a 503 with {@code Retry-After} instead of an
+ * apology it cannot tell from a reply; a stream gets it when the call is rejected before the response starts, and
+ * otherwise fails with it.
+ */
+@Log4j2
+public class FallbackLlmClient implements LLMClient {
+    static final String FALLBACK_REPLY = "I'm having trouble reaching the LLM service right now.";
+
+    private final LLMClient delegate;
+
+    public FallbackLlmClient(LLMClient delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return whether the reply is the apology a failed call was answered with; compared by identity, so a model
+     * reply with the same text does not count
+     */
+    public static boolean isFallback(String reply) {
+        return reply == FALLBACK_REPLY;
+    }
+
+    /**
+     * @param client a client, possibly wrapped in this decorator
+     * @return the client below the fallback, which signals failures as errors; {@code client} itself if it is not a
+     * {@link FallbackLlmClient}
+     */
+    public static LLMClient withoutFallback(LLMClient client) {
+        return client instanceof FallbackLlmClient fallback ? fallback.delegate : client;
+    }
+
+    @Override
+    public String generateReply(List<ChatMessage> history) {
+        try {
+            return delegate.generateReply(history);
+        } catch (LlmOverloadedException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.error("LLM request failed: {}", e.getMessage());
+            return FALLBACK_REPLY;
+        }
+    }
+
+    @Override
+    public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+        return delegate.generateReplyAsync(history)
+                .onErrorResume(e -> !(e instanceof LlmOverloadedException), e -> {
+                    log.error("LLM request failed: {}", e.getMessage());
+                    return Mono.just(FALLBACK_REPLY);
+                });
+    }
+
+    @Override
+    public Flux<String> streamReply(List<ChatMessage> history) {
+        return delegate.streamReply(history)
+                .onErrorResume(e -> !(e instanceof LlmOverloadedException), e -> {
+                    log.error("LLM streaming request failed: {}", e.getMessage());
+                    return Flux.just(FALLBACK_REPLY);
+                });
+    }
+}
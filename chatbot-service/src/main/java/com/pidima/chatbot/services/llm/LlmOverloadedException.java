@@ -0,0 +1,29 @@
+package com.pidima.chatbot.services.llm;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * An LLM call was shed, either by the {@link AdaptiveConcurrencyLimit} or because the provider rate-limited it. Callers
+ * answer it with 503 and a {@code Retry-After} of {@link #getRetryAfter()}.
+ */
+public class LlmOverloadedException extends RejectedExecutionException {
+    private final Duration retryAfter;
+
+    public LlmOverloadedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return {@link #getRetryAfter()} in whole seconds, rounded up and at least 1
+     */
+    public long getRetryAfterSeconds() {
+        long millis = retryAfter.toMillis();
+        return Math.max(1, (millis + 999) / 1000);
+    }
+}
@@ -0,0 +1,13 @@
+package com.pidima.chatbot.services.llm;
+
+import java.time.Duration;
+
+/**
+ * The LLM provider answered 429; {@link #getRetryAfter()} is the wait it asked for.
+ */
+public class LlmRateLimitedException extends LlmOverloadedException {
+
+    public LlmRateLimitedException(String message, Duration retryAfter) {
+        super(message, retryAfter);
+    }
+}
@@ -0,0 +1,160 @@
+package com.pidima.chatbot.services.llm;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.services.BatchLLMClient;
+import com.pidima.chatbot.services.LLMClient;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LLMClient} decorator that collects concurrent non-streamed calls into batches
+ * ({@code app.llm-batching.enabled=true}) and sends each batch as one {@link BatchLLMClient} request, for self-hosted
+ * backends whose throughput grows with the batch size.
+ * <p>
+ * A batch is sent once it holds {@code max-batch-size} calls or {@code max-wait} after its first call, whichever comes
+ * first. Replies are handed back by position; when the batch request fails, every call in it fails. A batch of one goes
+ * through the provider's regular chat call, and streamed calls are not batched.
+ */
+@Log4j2
+public class MicroBatchingLlmClient implements LLMClient {
+    private final LLMClient delegate;
+    private final BatchLLMClient batchClient;
+    private final int maxBatchSize;
+    private final Duration maxWait;
+
+    // Guarded by this
+    private List<Pending> pending = new ArrayList<>();
+
+    private final DistributionSummary batchSize;
+    private final Timer batchLatency;
+    private final Timer batchWait;
+
+    public MicroBatchingLlmClient(LLMClient delegate, BatchLLMClient batchClient, AppProperties.LlmBatching settings,
+                                  MeterRegistry registry) {
+        this.delegate = delegate;
+        this.batchClient = batchClient;
+        this.maxBatchSize = Math.max(1, settings.getMaxBatchSize());
+        this.maxWait = settings.getMaxWait();
+        if (registry != null) {
+            this.batchSize = DistributionSummary.builder("chat.llm.batch.size")
+                    .description("Calls per batch sent to the LLM provider")
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.batchLatency = Timer.builder("chat.llm.batch.latency")
+                    .description("Duration of batch requests to the LLM provider")
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.batchWait = Timer.builder("chat.llm.batch.wait")
+                    .description("Time a call waits for its batch to be sent")
+                    .publishPercentileHistogram()
+                    .register(registry);
+        } else {
+            this.batchSize = null;
+            this.batchLatency = null;
+            this.batchWait = null;
+        }
+    }
+
+    @Override
+    public String generateReply(List<ChatMessage> history) {
+        return generateReplyAsync(history).block();
+    }
+
+    @Override
+    public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+        // Cancelling before the batch is sent leaves the call out of it
+        return Mono.fromFuture(() -> enqueue(history), false);
+    }
+
+    @Override
+    public Flux<String> streamReply(List<ChatMessage> history) {
+        return delegate.streamReply(history);
+    }
+
+    private CompletableFuture<String> enqueue(List<ChatMessage> history) {
+        Pending call = new Pending(history, System.nanoTime(), new CompletableFuture<>());
+        List<Pending> full = null;
+        synchronized (this) {
+            List<Pending> batch = pending;
+            batch.add(call);
+            if (batch.size() >= maxBatchSize) {
+                full = batch;
+                pending = new ArrayList<>();
+            } else if (batch.size() == 1) {
+                CompletableFuture.delayedExecutor(maxWait.toNanos(), TimeUnit.NANOSECONDS)
+                        .execute(() -> flushIfPending(batch));
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return call.reply();
+    }
+
+    private void flushIfPending(List<Pending> batch) {
+        synchronized (this) {
+            // Already sent when it filled up
+            if (pending != batch) return;
+            pending = new ArrayList<>();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(List<Pending> batch) {
+        long sentAt = System.nanoTime();
+        List<Pending> calls = batch.stream().filter(call -> !call.reply().isDone()).toList();
+        if (calls.isEmpty()) return;
+        if (batchSize != null) {
+            batchSize.record(calls.size());
+            calls.forEach(call -> batchWait.record(sentAt - call.enqueuedAt(), TimeUnit.NANOSECONDS));
+        }
+        Mono<List<String>> replies = calls.size() == 1
+                ? delegate.generateReplyAsync(calls.get(0).history()).map(List::of)
+                : batchClient.generateReplies(calls.stream().map(Pending::history).toList());
+        replies.subscribe(
+                results -> {
+                    recordLatency(sentAt);
+                    if (results.size() != calls.size()) {
+                        failAll(calls, new IllegalStateException("Batch of " + calls.size() + " LLM calls got "
+                                + results.size() + " replies"));
+                        return;
+                    }
+                    for (int i = 0; i < calls.size(); i++) {
+                        calls.get(i).reply().complete(results.get(i));
+                    }
+                },
+                error -> {
+                    recordLatency(sentAt);
+                    log.debug("Batch of {} LLM calls failed: {}", calls.size(), error.toString());
+                    failAll(calls, error);
+                },
+                () -> {
+                    // Completed without replies
+                    failAll(calls, new IllegalStateException("Empty response for a batch of LLM calls"));
+                });
+    }
+
+    private void recordLatency(long sentAt) {
+        if (batchLatency != null) {
+            batchLatency.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void failAll(List<Pending> calls, Throwable error) {
+        calls.forEach(call -> call.reply().completeExceptionally(error));
+    }
+
+    private record Pending(List<ChatMessage> history, long enqueuedAt, CompletableFuture<String> reply) {
+    }
+}
@@ -0,0 +1,128 @@
+package com.pidima.chatbot.services.llm;
+
+import com.pidima.chatbot.config.AppProperties;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.StringCodec;
+import lombok.extern.log4j.Log4j2;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Shared tier of the reply cache in Redis ({@code app.reply-cache.redis.enabled=true}): replies are stored under
+ * {@code key-prefix + key} with the cache TTL, so every instance can serve a reply any instance generated.
+ * <p>
+ * Redis only saves LLM calls and never fails one: lookups that take longer than {@code timeout} or fail count as
+ * misses, writes are not awaited, and while Redis is unreachable lookups miss immediately and a reconnect is attempted
+ * at most every {@value #RECONNECT_DELAY_MS} ms. An established connection reconnects by itself.
+ */
+@Log4j2
+public class RedisReplyCache implements AutoCloseable {
+    private static final long RECONNECT_DELAY_MS = 5_000;
+
+    private final RedisClient client;
+    private final RedisURI uri;
+    private final String keyPrefix;
+    private final Duration timeout;
+    private final SetArgs expiry;
+    private volatile CompletableFuture<StatefulRedisConnection<String, String>> connection;
+    private volatile long nextConnectAt;
+
+    public RedisReplyCache(AppProperties.ReplyCache settings) {
+        AppProperties.ReplyCache.Redis redis = settings.getRedis();
+        this.uri = RedisURI.builder()
+                .withHost(redis.getHost())
+                .withPort(redis.getPort())
+                .withTimeout(redis.getTimeout())
+                .build();
+        this.client = RedisClient.create();
+        this.keyPrefix = redis.getKeyPrefix();
+        this.timeout = redis.getTimeout();
+        this.expiry = SetArgs.Builder.px(settings.getTtl().toMillis());
+        this.connection = connect();
+    }
+
+    /**
+     * @return the cached reply, or null on a miss, a timeout or any failure
+     */
+    public String get(String key) {
+        StatefulRedisConnection<String, String> redis = connection();
+        if (redis == null) return null;
+        try {
+            return redis.async().get(keyPrefix + key).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException | RuntimeException e) {
+            log.debug("Redis reply cache lookup failed: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #get}; empty on a miss, a timeout or any failure.
+     */
+    public Mono<String> getAsync(String key) {
+        return Mono.defer(() -> {
+            StatefulRedisConnection<String, String> redis = connection();
+            if (redis == null) return Mono.empty();
+            return Mono.fromCompletionStage(redis.async().get(keyPrefix + key))
+                    .timeout(timeout)
+                    .onErrorResume(e -> {
+                        log.debug("Redis reply cache lookup failed: {}", e.toString());
+                        return Mono.empty();
+                    });
+        });
+    }
+
+    /**
+     * Stores a reply in the background.
+     */
+    public void put(String key, String reply) {
+        StatefulRedisConnection<String, String> redis = connection();
+        if (redis == null) return;
+        redis.async().set(keyPrefix + key, reply, expiry).exceptionally(e -> {
+            log.debug("Redis reply cache write failed: {}", e.toString());
+            return null;
+        });
+    }
+
+    /**
+     * @return the open connection, or null while (re)connecting or after a failed attempt
+     */
+    private StatefulRedisConnection<String, String> connection() {
+        CompletableFuture<StatefulRedisConnection<String, String>> current = connection;
+        if (!current.isDone()) return null;
+        if (!current.isCompletedExceptionally()) return current.join();
+        if (System.currentTimeMillis() >= nextConnectAt) {
+            synchronized (this) {
+                if (connection == current) {
+                    connection = connect();
+                }
+            }
+        }
+        return null;
+    }
+
+    private CompletableFuture<StatefulRedisConnection<String, String>> connect() {
+        nextConnectAt = System.currentTimeMillis() + RECONNECT_DELAY_MS;
+        return client.connectAsync(StringCodec.UTF8, uri).toCompletableFuture().whenComplete((redis, e) -> {
+            if (e != null) {
+                log.warn("Redis reply cache at {}:{} is unavailable: {}", uri.getHost(), uri.getPort(), e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        connection.thenAccept(StatefulRedisConnection::close);
+        client.shutdown();
+    }
+}
@@ -0,0 +1,359 @@
+package com.pidima.chatbot.services.llm;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.services.LLMClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * {@link LLMClient} decorator that retries, hedges and circuit-breaks calls ({@code app.llm-resilience.*}).
+ * <p>
+ * Transient failures (timeouts, connection errors, 5xx) are retried up to {@code max-attempts} times after an
+ * exponential backoff with jitter, capped at {@code max-backoff}. A 429 is retried after the wait the provider asked
+ * for if that is within {@code max-backoff}; otherwise it is passed on. Other failures, and calls shed by the
+ * concurrency limiter, are not retried. A stream is only retried until its first delta.
+ * <p>
+ * With hedging enabled, a non-streamed call that takes longer than the {@code percentile} latency of recent calls (at
+ * least {@code min-delay}) gets a second attempt; the first reply wins and the other attempt is cancelled. Every
+ * attempt, hedged or retried, asks the {@link CircuitBreaker} first, so an open breaker fails calls at once.
+ * <p>
+ * Calls are timed in {@code chat.llm.requests}, tagged
+ * {@code outcome=success|retried_success|failure|rejected|short_circuited}; retries and hedges are counted in
+ * {@code chat.llm.retries} and {@code chat.llm.hedges} ({@code result=started|won}).
+ */
+@Log4j2
+public class ResilientLlmClient implements LLMClient {
+    private static final int MIN_HEDGE_SAMPLES = 20;
+
+    private final LLMClient delegate;
+    private final CircuitBreaker breaker; // null: disabled
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final Duration maxBackoff;
+    private final LatencyWindow latencies; // null: no hedging
+    private final double hedgePercentile;
+    private final Duration minHedgeDelay;
+
+    private final Map<String, Timer> outcomes = new HashMap<>();
+    private Counter retries;
+    private Counter hedgesStarted;
+    private Counter hedgesWon;
+
+    public ResilientLlmClient(LLMClient delegate, AppProperties.LlmResilience settings, CircuitBreaker breaker,
+                              MeterRegistry registry) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+        this.maxAttempts = Math.max(1, settings.getMaxAttempts());
+        this.initialBackoffNanos = settings.getInitialBackoff().toNanos();
+        this.maxBackoff = settings.getMaxBackoff();
+        AppProperties.LlmResilience.Hedging hedging = settings.getHedging();
+        this.latencies = hedging.isEnabled() ? new LatencyWindow(hedging.getWindow()) : null;
+        this.hedgePercentile = hedging.getPercentile();
+        this.minHedgeDelay = hedging.getMinDelay();
+        if (registry != null) {
+            for (String outcome : List.of("success", "retried_success", "failure", "rejected", "short_circuited")) {
+                outcomes.put(outcome, Timer.builder("chat.llm.requests")
+                        .description("LLM calls including retries and hedges, by outcome")
+                        .tag("outcome", outcome)
+                        .register(registry));
+            }
+            retries = Counter.builder("chat.llm.retries")
+                    .description("LLM call attempts repeated after a failure")
+                    .register(registry);
+            hedgesStarted = hedges(registry, "started");
+            hedgesWon = hedges(registry, "won");
+        }
+    }
+
+    private static Counter hedges(MeterRegistry registry, String result) {
+        return Counter.builder("chat.llm.hedges")
+                .description("Hedged LLM call attempts")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Override
+    public String generateReply(List<ChatMessage> history) {
+        if (latencies != null) {
+            // Hedging needs a second attempt running alongside the first
+            return generateReplyAsync(history).block();
+        }
+        long start = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                String reply = attempt(history);
+                record(attempt > 1 ? "retried_success" : "success", start);
+                return reply;
+            } catch (RuntimeException e) {
+                Duration backoff = attempt < maxAttempts ? backoff(e, attempt) : null;
+                if (backoff == null) {
+                    record(outcome(e), start);
+                    throw e;
+                }
+                retrying(e, attempt, backoff);
+                try {
+                    TimeUnit.NANOSECONDS.sleep(backoff.toNanos());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    record(outcome(e), start);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            AtomicInteger attempts = new AtomicInteger();
+            Mono<String> call = latencies != null ? hedged(history) : attemptAsync(history);
+            return call
+                    .doOnSubscribe(subscription -> attempts.incrementAndGet())
+                    .retryWhen(retry(attempts, () -> true))
+                    .doOnSuccess(reply -> record(attempts.get() > 1 ? "retried_success" : "success", start))
+                    .doOnError(e -> record(outcome(e), start));
+        });
+    }
+
+    @Override
+    public Flux<String> streamReply(List<ChatMessage> history) {
+        // The first attempt is requested right away, so an overloaded limiter rejects before the response starts
+        Flux<String> first = delegate.streamReply(history);
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicInteger attempts = new AtomicInteger();
+            AtomicBoolean emitted = new AtomicBoolean();
+            return Flux.defer(() -> attemptStream(attempts.incrementAndGet() == 1 ? first : delegate.streamReply(history)))
+                    .doOnNext(delta -> emitted.set(true))
+                    // Retrying after a delta would repeat the reply's beginning
+                    .retryWhen(retry(attempts, () -> !emitted.get()))
+                    .doOnComplete(() -> record(attempts.get() > 1 ? "retried_success" : "success", start))
+                    .doOnError(e -> record(outcome(e), start));
+        });
+    }
+
+    private String attempt(List<ChatMessage> history) {
+        CircuitBreaker.Attempt permit = permit();
+        long start = System.nanoTime();
+        try {
+            String reply = delegate.generateReply(history);
+            succeeded(permit, start);
+            return reply;
+        } catch (RuntimeException e) {
+            failed(permit, e);
+            throw e;
+        }
+    }
+
+    private Mono<String> attemptAsync(List<ChatMessage> history) {
+        return Mono.defer(() -> {
+            CircuitBreaker.Attempt permit = permit();
+            long start = System.nanoTime();
+            return delegate.generateReplyAsync(history)
+                    .doOnSuccess(reply -> succeeded(permit, start))
+                    .doOnError(e -> failed(permit, e))
+                    .doOnCancel(() -> cancelled(permit));
+        });
+    }
+
+    private Flux<String> attemptStream(Flux<String> stream) {
+        CircuitBreaker.Attempt permit = permit();
+        return stream
+                // Stream durations depend on the reply length, so they are not sampled for hedging
+                .doOnComplete(() -> succeeded(permit, -1))
+                .doOnError(e -> failed(permit, e))
+                .doOnCancel(() -> cancelled(permit));
+    }
+
+    /**
+     * Runs a second attempt if the first takes longer than the hedge delay; the first reply wins. Fails only when
+     * every started attempt failed, with the last failure.
+     */
+    private Mono<String> hedged(List<ChatMessage> history) {
+        return Mono.defer(() -> {
+            Duration delay = hedgeDelay();
+            if (delay == null) return attemptAsync(history);
+            Mono<String> attempt = attemptAsync(history)
+                    .switchIfEmpty(Mono.error(() -> new IllegalStateException("Empty LLM reply")));
+            return Mono.create(sink -> {
+                Disposable.Composite running = Disposables.composite();
+                AtomicInteger inFlight = new AtomicInteger(1);
+                AtomicBoolean finished = new AtomicBoolean();
+                sink.onCancel(running);
+                class Race {
+                    void win(String reply, boolean hedge) {
+                        if (!finished.compareAndSet(false, true)) return;
+                        if (hedge) increment(hedgesWon);
+                        running.dispose();
+                        sink.success(reply);
+                    }
+
+                    void lose(Throwable e) {
+                        if (inFlight.decrementAndGet() == 0 && finished.compareAndSet(false, true)) {
+                            running.dispose();
+                            sink.error(e);
+                        }
+                    }
+                }
+                Race race = new Race();
+                running.add(attempt.subscribe(reply -> race.win(reply, false), race::lose));
+                running.add(Mono.delay(delay).subscribe(tick -> {
+                    inFlight.incrementAndGet();
+                    if (finished.get()) return;
+                    increment(hedgesStarted);
+                    running.add(attempt.subscribe(reply -> race.win(reply, true), race::lose));
+                }));
+            });
+        });
+    }
+
+    private Retry retry(AtomicInteger attempts, BooleanSupplier allowed) {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            int attempt = attempts.get();
+            Duration backoff = attempt < maxAttempts && allowed.getAsBoolean() ? backoff(signal.failure(), attempt) : null;
+            if (backoff == null) return Mono.error(signal.failure());
+            retrying(signal.failure(), attempt, backoff);
+            return Mono.delay(backoff);
+        }));
+    }
+
+    /**
+     * @return the wait before the next attempt, or null if the failure is not worth retrying
+     */
+    private Duration backoff(Throwable error, int attempt) {
+        long jitterNanos = ThreadLocalRandom.current().nextLong(initialBackoffNanos + 1);
+        if (error instanceof LlmRateLimitedException rateLimited) {
+            Duration wait = rateLimited.getRetryAfter();
+            return wait.compareTo(maxBackoff) <= 0 ? wait.plusNanos(jitterNanos) : null;
+        }
+        if (!isTransient(error)) return null;
+        long cap = Math.min(maxBackoff.toNanos(), initialBackoffNanos << Math.min(attempt - 1, 20));
+        // Equal jitter: at least half the exponential step, so retries never bunch up at zero
+        return Duration.ofNanos(cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1));
+    }
+
+    private void retrying(Throwable error, int attempt, Duration backoff) {
+        log.debug("LLM attempt {} failed ({}); retrying in {} ms", attempt, error.toString(), backoff.toMillis());
+        increment(retries);
+    }
+
+    /**
+     * @return true for failures that a later attempt may not hit: timeouts, connection errors and 5xx responses
+     */
+    static boolean isTransient(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof LlmOverloadedException || e instanceof CircuitBreaker.OpenException) return false;
+            if (e instanceof TimeoutException || e instanceof IOException
+                    || e instanceof WebClientRequestException || e instanceof ResourceAccessException) return true;
+            if (e instanceof WebClientResponseException response) return response.getStatusCode().is5xxServerError();
+            if (e instanceof RestClientResponseException response) return response.getStatusCode().is5xxServerError();
+        }
+        return false;
+    }
+
+    private Duration hedgeDelay() {
+        long percentile = latencies.percentile(hedgePercentile, MIN_HEDGE_SAMPLES);
+        if (percentile < 0) return null;
+        return Duration.ofNanos(Math.max(percentile, minHedgeDelay.toNanos()));
+    }
+
+    private CircuitBreaker.Attempt permit() {
+        return breaker != null ? breaker.acquirePermission() : null;
+    }
+
+    private void succeeded(CircuitBreaker.Attempt permit, long startNanos) {
+        if (permit != null) permit.onSuccess();
+        if (latencies != null && startNanos >= 0) latencies.add(System.nanoTime() - startNanos);
+    }
+
+    private void failed(CircuitBreaker.Attempt permit, Throwable error) {
+        if (permit == null) return;
+        if (isTransient(error)) {
+            permit.onFailure();
+        } else if (error instanceof LlmOverloadedException && !(error instanceof LlmRateLimitedException)) {
+            // Shed by the limiter before it reached the provider
+            permit.onCancel();
+        } else {
+            // The provider answered
+            permit.onSuccess();
+        }
+    }
+
+    private static void cancelled(CircuitBreaker.Attempt permit) {
+        if (permit != null) permit.onCancel();
+    }
+
+    private static String outcome(Throwable error) {
+        if (error instanceof CircuitBreaker.OpenException) return "short_circuited";
+        if (error instanceof LlmOverloadedException) return "rejected";
+        return "failure";
+    }
+
+    private void record(String outcome, long startNanos) {
+        Timer timer = outcomes.get(outcome);
+        if (timer != null) timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) counter.increment();
+    }
+
+    /**
+     * Latencies of the most recent successful attempts.
+     */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private int size;
+        private int next;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[Math.max(1, capacity)];
+        }
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            if (size < samples.length) size++;
+        }
+
+        /**
+         * @return the given percentile in nanos, or -1 with fewer than {@code minSamples} samples
+         */
+        long percentile(double percentile, int minSamples) {
+            long[] sorted;
+            synchronized (this) {
+                if (size < Math.min(minSamples, samples.length)) return -1;
+                sorted = Arrays.copyOf(samples, size);
+            }
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+}
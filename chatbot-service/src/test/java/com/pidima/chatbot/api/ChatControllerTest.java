@@ -11,6 +11,8 @@ import org.springframework.http.MediaType;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -28,6 +30,9 @@ class ChatControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private WebApplicationContext context;
+
     @Test
     void createSessionAndSendMessageAndGetHistory() throws Exception {
         // Create session
@@ -62,6 +67,42 @@ class ChatControllerTest {
                 .andExpect(jsonPath("$[0].role").exists());
     }
 
+    @Test
+    void streamMessageEmitsDeltasAndPersistsAssembledReply() throws Exception {
+        MvcResult createResult = mockMvc.perform(post("/chat/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new CreateSessionRequest())))
+                .andExpect(status().isOk())
+                .andReturn();
+        String sessionId = objectMapper.readTree(createResult.getResponse().getContentAsString())
+                .get("sessionId").asText();
+
+        ChatMessageRequest cmr = new ChatMessageRequest();
+        cmr.setSessionId(sessionId);
+        cmr.setMessage("Stream me a reply");
+
+        // Without the auto-configured result printer: it reads the response headers while the SSE dispatch still
+        // writes them
+        MockMvc streamingMockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+        MvcResult streamResult = streamingMockMvc.perform(post("/chat/message/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .content(objectMapper.writeValueAsString(cmr)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        streamingMockMvc.perform(asyncDispatch(streamResult))
+                .andExpect(status().isOk());
+
+        String body = streamResult.getResponse().getContentAsString();
+        assertThat(body).contains("event:delta").contains("event:done");
+        assertThat(body).contains("\"reply\":\"You said: 'Stream me a reply'. (turn 1)\"");
+
+        mockMvc.perform(get("/chat/history/" + sessionId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[-1].role").value("assistant"))
+                .andExpect(jsonPath("$[-1].content").value("You said: 'Stream me a reply'. (turn 1)"));
+    }
+
     @Test
     void validationShouldFailForEmptyMessage() throws Exception {
         ChatMessageRequest cmr = new ChatMessageRequest();
@@ -73,4 +114,81 @@ class ChatControllerTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.error").value("Validation Failed"));
     }
+
+    @Test
+    void historyIsPagedByCursorAndPolledIncrementally() throws Exception {
+        MvcResult createResult = mockMvc.perform(post("/chat/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"pager\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        String sessionId = objectMapper.readTree(createResult.getResponse().getContentAsString())
+                .get("sessionId").asText();
+        for (int i = 1; i <= 2; i++) {
+            mockMvc.perform(post("/chat/message")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"sessionId\":\"" + sessionId + "\",\"message\":\"m" + i + "\"}"))
+                    .andExpect(status().isOk());
+        }
+
+        // Latest two messages: the second turn
+        MvcResult latest = mockMvc.perform(get("/chat/history/" + sessionId).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].content").value("m2"))
+                .andExpect(header().string("X-Has-More", "true"))
+                .andReturn();
+        String first = latest.getResponse().getHeader("X-First-Cursor");
+        String last = latest.getResponse().getHeader("X-Last-Cursor");
+
+        // Everything older than the page: system message and the first turn
+        mockMvc.perform(get("/chat/history/" + sessionId).param("before", first))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].role").value("system"))
+                .andExpect(header().string("X-Has-More", "false"));
+
+        // Nothing new yet; polling an existing session is not a 404
+        mockMvc.perform(get("/chat/history/" + sessionId).param("after", last))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0))
+                .andExpect(header().doesNotExist("X-Last-Cursor"));
+
+        mockMvc.perform(get("/chat/history/" + sessionId).param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/chat/history/" + sessionId).param("since", "2000-01-01T00:00:00Z").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].role").value("system"));
+    }
+
+    @Test
+    void historyStreamsAsNdjsonWhenRequested() throws Exception {
+        MvcResult createResult = mockMvc.perform(post("/chat/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"ndjson\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        String sessionId = objectMapper.readTree(createResult.getResponse().getContentAsString())
+                .get("sessionId").asText();
+        mockMvc.perform(post("/chat/message")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"sessionId\":\"" + sessionId + "\",\"message\":\"hi\"}"))
+                .andExpect(status().isOk());
+
+        MvcResult started = mockMvc.perform(get("/chat/history/" + sessionId).accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(objectMapper.readTree(lines[0]).get("role").asText()).isEqualTo("system");
+        assertThat(objectMapper.readTree(lines[2]).get("content").asText()).isEqualTo("You said: 'hi'. (turn 1)");
+
+        mockMvc.perform(get("/chat/history/missing-session").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isNotFound());
+    }
 }
@@ -2,16 +2,22 @@ package com.pidima.chatbot.api;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringBootTest
+// Without DynamoDB: the store would lease its sort key node id at startup
+@SpringBootTest(properties = "app.persistence=memory")
 @AutoConfigureMockMvc
+// Test contexts skip metrics export otherwise
+@AutoConfigureObservability
 class HealthControllerTest {
 
     @Autowired
@@ -23,4 +29,12 @@ class HealthControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value("UP"));
     }
+
+    @Test
+    void prometheusScrapeShouldIncludeChatTurnHistograms() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(
+                        "chat_turn_stage_seconds_bucket{application=\"chatbot-service\",outcome=\"success\",stage=\"llm\"")));
+    }
 }
@@ -0,0 +1,99 @@
+package com.pidima.chatbot.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pidima.chatbot.services.LLMClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * A saturated LLM limiter answers a streamed message with a 503 before the stream starts, also through the reply
+ * cache, whose streams are assembled lazily.
+ */
+@SpringBootTest(properties = {
+        "app.llm-provider=blocking",
+        "app.reply-cache.enabled=true",
+        "app.llm-limiter.enabled=true",
+        "app.llm-limiter.initial-limit=1",
+        "app.llm-limiter.min-limit=1",
+        "app.llm-limiter.max-limit=1",
+        "app.llm-limiter.max-queue=0"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(LlmOverloadControllerTest.BlockingLlmConfig.class)
+class LlmOverloadControllerTest {
+    private static final CountDownLatch CALLED = new CountDownLatch(1);
+    private static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @TestConfiguration
+    static class BlockingLlmConfig {
+        @Bean
+        LLMClient blockingLlmClient() {
+            return history -> {
+                CALLED.countDown();
+                try {
+                    RELEASE.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "reply";
+            };
+        }
+    }
+
+    @Test
+    void stream_is_rejected_with_503_while_the_limiter_is_saturated() throws Exception {
+        String sessionId = objectMapper.readTree(mockMvc.perform(post("/chat/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString()).get("sessionId").asText();
+
+        // Holds the only slot
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return mockMvc.perform(post("/chat/message")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"sessionId\":\"" + sessionId + "\",\"message\":\"first\"}"))
+                        .andReturn().getResponse().getStatus();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(CALLED.await(10, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            mockMvc.perform(post("/chat/message/stream")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(MediaType.TEXT_EVENT_STREAM)
+                            .content("{\"sessionId\":\"" + sessionId + "\",\"message\":\"second\"}"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().exists("Retry-After"));
+        } finally {
+            RELEASE.countDown();
+        }
+        assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo(200);
+    }
+}
@@ -0,0 +1,109 @@
+package com.pidima.chatbot.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pidima.chatbot.models.dto.ChatMessageRequest;
+import com.pidima.chatbot.models.dto.CreateSessionRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "app.execution-mode=reactive")
+@AutoConfigureMockMvc
+@org.springframework.test.context.ActiveProfiles("test")
+@Import(com.pidima.chatbot.config.TestPersistenceConfig.class)
+class ReactiveChatControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void createSessionAndSendMessageAndGetHistory() throws Exception {
+        CreateSessionRequest csr = new CreateSessionRequest();
+        csr.setUserId("user-123");
+        MvcResult createResult = mockMvc.perform(asyncDispatch(mockMvc.perform(post("/chat/session")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(csr)))
+                        .andExpect(request().asyncStarted())
+                        .andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessionId").exists())
+                .andReturn();
+        String sessionId = objectMapper.readTree(createResult.getResponse().getContentAsString())
+                .get("sessionId").asText();
+
+        ChatMessageRequest cmr = new ChatMessageRequest();
+        cmr.setSessionId(sessionId);
+        cmr.setMessage("How do I deploy on AWS?");
+        mockMvc.perform(asyncDispatch(mockMvc.perform(post("/chat/message")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(cmr)))
+                        .andExpect(request().asyncStarted())
+                        .andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessionId").value(sessionId))
+                .andExpect(jsonPath("$.reply").value("You said: 'How do I deploy on AWS?'. (turn 1)"));
+
+        mockMvc.perform(asyncDispatch(mockMvc.perform(get("/chat/history/" + sessionId))
+                        .andExpect(request().asyncStarted())
+                        .andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].role").value("system"))
+                .andExpect(jsonPath("$[2].role").value("assistant"));
+    }
+
+    @Test
+    void streamMessageEmitsDeltasAndDoneEvent() throws Exception {
+        MvcResult createResult = mockMvc.perform(asyncDispatch(mockMvc.perform(post("/chat/session")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(new CreateSessionRequest())))
+                        .andReturn()))
+                .andReturn();
+        String sessionId = objectMapper.readTree(createResult.getResponse().getContentAsString())
+                .get("sessionId").asText();
+
+        ChatMessageRequest cmr = new ChatMessageRequest();
+        cmr.setSessionId(sessionId);
+        cmr.setMessage("Stream me a reply");
+        MvcResult streamResult = mockMvc.perform(post("/chat/message/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .content(objectMapper.writeValueAsString(cmr)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // The Mono resolves to a ResponseEntity whose Flux body starts a second async cycle
+        MvcResult eventsResult = mockMvc.perform(asyncDispatch(streamResult))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(eventsResult))
+                .andExpect(status().isOk());
+
+        String body = eventsResult.getResponse().getContentAsString();
+        assertThat(body).contains("event:delta").contains("event:done");
+        assertThat(body).contains("\"reply\":\"You said: 'Stream me a reply'. (turn 1)\"");
+    }
+
+    @Test
+    void unknownSessionReturnsNotFound() throws Exception {
+        ChatMessageRequest cmr = new ChatMessageRequest();
+        cmr.setSessionId("missing-session");
+        cmr.setMessage("Hello");
+        mockMvc.perform(asyncDispatch(mockMvc.perform(post("/chat/message")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(cmr)))
+                        .andReturn()))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Not Found"));
+    }
+}
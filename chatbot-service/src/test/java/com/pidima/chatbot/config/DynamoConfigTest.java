@@ -0,0 +1,27 @@
+package com.pidima.chatbot.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import software.amazon.awssdk.http.SdkHttpClient;
+
+public class DynamoConfigTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"apache", "url-connection", "crt"})
+    void every_supported_http_client_builds_from_the_settings(String httpClient) {
+        AppProperties.Dynamo dynamo = new AppProperties.Dynamo();
+        dynamo.setHttpClient(httpClient);
+        try (SdkHttpClient client = DynamoConfig.httpClientBuilder(dynamo).build()) {
+            Assertions.assertNotNull(client.clientName());
+        }
+    }
+
+    @Test
+    void unknown_http_client_is_rejected() {
+        AppProperties.Dynamo dynamo = new AppProperties.Dynamo();
+        dynamo.setHttpClient("okhttp");
+        Assertions.assertThrows(IllegalStateException.class, () -> DynamoConfig.httpClientBuilder(dynamo));
+    }
+}
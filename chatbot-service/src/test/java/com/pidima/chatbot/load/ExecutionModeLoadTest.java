@@ -0,0 +1,133 @@
+package com.pidima.chatbot.load;
+
+import com.pidima.chatbot.ChatbotServiceApplication;
+import com.pidima.chatbot.config.TestPersistenceConfig;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the platform-thread default ({@code app.execution-mode=blocking}) with virtual threads
+ * ({@code app.execution-mode=virtual}) while the dummy LLM adds 2–5s of latency per reply.
+ * <p>
+ * For each mode the service is started on a random port and driven with increasing numbers of concurrent sessions,
+ * each sending one message. The test reports p99 latency per level and the highest level whose p99 stays within
+ * {@link #P99_BUDGET} (the maximum number of concurrent sessions served without queueing behind the worker pool).
+ * <p>
+ * Excluded from the default build; run with {@code mvn test -Pload-test}.
+ */
+@Tag("load")
+class ExecutionModeLoadTest {
+
+    private static final int[] CONCURRENCY_LEVELS = {100, 200, 400, 800};
+    private static final Duration P99_BUDGET = Duration.ofMillis(6_000);
+    private static final Pattern SESSION_ID = Pattern.compile("\"sessionId\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    @Test
+    void virtualThreadsServeMoreConcurrentSessionsThanPlatformThreads() throws Exception {
+        List<LevelResult> platform = runMode("blocking");
+        List<LevelResult> virtual = runMode("virtual");
+
+        System.out.println("concurrency | platform p99 (ms) | virtual p99 (ms)");
+        for (int i = 0; i < CONCURRENCY_LEVELS.length; i++) {
+            System.out.printf("%11d | %17d | %16d%n", CONCURRENCY_LEVELS[i], platform.get(i).p99Millis(), virtual.get(i).p99Millis());
+        }
+        System.out.printf("max concurrent sessions within p99 budget of %d ms: platform=%d, virtual=%d%n",
+                P99_BUDGET.toMillis(), maxWithinBudget(platform), maxWithinBudget(virtual));
+
+        platform.forEach(r -> Assertions.assertEquals(0, r.failures(), "platform failures at " + r.concurrency()));
+        virtual.forEach(r -> Assertions.assertEquals(0, r.failures(), "virtual failures at " + r.concurrency()));
+        Assertions.assertTrue(maxWithinBudget(virtual) >= maxWithinBudget(platform));
+    }
+
+    private List<LevelResult> runMode(String executionMode) throws Exception {
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(ChatbotServiceApplication.class, TestPersistenceConfig.class)
+                .profiles("test")
+                // Command-line arguments, so they take precedence over application.yml
+                .run("--server.port=0",
+                        "--app.execution-mode=" + executionMode,
+                        "--app.dummy-latency-min-ms=2000",
+                        "--app.dummy-latency-max-ms=5000")) {
+            int port = ((ServletWebServerApplicationContext) ctx).getWebServer().getPort();
+            String baseUrl = "http://localhost:" + port;
+            List<LevelResult> results = new ArrayList<>();
+            for (int concurrency : CONCURRENCY_LEVELS) {
+                results.add(runLevel(baseUrl, concurrency));
+            }
+            return results;
+        }
+    }
+
+    private LevelResult runLevel(String baseUrl, int concurrency) throws Exception {
+        List<String> sessions = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            HttpResponse<String> created = http.send(post(baseUrl + "/chat/session", "{}"), HttpResponse.BodyHandlers.ofString());
+            Matcher m = SESSION_ID.matcher(created.body());
+            Assertions.assertTrue(m.find(), "no session id in " + created.body());
+            sessions.add(m.group(1));
+        }
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>(concurrency));
+        int failures = 0;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Boolean>> calls = new ArrayList<>(concurrency);
+            for (String sessionId : sessions) {
+                calls.add(clients.submit(() -> {
+                    long start = System.nanoTime();
+                    HttpResponse<String> resp = http.send(post(baseUrl + "/chat/message",
+                            "{\"sessionId\":\"" + sessionId + "\",\"message\":\"load test\"}"), HttpResponse.BodyHandlers.ofString());
+                    latencies.add(Duration.ofNanos(System.nanoTime() - start).toMillis());
+                    return resp.statusCode() == 200;
+                }));
+            }
+            for (Future<Boolean> call : calls) {
+                if (!call.get()) failures++;
+            }
+        }
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99 = sorted.get(Math.max(0, (int) Math.ceil(sorted.size() * 0.99) - 1));
+        return new LevelResult(concurrency, p99, failures);
+    }
+
+    private static HttpRequest post(String url, String json) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static int maxWithinBudget(List<LevelResult> results) {
+        return results.stream()
+                .filter(r -> r.failures() == 0 && r.p99Millis() <= P99_BUDGET.toMillis())
+                .mapToInt(LevelResult::concurrency)
+                .max()
+                .orElse(0);
+    }
+
+    private record LevelResult(int concurrency, long p99Millis, int failures) {
+    }
+}
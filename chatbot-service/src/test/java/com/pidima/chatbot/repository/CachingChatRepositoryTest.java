@@ -0,0 +1,143 @@
+package com.pidima.chatbot.repository;
+
+import com.pidima.chatbot.models.ChatMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingChatRepositoryTest {
+
+    private final CountingRepository delegate = new CountingRepository();
+    private final CachingChatRepository repository = new CachingChatRepository(delegate, 1024 * 1024, Duration.ofMinutes(5));
+
+    @Test
+    void recent_history_is_loaded_once_and_kept_current_by_writes() {
+        delegate.createSession("s1");
+        delegate.appendMessage("s1", msg("user", "hello"));
+
+        Assertions.assertEquals(1, repository.getRecentHistory("s1", 10).size());
+        repository.appendMessages("s1", List.of(msg("user", "q"), msg("assistant", "a")));
+        List<ChatMessage> recent = repository.getRecentHistory("s1", 10);
+
+        Assertions.assertEquals(List.of("hello", "q", "a"), recent.stream().map(ChatMessage::getContent).toList());
+        Assertions.assertEquals(1, delegate.reads.get());
+        Assertions.assertEquals(3, delegate.getHistory("s1").size());
+        Assertions.assertEquals(1, repository.cache().stats().hitCount());
+    }
+
+    @Test
+    void writes_are_cached_with_the_timestamps_the_delegate_stored() {
+        delegate.createSession("s3");
+        repository.getHistory("s3");
+        repository.appendMessages("s3", List.of(msg("user", "q"), msg("assistant", "a")));
+
+        Assertions.assertEquals(delegate.getHistory("s3"), repository.getHistory("s3"));
+        Assertions.assertEquals(CountingRepository.STORED_AT, repository.getHistory("s3").get(0).getTimestamp());
+    }
+
+    @Test
+    void partial_tail_does_not_serve_full_history_or_larger_windows() {
+        delegate.createSession("s2");
+        for (int i = 0; i < 5; i++) {
+            delegate.appendMessage("s2", msg("user", "m" + i));
+        }
+
+        Assertions.assertEquals(2, repository.getRecentHistory("s2", 2).size());
+        Assertions.assertEquals(1, repository.getRecentHistory("s2", 1).size());
+        Assertions.assertEquals(4, repository.getRecentHistory("s2", 4).size());
+        Assertions.assertEquals(5, repository.getHistory("s2").size());
+        Assertions.assertEquals(3, delegate.reads.get());
+    }
+
+    @Test
+    void missing_sessions_are_not_cached() {
+        Assertions.assertThrows(NoSuchElementException.class, () -> repository.getHistory("missing"));
+        Assertions.assertFalse(repository.sessionExists("missing"));
+        Assertions.assertEquals(0, repository.cache().estimatedSize());
+    }
+
+    @Test
+    void entries_are_evicted_by_estimated_size() {
+        CachingChatRepository small = new CachingChatRepository(delegate, 4096, Duration.ofMinutes(5));
+        for (int i = 0; i < 20; i++) {
+            String id = "big-" + i;
+            delegate.createSession(id);
+            delegate.appendMessage(id, msg("user", "x".repeat(1000)));
+            small.getHistory(id);
+        }
+        small.cache().cleanUp();
+        Assertions.assertTrue(small.cache().estimatedSize() <= 2);
+    }
+
+    @Test
+    void appends_share_the_history_and_leave_earlier_snapshots_unchanged() {
+        CachingChatRepository.CachedHistory first = CachingChatRepository.CachedHistory.of(List.of(msg("user", "a")), true);
+        CachingChatRepository.CachedHistory second = first.append(List.of(msg("assistant", "b")));
+        CachingChatRepository.CachedHistory third = second.append(List.of(msg("user", "c")));
+        CachingChatRepository.CachedHistory forked = second.append(List.of(msg("user", "d")));
+
+        Assertions.assertEquals(List.of("a"), contents(first));
+        Assertions.assertEquals(List.of("a", "b"), contents(second));
+        Assertions.assertEquals(List.of("a", "b", "c"), contents(third));
+        Assertions.assertEquals(List.of("a", "b", "d"), contents(forked));
+        Assertions.assertEquals(List.of("b", "c"), third.tail(2).stream().map(ChatMessage::getContent).toList());
+        Assertions.assertTrue(third.bytes() > second.bytes());
+    }
+
+    private static List<String> contents(CachingChatRepository.CachedHistory history) {
+        return history.messages().stream().map(ChatMessage::getContent).toList();
+    }
+
+    private static ChatMessage msg(String role, String content) {
+        return new ChatMessage(role, content, Instant.now());
+    }
+
+    private static class CountingRepository implements ChatRepository {
+        private final Map<String, List<ChatMessage>> sessions = new ConcurrentHashMap<>();
+        private static final Instant STORED_AT = Instant.parse("2026-01-01T00:00:00Z");
+        private final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public void createSession(String sessionId) {
+            sessions.put(sessionId, new ArrayList<>());
+        }
+
+        @Override
+        public boolean sessionExists(String sessionId) {
+            return sessions.containsKey(sessionId);
+        }
+
+        @Override
+        public void appendMessage(String sessionId, ChatMessage message) {
+            List<ChatMessage> list = sessions.get(sessionId);
+            if (list == null) throw new NoSuchElementException("Session not found: " + sessionId);
+            list.add(message);
+        }
+
+        @Override
+        public List<ChatMessage> appendMessagesAsStored(String sessionId, List<ChatMessage> messages) {
+            // Assigns its own timestamps, like the DynamoDB store's sort keys
+            List<ChatMessage> stored = messages.stream()
+                    .map(m -> new ChatMessage(m.getRole(), m.getContent(), STORED_AT))
+                    .toList();
+            stored.forEach(m -> appendMessage(sessionId, m));
+            return stored;
+        }
+
+        @Override
+        public List<ChatMessage> getHistory(String sessionId) {
+            reads.incrementAndGet();
+            List<ChatMessage> list = sessions.get(sessionId);
+            if (list == null) throw new NoSuchElementException("Session not found: " + sessionId);
+            return new ArrayList<>(list);
+        }
+    }
+}
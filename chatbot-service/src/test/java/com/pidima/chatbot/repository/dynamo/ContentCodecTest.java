@@ -0,0 +1,80 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Random;
+
+public class ContentCodecTest {
+    private static final String LONG_REPLY = "Die Tabelle wird nach sessionId partitioniert – 会话按时间排序. ".repeat(200);
+
+    private final SortKeyClock clock = new SortKeyClock(1, System::currentTimeMillis);
+
+    @ParameterizedTest
+    @ValueSource(strings = {"lz4", "zstd", "deflate"})
+    void large_content_is_stored_compressed_and_read_back_unchanged(String algorithm) {
+        ContentCodec codec = new ContentCodec(settings(algorithm, 1024), null);
+
+        ChatMessageItem item = codec.encode(item(LONG_REPLY));
+        // Through the table schema, as DynamoDB stores and returns it
+        ChatMessageItem stored = ChatMessageItem.SCHEMA.mapToItem(ChatMessageItem.SCHEMA.itemToMap(item, true));
+
+        Assertions.assertNull(stored.getContent());
+        Assertions.assertTrue(stored.getContentZ().asByteArray().length < LONG_REPLY.length() / 4);
+        Assertions.assertEquals(LONG_REPLY, codec.decode(stored).getContent());
+    }
+
+    @Test
+    void items_written_with_another_algorithm_remain_readable() {
+        ChatMessageItem item = new ContentCodec(settings("zstd", 1024), null).encode(item(LONG_REPLY));
+
+        Assertions.assertEquals(LONG_REPLY, new ContentCodec(settings("none", 1024), null).decode(item).getContent());
+    }
+
+    @Test
+    void small_or_incompressible_content_is_stored_as_is() {
+        ContentCodec codec = new ContentCodec(settings("lz4", 1024), null);
+        byte[] noise = new byte[4096];
+        new Random(42).nextBytes(noise);
+        String random = Base64.getEncoder().encodeToString(noise);
+
+        Assertions.assertEquals("hi", codec.encode(item("hi")).getContent());
+        ChatMessageItem incompressible = codec.encode(item(random));
+        Assertions.assertEquals(random, incompressible.getContent());
+        Assertions.assertNull(incompressible.getContentZ());
+    }
+
+    @Test
+    void ratio_and_saved_capacity_are_recorded() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ContentCodec codec = new ContentCodec(settings("lz4", 1024), registry);
+
+        codec.decode(codec.encode(item(LONG_REPLY)));
+
+        double raw = registry.get("chat.content.bytes").tag("form", "raw").counter().count();
+        double stored = registry.get("chat.content.bytes").tag("form", "stored").counter().count();
+        Assertions.assertTrue(raw > stored * 4);
+        Assertions.assertEquals(raw / stored, registry.get("chat.content.compression.ratio").summary().mean(), 1e-9);
+        Assertions.assertTrue(registry.get("chat.dynamo.capacity.saved").tag("unit", "write").counter().count() >= 10);
+        Assertions.assertTrue(registry.get("chat.dynamo.capacity.saved").tag("unit", "read").counter().count() > 2);
+    }
+
+    private ChatMessageItem item(String content) {
+        return ChatMessageItem.from("s1", new ChatMessage("assistant", content, Instant.now()), clock.next());
+    }
+
+    private static AppProperties.Dynamo.Compression settings(String algorithm, int minBytes) {
+        AppProperties.Dynamo.Compression settings = new AppProperties.Dynamo.Compression();
+        settings.setAlgorithm(algorithm);
+        settings.setMinBytes(minBytes);
+        return settings;
+    }
+}
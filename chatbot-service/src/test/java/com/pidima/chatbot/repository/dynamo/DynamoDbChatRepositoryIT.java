@@ -1,5 +1,6 @@
 package com.pidima.chatbot.repository.dynamo;
 
+import com.pidima.chatbot.config.AppProperties;
 import com.pidima.chatbot.models.ChatMessage;
 import com.pidima.chatbot.repository.ChatRepository;
 import org.junit.jupiter.api.Test;
@@ -17,7 +18,12 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.containers.wait.strategy.Wait;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -50,28 +56,115 @@ public class DynamoDbChatRepositoryIT {
         // LLM not used in this test; keep dummy
         registry.add("app.llm-provider", () -> "dummy");
         registry.add("app.llm-model", () -> "dummy-model");
+        registry.add("app.dynamo.session-ttl", () -> "1d");
     }
 
     @Autowired
     private ChatRepository repository;
 
+    @Autowired
+    private DynamoDbEnhancedClient enhancedClient;
+
+    @Autowired
+    private AppProperties props;
+
     @Test
     void append_and_read_history_works() {
         String sessionId = "it-session-" + System.currentTimeMillis();
-        // Initially, session does not exist (no items yet)
         Assertions.assertFalse(repository.sessionExists(sessionId));
-        // Append first message creates the item
-        repository.appendMessage(sessionId, new ChatMessage("user", "hello", Instant.now()));
+        repository.createSession(sessionId);
         Assertions.assertTrue(repository.sessionExists(sessionId));
+        repository.appendMessage(sessionId, new ChatMessage("user", "hello", Instant.now()));
         List<ChatMessage> history = repository.getHistory(sessionId);
         Assertions.assertEquals(1, history.size());
         Assertions.assertEquals("user", history.get(0).getRole());
         Assertions.assertEquals("hello", history.get(0).getContent());
     }
 
+    @Test
+    void append_messages_in_one_transaction_and_read_bounded_tail() {
+        String sessionId = "it-session-batch-" + System.nanoTime();
+        Instant now = Instant.now();
+        repository.createSession(sessionId);
+        repository.appendMessage(sessionId, new ChatMessage("system", "created", now.minusSeconds(1)));
+        // Same timestamp on purpose: the write must keep both turns and their order
+        repository.appendMessages(sessionId, List.of(
+                new ChatMessage("user", "question", now),
+                new ChatMessage("assistant", "answer", now)));
+
+        List<ChatMessage> recent = repository.getRecentHistory(sessionId, 2);
+        Assertions.assertEquals(2, recent.size());
+        Assertions.assertEquals("question", recent.get(0).getContent());
+        Assertions.assertEquals("answer", recent.get(1).getContent());
+        Assertions.assertEquals(3, repository.getHistory(sessionId).size());
+    }
+
+    @Test
+    void appending_to_a_missing_session_is_rejected_without_writing_messages() {
+        String missing = "missing-append-" + System.nanoTime();
+
+        Assertions.assertThrows(NoSuchElementException.class, () -> repository.appendMessages(missing, List.of(
+                new ChatMessage("user", "question", Instant.now()),
+                new ChatMessage("assistant", "answer", Instant.now()))));
+
+        Assertions.assertFalse(repository.sessionExists(missing));
+        Assertions.assertThrows(NoSuchElementException.class, () -> repository.getHistory(missing));
+    }
+
+    @Test
+    void session_with_messages_but_no_session_item_is_adopted() {
+        String sessionId = "it-legacy-" + System.nanoTime();
+        Instant written = Instant.now().minusSeconds(3600);
+        // Written before the sessions table existed: a plain epoch-millis key and no session item
+        messages().putItem(ChatMessageItem.from(sessionId, new ChatMessage("user", "old", written), written.toEpochMilli()));
+
+        repository.appendMessage(sessionId, new ChatMessage("assistant", "new", Instant.now()));
+
+        Assertions.assertTrue(repository.sessionExists(sessionId));
+        Assertions.assertEquals(List.of("old", "new"),
+                repository.getHistory(sessionId).stream().map(ChatMessage::getContent).toList());
+        SessionItem session = sessions().getItem(Key.builder().partitionValue(sessionId).build());
+        Assertions.assertEquals(written.toEpochMilli(), session.getCreatedAt());
+        Assertions.assertEquals(1L, session.getMessageCount());
+    }
+
+    @Test
+    void appends_update_the_session_counters_and_ttl() {
+        String sessionId = "it-counters-" + System.nanoTime();
+        repository.createSession(sessionId);
+        SessionItem created = sessions().getItem(Key.builder().partitionValue(sessionId).build());
+
+        long before = System.currentTimeMillis();
+        repository.appendMessages(sessionId, List.of(
+                new ChatMessage("user", "how do I deploy the service?", Instant.now()),
+                new ChatMessage("assistant", "run the pipeline", Instant.now())));
+        repository.appendMessage(sessionId, new ChatMessage("user", "thanks", Instant.now()));
+
+        SessionItem session = sessions().getItem(Key.builder().partitionValue(sessionId).build());
+        Assertions.assertEquals(0L, created.getMessageCount());
+        Assertions.assertEquals(3L, session.getMessageCount());
+        Assertions.assertTrue(session.getTokenCount() > 0);
+        Assertions.assertTrue(session.getLastActivity() >= before);
+        long dayLater = before / 1000 + Duration.ofDays(1).toSeconds();
+        Assertions.assertTrue(session.getExpiresAt() >= dayLater && session.getExpiresAt() <= dayLater + 60);
+        Assertions.assertTrue(session.getExpiresAt() >= created.getExpiresAt());
+        for (ChatMessageItem item : messages().query(QueryConditional.keyEqualTo(
+                Key.builder().partitionValue(sessionId).build())).items()) {
+            Assertions.assertTrue(item.getExpiresAt() >= dayLater - 1 && item.getExpiresAt() <= dayLater + 60);
+        }
+    }
+
     @Test
     void get_history_of_unknown_session_throws() {
         String missing = "missing-" + System.nanoTime();
         Assertions.assertThrows(NoSuchElementException.class, () -> repository.getHistory(missing));
     }
+
+    private DynamoDbTable<ChatMessageItem> messages() {
+        return enhancedClient.table(props.getDynamodbTable(), ChatMessageItem.SCHEMA);
+    }
+
+    private DynamoDbTable<SessionItem> sessions() {
+        return enhancedClient.table(props.getDynamodbSessionsTable(), SessionItem.SCHEMA);
+    }
 }
@@ -0,0 +1,172 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdInputStream;
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.repository.archive.ArchiveStore;
+import com.pidima.chatbot.repository.archive.FileArchiveStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DynamoHistoryArchiverTest {
+    private static final Instant NOW = Instant.parse("2026-03-01T12:00:00Z");
+    private static final Duration RETENTION = Duration.ofDays(30);
+
+    private final DynamoDbClient dynamoDb = mock(DynamoDbClient.class);
+    private final SortKeyClock clock = new SortKeyClock(1, () -> NOW.minus(Duration.ofDays(40)).toEpochMilli());
+
+    @TempDir
+    Path archiveDir;
+
+    @Test
+    void expired_messages_are_archived_before_they_and_their_expired_sessions_are_deleted() throws Exception {
+        ContentCodec codec = new ContentCodec(compression(), null);
+        String longReply = "Archived replies are decompressed first. ".repeat(100);
+        ChatMessageItem question = item("s1", "user", "hello");
+        ChatMessageItem answer = codec.encode(item("s1", "assistant", longReply));
+        ChatMessageItem other = item("s2", "user", "still here?");
+        when(dynamoDb.scan(any(ScanRequest.class)))
+                .thenReturn(ScanResponse.builder().items(map(answer), map(question), map(other)).build());
+        when(dynamoDb.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(BatchWriteItemResponse.builder().build());
+        when(dynamoDb.deleteItem(any(DeleteItemRequest.class)))
+                .thenReturn(DeleteItemResponse.builder().build())
+                // s2 was written to since
+                .thenThrow(ConditionalCheckFailedException.builder().build());
+
+        long archived = archiver(2, new FileArchiveStore(archiveDir)).archiveExpired(NOW);
+
+        Assertions.assertEquals(3, archived);
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(archiveDir)) {
+            files = paths.filter(Files::isRegularFile).sorted().toList();
+        }
+        Assertions.assertEquals(List.of(
+                archiveDir.resolve("dt=2026-03-01/messages-" + NOW.toEpochMilli() + "-0001.ndjson.zst"),
+                archiveDir.resolve("dt=2026-03-01/messages-" + NOW.toEpochMilli() + "-0002.ndjson.zst")), files);
+        // Each file is ordered by session and key
+        List<JsonNode> first = lines(files.get(0));
+        Assertions.assertEquals(List.of("s1", "s1"), first.stream().map(line -> line.get("sessionId").asText()).toList());
+        Assertions.assertEquals("hello", first.get(0).get("content").asText());
+        Assertions.assertEquals(longReply, first.get(1).get("content").asText());
+        Assertions.assertEquals(question.toMessage().getTimestamp().toString(), first.get(0).get("timestamp").asText());
+        Assertions.assertEquals("still here?", lines(files.get(1)).get(0).get("content").asText());
+
+        ArgumentCaptor<BatchWriteItemRequest> deletes = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(dynamoDb, times(2)).batchWriteItem(deletes.capture());
+        Assertions.assertEquals(3, deletes.getAllValues().stream()
+                .mapToInt(request -> request.requestItems().get("chat_messages").size()).sum());
+        verify(dynamoDb, times(2)).deleteItem(any(DeleteItemRequest.class));
+    }
+
+    @Test
+    void nothing_is_deleted_when_the_archive_cannot_be_stored() {
+        when(dynamoDb.scan(any(ScanRequest.class)))
+                .thenReturn(ScanResponse.builder().items(map(item("s1", "user", "hello"))).build());
+        ArchiveStore failing = (key, content) -> {
+            throw new IOException("disk full");
+        };
+
+        Assertions.assertThrows(IOException.class, () -> archiver(10, failing).archiveExpired(NOW));
+        verify(dynamoDb, never()).batchWriteItem(any(BatchWriteItemRequest.class));
+        verify(dynamoDb, never()).deleteItem(any(DeleteItemRequest.class));
+    }
+
+    @Test
+    void unprocessed_deletes_are_retried() throws Exception {
+        ChatMessageItem message = item("s1", "user", "hello");
+        when(dynamoDb.scan(any(ScanRequest.class))).thenReturn(ScanResponse.builder().items(map(message)).build());
+        WriteRequest unprocessed = WriteRequest.builder().build();
+        when(dynamoDb.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(BatchWriteItemResponse.builder().unprocessedItems(Map.of("chat_messages", List.of(unprocessed))).build())
+                .thenReturn(BatchWriteItemResponse.builder().build());
+        when(dynamoDb.deleteItem(any(DeleteItemRequest.class))).thenReturn(DeleteItemResponse.builder().build());
+
+        archiver(10, (key, content) -> { }).archiveExpired(NOW);
+
+        verify(dynamoDb, times(2)).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    @Test
+    void scan_selects_messages_past_the_retention_by_ttl_or_by_sort_key() {
+        ScanRequest scan = archiver(10, (key, content) -> { }).scan(NOW, null);
+
+        Instant cutoff = NOW.minus(RETENTION);
+        Assertions.assertEquals(String.valueOf(NOW.plus(Duration.ofDays(1)).getEpochSecond()),
+                scan.expressionAttributeValues().get(":due").n());
+        Assertions.assertEquals(String.valueOf(cutoff.toEpochMilli()), scan.expressionAttributeValues().get(":legacyBefore").n());
+        Assertions.assertEquals(String.valueOf(SortKeyClock.keyBefore(cutoff)), scan.expressionAttributeValues().get(":before").n());
+    }
+
+    @Test
+    void archiving_requires_a_retention() {
+        Assertions.assertThrows(IllegalStateException.class, () -> new DynamoHistoryArchiver(
+                dynamoDb, "chat_messages", "chat_sessions", null, new AppProperties.Dynamo.Archive(), (key, content) -> { }));
+    }
+
+    private DynamoHistoryArchiver archiver(int chunkSize, ArchiveStore store) {
+        AppProperties.Dynamo.Archive settings = new AppProperties.Dynamo.Archive();
+        settings.setChunkSize(chunkSize);
+        return new DynamoHistoryArchiver(dynamoDb, "chat_messages", "chat_sessions", RETENTION, settings, store);
+    }
+
+    private ChatMessageItem item(String sessionId, String role, String content) {
+        return ChatMessageItem.from(sessionId, new ChatMessage(role, content, Instant.now()), clock.next());
+    }
+
+    private static Map<String, AttributeValue> map(ChatMessageItem item) {
+        return ChatMessageItem.SCHEMA.itemToMap(item, true);
+    }
+
+    private static List<JsonNode> lines(Path file) throws IOException {
+        ObjectMapper json = new ObjectMapper();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ZstdInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return reader.lines().map(line -> {
+                try {
+                    return json.readTree(line);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }).toList();
+        }
+    }
+
+    private static AppProperties.Dynamo.Compression compression() {
+        AppProperties.Dynamo.Compression settings = new AppProperties.Dynamo.Compression();
+        settings.setAlgorithm("zstd");
+        return settings;
+    }
+}
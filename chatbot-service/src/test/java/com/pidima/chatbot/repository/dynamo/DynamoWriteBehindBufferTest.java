@@ -0,0 +1,210 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class DynamoWriteBehindBufferTest {
+
+    private final List<List<ChatMessageItem>> batches = new CopyOnWriteArrayList<>();
+    private final SortKeyClock clock = new SortKeyClock(1, System::currentTimeMillis);
+    private DynamoWriteBehindBuffer buffer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (buffer != null) buffer.close();
+    }
+
+    @Test
+    void messages_are_batch_written_in_session_order_and_visible_until_written() throws InterruptedException {
+        buffer = new DynamoWriteBehindBuffer(recording(items -> List.of()), settings(1000, Duration.ofMillis(20)));
+        Instant now = Instant.now();
+        for (int i = 0; i < 30; i++) {
+            buffer.enqueue("s1", ChatMessageItem.fromAll("s1", List.of(
+                    new ChatMessage("user", "q" + i, now.plusMillis(i * 2L)),
+                    new ChatMessage("assistant", "a" + i, now.plusMillis(i * 2L))), clock));
+        }
+        Assertions.assertFalse(buffer.pending("s1").isEmpty());
+
+        awaitEmpty();
+
+        Assertions.assertTrue(batches.stream().allMatch(b -> b.size() <= DynamoWriteBehindBuffer.MAX_BATCH_ITEMS));
+        List<Long> written = batches.stream().flatMap(List::stream).map(ChatMessageItem::getTs).toList();
+        Assertions.assertEquals(60, written.size());
+        List<Long> sorted = new ArrayList<>(written);
+        Collections.sort(sorted);
+        Assertions.assertEquals(sorted, written);
+        Assertions.assertTrue(buffer.pending("s1").isEmpty());
+    }
+
+    @Test
+    void unprocessed_items_are_retried_before_later_writes() throws InterruptedException {
+        CountDownLatch firstAttempt = new CountDownLatch(1);
+        // The first attempt leaves the second item unprocessed, as DynamoDB does under throttling
+        buffer = new DynamoWriteBehindBuffer(recording(items -> {
+            if (firstAttempt.getCount() == 0) return List.of();
+            firstAttempt.countDown();
+            return List.of(copy(items.get(1)));
+        }), settings(1000, Duration.ofMillis(1)));
+        Instant now = Instant.now();
+        buffer.enqueue("s1", ChatMessageItem.fromAll("s1", List.of(
+                new ChatMessage("user", "q", now), new ChatMessage("assistant", "a", now)), clock));
+        Assertions.assertTrue(firstAttempt.await(5, TimeUnit.SECONDS));
+        buffer.enqueue("s1", List.of(ChatMessageItem.from("s1", new ChatMessage("user", "next", now.plusSeconds(1)), clock.next())));
+
+        awaitEmpty();
+
+        List<String> contents = batches.stream().flatMap(List::stream).map(ChatMessageItem::getContent).toList();
+        Assertions.assertEquals(List.of("q", "a", "a", "next"), contents);
+    }
+
+    @Test
+    void permanent_failures_and_exhausted_retries_are_dropped() throws InterruptedException {
+        buffer = new DynamoWriteBehindBuffer(recording(items -> {
+            if (items.get(0).getContent().equals("invalid")) {
+                throw DynamoDbException.builder().statusCode(400).message("Item size has exceeded the maximum").build();
+            }
+            // Never processed, as under sustained throttling
+            return items.stream().map(DynamoWriteBehindBufferTest::copy).toList();
+        }), settings(1000, Duration.ofMillis(1)));
+        Instant now = Instant.now();
+        buffer.enqueue("s1", List.of(ChatMessageItem.from("s1", new ChatMessage("user", "invalid", now), clock.next())));
+        awaitEmpty();
+        buffer.enqueue("s1", List.of(ChatMessageItem.from("s1", new ChatMessage("user", "throttled", now), clock.next())));
+        awaitEmpty();
+
+        List<String> contents = batches.stream().flatMap(List::stream).map(ChatMessageItem::getContent).toList();
+        Assertions.assertEquals(1, Collections.frequency(contents, "invalid"));
+        Assertions.assertEquals(3, Collections.frequency(contents, "throttled"));
+    }
+
+    @Test
+    void only_throttling_server_and_network_errors_are_retried() {
+        Assertions.assertTrue(DynamoWriteBehindBuffer.retryable(ProvisionedThroughputExceededException.builder()
+                .statusCode(400)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("ProvisionedThroughputExceededException").build())
+                .build()));
+        Assertions.assertTrue(DynamoWriteBehindBuffer.retryable(DynamoDbException.builder().statusCode(500).build()));
+        Assertions.assertTrue(DynamoWriteBehindBuffer.retryable(
+                SdkClientException.create("Unable to execute HTTP request", new ConnectException("refused"))));
+        Assertions.assertFalse(DynamoWriteBehindBuffer.retryable(DynamoDbException.builder().statusCode(400).build()));
+        Assertions.assertFalse(DynamoWriteBehindBuffer.retryable(new IllegalStateException("bug")));
+    }
+
+    @Test
+    void full_buffer_rejects_after_the_enqueue_timeout() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        buffer = new DynamoWriteBehindBuffer(recording(items -> {
+            awaitQuietly(release);
+            return List.of();
+        }), settings(2, Duration.ofMillis(1)));
+        Instant now = Instant.now();
+        buffer.enqueue("s1", ChatMessageItem.fromAll("s1", List.of(
+                new ChatMessage("user", "q", now), new ChatMessage("assistant", "a", now)), clock));
+
+        Assertions.assertThrows(RejectedExecutionException.class, () -> buffer.enqueue("s2",
+                List.of(ChatMessageItem.from("s2", new ChatMessage("user", "x", now), clock.next()))));
+        release.countDown();
+        awaitEmpty();
+        buffer.enqueue("s2", List.of(ChatMessageItem.from("s2", new ChatMessage("user", "x", now), clock.next())));
+    }
+
+    @Test
+    void close_drains_buffered_messages() throws InterruptedException {
+        buffer = new DynamoWriteBehindBuffer(recording(items -> List.of()), settings(1000, Duration.ofSeconds(30)));
+        buffer.enqueue("s1", List.of(ChatMessageItem.from("s1", new ChatMessage("user", "bye", Instant.now()), clock.next())));
+
+        buffer.close();
+
+        Assertions.assertEquals(0, buffer.size());
+        Assertions.assertEquals(1, batches.size());
+        Assertions.assertThrows(RejectedExecutionException.class, () -> buffer.enqueue("s1",
+                List.of(ChatMessageItem.from("s1", new ChatMessage("user", "late", Instant.now()), clock.next()))));
+    }
+
+    @Test
+    void every_write_accepted_while_closing_is_written() throws Exception {
+        buffer = new DynamoWriteBehindBuffer(recording(items -> List.of()), settings(100_000, Duration.ofMillis(1)));
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            String sessionId = "s" + w;
+            writers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    while (true) {
+                        buffer.enqueue(sessionId, List.of(ChatMessageItem.from(sessionId,
+                                new ChatMessage("user", "m", Instant.now()), clock.next())));
+                        accepted.incrementAndGet();
+                    }
+                } catch (RejectedExecutionException closed) {
+                    // expected once close() started
+                }
+            }));
+        }
+        Thread.sleep(50);
+
+        buffer.close();
+        for (Thread writer : writers) writer.join();
+
+        Assertions.assertEquals(0, buffer.size());
+        Assertions.assertEquals(accepted.get(), batches.stream().mapToInt(List::size).sum());
+    }
+
+    private Function<List<ChatMessageItem>, List<ChatMessageItem>> recording(
+            Function<List<ChatMessageItem>, List<ChatMessageItem>> writer) {
+        return items -> {
+            batches.add(List.copyOf(items));
+            return writer.apply(items);
+        };
+    }
+
+    private void awaitEmpty() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (buffer.size() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertEquals(0, buffer.size());
+    }
+
+    private static AppProperties.Dynamo.WriteBehind settings(int capacity, Duration flushInterval) {
+        AppProperties.Dynamo.WriteBehind settings = new AppProperties.Dynamo.WriteBehind();
+        settings.setCapacity(capacity);
+        settings.setFlushers(1);
+        settings.setFlushInterval(flushInterval);
+        settings.setEnqueueTimeout(Duration.ofMillis(50));
+        settings.setMaxBackoff(Duration.ofMillis(50));
+        settings.setMaxAttempts(3);
+        return settings;
+    }
+
+    private static ChatMessageItem copy(ChatMessageItem item) {
+        return ChatMessageItem.SCHEMA.mapToItem(ChatMessageItem.SCHEMA.itemToMap(item, true));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
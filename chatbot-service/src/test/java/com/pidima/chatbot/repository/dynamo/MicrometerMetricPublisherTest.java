@@ -0,0 +1,58 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollector;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+public class MicrometerMetricPublisherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MicrometerMetricPublisher publisher = new MicrometerMetricPublisher(registry);
+
+    @Test
+    void call_attempt_and_pool_metrics_are_recorded() {
+        MetricCollector call = MetricCollector.create("ApiCall");
+        call.reportMetric(CoreMetric.SERVICE_ID, "DynamoDB");
+        call.reportMetric(CoreMetric.OPERATION_NAME, "Query");
+        call.reportMetric(CoreMetric.API_CALL_SUCCESSFUL, true);
+        call.reportMetric(CoreMetric.API_CALL_DURATION, Duration.ofMillis(40));
+        call.reportMetric(CoreMetric.RETRY_COUNT, 1);
+        for (int status : new int[]{500, 200}) {
+            MetricCollector attempt = call.createChild("ApiCallAttempt");
+            attempt.reportMetric(CoreMetric.SERVICE_CALL_DURATION, Duration.ofMillis(15));
+            attempt.reportMetric(HttpMetric.HTTP_STATUS_CODE, status);
+            MetricCollector http = attempt.createChild("HttpClient");
+            http.reportMetric(HttpMetric.HTTP_CLIENT_NAME, "Apache");
+            http.reportMetric(HttpMetric.CONCURRENCY_ACQUIRE_DURATION, Duration.ofMillis(2));
+            http.reportMetric(HttpMetric.LEASED_CONCURRENCY, 3);
+            http.reportMetric(HttpMetric.PENDING_CONCURRENCY_ACQUIRES, 0);
+        }
+
+        publisher.publish(call.collect());
+
+        Assertions.assertEquals(40, registry.get("aws.sdk.api.call")
+                .tags("service", "DynamoDB", "operation", "Query", "success", "true")
+                .timer().totalTime(TimeUnit.MILLISECONDS), 0.001);
+        Assertions.assertEquals(1, registry.get("aws.sdk.api.call.retries").summary().totalAmount(), 0.001);
+        Assertions.assertEquals(1, registry.get("aws.sdk.api.call.attempt").tag("status", "500").timer().count());
+        Assertions.assertEquals(1, registry.get("aws.sdk.api.call.attempt").tag("status", "200").timer().count());
+        Assertions.assertEquals(2, registry.get("aws.sdk.http.acquire").tag("client", "Apache").timer().count());
+        Assertions.assertEquals(3, registry.get("aws.sdk.http.leased").summary().max(), 0.001);
+    }
+
+    @Test
+    void missing_values_are_skipped() {
+        MetricCollector call = MetricCollector.create("ApiCall");
+        call.reportMetric(CoreMetric.OPERATION_NAME, "PutItem");
+
+        publisher.publish(call.collect());
+
+        Assertions.assertTrue(registry.getMeters().isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NodeIdLeaseTest {
+
+    private final DynamoDbClient dynamoDb = mock(DynamoDbClient.class);
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final NodeIdLease lease = new NodeIdLease(dynamoDb, "chat_node_leases", Duration.ofSeconds(30), now::get);
+
+    @Test
+    void the_first_id_not_leased_by_another_instance_is_claimed() {
+        when(dynamoDb.putItem(any(PutItemRequest.class)))
+                .thenThrow(ConditionalCheckFailedException.builder().build())
+                .thenThrow(ConditionalCheckFailedException.builder().build())
+                .thenReturn(PutItemResponse.builder().build());
+
+        lease.claim();
+
+        ArgumentCaptor<PutItemRequest> puts = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(dynamoDb, times(3)).putItem(puts.capture());
+        List<Integer> tried = puts.getAllValues().stream()
+                .map(put -> Integer.parseInt(put.item().get("nodeId").n()))
+                .toList();
+        Assertions.assertEquals((tried.get(0) + 2) % NodeIdLease.NODE_IDS, lease.nodeId());
+        Assertions.assertEquals((tried.get(0) + 1) % NodeIdLease.NODE_IDS, tried.get(1));
+        Assertions.assertEquals("1700000030000", puts.getValue().item().get("leaseUntil").n());
+    }
+
+    @Test
+    void id_is_only_used_while_the_lease_is_renewed_in_time() {
+        when(dynamoDb.putItem(any(PutItemRequest.class))).thenReturn(PutItemResponse.builder().build());
+        when(dynamoDb.updateItem(any(UpdateItemRequest.class)))
+                .thenThrow(new IllegalStateException("DynamoDB unreachable"))
+                .thenReturn(UpdateItemResponse.builder().build());
+        lease.claim();
+        int id = lease.nodeId();
+
+        // Valid until one renewal interval (10s) before the lease expires
+        now.addAndGet(10_000);
+        lease.renew();
+        now.addAndGet(9_999);
+        Assertions.assertEquals(id, lease.nodeId());
+        now.addAndGet(1);
+        Assertions.assertThrows(IllegalStateException.class, lease::nodeId);
+
+        lease.renew();
+        Assertions.assertEquals(id, lease.nodeId());
+    }
+
+    @Test
+    void a_lost_lease_is_replaced_by_a_new_one() {
+        when(dynamoDb.putItem(any(PutItemRequest.class))).thenReturn(PutItemResponse.builder().build());
+        when(dynamoDb.updateItem(any(UpdateItemRequest.class))).thenThrow(ConditionalCheckFailedException.builder().build());
+        lease.claim();
+
+        lease.renew();
+
+        verify(dynamoDb, times(2)).putItem(any(PutItemRequest.class));
+        Assertions.assertDoesNotThrow(lease::nodeId);
+    }
+
+    @Test
+    void claim_fails_when_every_id_is_leased() {
+        when(dynamoDb.putItem(any(PutItemRequest.class))).thenThrow(ConditionalCheckFailedException.builder().build());
+
+        Assertions.assertThrows(IllegalStateException.class, lease::claim);
+        verify(dynamoDb, times(NodeIdLease.NODE_IDS)).putItem(any(PutItemRequest.class));
+        Assertions.assertThrows(IllegalStateException.class, lease::nodeId);
+    }
+}
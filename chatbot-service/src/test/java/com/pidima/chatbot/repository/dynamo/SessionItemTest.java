@@ -0,0 +1,48 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+
+public class SessionItemTest {
+    private static final Instant NOW = Instant.ofEpochSecond(1_700_000_000L);
+
+    @Test
+    void writes_add_to_the_counters_and_refresh_the_ttl_of_existing_sessions_only() {
+        Update update = SessionItem.recordWrite("chat_sessions", "s1", 2, 40, NOW, Duration.ofDays(30));
+
+        Assertions.assertEquals("SET lastActivity = :now, expiresAt = :exp ADD messageCount :n, tokenCount :t",
+                update.updateExpression());
+        Assertions.assertEquals("attribute_exists(sessionId)", update.conditionExpression());
+        Assertions.assertEquals("2", update.expressionAttributeValues().get(":n").n());
+        Assertions.assertEquals("40", update.expressionAttributeValues().get(":t").n());
+        Assertions.assertEquals(String.valueOf(NOW.plus(Duration.ofDays(30)).getEpochSecond()),
+                update.expressionAttributeValues().get(":exp").n());
+    }
+
+    @Test
+    void without_a_ttl_sessions_never_expire() {
+        Update update = SessionItem.recordWrite("chat_sessions", "s1", 1, 5, NOW, null);
+
+        Assertions.assertFalse(update.updateExpression().contains("expiresAt"));
+        Assertions.assertFalse(update.expressionAttributeValues().containsKey(":exp"));
+        Assertions.assertNull(SessionItem.create("s1", null, NOW, null).getExpiresAt());
+    }
+
+    @Test
+    void only_a_failed_session_condition_means_the_session_is_missing() {
+        CancellationReason failed = CancellationReason.builder().code("ConditionalCheckFailed").build();
+        CancellationReason none = CancellationReason.builder().code("None").build();
+
+        Assertions.assertTrue(SessionItem.sessionMissing(
+                TransactionCanceledException.builder().cancellationReasons(failed, none).build()));
+        // A message key that already exists is a different failure
+        Assertions.assertFalse(SessionItem.sessionMissing(
+                TransactionCanceledException.builder().cancellationReasons(none, failed).build()));
+    }
+}
@@ -0,0 +1,117 @@
+package com.pidima.chatbot.repository.dynamo;
+
+import com.pidima.chatbot.models.ChatMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SortKeyClockTest {
+
+    @Test
+    void keys_issued_within_one_millisecond_are_unique_and_increasing() throws Exception {
+        SortKeyClock clock = new SortKeyClock(7, () -> 1_700_000_000_000L); // frozen wall clock
+        Set<Long> keys = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(pool.submit(() -> {
+                    long previous = Long.MIN_VALUE;
+                    for (int i = 0; i < 10_000; i++) {
+                        long key = clock.next();
+                        Assertions.assertTrue(key > previous);
+                        Assertions.assertEquals(7, key & 0xFF);
+                        keys.add(key);
+                        previous = key;
+                    }
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        Assertions.assertEquals(80_000, keys.size());
+    }
+
+    @Test
+    void keys_of_different_nodes_never_collide() {
+        SortKeyClock a = new SortKeyClock(1, () -> 1_700_000_000_000L);
+        SortKeyClock b = new SortKeyClock(2, () -> 1_700_000_000_000L);
+        Assertions.assertNotEquals(a.next(), b.next());
+    }
+
+    @Test
+    void observed_keys_push_later_keys_past_them() {
+        SortKeyClock behind = new SortKeyClock(1, () -> 1_700_000_000_000L);
+        long ahead = new SortKeyClock(2, () -> 1_700_000_005_000L).next();
+
+        behind.observe(ahead);
+        behind.observe(1_700_000_009_000L); // legacy millis key: ignored
+
+        Assertions.assertTrue(behind.next() > ahead);
+    }
+
+    @Test
+    void keys_decode_to_their_millisecond_and_bound_range_queries() {
+        Instant at = Instant.ofEpochMilli(1_700_000_000_123L);
+        long key = new SortKeyClock(255, at::toEpochMilli).next();
+
+        Assertions.assertEquals(at, SortKeyClock.instantOf(key));
+        Assertions.assertEquals(at, SortKeyClock.instantOf(at.toEpochMilli())); // legacy millis key
+        Assertions.assertTrue(SortKeyClock.keyBefore(at) < key);
+        Assertions.assertTrue(SortKeyClock.keyBefore(at.plusMillis(1)) > key);
+    }
+
+    @Test
+    void messages_keep_their_own_timestamps_when_their_keys_share_a_millisecond() {
+        SortKeyClock clock = new SortKeyClock(1, () -> 1_700_000_000_500L);
+        Instant asked = Instant.parse("2023-11-14T22:13:19.750123456Z");
+        List<ChatMessageItem> turn = ChatMessageItem.fromAll("s1", List.of(
+                new ChatMessage("user", "q", asked), new ChatMessage("assistant", "a", asked.plusMillis(700))), clock);
+
+        // Through the table schema, as DynamoDB stores and returns them
+        List<ChatMessage> read = turn.stream()
+                .map(item -> ChatMessageItem.SCHEMA.mapToItem(ChatMessageItem.SCHEMA.itemToMap(item, true)).toMessage())
+                .toList();
+        Assertions.assertEquals(asked, read.get(0).getTimestamp());
+        Assertions.assertEquals(asked.plusMillis(700), read.get(1).getTimestamp());
+
+        ChatMessageItem legacy = ChatMessageItem.from("s1", new ChatMessage("user", "old", null), clock.next());
+        Assertions.assertEquals(Instant.ofEpochMilli(1_700_000_000_500L), legacy.toMessage().getTimestamp());
+    }
+
+    @Test
+    void leased_node_id_is_used_while_the_lease_is_held() {
+        DynamoDbClient dynamoDb = mock(DynamoDbClient.class);
+        when(dynamoDb.putItem(any(PutItemRequest.class))).thenReturn(PutItemResponse.builder().build());
+        AtomicLong now = new AtomicLong(1_700_000_000_000L);
+        NodeIdLease lease = new NodeIdLease(dynamoDb, "chat_node_leases", Duration.ofSeconds(30), now::get);
+        SortKeyClock clock = new SortKeyClock(lease, now::get);
+
+        Assertions.assertThrows(IllegalStateException.class, clock::next);
+        lease.claim();
+        Assertions.assertEquals(lease.nodeId(), clock.next() & 0xFF);
+    }
+
+    @Test
+    void node_id_outside_eight_bits_is_rejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SortKeyClock(256, System::currentTimeMillis));
+    }
+}
@@ -0,0 +1,117 @@
+package com.pidima.chatbot.repository.memory;
+
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.repository.HistoryPage;
+import com.pidima.chatbot.repository.HistoryQuery;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class InMemoryChatRepositoryTest {
+
+    private final InMemoryChatRepository repository = new InMemoryChatRepository(64L * 1024 * 1024, Duration.ofHours(1));
+
+    @Test
+    void appends_across_segments_and_reads_snapshots() {
+        repository.createSession("s1");
+        Instant now = Instant.now();
+        for (int i = 0; i < 200; i++) {
+            repository.appendMessage("s1", new ChatMessage(i % 2 == 0 ? "user" : "assistant", "m" + i, now));
+        }
+        List<ChatMessage> snapshot = repository.getHistory("s1");
+        repository.appendMessage("s1", new ChatMessage("user", "late", now));
+
+        Assertions.assertEquals(200, snapshot.size());
+        Assertions.assertEquals("m199", snapshot.get(199).getContent());
+        Assertions.assertEquals("assistant", snapshot.get(199).getRole());
+        Assertions.assertEquals(201, repository.getHistory("s1").size());
+        Assertions.assertEquals(List.of("m199", "late"),
+                repository.getRecentHistory("s1", 2).stream().map(ChatMessage::getContent).toList());
+        // Equal timestamps are stored with strictly increasing sort keys
+        Assertions.assertTrue(snapshot.get(1).getTimestamp().isAfter(snapshot.get(0).getTimestamp()));
+    }
+
+    @Test
+    void pages_by_cursor() {
+        repository.createSession("s2");
+        Instant base = Instant.ofEpochMilli(1_000_000);
+        for (int i = 0; i < 10; i++) {
+            repository.appendMessage("s2", new ChatMessage("user", "m" + i, base.plusMillis(i * 10)));
+        }
+        HistoryPage latest = repository.getHistoryPage("s2", new HistoryQuery(null, null, null, 3));
+        Assertions.assertEquals(List.of("m7", "m8", "m9"), contents(latest));
+        Assertions.assertTrue(latest.hasMore());
+
+        HistoryPage older = repository.getHistoryPage("s2", new HistoryQuery(latest.firstCursor(), null, null, 3));
+        Assertions.assertEquals(List.of("m4", "m5", "m6"), contents(older));
+
+        HistoryPage newer = repository.getHistoryPage("s2", new HistoryQuery(null, older.lastCursor(), null, null));
+        Assertions.assertEquals(List.of("m7", "m8", "m9"), contents(newer));
+        Assertions.assertFalse(newer.hasMore());
+
+        HistoryPage since = repository.getHistoryPage("s2", new HistoryQuery(null, null, base.plusMillis(85), null));
+        Assertions.assertEquals(List.of("m9"), contents(since));
+        Assertions.assertTrue(repository.getHistoryPage("s2", new HistoryQuery(null, newer.lastCursor(), null, 5))
+                .messages().isEmpty());
+    }
+
+    @Test
+    void concurrent_appends_to_one_session_are_all_kept_in_order() throws Exception {
+        repository.createSession("s3");
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    repository.appendMessages("s3", List.of(new ChatMessage("user", "q", Instant.now()),
+                            new ChatMessage("assistant", "a", Instant.now())));
+                    repository.getRecentHistory("s3", 10).forEach(ChatMessage::getContent);
+                }
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        pool.shutdown();
+
+        List<ChatMessage> history = repository.getHistory("s3");
+        Assertions.assertEquals(8000, history.size());
+        for (int i = 0; i < history.size(); i += 2) {
+            Assertions.assertEquals("q", history.get(i).getContent());
+            Assertions.assertEquals("a", history.get(i + 1).getContent());
+        }
+    }
+
+    @Test
+    void sessions_are_capped_by_size_and_missing_ones_are_reported() {
+        // Evictions run on the writing thread, so they have happened by the time the loop ends
+        InMemoryChatRepository small = new InMemoryChatRepository(64 * 1024, Duration.ofHours(1), Runnable::run);
+        for (int s = 0; s < 50; s++) {
+            small.createSession("big-" + s);
+            try {
+                small.appendMessage("big-" + s, new ChatMessage("user", "x".repeat(8 * 1024), Instant.now()));
+            } catch (NoSuchElementException evicted) {
+                // Admission may drop a new, rarely used session in favour of existing ones
+            }
+        }
+        long alive = 0;
+        for (int s = 0; s < 50; s++) {
+            if (small.sessionExists("big-" + s)) alive++;
+        }
+        Assertions.assertTrue(alive < 50);
+
+        Assertions.assertThrows(NoSuchElementException.class, () -> repository.getHistory("missing"));
+        Assertions.assertThrows(NoSuchElementException.class,
+                () -> repository.appendMessage("missing", new ChatMessage("user", "x", Instant.now())));
+    }
+
+    private static List<String> contents(HistoryPage page) {
+        return page.messages().stream().map(ChatMessage::getContent).toList();
+    }
+}
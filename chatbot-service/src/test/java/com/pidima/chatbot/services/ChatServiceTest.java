@@ -0,0 +1,76 @@
+package com.pidima.chatbot.services;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.repository.BlockingChatRepositoryAdapter;
+import com.pidima.chatbot.repository.memory.InMemoryChatRepository;
+import com.pidima.chatbot.services.context.ContextWindowBuilder;
+import com.pidima.chatbot.services.context.InMemorySummaryStore;
+import com.pidima.chatbot.services.context.TokenCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+public class ChatServiceTest {
+
+    private final AppProperties appProperties = new AppProperties();
+    private final InMemoryChatRepository repository = new InMemoryChatRepository(appProperties);
+
+    // Emits the beginning of a reply, then stalls until the client goes away
+    private final LLMClient stalling = new LLMClient() {
+        @Override
+        public String generateReply(List<ChatMessage> history) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Flux<String> streamReply(List<ChatMessage> history) {
+            return Flux.just("The first ").concatWith(Flux.never());
+        }
+    };
+
+    private ContextWindowBuilder contextWindowBuilder() {
+        return new ContextWindowBuilder(new TokenCounter(appProperties), new InMemorySummaryStore(), stalling,
+                appProperties);
+    }
+
+    @Test
+    void a_stream_the_client_left_keeps_the_user_message_and_the_partial_reply() {
+        ChatService chatService = new ChatService(repository, stalling, appProperties, contextWindowBuilder(),
+                new ChatTurnMetrics(new SimpleMeterRegistry()));
+        String sessionId = chatService.createSession(Optional.empty());
+
+        chatService.addMessageAndStreamReply(sessionId, "hi").take(1).blockLast();
+
+        assertTurnSaved(() -> chatService.getHistory(sessionId));
+    }
+
+    @Test
+    void a_reactive_stream_the_client_left_keeps_the_user_message_and_the_partial_reply() {
+        ReactiveChatService chatService = new ReactiveChatService(new BlockingChatRepositoryAdapter(repository),
+                stalling, appProperties, contextWindowBuilder(), new ChatTurnMetrics(new SimpleMeterRegistry()));
+        String sessionId = chatService.createSession(Optional.empty()).block();
+
+        chatService.addMessageAndStreamReply(sessionId, "hi").flatMapMany(deltas -> deltas.take(1)).blockLast();
+
+        assertTurnSaved(() -> repository.getHistory(sessionId));
+    }
+
+    private static void assertTurnSaved(Supplier<List<ChatMessage>> history) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (history.get().size() < 2 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        List<ChatMessage> messages = history.get();
+        Assertions.assertEquals(2, messages.size());
+        Assertions.assertEquals("hi", messages.get(0).getContent());
+        Assertions.assertEquals("assistant", messages.get(1).getRole());
+        Assertions.assertEquals("The first ", messages.get(1).getContent());
+    }
+}
@@ -0,0 +1,82 @@
+package com.pidima.chatbot.services;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.repository.memory.InMemoryChatRepository;
+import com.pidima.chatbot.services.context.ContextWindowBuilder;
+import com.pidima.chatbot.services.context.InMemorySummaryStore;
+import com.pidima.chatbot.services.context.TokenCounter;
+import com.pidima.chatbot.services.llm.FallbackLlmClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+public class ChatTurnMetricsTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final ChatService chatService = chatService();
+
+    private ChatService chatService() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.setPersistence("memory");
+        return chatService(appProperties, new DummyLlmClient(appProperties));
+    }
+
+    private ChatService chatService(AppProperties appProperties, LLMClient llmClient) {
+        ContextWindowBuilder contextWindowBuilder = new ContextWindowBuilder(
+                new TokenCounter(appProperties), new InMemorySummaryStore(), llmClient, appProperties);
+        return new ChatService(new InMemoryChatRepository(appProperties), llmClient, appProperties,
+                contextWindowBuilder, new ChatTurnMetrics(registry));
+    }
+
+    @Test
+    void every_stage_of_a_turn_is_timed() {
+        String sessionId = chatService.createSession(Optional.empty());
+        chatService.addMessageAndReply(sessionId, "first");
+        chatService.addMessageAndReply(sessionId, "second");
+
+        for (String stage : new String[]{"context", "llm", "persist"}) {
+            Assertions.assertEquals(2, registry.get("chat.turn.stage").tags("stage", stage, "outcome", "success")
+                    .timer().count(), stage);
+        }
+        Assertions.assertEquals(2, registry.get("chat.turn").tag("outcome", "success").timer().count());
+        // The second turn sends the first one along
+        Assertions.assertEquals(4, registry.get("chat.context.messages").summary().totalAmount());
+
+        Assertions.assertEquals(4, chatService.getHistory(sessionId).size());
+        Assertions.assertEquals(4, registry.get("chat.history.messages").summary().totalAmount());
+    }
+
+    @Test
+    void llm_failures_answered_by_the_fallback_are_counted_as_such() {
+        LLMClient down = new FallbackLlmClient(history -> {
+            throw new IllegalStateException("LLM down");
+        });
+        ChatService failing = chatService(new AppProperties(), down);
+        String sessionId = failing.createSession(Optional.empty());
+
+        failing.addMessageAndReply(sessionId, "hi");
+        failing.addMessageAndStreamReply(sessionId, "hi again").blockLast();
+
+        Assertions.assertEquals(2, registry.get("chat.turn.stage").tags("stage", "llm", "outcome", "fallback")
+                .timer().count());
+        Assertions.assertEquals(0, registry.get("chat.turn.stage").tags("stage", "llm", "outcome", "success")
+                .timer().count());
+        Assertions.assertEquals(1, registry.get("chat.turn").tag("outcome", "fallback").timer().count());
+        Assertions.assertEquals(0, registry.get("chat.turn").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void a_turn_for_a_missing_session_fails_in_the_context_stage() {
+        Assertions.assertThrows(NoSuchElementException.class, () -> chatService.addMessageAndReply("missing", "hi"));
+
+        Assertions.assertEquals(1, registry.get("chat.turn.stage").tags("stage", "context", "outcome", "error")
+                .timer().count());
+        Assertions.assertEquals(0, registry.get("chat.turn.stage").tags("stage", "llm", "outcome", "success")
+                .timer().count());
+        Assertions.assertEquals(1, registry.get("chat.turn").tag("outcome", "error").timer().count());
+    }
+}
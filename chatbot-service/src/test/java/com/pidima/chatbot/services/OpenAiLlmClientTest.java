@@ -0,0 +1,86 @@
+package com.pidima.chatbot.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public class OpenAiLlmClientTest {
+
+    @Test
+    void rate_limit_wait_prefers_retry_after_then_the_later_reset_header() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("x-ratelimit-reset-requests", "120ms");
+        headers.set("x-ratelimit-reset-tokens", "6m0.5s");
+        Assertions.assertEquals(Duration.ofMillis(360_500), OpenAiLlmClient.retryAfter(headers));
+
+        headers.set(HttpHeaders.RETRY_AFTER, "7");
+        Assertions.assertEquals(Duration.ofSeconds(7), OpenAiLlmClient.retryAfter(headers));
+
+        headers.set(HttpHeaders.RETRY_AFTER, "Wed, 21 Oct 2026 07:28:00 GMT");
+        Assertions.assertEquals(Duration.ofMillis(360_500), OpenAiLlmClient.retryAfter(headers));
+
+        Assertions.assertEquals(Duration.ofSeconds(1), OpenAiLlmClient.retryAfter(new HttpHeaders()));
+    }
+
+    @Test
+    void batches_render_each_conversation_as_one_prompt_and_read_choices_by_index() {
+        OpenAiLlmClient client = new OpenAiLlmClient(null, new AppProperties(), new ObjectMapper(), Optional.empty(),
+                Optional.empty());
+        List<ChatMessage> history = List.of(
+                new ChatMessage("system", "Be brief.", Instant.now()),
+                new ChatMessage("user", "Hi", Instant.now()));
+
+        OpenAiApi.CompletionRequest payload = client.buildBatchPayload(List.of(history, history.subList(1, 2)));
+        Assertions.assertEquals(List.of(
+                "<|im_start|>system\nBe brief.<|im_end|>\n<|im_start|>user\nHi<|im_end|>\n<|im_start|>assistant\n",
+                "<|im_start|>user\nHi<|im_end|>\n<|im_start|>assistant\n"), payload.prompt());
+        Assertions.assertEquals(List.of("<|im_end|>"), payload.stop());
+
+        OpenAiApi.Response resp = new OpenAiApi.Response(List.of(
+                new OpenAiApi.Choice(1, null, null, " second"),
+                new OpenAiApi.Choice(0, null, null, "first\n")), null);
+        Assertions.assertEquals(List.of("first", "second"), client.extractTexts(resp, 2));
+        Assertions.assertThrows(IllegalStateException.class, () -> client.extractTexts(resp, 3));
+    }
+
+    @Test
+    void requests_and_responses_use_the_openai_wire_format() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        AppProperties props = new AppProperties();
+        props.setLlmModel("gpt-4o-mini");
+        MeterRegistry registry = new SimpleMeterRegistry();
+        OpenAiLlmClient client = new OpenAiLlmClient(null, props, objectMapper, Optional.empty(), Optional.of(registry));
+
+        List<ChatMessage> history = List.of(new ChatMessage("tool", "Hi", Instant.now()));
+        Assertions.assertEquals("{\"model\":\"gpt-4o-mini\",\"messages\":[{\"role\":\"user\",\"content\":\"Hi\"}],"
+                + "\"temperature\":0.2,\"max_tokens\":512}", objectMapper.writeValueAsString(client.buildPayload(history, false)));
+        Assertions.assertTrue(objectMapper.writeValueAsString(client.buildPayload(history, true))
+                .endsWith("\"max_tokens\":512,\"stream_options\":{\"include_usage\":true}}"));
+
+        OpenAiApi.Response completion = objectMapper.readValue("""
+                {"id":"chatcmpl-1","usage":{"total_tokens":9},"choices":[{"index":0,"logprobs":null,
+                 "message":{"role":"assistant","content":"Hello","refusal":null},"finish_reason":"stop"}]}""",
+                OpenAiApi.Response.class);
+        Assertions.assertEquals("Hello", client.extractContent(completion));
+        Assertions.assertEquals(" there", client.extractDelta("""
+                {"id":"chatcmpl-1","choices":[{"index":0,"delta":{"content":" there"},"finish_reason":null}]}"""));
+        Assertions.assertNull(client.extractDelta("{\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\"}}]}"));
+
+        // The last chunk of a stream carries the usage of the whole reply
+        Assertions.assertNull(client.extractDelta("""
+                {"choices":[],"usage":{"prompt_tokens":12,"completion_tokens":30,"total_tokens":42}}"""));
+        Assertions.assertEquals(12, registry.get("chat.llm.tokens").tags("type", "prompt", "model", "gpt-4o-mini")
+                .counter().count());
+        Assertions.assertEquals(30, registry.get("chat.llm.tokens").tag("type", "completion").counter().count());
+    }
+}
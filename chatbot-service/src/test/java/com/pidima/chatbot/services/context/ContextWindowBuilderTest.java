@@ -0,0 +1,106 @@
+package com.pidima.chatbot.services.context;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.services.LLMClient;
+import com.pidima.chatbot.services.llm.FallbackLlmClient;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ContextWindowBuilderTest {
+
+    private final AppProperties appProperties = new AppProperties();
+    private final InMemorySummaryStore summaryStore = new InMemorySummaryStore();
+    private final AtomicInteger summaryCalls = new AtomicInteger();
+    private final LLMClient llmClient = history -> "summary #" + summaryCalls.incrementAndGet();
+
+    private ContextWindowBuilder builder() {
+        return new ContextWindowBuilder(new TokenCounter(appProperties), summaryStore, llmClient, appProperties);
+    }
+
+    @Test
+    void prompt_stays_within_budget_and_keeps_system_prompt_and_newest_turns() {
+        appProperties.getContext().setMaxTokens(200);
+        appProperties.getContext().setSystemPrompt("You are a documentation assistant.");
+        TokenCounter counter = new TokenCounter(appProperties);
+
+        List<ChatMessage> prompt = builder().build("s1", history(100));
+
+        Assertions.assertEquals("system", prompt.get(0).getRole());
+        Assertions.assertEquals("message 99 about deploying the service", prompt.get(prompt.size() - 1).getContent());
+        Assertions.assertTrue(prompt.size() < 101);
+        Assertions.assertTrue(prompt.stream().mapToInt(counter::count).sum() <= 200);
+    }
+
+    @Test
+    void newest_message_is_kept_even_when_it_exceeds_the_budget() {
+        appProperties.getContext().setMaxTokens(5);
+
+        List<ChatMessage> prompt = builder().build("s2", history(3));
+
+        Assertions.assertEquals(1, prompt.size());
+        Assertions.assertEquals("message 2 about deploying the service", prompt.get(0).getContent());
+    }
+
+    @Test
+    void dropped_turns_are_folded_into_a_rolling_summary() {
+        appProperties.getContext().setMaxTokens(400);
+        appProperties.getContext().getSummary().setEnabled(true);
+        appProperties.getContext().getSummary().setSummarizeEvery(5);
+        appProperties.getContext().getSummary().setMaxTokens(50);
+        List<ChatMessage> history = history(40);
+
+        List<ChatMessage> prompt = builder().build("s3", history);
+        Assertions.assertEquals(1, summaryCalls.get());
+        Assertions.assertEquals("Summary of the earlier conversation: summary #1", prompt.get(0).getContent());
+
+        // Two more messages drop out: below summarize-every, so the stored summary is reused
+        history.add(message(40));
+        history.add(message(41));
+        prompt = builder().build("s3", history);
+        Assertions.assertEquals(1, summaryCalls.get());
+        Assertions.assertEquals("Summary of the earlier conversation: summary #1", prompt.get(0).getContent());
+
+        for (int i = 42; i < 50; i++) history.add(message(i));
+        builder().build("s3", history);
+        Assertions.assertEquals(2, summaryCalls.get());
+    }
+
+    @Test
+    void failed_summary_calls_keep_the_previous_summary_and_are_retried() {
+        appProperties.getContext().setMaxTokens(400);
+        appProperties.getContext().getSummary().setEnabled(true);
+        appProperties.getContext().getSummary().setSummarizeEvery(5);
+        AtomicInteger calls = new AtomicInteger();
+        LLMClient failing = new FallbackLlmClient(history -> {
+            if (calls.incrementAndGet() == 1) throw new IllegalStateException("LLM down");
+            return "summary after retry";
+        });
+        ContextWindowBuilder builder = new ContextWindowBuilder(new TokenCounter(appProperties), summaryStore, failing,
+                appProperties);
+
+        List<ChatMessage> prompt = builder.build("s4", history(40));
+        Assertions.assertTrue(summaryStore.find("s4").isEmpty());
+        Assertions.assertTrue(prompt.get(0).getContent().startsWith("message "));
+
+        prompt = builder.buildAsync("s4", history(40)).block();
+        Assertions.assertEquals("Summary of the earlier conversation: summary after retry", prompt.get(0).getContent());
+        Assertions.assertEquals(2, calls.get());
+    }
+
+    private static List<ChatMessage> history(int size) {
+        List<ChatMessage> history = new ArrayList<>();
+        for (int i = 0; i < size; i++) history.add(message(i));
+        return history;
+    }
+
+    private static ChatMessage message(int i) {
+        return new ChatMessage(i % 2 == 0 ? "user" : "assistant", "message " + i + " about deploying the service",
+                Instant.ofEpochMilli(1_000_000L + i));
+    }
+}
@@ -0,0 +1,202 @@
+package com.pidima.chatbot.services.llm;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.repository.memory.InMemoryChatRepository;
+import com.pidima.chatbot.services.ChatService;
+import com.pidima.chatbot.services.ChatTurnMetrics;
+import com.pidima.chatbot.services.LLMClient;
+import com.pidima.chatbot.services.context.ContextWindowBuilder;
+import com.pidima.chatbot.services.context.InMemorySummaryStore;
+import com.pidima.chatbot.services.context.TokenCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingLlmClientTest {
+
+    private final AppProperties appProperties = new AppProperties();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final LLMClient llm = new LLMClient() {
+        @Override
+        public String generateReply(List<ChatMessage> history) {
+            return "reply #" + calls.incrementAndGet();
+        }
+
+        @Override
+        public Flux<String> streamReply(List<ChatMessage> history) {
+            return Flux.just("streamed ", "reply #" + calls.incrementAndGet());
+        }
+    };
+
+    private CachingLlmClient client(LLMClient delegate) {
+        appProperties.setLlmModel("gpt-4o-mini");
+        return new CachingLlmClient(delegate, appProperties, null, registry);
+    }
+
+    @Test
+    void the_same_question_asked_differently_is_answered_from_the_cache() {
+        CachingLlmClient client = client(llm);
+
+        String first = client.generateReply(List.of(user("How do I enable DynamoDB persistence?")));
+        String second = client.generateReply(List.of(user("  how do I ENABLE dynamodb   persistence ")));
+
+        Assertions.assertEquals("reply #1", first);
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(1, registry.get("chat.reply_cache.requests").tag("result", "hit").counter().count());
+        Assertions.assertEquals(1, registry.get("chat.reply_cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void model_temperature_and_system_prompt_are_part_of_the_key() {
+        CachingLlmClient client = client(llm);
+        String question = "How do I enable DynamoDB persistence?";
+        String key = client.key(List.of(user(question)));
+
+        appProperties.getContext().setSystemPrompt("Answer in German.");
+        Assertions.assertNotEquals(key, client(llm).key(List.of(system("Answer in German."), user(question))));
+        appProperties.getContext().setSystemPrompt(null);
+        appProperties.setLlmTemperature(0.9);
+        Assertions.assertNotEquals(key, client(llm).key(List.of(user(question))));
+        appProperties.setLlmTemperature(0.2);
+        appProperties.setLlmModel("gpt-4o");
+        Assertions.assertNotEquals(key, new CachingLlmClient(llm, appProperties, null, null).key(List.of(user(question))));
+    }
+
+    @Test
+    void sessions_of_different_users_share_replies() {
+        CachingLlmClient client = client(llm);
+        ChatService chatService = new ChatService(new InMemoryChatRepository(appProperties), client, appProperties,
+                new ContextWindowBuilder(new TokenCounter(appProperties), new InMemorySummaryStore(), client,
+                        appProperties), new ChatTurnMetrics(registry));
+        String alice = chatService.createSession(Optional.of("alice"));
+        String bob = chatService.createSession(Optional.of("bob"));
+
+        String first = chatService.addMessageAndReply(alice, "How do I enable DynamoDB persistence?");
+        String second = chatService.addMessageAndReply(bob, "How do I enable DynamoDB persistence?");
+
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(1, registry.get("chat.reply_cache.requests").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void conversations_longer_than_the_context_turns_bypass_the_cache() {
+        CachingLlmClient client = client(llm);
+        List<ChatMessage> followUp = List.of(user("What is the sessions table?"), assistant("It stores metadata."),
+                user("And how do I configure it?"));
+
+        client.generateReply(followUp);
+        client.generateReply(followUp);
+
+        Assertions.assertEquals(2, calls.get());
+        Assertions.assertEquals(2, registry.get("chat.reply_cache.requests").tag("result", "bypass").counter().count());
+
+        appProperties.getReplyCache().setContextTurns(2);
+        CachingLlmClient twoTurns = client(llm);
+        twoTurns.generateReply(followUp);
+        twoTurns.generateReply(followUp);
+        Assertions.assertEquals(3, calls.get());
+    }
+
+    @Test
+    void failures_are_not_cached() {
+        AtomicInteger attempts = new AtomicInteger();
+        CachingLlmClient client = client(history -> {
+            if (attempts.incrementAndGet() == 1) throw new IllegalStateException("LLM down");
+            return "recovered";
+        });
+
+        Assertions.assertThrows(IllegalStateException.class, () -> client.generateReply(List.of(user("hi"))));
+        Assertions.assertEquals("recovered", client.generateReply(List.of(user("hi"))));
+    }
+
+    @Test
+    void concurrent_identical_requests_share_one_call() {
+        Sinks.One<String> reply = Sinks.one();
+        CachingLlmClient client = client(new LLMClient() {
+            @Override
+            public String generateReply(List<ChatMessage> history) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+                calls.incrementAndGet();
+                return reply.asMono();
+            }
+        });
+
+        Mono<String> first = client.generateReplyAsync(List.of(user("hi"))).cache();
+        Mono<String> second = client.generateReplyAsync(List.of(user("hi"))).cache();
+        first.subscribe();
+        second.subscribe();
+        reply.tryEmitValue("shared");
+
+        Assertions.assertEquals("shared", first.block());
+        Assertions.assertEquals("shared", second.block());
+        Assertions.assertEquals(1, calls.get());
+    }
+
+    @Test
+    void a_cancelled_first_request_does_not_fail_the_ones_sharing_its_call() {
+        Sinks.One<String> reply = Sinks.one();
+        CachingLlmClient client = client(new LLMClient() {
+            @Override
+            public String generateReply(List<ChatMessage> history) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+                calls.incrementAndGet();
+                return reply.asMono();
+            }
+        });
+
+        Disposable first = client.generateReplyAsync(List.of(user("hi"))).subscribe();
+        Mono<String> second = client.generateReplyAsync(List.of(user("hi"))).cache();
+        second.subscribe();
+        first.dispose();
+        reply.tryEmitValue("shared");
+
+        Assertions.assertEquals("shared", second.block());
+        Assertions.assertEquals("shared", client.generateReplyAsync(List.of(user("hi"))).block());
+        Assertions.assertEquals(1, calls.get());
+    }
+
+    @Test
+    void completed_streams_are_cached_and_replayed_as_one_delta() {
+        CachingLlmClient client = client(llm);
+
+        Assertions.assertEquals(List.of("streamed ", "reply #1"), client.streamReply(List.of(user("hi"))).collectList().block());
+        Assertions.assertEquals(List.of("streamed reply #1"), client.streamReply(List.of(user("hi"))).collectList().block());
+        Assertions.assertEquals("streamed reply #1", client.generateReply(List.of(user("hi"))));
+        Assertions.assertEquals(1, calls.get());
+    }
+
+    private static ChatMessage user(String content) {
+        return new ChatMessage("user", content, Instant.now());
+    }
+
+    private static ChatMessage assistant(String content) {
+        return new ChatMessage("assistant", content, Instant.now());
+    }
+
+    private static ChatMessage system(String content) {
+        return new ChatMessage("system", content, Instant.now());
+    }
+}
@@ -0,0 +1,183 @@
+package com.pidima.chatbot.services.llm;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.services.LLMClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConcurrencyLimitingLlmClientTest {
+
+    private static final List<ChatMessage> HISTORY = List.of(new ChatMessage("user", "hi", Instant.now()));
+
+    private final AppProperties.LlmLimiter settings = new AppProperties.LlmLimiter();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+
+    private AdaptiveConcurrencyLimit limit(int initial) {
+        settings.setInitialLimit(initial);
+        settings.setMinLimit(1);
+        return new AdaptiveConcurrencyLimit(settings, registry, now::get);
+    }
+
+    @Test
+    void calls_beyond_the_limit_wait_for_a_free_slot_in_arrival_order() {
+        AdaptiveConcurrencyLimit limit = limit(1);
+        Sinks.One<String> first = Sinks.one();
+        AtomicInteger started = new AtomicInteger();
+        LLMClient client = new ConcurrencyLimitingLlmClient(pending(started, first, Mono.just("second")), limit);
+
+        CompletableFuture<String> one = client.generateReplyAsync(HISTORY).toFuture();
+        CompletableFuture<String> two = client.generateReplyAsync(HISTORY).toFuture();
+
+        Assertions.assertEquals(1, started.get());
+        Assertions.assertEquals(1, limit.getQueued());
+        first.tryEmitValue("first");
+        Assertions.assertEquals("first", one.join());
+        Assertions.assertEquals("second", two.join());
+        Assertions.assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void a_full_queue_rejects_at_once_and_queued_calls_give_up_after_max_wait() {
+        settings.setMaxQueue(1);
+        settings.setMaxWait(Duration.ofMillis(50));
+        AdaptiveConcurrencyLimit limit = limit(1);
+        LLMClient client = new ConcurrencyLimitingLlmClient(history -> {
+            throw new UnsupportedOperationException();
+        }, limit);
+        AdaptiveConcurrencyLimit.Permit held = limit.acquireBlocking();
+
+        CompletableFuture<String> queued = client.generateReplyAsync(HISTORY).toFuture();
+        LlmOverloadedException full = Assertions.assertThrows(LlmOverloadedException.class,
+                () -> client.generateReply(HISTORY));
+        Assertions.assertEquals(1, full.getRetryAfterSeconds());
+        Assertions.assertThrows(LlmOverloadedException.class, () -> client.streamReply(HISTORY));
+
+        Exception timedOut = Assertions.assertThrows(Exception.class, queued::join);
+        Assertions.assertInstanceOf(LlmOverloadedException.class, timedOut.getCause());
+        Assertions.assertEquals(0, limit.getQueued());
+        Assertions.assertEquals(2, registry.get("chat.llm.limiter.rejected").tag("reason", "queue_full").counter().count());
+        Assertions.assertEquals(1, registry.get("chat.llm.limiter.rejected").tag("reason", "timeout").counter().count());
+        held.release();
+        Assertions.assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void fast_calls_raise_the_limit_and_slow_calls_shrink_it() {
+        AdaptiveConcurrencyLimit limit = limit(4);
+        // Only calls finishing while at least half the limit is in use raise it
+        call(limit, List.of(100L, 100L, 100L));
+        call(limit, List.of(100L, 100L, 100L));
+        Assertions.assertEquals(6, limit.getLimit(), 0.001);
+
+        call(limit, List.of(1_000L));
+        Assertions.assertEquals(5.4, limit.getLimit(), 0.001);
+        Assertions.assertEquals(5.4, registry.get("chat.llm.limiter.limit").gauge().value(), 0.001);
+    }
+
+    @Test
+    void a_rate_limited_call_pauses_admission_for_the_requested_wait() {
+        AdaptiveConcurrencyLimit limit = limit(10);
+        LLMClient client = new ConcurrencyLimitingLlmClient(history -> {
+            throw new LlmRateLimitedException("OpenAI rate limit reached", Duration.ofSeconds(3));
+        }, limit);
+
+        Assertions.assertThrows(LlmOverloadedException.class, () -> client.generateReply(HISTORY));
+        Assertions.assertEquals(9, limit.getLimit(), 0.001);
+
+        now.addAndGet(Duration.ofMillis(1_500).toNanos());
+        LlmOverloadedException paused = Assertions.assertThrows(LlmOverloadedException.class,
+                () -> client.streamReply(HISTORY));
+        Assertions.assertEquals(2, paused.getRetryAfterSeconds());
+
+        now.addAndGet(Duration.ofMillis(1_500).toNanos());
+        AdaptiveConcurrencyLimit.Permit permit = limit.acquireBlocking();
+        permit.release();
+        Assertions.assertEquals(1, registry.get("chat.llm.limiter.rejected").tag("reason", "rate_limited").counter().count());
+    }
+
+    @Test
+    void timeouts_shrink_the_limit_and_other_failures_do_not() {
+        AdaptiveConcurrencyLimit limit = limit(10);
+        LLMClient invalid = new ConcurrencyLimitingLlmClient(history -> {
+            throw new IllegalStateException("Unparseable response");
+        }, limit);
+        LLMClient slow = new ConcurrencyLimitingLlmClient(new LLMClient() {
+            @Override
+            public String generateReply(List<ChatMessage> history) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+                return Mono.error(new TimeoutException());
+            }
+        }, limit);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> invalid.generateReply(HISTORY));
+        Assertions.assertEquals(10, limit.getLimit(), 0.001);
+        Assertions.assertThrows(Exception.class, () -> slow.generateReplyAsync(HISTORY).block());
+        Assertions.assertEquals(9, limit.getLimit(), 0.001);
+        Assertions.assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void the_fallback_passes_overload_on_but_answers_other_failures() {
+        LLMClient overloaded = new FallbackLlmClient(history -> {
+            throw new LlmOverloadedException("Too many LLM calls waiting", Duration.ofSeconds(1));
+        });
+        LLMClient broken = new FallbackLlmClient(history -> {
+            throw new IllegalStateException("Empty response from OpenAI");
+        });
+
+        Assertions.assertThrows(LlmOverloadedException.class, () -> overloaded.generateReply(HISTORY));
+        Assertions.assertThrows(LlmOverloadedException.class, () -> overloaded.generateReplyAsync(HISTORY).block());
+        Assertions.assertEquals(FallbackLlmClient.FALLBACK_REPLY, broken.generateReply(HISTORY));
+    }
+
+    /**
+     * Runs calls concurrently that take the given latencies (ms) on the fake clock.
+     */
+    private void call(AdaptiveConcurrencyLimit limit, List<Long> latenciesMs) {
+        long start = now.get();
+        List<AdaptiveConcurrencyLimit.Permit> permits = latenciesMs.stream().map(l -> limit.acquireBlocking()).toList();
+        for (int i = 0; i < permits.size(); i++) {
+            now.set(start + Duration.ofMillis(latenciesMs.get(i)).toNanos());
+            permits.get(i).success();
+            permits.get(i).release();
+        }
+    }
+
+    private static LLMClient pending(AtomicInteger started, Sinks.One<String> first, Mono<String> rest) {
+        return new LLMClient() {
+            @Override
+            public String generateReply(List<ChatMessage> history) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+                return started.incrementAndGet() == 1 ? first.asMono() : rest;
+            }
+
+            @Override
+            public Flux<String> streamReply(List<ChatMessage> history) {
+                return generateReplyAsync(history).flux();
+            }
+        };
+    }
+}
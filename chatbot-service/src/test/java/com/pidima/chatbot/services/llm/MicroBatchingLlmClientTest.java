@@ -0,0 +1,117 @@
+package com.pidima.chatbot.services.llm;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.services.BatchLLMClient;
+import com.pidima.chatbot.services.LLMClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class MicroBatchingLlmClientTest {
+
+    private final AppProperties.LlmBatching settings = new AppProperties.LlmBatching();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final List<Integer> batches = new CopyOnWriteArrayList<>();
+    private final AtomicInteger singleCalls = new AtomicInteger();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    private final Backend backend = new Backend();
+
+    private MicroBatchingLlmClient client() {
+        return new MicroBatchingLlmClient(backend, backend, settings, registry);
+    }
+
+    @Test
+    void concurrent_calls_are_sent_as_one_batch_and_answered_in_order() {
+        settings.setMaxBatchSize(3);
+        settings.setMaxWait(Duration.ofSeconds(10));
+        MicroBatchingLlmClient client = client();
+
+        List<CompletableFuture<String>> replies = List.of("a", "b", "c").stream()
+                .map(text -> client.generateReplyAsync(history(text)).toFuture())
+                .toList();
+
+        Assertions.assertEquals(List.of("re: a", "re: b", "re: c"), replies.stream().map(CompletableFuture::join).toList());
+        Assertions.assertEquals(List.of(3), batches);
+        Assertions.assertEquals(3, registry.get("chat.llm.batch.size").summary().totalAmount());
+        Assertions.assertEquals(1, registry.get("chat.llm.batch.latency").timer().count());
+        Assertions.assertEquals(3, registry.get("chat.llm.batch.wait").timer().count());
+    }
+
+    @Test
+    void a_partial_batch_is_sent_after_max_wait() {
+        settings.setMaxBatchSize(8);
+        settings.setMaxWait(Duration.ofMillis(20));
+        MicroBatchingLlmClient client = client();
+
+        CompletableFuture<String> one = client.generateReplyAsync(history("a")).toFuture();
+        CompletableFuture<String> two = client.generateReplyAsync(history("b")).toFuture();
+        Assertions.assertFalse(one.isDone());
+
+        Assertions.assertEquals("re: a", one.join());
+        Assertions.assertEquals("re: b", two.join());
+        Assertions.assertEquals(List.of(2), batches);
+
+        // Alone in its window: the regular chat call
+        Assertions.assertEquals("re: c", client.generateReply(history("c")));
+        Assertions.assertEquals(1, singleCalls.get());
+        Assertions.assertEquals(List.of(2), batches);
+    }
+
+    @Test
+    void a_failed_batch_fails_every_call_in_it() {
+        settings.setMaxBatchSize(2);
+        failure.set(new IllegalStateException("Unparseable response"));
+        MicroBatchingLlmClient client = client();
+
+        CompletableFuture<String> one = client.generateReplyAsync(history("a")).toFuture();
+        CompletableFuture<String> two = client.generateReplyAsync(history("b")).toFuture();
+
+        for (CompletableFuture<String> reply : List.of(one, two)) {
+            Exception e = Assertions.assertThrows(Exception.class, reply::join);
+            Assertions.assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+        Assertions.assertEquals(FallbackLlmClient.FALLBACK_REPLY,
+                new FallbackLlmClient(client).generateReplyAsync(history("c")).block());
+    }
+
+    private static List<ChatMessage> history(String text) {
+        return List.of(new ChatMessage("user", text, Instant.now()));
+    }
+
+    private class Backend implements LLMClient, BatchLLMClient {
+        @Override
+        public String generateReply(List<ChatMessage> history) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+            singleCalls.incrementAndGet();
+            return failure.get() != null ? Mono.error(failure.get()) : Mono.just(reply(history));
+        }
+
+        @Override
+        public Mono<List<String>> generateReplies(List<List<ChatMessage>> histories) {
+            batches.add(histories.size());
+            return failure.get() != null
+                    ? Mono.error(failure.get())
+                    : Mono.just(histories.stream().map(Backend::reply).toList());
+        }
+
+        private static String reply(List<ChatMessage> history) {
+            return "re: " + history.get(history.size() - 1).getContent();
+        }
+    }
+}
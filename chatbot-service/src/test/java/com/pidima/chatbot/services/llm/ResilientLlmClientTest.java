@@ -0,0 +1,232 @@
+package com.pidima.chatbot.services.llm;
+
+import com.pidima.chatbot.config.AppProperties;
+import com.pidima.chatbot.models.ChatMessage;
+import com.pidima.chatbot.services.LLMClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+public class ResilientLlmClientTest {
+
+    private static final List<ChatMessage> HISTORY = List.of(new ChatMessage("user", "hi", Instant.now()));
+
+    private final AppProperties.LlmResilience settings = new AppProperties.LlmResilience();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    public ResilientLlmClientTest() {
+        settings.setInitialBackoff(Duration.ofMillis(1));
+        settings.setMaxBackoff(Duration.ofMillis(20));
+    }
+
+    private ResilientLlmClient client(LLMClient delegate) {
+        return new ResilientLlmClient(delegate, settings, null, registry);
+    }
+
+    @Test
+    void transient_failures_are_retried_until_an_attempt_succeeds() {
+        LLMClient flaky = history -> {
+            if (calls.incrementAndGet() < 3) throw serverError();
+            return "reply";
+        };
+
+        Assertions.assertEquals("reply", client(flaky).generateReply(HISTORY));
+        Assertions.assertEquals(3, calls.get());
+        Assertions.assertEquals(2, registry.get("chat.llm.retries").counter().count());
+        Assertions.assertEquals(1, registry.get("chat.llm.requests").tag("outcome", "retried_success").timer().count());
+
+        calls.set(0);
+        Assertions.assertEquals("reply", client(async(flaky)).generateReplyAsync(HISTORY).block());
+        Assertions.assertEquals(3, calls.get());
+    }
+
+    @Test
+    void attempts_are_bounded_and_other_failures_are_not_retried() {
+        LLMClient down = history -> {
+            calls.incrementAndGet();
+            throw serverError();
+        };
+        Assertions.assertThrows(WebClientResponseException.class, () -> client(down).generateReply(HISTORY));
+        Assertions.assertEquals(3, calls.get());
+
+        calls.set(0);
+        LLMClient invalid = history -> {
+            calls.incrementAndGet();
+            throw WebClientResponseException.create(HttpStatus.BAD_REQUEST.value(), "Bad Request", null, null, null);
+        };
+        Assertions.assertThrows(WebClientResponseException.class, () -> client(async(invalid)).generateReplyAsync(HISTORY).block());
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(2, registry.get("chat.llm.requests").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void rate_limits_are_retried_only_when_the_requested_wait_is_short() {
+        AtomicLong retryAfterMs = new AtomicLong(10);
+        LLMClient limited = history -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new LlmRateLimitedException("OpenAI rate limit reached", Duration.ofMillis(retryAfterMs.get()));
+            }
+            return "reply";
+        };
+        Assertions.assertEquals("reply", client(limited).generateReply(HISTORY));
+
+        calls.set(0);
+        retryAfterMs.set(60_000);
+        Assertions.assertThrows(LlmRateLimitedException.class, () -> client(limited).generateReply(HISTORY));
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(1, registry.get("chat.llm.requests").tag("outcome", "rejected").timer().count());
+    }
+
+    @Test
+    void streams_are_retried_before_their_first_delta_only() {
+        LLMClient failsBeforeFirstDelta = stream(attempt -> attempt == 1
+                ? Flux.error(new TimeoutException())
+                : Flux.just("a", "b"));
+        Assertions.assertEquals(List.of("a", "b"), client(failsBeforeFirstDelta).streamReply(HISTORY).collectList().block());
+
+        calls.set(0);
+        LLMClient failsMidStream = stream(attempt -> Flux.concat(Flux.just("a"), Flux.error(new TimeoutException())));
+        Assertions.assertThrows(Exception.class, () -> client(failsMidStream).streamReply(HISTORY).collectList().block());
+        Assertions.assertEquals(1, calls.get());
+    }
+
+    @Test
+    void a_slow_call_is_hedged_and_the_first_reply_wins() {
+        settings.getHedging().setEnabled(true);
+        settings.getHedging().setMinDelay(Duration.ofMillis(20));
+        AtomicInteger cancelled = new AtomicInteger();
+        AtomicInteger slow = new AtomicInteger(-1);
+        ResilientLlmClient client = client(new LLMClient() {
+            @Override
+            public String generateReply(List<ChatMessage> history) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+                int call = calls.incrementAndGet();
+                if (call == slow.get()) {
+                    return Mono.<String>never().doOnCancel(cancelled::incrementAndGet);
+                }
+                return Mono.just("reply " + call);
+            }
+        });
+        // Latency samples for the hedge delay
+        for (int i = 0; i < 20; i++) {
+            client.generateReplyAsync(HISTORY).block();
+        }
+        Assertions.assertEquals(0, registry.get("chat.llm.hedges").tag("result", "started").counter().count());
+
+        slow.set(21);
+        Assertions.assertEquals("reply 22", client.generateReply(HISTORY));
+        Assertions.assertEquals(1, cancelled.get());
+        Assertions.assertEquals(1, registry.get("chat.llm.hedges").tag("result", "won").counter().count());
+    }
+
+    @Test
+    void the_breaker_opens_on_failures_and_closes_after_successful_trial_calls() {
+        settings.setMaxAttempts(1);
+        AppProperties.LlmResilience.Breaker breakerSettings = settings.getCircuitBreaker();
+        breakerSettings.setWindow(4);
+        breakerSettings.setMinCalls(4);
+        breakerSettings.setHalfOpenCalls(2);
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(breakerSettings, registry, now::get);
+        AtomicInteger failing = new AtomicInteger();
+        ResilientLlmClient client = new ResilientLlmClient(history -> {
+            calls.incrementAndGet();
+            if (failing.getAndDecrement() > 0) throw serverError();
+            return "reply";
+        }, settings, breaker, registry);
+
+        Assertions.assertEquals("reply", client.generateReply(HISTORY));
+        failing.set(2);
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertThrows(WebClientResponseException.class, () -> client.generateReply(HISTORY));
+        }
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // Three of the last four attempts failed
+        failing.set(1);
+        Assertions.assertThrows(WebClientResponseException.class, () -> client.generateReply(HISTORY));
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        int before = calls.get();
+        Assertions.assertThrows(CircuitBreaker.OpenException.class, () -> client.generateReply(HISTORY));
+        Assertions.assertEquals(before, calls.get());
+        Assertions.assertEquals(1, registry.get("chat.llm.requests").tag("outcome", "short_circuited").timer().count());
+
+        now.addAndGet(breakerSettings.getOpenDuration().toNanos());
+        Assertions.assertEquals("reply", client.generateReply(HISTORY));
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Assertions.assertEquals("reply", client.generateReply(HISTORY));
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void a_failed_trial_call_reopens_the_breaker() {
+        AppProperties.LlmResilience.Breaker breakerSettings = settings.getCircuitBreaker();
+        breakerSettings.setWindow(2);
+        breakerSettings.setMinCalls(2);
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(breakerSettings, registry, now::get);
+
+        breaker.acquirePermission().onFailure();
+        breaker.acquirePermission().onFailure();
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        now.addAndGet(breakerSettings.getOpenDuration().toNanos());
+        CircuitBreaker.Attempt trial = breaker.acquirePermission();
+        CircuitBreaker.Attempt abandoned = breaker.acquirePermission();
+        abandoned.onCancel();
+        trial.onFailure();
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assertions.assertThrows(CircuitBreaker.OpenException.class, breaker::acquirePermission);
+        Assertions.assertEquals(2, registry.get("chat.llm.circuit.transitions").tag("state", "open").counter().count());
+    }
+
+    private static WebClientResponseException serverError() {
+        return WebClientResponseException.create(HttpStatus.BAD_GATEWAY.value(), "Bad Gateway", null, null, null);
+    }
+
+    private static LLMClient async(LLMClient blocking) {
+        return new LLMClient() {
+            @Override
+            public String generateReply(List<ChatMessage> history) {
+                return blocking.generateReply(history);
+            }
+
+            @Override
+            public Mono<String> generateReplyAsync(List<ChatMessage> history) {
+                return Mono.fromCallable(() -> blocking.generateReply(history));
+            }
+        };
+    }
+
+    private LLMClient stream(IntFunction<Flux<String>> attempts) {
+        return new LLMClient() {
+            @Override
+            public String generateReply(List<ChatMessage> history) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Flux<String> streamReply(List<ChatMessage> history) {
+                return Flux.defer(() -> attempts.apply(calls.incrementAndGet()));
+            }
+        };
+    }
+}
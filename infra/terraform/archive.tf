@@ -0,0 +1,26 @@
+# Archive of chat messages past their retention (app.dynamo.archive.store=s3)
+resource "aws_s3_bucket" "chat_archive" {
+  bucket_prefix = "${var.prefix}-chat-archive-"
+
+  tags = {
+    Name = "${var.prefix}-chat-archive"
+  }
+}
+
+resource "aws_s3_bucket_public_access_block" "chat_archive" {
+  bucket                  = aws_s3_bucket.chat_archive.id
+  block_public_acls       = true
+  block_public_policy     = true
+  ignore_public_acls      = true
+  restrict_public_buckets = true
+}
+
+resource "aws_s3_bucket_server_side_encryption_configuration" "chat_archive" {
+  bucket = aws_s3_bucket.chat_archive.id
+
+  rule {
+    apply_server_side_encryption_by_default {
+      sse_algorithm = "AES256"
+    }
+  }
+}
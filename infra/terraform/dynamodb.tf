@@ -14,7 +14,50 @@ resource "aws_dynamodb_table" "chat_messages" {
     type = "N"
   }
 
+  # Written only when app.dynamo.session-ttl is set; the archiver removes messages before it fires
+  ttl {
+    attribute_name = "expiresAt"
+    enabled        = true
+  }
+
   tags = {
     Name = "${var.prefix}-chat_messages"
   }
 }
+
+# Sort key node ids leased by the chatbot tasks (NodeIdLease); at most 256 items
+resource "aws_dynamodb_table" "chat_node_leases" {
+  name         = "${var.prefix}-chat_node_leases"
+  billing_mode = "PAY_PER_REQUEST"
+  hash_key     = "nodeId"
+
+  attribute {
+    name = "nodeId"
+    type = "N"
+  }
+
+  tags = {
+    Name = "${var.prefix}-chat_node_leases"
+  }
+}
+
+resource "aws_dynamodb_table" "chat_sessions" {
+  name         = "${var.prefix}-chat_sessions"
+  billing_mode = "PAY_PER_REQUEST"
+  hash_key     = "sessionId"
+
+  attribute {
+    name = "sessionId"
+    type = "S"
+  }
+
+  # Written only when app.dynamo.session-ttl is set
+  ttl {
+    attribute_name = "expiresAt"
+    enabled        = true
+  }
+
+  tags = {
+    Name = "${var.prefix}-chat_sessions"
+  }
+}
@@ -110,6 +110,11 @@ resource "aws_ecs_task_definition" "chatbot" {
       portMappings = [{ containerPort = 8080, protocol = "tcp" }]
       environment = [
         { name = "APP_PERSISTENCE", value = "dynamodb" },
+        { name = "DYNAMODB_TABLE", value = aws_dynamodb_table.chat_messages.name },
+        { name = "DYNAMODB_SESSIONS_TABLE", value = aws_dynamodb_table.chat_sessions.name },
+        { name = "DYNAMODB_NODE_LEASES_TABLE", value = aws_dynamodb_table.chat_node_leases.name },
+        { name = "DYNAMODB_ARCHIVE_STORE", value = "s3" },
+        { name = "DYNAMODB_ARCHIVE_BUCKET", value = aws_s3_bucket.chat_archive.bucket },
         { name = "APP_LLM_PROVIDER", value = "openai" },
         { name = "APP_LLM_MODEL", value = "gpt-4o-mini" },
         { name = "AWS_REGION", value = var.region }
@@ -41,11 +41,23 @@ resource "aws_iam_role_policy" "app_task_inline" {
         Effect = "Allow",
         Action = [
           "dynamodb:PutItem",
+          "dynamodb:UpdateItem",
           "dynamodb:Query",
           "dynamodb:GetItem",
-          "dynamodb:BatchWriteItem"
+          "dynamodb:BatchWriteItem",
+          "dynamodb:Scan",
+          "dynamodb:DeleteItem"
         ],
-        Resource = "arn:aws:dynamodb:${var.region}:*:table/${var.prefix}-chat_messages"
+        Resource = [
+          "arn:aws:dynamodb:${var.region}:*:table/${var.prefix}-chat_messages",
+          "arn:aws:dynamodb:${var.region}:*:table/${var.prefix}-chat_sessions",
+          "arn:aws:dynamodb:${var.region}:*:table/${var.prefix}-chat_node_leases"
+        ]
+      },
+      {
+        Effect   = "Allow",
+        Action   = ["s3:PutObject"],
+        Resource = "${aws_s3_bucket.chat_archive.arn}/*"
       },
       {
         Effect   = "Allow",
@@ -23,7 +23,17 @@ output "dynamodb_table_name" {
   description = "DynamoDB table name for chat messages"
 }
 
+output "dynamodb_sessions_table_name" {
+  value       = aws_dynamodb_table.chat_sessions.name
+  description = "DynamoDB table name for chat session metadata"
+}
+
 output "redis_endpoint" {
   value       = aws_elasticache_cluster.redis.cache_nodes[0].address
   description = "ElastiCache Redis endpoint"
 }
+
+output "chat_archive_bucket" {
+  value       = aws_s3_bucket.chat_archive.bucket
+  description = "S3 bucket receiving archived chat messages"
+}
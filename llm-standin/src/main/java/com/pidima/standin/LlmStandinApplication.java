@@ -0,0 +1,14 @@
+package com.pidima.standin;
+
+import com.pidima.standin.config.StandinProperties;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+
+@SpringBootApplication
+@EnableConfigurationProperties(StandinProperties.class)
+public class LlmStandinApplication {
+    public static void main(String[] args) {
+        SpringApplication.run(LlmStandinApplication.class, args);
+    }
+}
@@ -0,0 +1,41 @@
+package com.pidima.standin.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.pidima.standin.config.StandinProperties;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * Reads and changes {@code standin.*} while the server runs, e.g. to inject a burst of 429s in the middle of a load
+ * test: {@code PATCH /admin/config {"faults":{"rateLimitRate":0.5}}}. Fields not in the body keep their values.
+ */
+@RestController
+@RequestMapping("/admin/config")
+public class AdminController {
+
+    private final StandinProperties properties;
+    private final ObjectReader updater;
+
+    public AdminController(StandinProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        // Merges nested objects instead of replacing them
+        this.updater = objectMapper.copy().setDefaultMergeable(true).readerForUpdating(properties);
+    }
+
+    @GetMapping
+    public StandinProperties get() {
+        return properties;
+    }
+
+    @PatchMapping
+    public synchronized StandinProperties update(@RequestBody String patch) throws IOException {
+        updater.readValue(patch);
+        return properties;
+    }
+}
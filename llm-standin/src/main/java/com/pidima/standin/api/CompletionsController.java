@@ -0,0 +1,213 @@
+package com.pidima.standin.api;
+
+import com.pidima.standin.api.dto.ChatCompletionRequest;
+import com.pidima.standin.api.dto.CompletionRequest;
+import com.pidima.standin.config.StandinProperties;
+import com.pidima.standin.service.FaultInjector;
+import com.pidima.standin.service.LatencyModel;
+import com.pidima.standin.service.ReplyGenerator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * OpenAI-compatible completion endpoints answered with generated text after a simulated delay: time to first token
+ * from {@link LatencyModel}, then one token per {@code 1 / tokens-per-second}. Faults and rate limiting come from
+ * {@link FaultInjector}.
+ */
+@RestController
+@RequestMapping("/v1")
+@RequiredArgsConstructor
+public class CompletionsController {
+    private static final String STREAM_DONE = "[DONE]";
+
+    private final LatencyModel latencyModel;
+    private final FaultInjector faultInjector;
+    private final ReplyGenerator replyGenerator;
+    private final StandinProperties properties;
+
+    @PostMapping("/chat/completions")
+    public Mono<ResponseEntity<Object>> chatCompletions(@RequestBody ChatCompletionRequest request) {
+        FaultInjector.Outcome outcome = faultInjector.next(request.stream());
+        if (outcome.kind() != FaultInjector.Kind.OK && outcome.kind() != FaultInjector.Kind.STREAM_ABORT) {
+            return fault(outcome);
+        }
+        String id = "chatcmpl-" + UUID.randomUUID();
+        long created = Instant.now().getEpochSecond();
+        List<String> tokens = replyGenerator.reply(request.lastUserContent(), latencyModel.replyTokens(request.maxTokens()));
+        String finishReason = finishReason(tokens.size(), request.maxTokens());
+        Duration timeToFirstToken = latencyModel.timeToFirstToken();
+        Duration interTokenDelay = latencyModel.interTokenDelay();
+
+        if (!request.stream()) {
+            Map<String, Object> choice = Map.of(
+                    "index", 0,
+                    "message", Map.of("role", "assistant", "content", String.join("", tokens)),
+                    "finish_reason", finishReason);
+            Map<String, Object> body = Map.of(
+                    "id", id,
+                    "object", "chat.completion",
+                    "created", created,
+                    "model", model(request.model()),
+                    "choices", List.of(choice),
+                    "usage", usage(promptTokens(request), tokens.size()));
+            return Mono.delay(timeToFirstToken.plus(interTokenDelay.multipliedBy(tokens.size())))
+                    .map(tick -> ok(outcome).contentType(MediaType.APPLICATION_JSON).body(body));
+        }
+
+        Flux<String> deltas = Flux.fromIterable(tokens);
+        if (!interTokenDelay.isZero()) {
+            deltas = deltas.delayElements(interTokenDelay);
+        }
+        Flux<ServerSentEvent<Object>> events;
+        ServerSentEvent<Object> roleChunk = chunk(id, created, request.model(), Map.of("role", "assistant", "content", ""), null);
+        if (outcome.kind() == FaultInjector.Kind.STREAM_ABORT) {
+            // Drops the connection halfway through the reply
+            events = Flux.concat(Flux.just(roleChunk),
+                    deltas.take(tokens.size() / 2).map(token -> chunk(id, created, request.model(), Map.of("content", token), null)),
+                    Flux.error(new IllegalStateException("Injected stream abort")));
+        } else {
+            events = Flux.concat(Flux.just(roleChunk),
+                    deltas.map(token -> chunk(id, created, request.model(), Map.of("content", token), null)),
+                    Flux.just(chunk(id, created, request.model(), Map.of(), finishReason),
+                            ServerSentEvent.builder((Object) STREAM_DONE).build()));
+        }
+        return Mono.just(ok(outcome)
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(events.delaySubscription(timeToFirstToken)));
+    }
+
+    /**
+     * Legacy completions; a {@code prompt} array is answered as one batch, taking as long as its longest reply.
+     */
+    @PostMapping("/completions")
+    public Mono<ResponseEntity<Object>> completions(@RequestBody CompletionRequest request) {
+        FaultInjector.Outcome outcome = faultInjector.next(false);
+        if (outcome.kind() != FaultInjector.Kind.OK) {
+            return fault(outcome);
+        }
+        List<String> prompts = request.prompt() == null ? List.of("") : request.prompt();
+        List<Map<String, Object>> choices = new ArrayList<>(prompts.size());
+        int longest = 0;
+        int promptTokens = 0;
+        int completionTokens = 0;
+        for (int i = 0; i < prompts.size(); i++) {
+            List<String> tokens = replyGenerator.reply(prompts.get(i), latencyModel.replyTokens(request.maxTokens()));
+            choices.add(Map.of(
+                    "index", i,
+                    "text", String.join("", tokens),
+                    "finish_reason", finishReason(tokens.size(), request.maxTokens())));
+            longest = Math.max(longest, tokens.size());
+            promptTokens += ReplyGenerator.countTokens(prompts.get(i));
+            completionTokens += tokens.size();
+        }
+        Map<String, Object> body = Map.of(
+                "id", "cmpl-" + UUID.randomUUID(),
+                "object", "text_completion",
+                "created", Instant.now().getEpochSecond(),
+                "model", model(request.model()),
+                "choices", choices,
+                "usage", usage(promptTokens, completionTokens));
+        Duration delay = latencyModel.timeToFirstToken().plus(latencyModel.interTokenDelay().multipliedBy(longest));
+        return Mono.delay(delay).map(tick -> ok(outcome).contentType(MediaType.APPLICATION_JSON).body(body));
+    }
+
+    private Mono<ResponseEntity<Object>> fault(FaultInjector.Outcome outcome) {
+        return switch (outcome.kind()) {
+            case RATE_LIMITED -> {
+                HttpHeaders headers = rateLimitHeaders(outcome);
+                headers.set(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, ceilSeconds(outcome.reset()))));
+                headers.set("x-ratelimit-reset-requests", outcome.reset().toMillis() + "ms");
+                yield Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).headers(headers)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(error("Rate limit reached for requests", "requests", "rate_limit_exceeded")));
+            }
+            case ERROR -> Mono.just(ResponseEntity.status(properties.getFaults().getErrorStatus())
+                    .headers(rateLimitHeaders(outcome))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(error("The server had an error while processing your request", "server_error", null)));
+            // Never answers; the client's timeout has to end the call
+            default -> Mono.never();
+        };
+    }
+
+    private static ResponseEntity.BodyBuilder ok(FaultInjector.Outcome outcome) {
+        return ResponseEntity.ok().headers(rateLimitHeaders(outcome));
+    }
+
+    /**
+     * The {@code x-ratelimit-*} headers OpenAI sends, when {@code standin.rate-limit.requests-per-minute} is set.
+     */
+    private static HttpHeaders rateLimitHeaders(FaultInjector.Outcome outcome) {
+        HttpHeaders headers = new HttpHeaders();
+        if (outcome.limit() > 0) {
+            headers.set("x-ratelimit-limit-requests", Integer.toString(outcome.limit()));
+            headers.set("x-ratelimit-remaining-requests", Integer.toString(outcome.remaining()));
+            headers.set("x-ratelimit-reset-requests", outcome.reset().toMillis() + "ms");
+        }
+        return headers;
+    }
+
+    private ServerSentEvent<Object> chunk(String id, long created, String model, Map<String, Object> delta,
+                                          String finishReason) {
+        Map<String, Object> choice = new HashMap<>();
+        choice.put("index", 0);
+        choice.put("delta", delta);
+        choice.put("finish_reason", finishReason);
+        return ServerSentEvent.builder((Object) Map.of(
+                "id", id,
+                "object", "chat.completion.chunk",
+                "created", created,
+                "model", model(model),
+                "choices", List.of(choice))).build();
+    }
+
+    private static Map<String, Object> error(String message, String type, String code) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("message", message);
+        error.put("type", type);
+        error.put("code", code);
+        return Map.of("error", error);
+    }
+
+    private static Map<String, Object> usage(int promptTokens, int completionTokens) {
+        return Map.of(
+                "prompt_tokens", promptTokens,
+                "completion_tokens", completionTokens,
+                "total_tokens", promptTokens + completionTokens);
+    }
+
+    private static int promptTokens(ChatCompletionRequest request) {
+        if (request.messages() == null) return 0;
+        return request.messages().stream().mapToInt(m -> ReplyGenerator.countTokens(m.content())).sum();
+    }
+
+    private static String finishReason(int tokens, Integer maxTokens) {
+        return maxTokens != null && maxTokens > 0 && tokens >= maxTokens ? "length" : "stop";
+    }
+
+    private static String model(String requested) {
+        return requested == null ? "standin" : requested;
+    }
+
+    private static long ceilSeconds(Duration duration) {
+        return (duration.toMillis() + 999) / 1000;
+    }
+}
@@ -0,0 +1,29 @@
+package com.pidima.standin.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Fields of {@code POST /v1/chat/completions} the stand-in reads; the rest is accepted and ignored.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ChatCompletionRequest(String model, List<Message> messages, boolean stream,
+                                    @JsonProperty("max_tokens") Integer maxTokens) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Message(String role, String content) {
+    }
+
+    /**
+     * @return the content of the last user message, the text the reply echoes
+     */
+    public String lastUserContent() {
+        if (messages == null) return "";
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if ("user".equals(messages.get(i).role())) return messages.get(i).content();
+        }
+        return "";
+    }
+}
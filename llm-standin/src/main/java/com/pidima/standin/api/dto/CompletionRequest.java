@@ -0,0 +1,17 @@
+package com.pidima.standin.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Fields of {@code POST /v1/completions} the stand-in reads. {@code prompt} may be a single string or an array (a
+ * batch).
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record CompletionRequest(String model,
+                                @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY) List<String> prompt,
+                                @JsonProperty("max_tokens") Integer maxTokens) {
+}
@@ -0,0 +1,59 @@
+package com.pidima.standin.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Timing and fault behaviour of the stand-in. Bound from {@code standin.*}; the bean is read on every request, so tests
+ * (and {@code PATCH /admin/config}) can change it while the server runs.
+ */
+@ConfigurationProperties(prefix = "standin")
+@Getter
+@Setter
+public class StandinProperties {
+    private Latency latency = new Latency();
+    private int tokensPerSecond = 50; // pace of streamed deltas; a non-streamed reply takes as long as streaming it
+    private int minReplyTokens = 20; // reply length is uniform between these, capped by the request's max_tokens
+    private int maxReplyTokens = 120;
+    private Faults faults = new Faults();
+    private RateLimit rateLimit = new RateLimit();
+
+    public enum Distribution { FIXED, UNIFORM, LOG_NORMAL }
+
+    /**
+     * Time to first token.
+     */
+    @Getter
+    @Setter
+    public static class Latency {
+        private Distribution distribution = Distribution.LOG_NORMAL;
+        private Duration median = Duration.ofMillis(400); // FIXED: the latency; LOG_NORMAL: its median
+        private Duration p99 = Duration.ofSeconds(2); // LOG_NORMAL: sets the tail
+        private Duration min = Duration.ZERO; // UNIFORM: lower bound; others: clamp
+        private Duration max = Duration.ofSeconds(30); // UNIFORM: upper bound; others: clamp
+    }
+
+    @Getter
+    @Setter
+    public static class Faults {
+        private double errorRate = 0; // share of calls answered with error-status
+        private int errorStatus = 500;
+        private double rateLimitRate = 0; // share of calls answered with 429, on top of rate-limit
+        private Duration retryAfter = Duration.ofSeconds(1); // of injected 429s
+        private double stallRate = 0; // share of calls that never answer, to exercise client timeouts
+        private double streamAbortRate = 0; // share of streams cut off halfway through the reply
+    }
+
+    /**
+     * Requests per fixed one-minute window, reported in {@code x-ratelimit-*} headers like OpenAI does. Requests beyond
+     * the limit get 429 with {@code Retry-After} until the window ends.
+     */
+    @Getter
+    @Setter
+    public static class RateLimit {
+        private int requestsPerMinute = 0; // 0 = unlimited, no headers
+    }
+}
@@ -0,0 +1,78 @@
+package com.pidima.standin.service;
+
+import com.pidima.standin.config.StandinProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides per request whether it is answered, rate limited, failed or stalled, from {@code standin.faults.*} and the
+ * {@code standin.rate-limit} window. Outcomes are counted as {@code standin.requests{outcome}}.
+ */
+@Component
+@RequiredArgsConstructor
+public class FaultInjector {
+    private static final Duration WINDOW = Duration.ofMinutes(1);
+
+    private final StandinProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    // Guarded by this
+    private long windowStart = Long.MIN_VALUE;
+    private int windowRequests;
+
+    public enum Kind { OK, RATE_LIMITED, ERROR, STALL, STREAM_ABORT }
+
+    /**
+     * @param kind      what to do with the request
+     * @param limit     requests per window; 0 when unlimited
+     * @param remaining requests left in the window after this one
+     * @param reset     time until the window ends, or the wait of an injected 429
+     */
+    public record Outcome(Kind kind, int limit, int remaining, Duration reset) {
+    }
+
+    public Outcome next(boolean stream) {
+        Outcome outcome = decide(stream);
+        meterRegistry.counter("standin.requests", "outcome", outcome.kind().name().toLowerCase()).increment();
+        return outcome;
+    }
+
+    private Outcome decide(boolean stream) {
+        int limit = Math.max(0, properties.getRateLimit().getRequestsPerMinute());
+        int remaining = 0;
+        Duration reset = Duration.ZERO;
+        if (limit > 0) {
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (windowStart == Long.MIN_VALUE || now - windowStart >= WINDOW.toNanos()) {
+                    windowStart = now;
+                    windowRequests = 0;
+                }
+                reset = WINDOW.minusNanos(now - windowStart);
+                if (windowRequests >= limit) {
+                    return new Outcome(Kind.RATE_LIMITED, limit, 0, reset);
+                }
+                remaining = limit - ++windowRequests;
+            }
+        }
+        StandinProperties.Faults faults = properties.getFaults();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < faults.getRateLimitRate()) {
+            return new Outcome(Kind.RATE_LIMITED, limit, remaining, faults.getRetryAfter());
+        }
+        if (random.nextDouble() < faults.getErrorRate()) {
+            return new Outcome(Kind.ERROR, limit, remaining, reset);
+        }
+        if (random.nextDouble() < faults.getStallRate()) {
+            return new Outcome(Kind.STALL, limit, remaining, reset);
+        }
+        if (stream && random.nextDouble() < faults.getStreamAbortRate()) {
+            return new Outcome(Kind.STREAM_ABORT, limit, remaining, reset);
+        }
+        return new Outcome(Kind.OK, limit, remaining, reset);
+    }
+}
@@ -0,0 +1,52 @@
+package com.pidima.standin.service;
+
+import com.pidima.standin.config.StandinProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples the timing of one reply from {@code standin.latency.*} and {@code standin.tokens-per-second}.
+ */
+@Component
+@RequiredArgsConstructor
+public class LatencyModel {
+    // Standard normal quantile of p99
+    private static final double Z_99 = 2.3263;
+
+    private final StandinProperties properties;
+
+    public Duration timeToFirstToken() {
+        StandinProperties.Latency latency = properties.getLatency();
+        long min = latency.getMin().toNanos();
+        long max = Math.max(min, latency.getMax().toNanos());
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long sample = switch (latency.getDistribution()) {
+            case FIXED -> latency.getMedian().toNanos();
+            case UNIFORM -> min == max ? min : random.nextLong(min, max + 1);
+            case LOG_NORMAL -> {
+                double median = Math.max(1, latency.getMedian().toNanos());
+                double sigma = Math.max(0, Math.log(latency.getP99().toNanos() / median) / Z_99);
+                yield (long) (median * Math.exp(sigma * random.nextGaussian()));
+            }
+        };
+        return Duration.ofNanos(Math.min(max, Math.max(min, sample)));
+    }
+
+    public Duration interTokenDelay() {
+        int tokensPerSecond = properties.getTokensPerSecond();
+        return tokensPerSecond <= 0 ? Duration.ZERO : Duration.ofNanos(1_000_000_000L / tokensPerSecond);
+    }
+
+    /**
+     * @return the reply length in tokens, at most {@code maxTokens} when the request set it
+     */
+    public int replyTokens(Integer maxTokens) {
+        int min = Math.max(1, properties.getMinReplyTokens());
+        int max = Math.max(min, properties.getMaxReplyTokens());
+        int tokens = min == max ? min : ThreadLocalRandom.current().nextInt(min, max + 1);
+        return maxTokens != null && maxTokens > 0 ? Math.min(tokens, maxTokens) : tokens;
+    }
+}
@@ -0,0 +1,48 @@
+package com.pidima.standin.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Builds placeholder replies as lists of tokens (one word plus its trailing space each), starting with an echo of the
+ * prompt so replies to different questions differ.
+ */
+@Component
+public class ReplyGenerator {
+    private static final String[] VOCABULARY = ("the service stores each session in a table and keeps recent messages "
+            + "in memory so that replies stay fast while the documentation explains how to deploy configure and "
+            + "monitor every component of the platform").split(" ");
+    private static final int ECHO_WORDS = 8;
+
+    public List<String> reply(String prompt, int tokens) {
+        List<String> words = new ArrayList<>(tokens);
+        words.add("Stand-in");
+        words.add("reply");
+        words.add("to:");
+        for (String word : prompt == null ? new String[0] : prompt.strip().split("\\s+")) {
+            if (words.size() >= 3 + ECHO_WORDS || word.isEmpty()) break;
+            words.add(word);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (words.size() < tokens) {
+            words.add(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+        }
+        List<String> reply = words.subList(0, Math.min(tokens, words.size()));
+        List<String> result = new ArrayList<>(reply.size());
+        for (int i = 0; i < reply.size(); i++) {
+            result.add(i == reply.size() - 1 ? reply.get(i) : reply.get(i) + " ");
+        }
+        return result;
+    }
+
+    /**
+     * Rough token count of a prompt, for the {@code usage} block: one per word.
+     */
+    public static int countTokens(String text) {
+        if (text == null || text.isBlank()) return 0;
+        return text.strip().split("\\s+").length;
+    }
+}
@@ -0,0 +1,132 @@
+package com.pidima.standin.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pidima.standin.config.StandinProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Every reply is longer than max_tokens, so it is cut at exactly 30 tokens with finish_reason "length"
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"standin.min-reply-tokens=40", "standin.max-reply-tokens=40"})
+@ActiveProfiles("instant")
+class CompletionsControllerTest {
+
+    private static final Map<String, Object> CHAT = Map.of(
+            "model", "gpt-4o-mini",
+            "messages", List.of(Map.of("role", "user", "content", "How do I deploy?")),
+            "max_tokens", 30);
+
+    @Autowired
+    private WebTestClient webTestClient;
+    @Autowired
+    private StandinProperties properties;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    void resetFaults() {
+        properties.setFaults(new StandinProperties.Faults());
+        properties.setRateLimit(new StandinProperties.RateLimit());
+    }
+
+    @Test
+    void chat_completion_answers_in_the_openai_format() {
+        webTestClient.post().uri("/v1/chat/completions")
+                .bodyValue(CHAT)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.object").isEqualTo("chat.completion")
+                .jsonPath("$.model").isEqualTo("gpt-4o-mini")
+                .jsonPath("$.choices[0].message.role").isEqualTo("assistant")
+                .jsonPath("$.choices[0].message.content").value(content ->
+                        Assertions.assertTrue(content.toString().startsWith("Stand-in reply to: How do I deploy?")))
+                .jsonPath("$.choices[0].finish_reason").isEqualTo("length")
+                .jsonPath("$.usage.prompt_tokens").isEqualTo(4)
+                .jsonPath("$.usage.completion_tokens").isEqualTo(30);
+    }
+
+    @Test
+    void streamed_chat_completion_sends_deltas_then_done() throws Exception {
+        Map<String, Object> request = new HashMap<>(CHAT);
+        request.put("stream", true);
+        List<String> events = webTestClient.post().uri("/v1/chat/completions")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                .getResponseBody()
+                .map(ServerSentEvent::data)
+                .collectList()
+                .block();
+
+        Assertions.assertNotNull(events);
+        Assertions.assertEquals("[DONE]", events.get(events.size() - 1));
+        StringBuilder reply = new StringBuilder();
+        for (String event : events.subList(0, events.size() - 1)) {
+            JsonNode delta = objectMapper.readTree(event).path("choices").path(0).path("delta");
+            reply.append(delta.path("content").asText(""));
+        }
+        Assertions.assertEquals(30, reply.toString().split(" ").length);
+        Assertions.assertEquals("length",
+                objectMapper.readTree(events.get(events.size() - 2)).path("choices").path(0).path("finish_reason").asText());
+    }
+
+    @Test
+    void requests_beyond_the_quota_get_429_with_rate_limit_headers() {
+        properties.getRateLimit().setRequestsPerMinute(2);
+        for (int remaining = 1; remaining >= 0; remaining--) {
+            webTestClient.post().uri("/v1/chat/completions").bodyValue(CHAT).exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().valueEquals("x-ratelimit-limit-requests", "2")
+                    .expectHeader().valueEquals("x-ratelimit-remaining-requests", Integer.toString(remaining));
+        }
+        webTestClient.post().uri("/v1/chat/completions").bodyValue(CHAT).exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().exists("Retry-After")
+                .expectHeader().exists("x-ratelimit-reset-requests")
+                .expectBody().jsonPath("$.error.code").isEqualTo("rate_limit_exceeded");
+    }
+
+    @Test
+    void faults_can_be_injected_at_runtime() {
+        webTestClient.patch().uri("/admin/config")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"faults\":{\"errorRate\":1.0,\"errorStatus\":503}}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.faults.errorRate").isEqualTo(1.0);
+        Assertions.assertEquals(0, properties.getLatency().getMedian().toMillis());
+
+        webTestClient.post().uri("/v1/chat/completions").bodyValue(CHAT).exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectBody().jsonPath("$.error.type").isEqualTo("server_error");
+    }
+
+    @Test
+    void a_prompt_array_is_answered_as_one_batch() {
+        webTestClient.post().uri("/v1/completions")
+                .bodyValue(Map.of("prompt", List.of("first question", "second question"), "max_tokens", 5))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.choices.length()").isEqualTo(2)
+                .jsonPath("$.choices[1].index").isEqualTo(1)
+                .jsonPath("$.choices[1].text").isEqualTo("Stand-in reply to: second question");
+    }
+}
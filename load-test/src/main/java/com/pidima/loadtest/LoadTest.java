@@ -0,0 +1,108 @@
+package com.pidima.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link VirtualUser}s against the gateway, prints outcomes and latency percentiles per route, writes them as
+ * JSON and, when given a baseline, exits with status 1 if a route regressed against it.
+ */
+public final class LoadTest {
+    // Flow order
+    static final List<String> ROUTES = List.of("login", "refresh", "session", "message", "history");
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        LoadTestResult result = run(options, json);
+
+        print(result);
+        if (options.out() != null) {
+            json.writeValue(options.out().toFile(), result);
+            System.out.println("Result written to " + options.out());
+        }
+        if (options.baseline() != null && !compare(result, json.readValue(options.baseline().toFile(), LoadTestResult.class),
+                options.tolerance())) {
+            System.exit(1);
+        }
+    }
+
+    static LoadTestResult run(LoadTestOptions options, ObjectMapper json) throws InterruptedException, IOException {
+        Map<String, RouteStats> stats = new LinkedHashMap<>();
+        ROUTES.forEach(route -> stats.put(route, new RouteStats()));
+        String startedAt = Instant.now().toString();
+        System.out.printf("%d users against %s: %ds ramp-up, %ds measured%n", options.users(), options.gateway(),
+                options.rampUp().toSeconds(), options.duration().toSeconds());
+
+        // The client gets its own executor: the users' one is shut down once all are submitted
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             ExecutorService httpExecutor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .connectTimeout(Duration.ofSeconds(5))
+                     .executor(httpExecutor)
+                     .build()) {
+            long start = System.nanoTime();
+            long measureFrom = start + options.rampUp().toNanos();
+            long end = measureFrom + options.duration().toNanos();
+            long stagger = options.rampUp().toNanos() / Math.max(1, options.users());
+            for (int i = 0; i < options.users(); i++) {
+                VirtualUser user = new VirtualUser(i, options, http, json, stats, measureFrom, end);
+                long startAt = start + i * stagger;
+                executor.submit(() -> {
+                    TimeUnit.NANOSECONDS.sleep(Math.max(0, startAt - System.nanoTime()));
+                    user.run();
+                    return null;
+                });
+            }
+            executor.shutdown();
+            // Requests still running at the end are recorded when they complete
+            if (!executor.awaitTermination(options.rampUp().plus(options.duration()).toSeconds() + 120, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        }
+
+        double seconds = options.duration().toMillis() / 1000.0;
+        Map<String, LoadTestResult.Route> routes = new LinkedHashMap<>();
+        stats.forEach((route, routeStats) -> routes.put(route, routeStats.toResult(seconds)));
+        return new LoadTestResult(options.label(), startedAt, options.users(), seconds, options.messagesPerSession(),
+                options.thinkTime().toMillis(), routes);
+    }
+
+    private static void print(LoadTestResult result) {
+        System.out.printf("%n%-8s %9s %9s %7s %7s %8s %9s %9s %9s %9s%n",
+                "route", "requests", "ok", "429", "errors", "ok/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        result.routes().forEach((name, route) -> {
+            LoadTestResult.Latency latency = route.latencyMs();
+            System.out.printf("%-8s %9d %9d %7d %7d %8.1f %9s %9s %9s %9s%n", name, route.requests(), route.ok(),
+                    route.rateLimited(), route.errors(), route.okPerSecond(),
+                    latency == null ? "-" : latency.p50(), latency == null ? "-" : latency.p90(),
+                    latency == null ? "-" : latency.p99(), latency == null ? "-" : latency.max());
+        });
+    }
+
+    private static boolean compare(LoadTestResult result, LoadTestResult baseline, double tolerance) {
+        List<String> regressions = result.regressionsAgainst(baseline, tolerance);
+        if (regressions.isEmpty()) {
+            System.out.printf("No regression against the baseline (tolerance %.0f%%)%n", tolerance * 100);
+            return true;
+        }
+        System.out.printf("Regressions against the baseline (tolerance %.0f%%):%n", tolerance * 100);
+        regressions.forEach(line -> System.out.println("  " + line));
+        return false;
+    }
+}
@@ -0,0 +1,66 @@
+package com.pidima.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line of {@link LoadTest}: {@code --name value} pairs, all optional.
+ *
+ * @param gateway            base URL of the gateway
+ * @param username           login of every virtual user
+ * @param password           password of every virtual user
+ * @param users              concurrent virtual users
+ * @param duration           measured part of the run, after the ramp-up
+ * @param rampUp             time over which users start; requests started before its end are not recorded
+ * @param messagesPerSession messages each user sends in a session before reading its history
+ * @param thinkTime          pause of a user after each message
+ * @param refreshEvery       sessions between two token refreshes of a user
+ * @param label              free text stored with the result, e.g. what was deployed
+ * @param out                where the JSON result is written; null to skip
+ * @param baseline           result to compare with; null to skip
+ * @param tolerance          allowed relative drop of throughput or rise of p99 latency before a route regresses
+ */
+public record LoadTestOptions(String gateway, String username, String password, int users, Duration duration,
+                              Duration rampUp, int messagesPerSession, Duration thinkTime, int refreshEvery,
+                              String label, Path out, Path baseline, double tolerance) {
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value pairs, got: " + args[i]);
+            }
+            values.put(args[i].substring(2), args[++i]);
+        }
+        return new LoadTestOptions(
+                values.getOrDefault("gateway", "http://localhost:18081"),
+                values.getOrDefault("username", "admin"),
+                values.getOrDefault("password", "admin"),
+                Integer.parseInt(values.getOrDefault("users", "20")),
+                duration(values.getOrDefault("duration", "60s")),
+                duration(values.getOrDefault("ramp-up", "10s")),
+                Integer.parseInt(values.getOrDefault("messages", "5")),
+                duration(values.getOrDefault("think-time", "500ms")),
+                Integer.parseInt(values.getOrDefault("refresh-every", "1")),
+                values.getOrDefault("label", ""),
+                path(values.getOrDefault("out", "load-test-result.json")),
+                path(values.get("baseline")),
+                Double.parseDouble(values.getOrDefault("tolerance", "0.25")));
+    }
+
+    /**
+     * Parses {@code 500ms}, {@code 30s} or {@code 2m}.
+     */
+    static Duration duration(String value) {
+        if (value.endsWith("ms")) return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        if (value.endsWith("s")) return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        if (value.endsWith("m")) return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        throw new IllegalArgumentException("Expected a duration like 500ms, 30s or 2m, got: " + value);
+    }
+
+    private static Path path(String value) {
+        return value == null || value.isBlank() || "none".equals(value) ? null : Path.of(value);
+    }
+}
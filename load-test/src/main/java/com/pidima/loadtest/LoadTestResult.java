@@ -0,0 +1,54 @@
+package com.pidima.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a run as written to (and read back from) the JSON file.
+ *
+ * @param label              free text describing what was tested
+ * @param startedAt          ISO-8601 start of the run
+ * @param users              concurrent virtual users
+ * @param durationSeconds    measured seconds, ramp-up excluded
+ * @param messagesPerSession messages per session
+ * @param thinkTimeMs        pause after each message
+ * @param routes             outcomes per route, in flow order
+ */
+public record LoadTestResult(String label, String startedAt, int users, double durationSeconds,
+                             int messagesPerSession, long thinkTimeMs, Map<String, Route> routes) {
+
+    /**
+     * @param okPerSecond successful responses per measured second
+     * @param latencyMs   latency of successful responses; null when there were none
+     */
+    public record Route(long requests, long ok, long rateLimited, long errors, double okPerSecond, Latency latencyMs) {
+    }
+
+    public record Latency(double mean, double p50, double p90, double p99, double max) {
+    }
+
+    /**
+     * @return one line per route whose throughput dropped or whose p99 latency rose against {@code baseline} by more
+     * than {@code tolerance}; empty when none did
+     */
+    public List<String> regressionsAgainst(LoadTestResult baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        baseline.routes().forEach((name, base) -> {
+            Route current = routes.get(name);
+            if (base.ok() == 0) return;
+            if (current == null || current.ok() == 0) {
+                regressions.add(name + ": no successful responses (baseline " + base.okPerSecond() + "/s)");
+                return;
+            }
+            if (current.okPerSecond() < base.okPerSecond() * (1 - tolerance)) {
+                regressions.add(String.format("%s: throughput %.1f/s, baseline %.1f/s", name,
+                        current.okPerSecond(), base.okPerSecond()));
+            } else if (current.latencyMs().p99() > base.latencyMs().p99() * (1 + tolerance)) {
+                regressions.add(String.format("%s: p99 %.1f ms, baseline %.1f ms", name,
+                        current.latencyMs().p99(), base.latencyMs().p99()));
+            }
+        });
+        return regressions;
+    }
+}
@@ -0,0 +1,51 @@
+package com.pidima.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcomes and latencies of one route. Latency percentiles cover successful responses only, so fast 429s do not hide
+ * slow successes; rejections and errors are counted separately.
+ */
+final class RouteStats {
+    // Microseconds, up to 5 minutes, 3 significant digits
+    private final Histogram latencies = new Histogram(TimeUnit.MINUTES.toMicros(5), 3);
+    private long requests;
+    private long ok;
+    private long rateLimited;
+    private long errors;
+
+    /**
+     * @param status HTTP status, or -1 when the request failed without a response
+     */
+    synchronized void record(int status, long latencyNanos) {
+        requests++;
+        if (status >= 200 && status < 300) {
+            ok++;
+            latencies.recordValue(Math.min(latencies.getHighestTrackableValue(), TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        } else if (status == 429) {
+            rateLimited++;
+        } else {
+            errors++;
+        }
+    }
+
+    synchronized LoadTestResult.Route toResult(double seconds) {
+        LoadTestResult.Latency latency = ok == 0 ? null : new LoadTestResult.Latency(
+                millis(latencies.getMean()),
+                millis(latencies.getValueAtPercentile(50)),
+                millis(latencies.getValueAtPercentile(90)),
+                millis(latencies.getValueAtPercentile(99)),
+                millis(latencies.getMaxValue()));
+        return new LoadTestResult.Route(requests, ok, rateLimited, errors, round(ok / seconds), latency);
+    }
+
+    private static double millis(double micros) {
+        return round(micros / 1000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10.0) / 10.0;
+    }
+}
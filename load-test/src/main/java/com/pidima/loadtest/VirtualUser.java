@@ -0,0 +1,163 @@
+package com.pidima.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * One user of the UI, scripted: log in, then until the run ends create a session, send messages with a pause after
+ * each, read the session's history and now and then refresh the access token. Each step is one request through the
+ * gateway; a rejected or failed step is recorded and the flow moves on as the UI would.
+ */
+final class VirtualUser implements Runnable {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    private static final String REFRESH_COOKIE = "refresh_token";
+
+    private final int id;
+    private final LoadTestOptions options;
+    private final HttpClient http;
+    private final ObjectMapper json;
+    private final Map<String, RouteStats> stats;
+    private final long measureFrom;
+    private final long end;
+
+    private String accessToken;
+    private String refreshToken;
+    private int sessions;
+
+    VirtualUser(int id, LoadTestOptions options, HttpClient http, ObjectMapper json, Map<String, RouteStats> stats,
+                long measureFrom, long end) {
+        this.id = id;
+        this.options = options;
+        this.http = http;
+        this.json = json;
+        this.stats = stats;
+        this.measureFrom = measureFrom;
+        this.end = end;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (System.nanoTime() < end) {
+                if (accessToken == null && !login()) {
+                    pause();
+                    continue;
+                }
+                chat();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void chat() throws InterruptedException {
+        HttpResponse<String> session = call("session", api("/api/chat/session").POST(body(Map.of())));
+        String sessionId = field(session, "sessionId");
+        if (sessionId == null) {
+            pause();
+            return;
+        }
+        for (int i = 1; i <= options.messagesPerSession() && System.nanoTime() < end; i++) {
+            String message = "Question " + i + " from user " + id + ": how do I configure the chatbot service?";
+            call("message", api("/api/chat/message").POST(body(Map.of("sessionId", sessionId, "message", message))));
+            pause();
+        }
+        call("history", api("/api/chat/history/" + sessionId).GET());
+        if (++sessions % Math.max(1, options.refreshEvery()) == 0) {
+            refresh();
+        }
+    }
+
+    private boolean login() throws InterruptedException {
+        HttpResponse<String> response = call("login", request("/auth/login")
+                .POST(body(Map.of("username", options.username(), "password", options.password()))));
+        return acceptTokens(response);
+    }
+
+    private void refresh() throws InterruptedException {
+        if (refreshToken == null) return;
+        HttpResponse<String> response = call("refresh", request("/auth/refresh")
+                .header("Cookie", REFRESH_COOKIE + "=" + refreshToken)
+                .POST(HttpRequest.BodyPublishers.noBody()));
+        if (!acceptTokens(response)) {
+            accessToken = null;
+        }
+    }
+
+    private boolean acceptTokens(HttpResponse<String> response) {
+        String token = field(response, "accessToken");
+        if (token == null) return false;
+        accessToken = token;
+        for (String cookie : response.headers().allValues("Set-Cookie")) {
+            if (cookie.startsWith(REFRESH_COOKIE + "=")) {
+                int end = cookie.indexOf(';');
+                refreshToken = cookie.substring(REFRESH_COOKIE.length() + 1, end < 0 ? cookie.length() : end);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sends a request and records its outcome when it started inside the measured window.
+     *
+     * @return the response, or null when the request failed without one
+     */
+    private HttpResponse<String> call(String route, HttpRequest.Builder request) throws InterruptedException {
+        long start = System.nanoTime();
+        HttpResponse<String> response = null;
+        try {
+            response = http.send(request.timeout(REQUEST_TIMEOUT).build(), HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            // Counted as an error below
+        }
+        if (start >= measureFrom) {
+            stats.get(route).record(response == null ? -1 : response.statusCode(), System.nanoTime() - start);
+        }
+        if (response != null && response.statusCode() == 401 && !route.equals("refresh")) {
+            accessToken = null;
+        }
+        return response;
+    }
+
+    private HttpRequest.Builder api(String path) {
+        return request(path).header("Authorization", "Bearer " + accessToken);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(options.gateway() + path))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json");
+    }
+
+    private HttpRequest.BodyPublisher body(Map<String, String> body) {
+        try {
+            return HttpRequest.BodyPublishers.ofString(json.writeValueAsString(body));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String field(HttpResponse<String> response, String name) {
+        if (response == null || response.statusCode() != 200) return null;
+        try {
+            JsonNode value = json.readTree(response.body()).get(name);
+            return value == null || value.isNull() ? null : value.asText();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void pause() throws InterruptedException {
+        if (!options.thinkTime().isZero()) {
+            Thread.sleep(options.thinkTime());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.pidima.loadtest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class LoadTestResultTest {
+
+    @Test
+    void route_stats_count_rejections_and_errors_apart_from_successes() {
+        RouteStats stats = new RouteStats();
+        stats.record(200, Duration.ofMillis(10).toNanos());
+        stats.record(201, Duration.ofMillis(30).toNanos());
+        stats.record(429, Duration.ofMillis(1).toNanos());
+        stats.record(503, Duration.ofMillis(1).toNanos());
+        stats.record(-1, Duration.ofMillis(1).toNanos());
+
+        LoadTestResult.Route route = stats.toResult(2);
+        Assertions.assertEquals(5, route.requests());
+        Assertions.assertEquals(2, route.ok());
+        Assertions.assertEquals(1, route.rateLimited());
+        Assertions.assertEquals(2, route.errors());
+        Assertions.assertEquals(1.0, route.okPerSecond());
+        Assertions.assertEquals(10.0, route.latencyMs().p50());
+        Assertions.assertEquals(30.0, route.latencyMs().max(), 0.1);
+    }
+
+    @Test
+    void lower_throughput_or_higher_p99_beyond_the_tolerance_is_a_regression() {
+        Map<String, LoadTestResult.Route> routes = new LinkedHashMap<>();
+        routes.put("message", route(10.0, 100));
+        routes.put("history", route(20.0, 10));
+        LoadTestResult baseline = result(routes);
+
+        Assertions.assertEquals(List.of(),
+                result(Map.of("message", route(8.0, 120), "history", route(20.0, 12))).regressionsAgainst(baseline, 0.25));
+        Assertions.assertEquals(List.of("message: throughput 7.0/s, baseline 10.0/s", "history: p99 13.0 ms, baseline 10.0 ms"),
+                result(Map.of("message", route(7.0, 100), "history", route(20.0, 13))).regressionsAgainst(baseline, 0.25));
+    }
+
+    @Test
+    void options_default_what_is_not_given() {
+        LoadTestOptions options = LoadTestOptions.parse(new String[]{"--users", "5", "--think-time", "0ms", "--out", "none"});
+
+        Assertions.assertEquals(5, options.users());
+        Assertions.assertEquals(Duration.ZERO, options.thinkTime());
+        Assertions.assertEquals(Duration.ofSeconds(60), options.duration());
+        Assertions.assertNull(options.out());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> LoadTestOptions.parse(new String[]{"--users"}));
+    }
+
+    private static LoadTestResult result(Map<String, LoadTestResult.Route> routes) {
+        return new LoadTestResult("", "", 1, 60, 1, 0, new LinkedHashMap<>(routes));
+    }
+
+    private static LoadTestResult.Route route(double okPerSecond, double p99) {
+        return new LoadTestResult.Route(100, 100, 0, 0, okPerSecond,
+                new LoadTestResult.Latency(p99 / 2, p99 / 2, p99, p99, p99));
+    }
+}
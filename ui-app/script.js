@@ -54,6 +54,7 @@
     div.innerText = content;
     chatWindow.appendChild(div);
     chatWindow.scrollTop = chatWindow.scrollHeight;
+    return div;
   }
 
   async function tryRefresh() {
@@ -66,7 +67,7 @@
     } catch { return false; }
   }
 
-  async function api(path, method = 'GET', body) {
+  async function apiResponse(path, method = 'GET', body) {
     const headers = { 'Content-Type': 'application/json' };
     const t = getToken();
     if (t) headers['Authorization'] = 'Bearer ' + t;
@@ -95,11 +96,36 @@
       const text = await res.text();
       throw new Error('HTTP ' + res.status + ': ' + text);
     }
+    return res;
+  }
+
+  async function api(path, method = 'GET', body) {
+    const res = await apiResponse(path, method, body);
     const ct = res.headers.get('content-type') || '';
     if (ct.includes('application/json')) return res.json();
     return res.text();
   }
 
+  // History is loaded once (latest page), then only messages after the newest fetched cursor; turns sent from this
+  // page are rendered from the POST response, after which the next refresh reloads the latest page
+  const HISTORY_PAGE_SIZE = 50;
+  let historySessionId = null;
+  let historyCursor = null;
+
+  async function loadHistory(sessionId) {
+    const incremental = sessionId === historySessionId && historyCursor;
+    const query = incremental ? '?after=' + encodeURIComponent(historyCursor) : '?limit=' + HISTORY_PAGE_SIZE;
+    const res = await apiResponse('/api/chat/history/' + encodeURIComponent(sessionId) + query, 'GET');
+    const messages = await res.json();
+    if (!incremental) {
+      chatWindow.innerHTML = '';
+      if (res.headers.get('X-Has-More') === 'true') addMsg('system', '(older messages not shown)');
+    }
+    messages.forEach(m => addMsg(m.role, m.content));
+    historySessionId = sessionId;
+    historyCursor = res.headers.get('X-Last-Cursor') || historyCursor;
+  }
+
   document.getElementById('logoutBtn').addEventListener('click', async () => {
     try { await fetch(gateway + '/auth/logout', { method: 'POST', credentials: 'include' }); } catch {}
     localStorage.removeItem('chatbot_jwt');
@@ -132,7 +158,9 @@
       addMsg('user', message);
       messageInput.value = '';
       const data = await api('/api/chat/message', 'POST', { sessionId, message });
-      addMsg('assistant', data.response || data.reply || '[no reply]');
+      addMsg('assistant', data.reply);
+      // The cursor stays before this turn, so an incremental fetch would show it twice; reload the latest page instead
+      if (sessionId === historySessionId) historyCursor = null;
     } catch (e) {
       addMsg('system', 'Error: ' + e.message);
     }
@@ -142,9 +170,7 @@
     try {
       const sessionId = sessionIdEl.value.trim();
       if (!sessionId) throw new Error('Session ID is required');
-      const history = await api('/api/chat/history/' + encodeURIComponent(sessionId), 'GET');
-      chatWindow.innerHTML = '';
-      history.forEach(m => addMsg(m.role, m.content));
+      await loadHistory(sessionId);
     } catch (e) {
       addMsg('system', 'Error: ' + e.message);
     }